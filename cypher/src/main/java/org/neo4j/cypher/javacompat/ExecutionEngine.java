@@ -19,6 +19,9 @@
  */
 package org.neo4j.cypher.javacompat;
 
+import java.util.Collections;
+import java.util.Map;
+
 import org.neo4j.cypher.SyntaxException;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.cypher.commands.Query;
@@ -50,4 +53,50 @@ public class ExecutionEngine
     {
         return new ExecutionResult(inner.execute( query ));
     }
+
+    /**
+     * Executes a query text and returns an iterable that contains the result set.
+     * The text is parsed and planned once, repeated executions of it take the
+     * plan from a cache.
+     * @param query The query text to execute
+     * @return A ExecutionResult that contains the result set
+     * @throws org.neo4j.cypher.SyntaxException If the query contains errors
+     */
+    public ExecutionResult execute( String query ) throws SyntaxException
+    {
+        return execute( query, Collections.<String, Object>emptyMap() );
+    }
+
+    /**
+     * Executes a query text with parameters, like <code>start n=({id})</code>,
+     * in its start clause and returns an iterable that contains the result set.
+     * The text is parsed and planned once, repeated executions of it with
+     * other parameters take the plan from a cache.
+     * @param query The query text to execute
+     * @param params The values of the parameters, ids or collections of ids
+     * @return A ExecutionResult that contains the result set
+     * @throws org.neo4j.cypher.SyntaxException If the query contains errors
+     */
+    public ExecutionResult execute( String query, Map<String, Object> params ) throws SyntaxException
+    {
+        return new ExecutionResult(inner.execute( query, params ));
+    }
+
+    /**
+     * @return the number of executions of query texts that found their plan
+     * in the cache
+     */
+    public long getPlanCacheHits()
+    {
+        return inner.planCacheHits();
+    }
+
+    /**
+     * @return the number of executions of query texts that had to parse and
+     * plan the query
+     */
+    public long getPlanCacheMisses()
+    {
+        return inner.planCacheMisses();
+    }
 }
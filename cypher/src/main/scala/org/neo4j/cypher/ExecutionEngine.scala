@@ -20,80 +20,63 @@
 package org.neo4j.cypher
 
 import commands._
-import pipes._
+import parser.CypherParser
 import scala.collection.JavaConverters._
 import org.neo4j.graphdb._
-import collection.Seq
-import java.lang.{Error, Iterable}
+import org.neo4j.kernel.impl.cache.LruCache
+import java.util.concurrent.atomic.AtomicLong
+import java.lang.Error
 
-class ExecutionEngine(graph: GraphDatabaseService) {
+class ExecutionEngine(graph: GraphDatabaseService, planCacheSize: Int) {
   checkScalaVersion()
 
+  def this(graph: GraphDatabaseService) = this(graph, 100)
 
-  @throws(classOf[SyntaxException])
-  def execute(query: Query): ExecutionResult = query match {
-    case Query(returns, start, matching, where, aggregation, sort, slice) => {
-      var pipe = createSourcePumps(start).reduceLeft(_ ++ _)
-
-      matching match {
-        case None =>
-        case Some(m) => pipe = new PatternPipe(pipe, m)
-      }
-
-      where match {
-        case None =>
-        case Some(w) => pipe = new FilterPipe(pipe, w)
-      }
+  private val plans = new LruCache[String, ExecutionPlan]("Cypher execution plans", planCacheSize, null)
+  private val planCacheHitCount = new AtomicLong()
+  private val planCacheMissCount = new AtomicLong()
 
-      val allReturnItems = returns.returnItems ++
-        aggregation.getOrElse(new Aggregation()).aggregationItems.map(_.concreteReturnItem) ++
-        sort.getOrElse(new Sort()).sortItems.map(_.returnItem.concreteReturnItem)
+  @throws(classOf[SyntaxException])
+  def execute(query: Query): ExecutionResult = new ExecutionPlan(graph, query).execute(Map())
 
-      pipe = new TransformPipe(pipe, allReturnItems)
+  /**
+   * Executes the query text with the given values for the parameters in its
+   * start clause. The text is only parsed and planned the first time, after
+   * that the plan is taken from a cache of the most recently used ones.
+   */
+  @throws(classOf[SyntaxException])
+  def execute(queryText: String, params: Map[String, Any]): ExecutionResult = plan(queryText).execute(params)
 
-      aggregation match {
-        case None =>
-        case Some(aggr) => {
-          pipe = new AggregationPipe(pipe, returns.returnItems, aggr.aggregationItems)
-        }
-      }
+  @throws(classOf[SyntaxException])
+  def execute(queryText: String, params: java.util.Map[String, Any]): ExecutionResult = execute(queryText, params.asScala.toMap)
 
-      sort match {
-        case None =>
-        case Some(s) => {
-          pipe = new SortPipe(pipe, s.sortItems.toList)
-        }
-      }
+  @throws(classOf[SyntaxException])
+  def execute(queryText: String): ExecutionResult = execute(queryText, Map[String, Any]())
 
-      slice match {
-        case None =>
-        case Some(x) => pipe = new SlicePipe(pipe, x.from, x.limit)
-      }
+  def planCacheHits: Long = planCacheHitCount.get
 
-      val columns = returns.returnItems ++ aggregation.getOrElse(new Aggregation()).aggregationItems
+  def planCacheMisses: Long = planCacheMissCount.get
 
-      val result = new ColumnFilterPipe(pipe, columns) with ExecutionResult
+  def planCacheHitRatio: Double = {
+    val hits = planCacheHits
+    val lookups = hits + planCacheMisses
+    if (lookups == 0) 0.0 else hits.toDouble / lookups
+  }
 
-      result
+  private def plan(queryText: String): ExecutionPlan = {
+    val cached = plans.get(queryText)
+    if (cached != null) {
+      planCacheHitCount.incrementAndGet()
+      cached
+    } else {
+      planCacheMissCount.incrementAndGet()
+      // The parser keeps state while parsing, so it isn't shared between threads
+      val plan = new ExecutionPlan(graph, new CypherParser().parse(queryText))
+      plans.put(queryText, plan)
+      plan
     }
   }
 
-  private def createSourcePumps(from: Start): Seq[Pipe] =
-    from.startItems.map((item) => {
-      item match {
-        case NodeByIndex(varName, idxName, key, value) => {
-          val indexHits: Iterable[Node] = graph.index.forNodes(idxName).get(key, value)
-          new StartPipe(varName, indexHits.asScala.toList)
-        }
-        case NodeByIndexQuery(varName, idxName, query) => {
-          val indexHits: Iterable[Node] = graph.index.forNodes(idxName).query(query)
-          new StartPipe(varName, indexHits.asScala.toList)
-        }
-        case NodeById(varName, ids@_*) => new StartPipe(varName, ids.map(graph.getNodeById))
-        case RelationshipById(varName, ids@_*) => new StartPipe(varName, ids.map(graph.getRelationshipById))
-      }
-    })
-
   def checkScalaVersion() {
     if (util.Properties.versionString.matches("^version 2.9.0")) {
       throw new Error("Cypher can only run with Scala 2.9.0. It looks like the Scala version is: " +
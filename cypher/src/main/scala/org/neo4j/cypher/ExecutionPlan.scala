@@ -0,0 +1,199 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher
+
+import commands._
+import pipes._
+import scala.collection.JavaConverters._
+import org.neo4j.graphdb._
+import collection.Seq
+
+/**
+ * A query with the planning that doesn't depend on its start points done,
+ * so that it can be executed again and again with new parameters.
+ */
+class ExecutionPlan(graph: GraphDatabaseService, query: Query) {
+  private val wherePredicates: Seq[Clause] = query.where match {
+    case None => Seq()
+    case Some(w) => w.atoms
+  }
+
+  private val components: Map[String, Int] = query.matching match {
+    case None => Map()
+    case Some(m) => connectedComponents(m)
+  }
+
+  private val allReturnItems = query.returns.returnItems ++
+    query.aggregation.getOrElse(new Aggregation()).aggregationItems.map(_.concreteReturnItem) ++
+    query.sort.getOrElse(new Sort()).sortItems.map(_.returnItem.concreteReturnItem)
+
+  private val columns = query.returns.returnItems ++ query.aggregation.getOrElse(new Aggregation()).aggregationItems
+
+  @throws(classOf[ParameterNotFoundException])
+  def execute(params: Map[String, Any]): ExecutionResult = query match {
+    case Query(returns, start, matching, where, aggregation, sort, slice) => {
+      val startPipes = createSourcePumps(start, params)
+      val semiJoined = semiJoinedStartPoints(startPipes)
+      var predicates = wherePredicates
+
+      // Start points with the fewest rows first, each one filtered by the
+      // predicates that only need it before it's joined with the others
+      val joinOrder = startPipes.filterNot(semiJoined.contains).sortBy(_.startPoints.size)
+      var pipe: Pipe = null
+      joinOrder.foreach(startPipe => {
+        val (filtered, left) = filterBound(startPipe, predicates)
+        pipe = if (pipe == null) filtered else pipe ++ filtered
+        val (joined, stillLeft) = filterBound(pipe, left)
+        pipe = joined
+        predicates = stillLeft
+      })
+
+      matching match {
+        case None =>
+        case Some(m) => pipe = new PatternPipe(pipe, m)
+      }
+
+      semiJoined.foreach(startPipe => pipe = new SemiJoinPipe(pipe, startPipe.name, startPipe.startPoints))
+
+      if (predicates.nonEmpty) {
+        pipe = new FilterPipe(pipe, predicates.reduceLeft(_ ++ _))
+      }
+
+      pipe = new TransformPipe(pipe, allReturnItems)
+
+      aggregation match {
+        case None =>
+        case Some(aggr) => {
+          pipe = new AggregationPipe(pipe, returns.returnItems, aggr.aggregationItems, groupsArriveTogether(joinOrder.head))
+        }
+      }
+
+      sort match {
+        case None =>
+        case Some(s) => {
+          pipe = slice match {
+            case Some(Slice(skip, Some(limit))) => new TopPipe(pipe, s.sortItems.toList, skip.getOrElse(0) + limit)
+            case _ => new SortPipe(pipe, s.sortItems.toList)
+          }
+        }
+      }
+
+      slice match {
+        case None =>
+        case Some(x) => pipe = new SlicePipe(pipe, x.from, x.limit)
+      }
+
+      val result = new ColumnFilterPipe(pipe, columns) with ExecutionResult
+
+      result
+    }
+  }
+
+  /*
+   * The rows of one start point of the outermost start pipe come after each
+   * other, the pipes on top of it only filter or expand them. Groups made of
+   * that start point and its properties are then complete when it moves on.
+   */
+  private def groupsArriveTogether(outermost: StartPipe[_ <: PropertyContainer]): Boolean = {
+    val name = outermost.name
+    val keys = query.returns.returnItems
+    keys.isEmpty || (keys.contains(EntityOutput(name)) && keys.forall {
+      case EntityOutput(entity) => entity == name
+      case PropertyOutput(entity, _) => entity == name
+      case NullablePropertyOutput(entity, _) => entity == name
+      case _ => false
+    } && outermost.startPoints.toSeq.distinct.size == outermost.startPoints.size)
+  }
+
+  /*
+   * Adds a filter with the predicates that only need identifiers the pipe
+   * has bound, returns the new pipe and the predicates left.
+   */
+  private def filterBound(pipe: Pipe, predicates: Seq[Clause]): (Pipe, Seq[Clause]) = {
+    val bound = pipe.symbols.identifiers.map(_.name)
+    val (now, later) = predicates.partition(_.identifiers.forall(bound.contains))
+    if (now.isEmpty) (pipe, later) else (new FilterPipe(pipe, now.reduceLeft(_ ++ _)), later)
+  }
+
+  /*
+   * Start points connected to each other by the pattern are not joined, the
+   * pattern is matched from the one with the fewest start points and the
+   * others only keep the matches which end up in one of their start points.
+   */
+  private def semiJoinedStartPoints(startPipes: Seq[StartPipe[_ <: PropertyContainer]]): Seq[StartPipe[_ <: PropertyContainer]] =
+    startPipes.filter(startPipe => components.contains(startPipe.name)).
+      groupBy(startPipe => components(startPipe.name)).values.
+      flatMap(_.sortBy(_.startPoints.size).tail).toSeq
+
+  private def connectedComponents(matching: Match): Map[String, Int] = {
+    var components = Map[String, Int]()
+    matching.patterns.zipWithIndex.foreach {
+      case (pattern, index) => pattern match {
+        case RelatedTo(left, right, _, _, _) => {
+          val merged = Seq(components.get(left), components.get(right)).flatten
+          val component = if (merged.isEmpty) index else merged.min
+          components = components.map {
+            case (name, c) if merged.contains(c) => name -> component
+            case other => other
+          } + (left -> component) + (right -> component)
+        }
+        case _ =>
+      }
+    }
+    components
+  }
+
+  private def createSourcePumps(from: Start, params: Map[String, Any]): Seq[StartPipe[_ <: PropertyContainer]] =
+    from.startItems.map((item) => {
+      val startPipe: StartPipe[_ <: PropertyContainer] = item match {
+        case NodeByIndex(varName, idxName, key, value) => {
+          val indexHits: java.lang.Iterable[Node] = graph.index.forNodes(idxName).get(key, value)
+          new StartPipe(varName, indexHits.asScala.toList)
+        }
+        case NodeByIndexQuery(varName, idxName, query) => {
+          val indexHits: java.lang.Iterable[Node] = graph.index.forNodes(idxName).query(query)
+          new StartPipe(varName, indexHits.asScala.toList)
+        }
+        case NodeById(varName, ids@_*) => new StartPipe(varName, ids.map(graph.getNodeById))
+        case RelationshipById(varName, ids@_*) => new StartPipe(varName, ids.map(graph.getRelationshipById))
+        case NodeByParameter(varName, name) => new StartPipe(varName, idsFrom(name, params).map(graph.getNodeById))
+        case RelationshipByParameter(varName, name) => new StartPipe(varName, idsFrom(name, params).map(graph.getRelationshipById))
+      }
+      startPipe
+    })
+
+  /*
+   * A parameter in the start clause is a single id or a collection of them.
+   */
+  private def idsFrom(name: String, params: Map[String, Any]): Seq[Long] = {
+    def asId(value: Any): Long = value match {
+      case id: Number => id.longValue()
+      case _ => throw new IllegalArgumentException("Expected the parameter " + name + " to contain ids, but found " + value)
+    }
+
+    params.get(name) match {
+      case None => throw new ParameterNotFoundException("Expected a parameter named " + name)
+      case Some(values: Traversable[_]) => values.map(asId).toSeq
+      case Some(values: Array[_]) => values.map(asId).toSeq
+      case Some(values: java.lang.Iterable[_]) => values.asScala.map(asId).toSeq
+      case Some(value) => Seq(asId(value))
+    }
+  }
+}
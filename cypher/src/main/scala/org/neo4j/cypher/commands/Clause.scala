@@ -25,22 +25,42 @@ abstract class Clause {
   def ++(other: Clause): Clause = And(this, other)
 
   def isMatch(m: Map[String, Any]): Boolean
+
+  /**
+   * The identifiers that have to be bound for this clause to be evaluated.
+   */
+  def identifiers: Seq[String]
+
+  /**
+   * The clauses that all have to match for this clause to match.
+   */
+  def atoms: Seq[Clause] = Seq(this)
 }
 
 case class And(a: Clause, b: Clause) extends Clause {
   def isMatch(m: Map[String, Any]): Boolean = a.isMatch(m) && b.isMatch(m)
+
+  def identifiers: Seq[String] = a.identifiers ++ b.identifiers
+
+  override def atoms: Seq[Clause] = a.atoms ++ b.atoms
 }
 
 case class Or(a: Clause, b: Clause) extends Clause {
   def isMatch(m: Map[String, Any]): Boolean = a.isMatch(m) || b.isMatch(m)
+
+  def identifiers: Seq[String] = a.identifiers ++ b.identifiers
 }
 
 case class Not(a: Clause) extends Clause {
   def isMatch(m: Map[String, Any]): Boolean = !a.isMatch(m)
+
+  def identifiers: Seq[String] = a.identifiers
 }
 
 case class True() extends Clause {
   def isMatch(m: Map[String, Any]): Boolean = true
+
+  def identifiers: Seq[String] = Seq()
 }
 
 case class Has(property: PropertyValue) extends Clause {
@@ -50,6 +70,8 @@ case class Has(property: PropertyValue) extends Clause {
       propContainer.hasProperty(propertyName)
     }
   }
+
+  def identifiers: Seq[String] = property.identifiers
 }
 
 case class RegularExpression(a: Value, str: String) extends Clause {
@@ -57,4 +79,6 @@ case class RegularExpression(a: Value, str: String) extends Clause {
     val value = a.value(m).asInstanceOf[String]
     str.r.pattern.matcher(value).matches()
   }
+
+  def identifiers: Seq[String] = a.identifiers
 }
@@ -33,6 +33,8 @@ abstract sealed class ComparableClause(a: Value, b: Value) extends Clause with C
 
     compare(comparisonResult)
   }
+
+  def identifiers: Seq[String] = a.identifiers ++ b.identifiers
 }
 
 case class Equals(a: Value, b: Value) extends ComparableClause(a, b) {
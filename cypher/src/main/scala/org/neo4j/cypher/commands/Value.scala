@@ -23,17 +23,25 @@ import org.neo4j.graphdb.{Relationship, PropertyContainer}
 
 abstract sealed class Value {
   def value(m: Map[String, Any]): Any
+
+  def identifiers: Seq[String]
 }
 
 case class Literal(v: Any) extends Value {
   def value(m: Map[String, Any]) = v
+
+  def identifiers: Seq[String] = Seq()
 }
 
 case class PropertyValue(identifier: String, property: String) extends Value {
   def value(m: Map[String, Any]): Any = m(identifier).asInstanceOf[PropertyContainer].getProperty(property)
+
+  def identifiers: Seq[String] = Seq(identifier)
 }
 
 case class RelationshipTypeValue(identifier:String) extends Value {
   def value(m: Map[String, Any]): Any = m(identifier).asInstanceOf[Relationship].getType.toString
+
+  def identifiers: Seq[String] = Seq(identifier)
 }
 
@@ -22,12 +22,16 @@ package org.neo4j.cypher.parser
 import org.neo4j.cypher.commands._
 import scala.util.parsing.combinator._
 trait StartClause extends JavaTokenParsers with Tokens {
-  def start: Parser[Start] = ignoreCase("start") ~> repsep(nodeByIds | nodeByIndex | nodeByIndexQuery | relsByIds | relsByIndex, ",") ^^ (Start(_: _*))
+  def start: Parser[Start] = ignoreCase("start") ~> repsep(nodeByIds | nodeByParameter | nodeByIndex | nodeByIndexQuery | relsByIds | relsByParameter | relsByIndex, ",") ^^ (Start(_: _*))
 
   def nodeByIds = identity ~ "=" ~ "(" ~ rep1sep(wholeNumber, ",") ~ ")" ^^ {
     case varName ~ "=" ~ "(" ~ id ~ ")" => NodeById(varName, id.map(_.toLong).toSeq: _*)
   }
 
+  def nodeByParameter = identity ~ "=" ~ "(" ~ parameter ~ ")" ^^ {
+    case varName ~ "=" ~ "(" ~ parameterName ~ ")" => NodeByParameter(varName, parameterName)
+  }
+
   def nodeByIndex = identity ~ "=" ~ "(" ~ identity ~ "," ~ identity ~ "," ~ string ~ ")" ^^ {
     case varName ~ "=" ~ "(" ~ index ~ "," ~ key ~ "," ~ value ~ ")" => NodeByIndex(varName, index, key, value)
   }
@@ -40,6 +44,10 @@ trait StartClause extends JavaTokenParsers with Tokens {
     case varName ~ "=" ~ "<" ~ id ~ ">" => RelationshipById(varName, id.map(_.toLong).toSeq: _*)
   }
 
+  def relsByParameter = identity ~ "=" ~ "<" ~ parameter ~ ">" ^^ {
+    case varName ~ "=" ~ "<" ~ parameterName ~ ">" => RelationshipByParameter(varName, parameterName)
+  }
+
   def relsByIndex = identity ~ "=" ~ "<" ~ identity ~ "," ~ identity ~ "," ~ string ~ ">" ^^ {
     case varName ~ "=" ~ "<" ~ index ~ "," ~ key ~ "," ~ value ~ ">" => RelationshipByIndex(varName, index, key, value)
   }
@@ -43,6 +43,8 @@ trait Tokens extends JavaTokenParsers {
     case str => stripQuotes(str).replace("``", "`")
   }
 
+  def parameter: Parser[String] = "{" ~> identity <~ "}"
+
   def stripQuotes(s: String) = s.substring(1, s.length - 1)
 
   def positiveNumber: Parser[String] = """\d+""".r
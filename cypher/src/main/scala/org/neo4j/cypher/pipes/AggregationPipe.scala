@@ -23,28 +23,67 @@ import aggregation.AggregationFunction
 import org.neo4j.cypher.SymbolTable
 import org.neo4j.cypher.commands.{AggregationItem, ReturnItem}
 
-class AggregationPipe(source: Pipe, returnItems: Seq[ReturnItem], aggregations: Seq[AggregationItem]) extends Pipe {
+/**
+ * Groups the rows by the return items and aggregates each group. When the
+ * rows of a group are known to come after each other, each group is passed
+ * on as soon as the next one starts, instead of keeping them all until the
+ * source is exhausted.
+ */
+class AggregationPipe(source: Pipe, returnItems: Seq[ReturnItem], aggregations: Seq[AggregationItem], groupsArriveTogether: Boolean) extends Pipe {
+  def this(source: Pipe, returnItems: Seq[ReturnItem], aggregations: Seq[AggregationItem]) =
+    this(source, returnItems, aggregations, false)
+
   val symbols: SymbolTable = source.symbols.add(aggregations.map(_.identifier))
 
   aggregations.foreach(_.assertDependencies(source))
 
-  def foreach[U](f: Map[String, Any] => U) {
-    val result = collection.mutable.Map[Seq[Any], Seq[AggregationFunction]]()
-    val valueNames = returnItems.map(_.columnName)
-    val aggregationNames = aggregations.map(_.identifier.name)
+  private val valueNames = returnItems.map(_.columnName)
+  private val aggregationNames = aggregations.map(_.identifier.name)
+  private val layout = SlotLayout(valueNames ++ aggregationNames)
+  private val valueSlots = valueNames.map(layout.slotOf(_))
+  private val aggregationSlots = aggregationNames.map(layout.slotOf(_))
+
+  def iterator: Iterator[Map[String, Any]] = if (groupsArriveTogether) streamGroups else hashGroups
+
+  private def hashGroups: Iterator[Map[String, Any]] = {
+    val groups = collection.mutable.HashMap[Seq[Any], Seq[AggregationFunction]]()
 
     source.foreach(m => {
-      val groupValues = valueNames.map(m(_))
-      val functions = result.getOrElseUpdate(groupValues, aggregations.map(_.createAggregationFunction))
+      val functions = groups.getOrElseUpdate(valueNames.map(m(_)), createFunctions)
       functions.foreach(func => func(m))
     })
 
-    result.foreach {
-      case (key, value: Seq[AggregationFunction]) => {
-        val elems = valueNames.zip(key) ++ aggregationNames.zip(value.map(_.result))
-        f(elems.toMap)
+    groups.iterator.map {
+      case (key, functions) => result(key, functions)
+    }
+  }
+
+  private def streamGroups: Iterator[Map[String, Any]] = new Iterator[Map[String, Any]] {
+    private val rows = source.iterator.buffered
+
+    def hasNext = rows.hasNext
+
+    def next() = {
+      val key = valueNames.map(rows.head(_))
+      val functions = createFunctions
+      while (rows.hasNext && valueNames.map(rows.head(_)) == key) {
+        val m = rows.next()
+        functions.foreach(func => func(m))
       }
+      result(key, functions)
     }
+  }
 
+  private def createFunctions: Seq[AggregationFunction] = aggregations.map(_.createAggregationFunction)
+
+  private def result(key: Seq[Any], functions: Seq[AggregationFunction]): Map[String, Any] = {
+    val values = new Array[Any](layout.size)
+    valueSlots.zip(key).foreach {
+      case (slot, value) => values(slot) = value
+    }
+    aggregationSlots.zip(functions).foreach {
+      case (slot, function) => values(slot) = function.result
+    }
+    new SlotRow(layout, values)
   }
-}
\ No newline at end of file
+}
@@ -30,12 +30,19 @@ class ColumnFilterPipe(source: Pipe, returnItems: Seq[ReturnItem]) extends Pipe
     new SymbolTable(returnItemNames.map( name => mergedSymbols.get(name).getOrElse(throw new SyntaxException("Unbound Symbol "+name))))
   }
 
-  def foreach[U](f: (Map[String, Any]) => U) {
-    source.foreach(row => {
-      val filtered = row.filter((kv) => kv match {
-        case (name, _) => returnItemNames.exists(_ == name)
-      })
-      f.apply(filtered)
+  def iterator: Iterator[Map[String, Any]] = {
+    var sourceLayout: SlotLayout = null
+    var layout: SlotLayout = null
+    var sourceSlots: Array[Int] = null
+
+    source.iterator.map(row => {
+      val slotRow = SlotRow(row)
+      if (slotRow.layout ne sourceLayout) {
+        sourceLayout = slotRow.layout
+        layout = SlotLayout(sourceLayout.names.filter(name => returnItemNames.exists(_ == name)))
+        sourceSlots = layout.names.map(sourceLayout.slotOf(_)).toArray
+      }
+      new SlotRow(layout, sourceSlots.map(slotRow.slots(_)))
     })
   }
 }
\ No newline at end of file
@@ -26,9 +26,5 @@ import java.lang.String
 class FilterPipe(source: Pipe, where: Clause) extends Pipe {
   val symbols: SymbolTable = source.symbols
 
-  def foreach[U](f: (Map[String, Any]) => U) {
-    source.filter((row) => {
-      where.isMatch(row)
-    }).foreach(f)
-  }
+  def iterator: Iterator[Map[String, Any]] = source.iterator.filter((row) => where.isMatch(row))
 }
\ No newline at end of file
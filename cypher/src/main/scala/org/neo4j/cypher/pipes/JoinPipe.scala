@@ -25,11 +25,10 @@ import org.neo4j.cypher.SymbolTable
 class JoinPipe(a: Pipe, b: Pipe) extends Pipe {
   val symbols: SymbolTable = a.symbols ++ b.symbols
 
-  def foreach[U](f: (Map[String, Any]) => U) {
-    a.foreach((aMap) => {
-      b.foreach((bMap) => {
-        f.apply(aMap ++ bMap)
-      })
+  def iterator: Iterator[Map[String, Any]] = {
+    val merge = new SlotRowMerger
+    a.iterator.flatMap((aMap) => {
+      b.iterator.map((bMap) => merge(aMap, bMap))
     })
   }
 }
\ No newline at end of file
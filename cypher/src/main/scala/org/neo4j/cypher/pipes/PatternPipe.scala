@@ -33,13 +33,19 @@ class PatternPipe(source: Pipe, matching: Match) extends Pipe {
 
   val symbols: SymbolTable = patternContext.symbolTable
 
-  def foreach[U](f: Map[String, Any] => U) {
+  private lazy val patternNodes = patternContext.nodes.toIndexedSeq
+  private lazy val patternRels = patternContext.rels.toIndexedSeq
+  private lazy val layout = SlotLayout(patternNodes.map(_._1) ++ patternRels.map(_._1))
+
+  def iterator: Iterator[Map[String, Any]] = {
     patternContext.validatePattern(source.symbols)
 
-    source.foreach((row) => {
+    // The start points of a row are bound when its matches are asked for,
+    // which is after the matches of the row before have all been read
+    source.iterator.flatMap((row) => {
       row.foreach(bindStartPoint(_))
 
-      getPatternMatches(row).map(f)
+      getPatternMatches(row)
     })
   }
 
@@ -50,21 +56,21 @@ class PatternPipe(source: Pipe, matching: Match) extends Pipe {
     }
   }
 
-  def getPatternMatches(fromRow: Map[String, Any]): Iterable[Map[String, Any]] = {
+  def getPatternMatches(fromRow: Map[String, Any]): Iterator[Map[String, Any]] = {
     val startKey = fromRow.keys.head
     val startPNode = patternContext.nodes(startKey)
     val startNode = fromRow(startKey).asInstanceOf[Node]
     val matches = PatternMatcher.getMatcher.`match`(startPNode, startNode)
-    matches.map(patternMatch => {
-      val nodesMap = patternContext.nodes.map {
-        case (name: String, node: PatternNode) => name -> patternMatch.getNodeFor(node)
+    matches.iterator.map(patternMatch => {
+      val nodes = patternNodes.map {
+        case (name: String, node: PatternNode) => patternMatch.getNodeFor(node)
       }
 
-      val relsMap = patternContext.rels.map {
-        case (name: String, rel: PatternRelationship) => name -> patternMatch.getRelationshipFor(rel)
+      val rels = patternRels.map {
+        case (name: String, rel: PatternRelationship) => patternMatch.getRelationshipFor(rel)
       }
 
-      (nodesMap ++ relsMap).toMap[String, Any]
+      new SlotRow(layout, (nodes ++ rels).toArray[Any])
     })
   }
 
@@ -26,9 +26,11 @@ import org.neo4j.cypher.SymbolTable
  * Pipe is a central part of Cypher. Most pipes are decorators - they
  * wrap another pipe. StartPipes are the only exception to this.
  * Pipes are combined to form an execution plan, and when iterated over,
- * the execute the query.
+ * the execute the query. Rows are pulled through the pipes one at a time,
+ * so a result is only produced as far as it is read. The pipes that build
+ * rows build them as SlotRows, which share their column layout.
  */
-abstract class Pipe extends Traversable[Map[String, Any]] {
+abstract class Pipe extends Iterable[Map[String, Any]] {
 
   def ++(other: Pipe): Pipe = new JoinPipe(this, other)
   val symbols:SymbolTable
@@ -0,0 +1,40 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.pipes
+
+import org.neo4j.cypher.SymbolTable
+import java.lang.String
+
+/**
+ * Keeps the rows where the identifier is bound to one of the start points of
+ * a start pipe. Used instead of joining with that start pipe when the
+ * pattern binds the identifier anyway, which saves the cartesian product.
+ * A start point given more than once keeps the row that many times, the
+ * same as a join would.
+ */
+class SemiJoinPipe(source: Pipe, name: String, startPoints: Iterable[Any]) extends Pipe {
+  val symbols: SymbolTable = source.symbols
+
+  private lazy val counts: Map[Any, Int] = startPoints.groupBy(x => x).map { case (k, v) => k -> v.size }
+
+  def iterator: Iterator[Map[String, Any]] = source.iterator.flatMap((row) => {
+    Iterator.fill(counts.getOrElse(row(name), 0))(row)
+  })
+}
@@ -21,17 +21,19 @@ package org.neo4j.cypher.pipes
 
 import org.neo4j.cypher.SymbolTable
 
+/**
+ * Passes the rows on as they are read and stops pulling rows from the
+ * source once the limit is reached.
+ */
 class SlicePipe(source:Pipe, skip:Option[Int], limit:Option[Int]) extends Pipe {
   val symbols: SymbolTable = source.symbols
 
-  def foreach[U](f: (Map[String, Any]) => U) {
-    val slicedResult = (skip, limit) match {
-      case (None, None) => source
-      case (Some(x), None) => source.drop(x)
-      case (None, Some(x)) => source.take(x)
-      case (Some(startAt), Some(count)) => source.slice(startAt, startAt + count)
-    }
+  def iterator: Iterator[Map[String, Any]] = {
+    val rows = source.iterator.drop(skip.getOrElse(0))
 
-    slicedResult.foreach(f)
+    limit match {
+      case None => rows
+      case Some(x) => rows.take(x)
+    }
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.pipes
+
+/**
+ * The columns of slot rows, and the slot of the row array each column is
+ * kept in. A pipe shares one layout between all the rows it produces.
+ */
+class SlotLayout(val names: IndexedSeq[String]) {
+  private val slotsByName: Map[String, Int] = names.zipWithIndex.toMap
+
+  def size: Int = names.size
+
+  def slotOf(name: String): Int = slotsByName.getOrElse(name, -1)
+}
+
+object SlotLayout {
+  def apply(names: Seq[String]): SlotLayout = new SlotLayout(names.distinct.toIndexedSeq)
+}
+
+/**
+ * A row kept as an array of values, one for each column of its layout,
+ * instead of as an immutable map of its own. It is still a Map, so the
+ * clauses, return items and result readers look it up the same way as
+ * before.
+ */
+class SlotRow(val layout: SlotLayout, private[pipes] val slots: Array[Any]) extends Map[String, Any] {
+  def get(key: String): Option[Any] = {
+    val slot = layout.slotOf(key)
+    if (slot < 0) None else Some(slots(slot))
+  }
+
+  def iterator: Iterator[(String, Any)] = layout.names.iterator.zip(slots.iterator)
+
+  def +[B1 >: Any](kv: (String, B1)): Map[String, B1] = Map[String, B1]() ++ iterator + kv
+
+  def -(key: String): Map[String, Any] = Map[String, Any]() ++ iterator - key
+
+  override def size: Int = slots.length
+}
+
+object SlotRow {
+  /**
+   * The row itself if it is a slot row, otherwise a slot row with its own
+   * layout holding the same columns.
+   */
+  def apply(row: Map[String, Any]): SlotRow = row match {
+    case slotRow: SlotRow => slotRow
+    case _ => {
+      val layout = SlotLayout(row.keys.toSeq)
+      new SlotRow(layout, layout.names.map(row(_)).toArray)
+    }
+  }
+}
+
+/**
+ * Builds slot rows with the columns of two rows, the second row winning
+ * for the columns they share, like ++ on maps. Where the columns go is
+ * worked out once for a pair of layouts, and reused for as long as the
+ * rows keep coming with the same layouts.
+ */
+class SlotRowMerger {
+  private var aLayout: SlotLayout = null
+  private var bLayout: SlotLayout = null
+  private var layout: SlotLayout = null
+  private var bSlots: Array[Int] = null
+
+  def apply(a: Map[String, Any], b: Map[String, Any]): SlotRow = {
+    val aRow = SlotRow(a)
+    val bRow = SlotRow(b)
+    if ((aRow.layout ne aLayout) || (bRow.layout ne bLayout)) {
+      prepare(aRow.layout, bRow.layout)
+    }
+
+    val values = new Array[Any](layout.size)
+    Array.copy(aRow.slots, 0, values, 0, aRow.slots.length)
+    var i = 0
+    while (i < bSlots.length) {
+      values(bSlots(i)) = bRow.slots(i)
+      i += 1
+    }
+    new SlotRow(layout, values)
+  }
+
+  private def prepare(a: SlotLayout, b: SlotLayout) {
+    aLayout = a
+    bLayout = b
+    layout = SlotLayout(a.names ++ b.names)
+    bSlots = b.names.map(layout.slotOf(_)).toArray
+  }
+}
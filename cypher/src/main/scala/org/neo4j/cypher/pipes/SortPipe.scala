@@ -26,10 +26,10 @@ import org.neo4j.cypher.commands.SortItem
 class SortPipe(source: Pipe,sortDescription: List[SortItem]) extends Pipe with Comparer {
   val symbols: SymbolTable = source.symbols
 
-  def foreach[U](f: (Map[String, Any]) => U) {
+  def iterator: Iterator[Map[String, Any]] = {
     val sorted = source.toList.sortWith((a, b) => compareBy (a,b,sortDescription))
 
-    sorted.foreach(f)
+    sorted.iterator
   }
 
   def compareBy(a:Map[String, Any], b:Map[String, Any], order:Seq[SortItem]):Boolean = order match {
@@ -23,7 +23,7 @@ import org.neo4j.cypher.SymbolTable
 import org.neo4j.graphdb.{Relationship, Node, PropertyContainer}
 import org.neo4j.cypher.commands.{Identifier, RelationshipIdentifier, NodeIdentifier}
 
-class StartPipe[T <: PropertyContainer](name: String, source: Iterable[T]) extends Pipe {
+class StartPipe[T <: PropertyContainer](val name: String, source: Iterable[T]) extends Pipe {
   val symbolType: Identifier = source match {
     case nodes: Iterable[Node] => NodeIdentifier(name)
     case rels: Iterable[Relationship] => RelationshipIdentifier(name)
@@ -31,9 +31,12 @@ class StartPipe[T <: PropertyContainer](name: String, source: Iterable[T]) exten
 
   val symbols: SymbolTable = new SymbolTable(List(symbolType))
 
-  def foreach[U](f: (Map[String, Any]) => U) {
-    source.foreach((x) => {
-      f(Map(name -> x))
-    })
-  }
+  /**
+   * The start points, used to estimate how many rows the start point adds.
+   */
+  def startPoints: Iterable[T] = source
+
+  private val layout = SlotLayout(Seq(name))
+
+  def iterator: Iterator[Map[String, Any]] = source.iterator.map((x) => new SlotRow(layout, Array[Any](x)))
 }
\ No newline at end of file
@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.pipes
+
+import org.neo4j.cypher.commands.SortItem
+import scala.collection.mutable.PriorityQueue
+
+/**
+ * Sorts like SortPipe but only keeps the first count rows, in a heap with the
+ * last of them on top, instead of all rows in a list. Used when the sort is
+ * followed by a limit.
+ */
+class TopPipe(source: Pipe, sortDescription: List[SortItem], count: Int) extends SortPipe(source, sortDescription) {
+
+  override def iterator: Iterator[Map[String, Any]] = {
+    if (count <= 0) {
+      Iterator.empty
+    } else {
+      // Rows are numbered so that equal rows keep their order, as in the stable sort
+      val lastFirst = new Ordering[(Map[String, Any], Int)] {
+        def compare(a: (Map[String, Any], Int), b: (Map[String, Any], Int)): Int =
+          if (compareBy(a._1, b._1, sortDescription)) -1
+          else if (compareBy(b._1, a._1, sortDescription)) 1
+          else a._2.compareTo(b._2)
+      }
+
+      val top = new PriorityQueue[(Map[String, Any], Int)]()(lastFirst)
+      var position = 0
+      source.foreach((row) => {
+        top.enqueue((row, position))
+        position += 1
+        if (top.size > count) {
+          top.dequeue()
+        }
+      })
+
+      var sorted = List[Map[String, Any]]()
+      while (top.nonEmpty) {
+        sorted = top.dequeue()._1 :: sorted
+      }
+      sorted.iterator
+    }
+  }
+}
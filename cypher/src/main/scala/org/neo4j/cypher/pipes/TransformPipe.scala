@@ -32,10 +32,19 @@ class TransformPipe(source: Pipe, returnItems: Seq[ReturnItem]) extends Pipe {
 
   returnItems.foreach(_.assertDependencies(source))
 
-  def foreach[U](f: (Map[String, Any]) => U) {
-    source.foreach(row => {
-      val projection = returnItems.map(_(row)).foldLeft(Map[String,Any]())(_ ++ _)
-      f.apply(projection ++ row)
+  // Aggregation items project the whole row, which is kept anyway
+  private val projectedItems = returnItems.filterNot(_.isInstanceOf[AggregationItem])
+  private val projectionLayout = SlotLayout(projectedItems.map(_.identifier.name))
+
+  def iterator: Iterator[Map[String, Any]] = {
+    val merge = new SlotRowMerger
+    source.iterator.map(row => {
+      val values = new Array[Any](projectionLayout.size)
+      projectedItems.foreach(item => {
+        val name = item.identifier.name
+        values(projectionLayout.slotOf(name)) = item(row)(name)
+      })
+      merge(new SlotRow(projectionLayout, values), row)
     })
   }
 }
@@ -36,6 +36,13 @@ abstract class AggregationFunction {
    * The aggregated result.
    */
   def result: Any
+
+  /**
+   * The value of the return item in the row. The row usually has it projected
+   * already, so it's only computed when it's missing.
+   */
+  protected def valueOf(returnItem: ReturnItem, data: Map[String, Any]): Any =
+    data.getOrElse(returnItem.columnName, returnItem(data)(returnItem.columnName))
 }
 
 class CountStarFunction extends AggregationFunction {
@@ -52,7 +59,7 @@ class CountFunction(returnItem:ReturnItem) extends AggregationFunction {
   var count = 0
 
   def apply(data: Map[String, Any]) {
-    returnItem(data)(returnItem.columnName) match {
+    valueOf(returnItem, data) match {
       case null =>
       case _ => count = count + 1
     }
@@ -22,22 +22,19 @@ package org.neo4j.cypher.pipes.aggregation
 import org.neo4j.cypher.commands.ReturnItem
 import org.neo4j.cypher.SyntaxException
 
-class AvgFunction(returnItem: ReturnItem) extends AggregationFunction with Plus {
+class AvgFunction(returnItem: ReturnItem) extends AggregationFunction with NumericAccumulator {
   private var count: Int = 0
-  private var sofar: Any = 0
 
-  def result: Any = divide(sofar, count)
+  def result: Any = average(count)
 
   def apply(data: Map[String, Any]) {
-    val value = returnItem(data)(returnItem.columnName)
-
-    value match {
+    valueOf(returnItem, data) match {
       case null =>
       case number: Number => {
         count = count + 1
-        sofar = plus(sofar, number)
+        add(number)
       }
       case _ => throw new SyntaxException("AVG can only handle values of Number type, or null.")
     }
   }
-}
\ No newline at end of file
+}
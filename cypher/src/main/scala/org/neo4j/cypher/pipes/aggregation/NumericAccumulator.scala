@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.pipes.aggregation
+
+/**
+ * Adds numbers up in primitive fields, instead of boxing a new total for
+ * every value. The total gets the type that adding the values with Scala
+ * arithmetic would have given it: Int, or Long once a Long has been added,
+ * and Float or Double once a floating point number has been added.
+ */
+trait NumericAccumulator {
+  private var integral: Long = 0
+  private var floating: Double = 0
+  private var sawLong = false
+  private var sawFloat = false
+  private var sawDouble = false
+
+  def add(number: Number) {
+    number match {
+      case x: java.lang.Integer => integral += x.intValue()
+      case x: java.lang.Long => {
+        integral += x.longValue()
+        sawLong = true
+      }
+      case x: java.lang.Short => integral += x.shortValue()
+      case x: java.lang.Byte => integral += x.byteValue()
+      case x: java.lang.Float => {
+        floating += x.floatValue()
+        sawFloat = true
+      }
+      case x => {
+        floating += x.doubleValue()
+        sawDouble = true
+      }
+    }
+  }
+
+  def total: Any =
+    if (sawDouble) integral + floating
+    else if (sawFloat) (integral + floating).toFloat
+    else if (sawLong) integral
+    else integral.toInt
+
+  def average(count: Int): Any =
+    if (sawDouble) (integral + floating) / count
+    else if (sawFloat) ((integral + floating) / count).toFloat
+    else if (sawLong) integral / count
+    else integral.toDouble / count
+}
@@ -22,21 +22,14 @@ package org.neo4j.cypher.pipes.aggregation
 import org.neo4j.cypher.SyntaxException
 import org.neo4j.cypher.commands.ReturnItem
 
-class SumFunction(returnItem:ReturnItem) extends AggregationFunction with Plus {
-  private var soFar: Any = null
-
-  def result: Any = soFar match {
-    case null => 0
-    case _ => soFar
-  }
+class SumFunction(returnItem:ReturnItem) extends AggregationFunction with NumericAccumulator {
+  def result: Any = total
 
   def apply(data: Map[String, Any]) {
-    val value = returnItem(data)(returnItem.columnName)
-
-    if(value != null && !value.isInstanceOf[Number]) {
-      throw new SyntaxException("Sum can only handle values of Number type, or null.")
+    valueOf(returnItem, data) match {
+      case null =>
+      case number: Number => add(number)
+      case _ => throw new SyntaxException("Sum can only handle values of Number type, or null.")
     }
-
-    soFar = plus(soFar, value)
   }
-}
\ No newline at end of file
+}
@@ -27,6 +27,7 @@ import org.neo4j.graphdb.Node;
 import org.neo4j.test.ImpermanentGraphDatabase;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Iterator;
 
 import static org.junit.Assert.*;
@@ -73,4 +74,19 @@ public class JavaExecutionEngineTests
         assertNull( n_column.next() );
         assertThat( result.toString(), containsString("null") );
     }
+
+    @Test
+    public void repeatedQueryTextsAreOnlyPlannedOnce() throws Exception
+    {
+        for ( int i = 0; i < 3; i++ )
+        {
+            ExecutionResult result = engine.execute( "start n=({node}) return n",
+                    Collections.<String, Object>singletonMap( "node", 0L ) );
+            Iterator<Node> n_column = result.columnAs( "n" );
+            assertEquals( db.getNodeById( 0 ), n_column.next() );
+        }
+
+        assertEquals( 1, engine.getPlanCacheMisses() );
+        assertEquals( 2, engine.getPlanCacheHits() );
+    }
 }
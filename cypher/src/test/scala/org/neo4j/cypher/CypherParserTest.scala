@@ -74,6 +74,14 @@ class CypherParserTest extends JUnitSuite {
         Start(RelationshipById("s", 1))))
   }
 
+  @Test def startPointsCanBeParameters() {
+    testQuery(
+      "start n = ({node}), r = <{rels}> return n",
+      Query(
+        Return(EntityOutput("n")),
+        Start(NodeByParameter("n", "node"), RelationshipByParameter("r", "rels"))))
+  }
+
   @Test def sourceIsARelationshipIndex() {
     testQuery(
       """start a = <index, key, "value"> return a""",
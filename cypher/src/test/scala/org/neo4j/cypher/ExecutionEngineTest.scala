@@ -39,6 +39,21 @@ class ExecutionEngineTest extends ExecutionEngineTestBase {
     assertEquals(List(refNode), result.columnAs[Node]("node").toList)
   }
 
+  @Test def shouldTakeStartPointsFromParameters() {
+    val n1 = createNode()
+    val n2 = createNode()
+    val queryText = "start node = ({ids}) return node"
+
+    assertEquals(List(n1, n2), engine.execute(queryText, Map[String, Any]("ids" -> List(n1.getId, n2.getId))).columnAs[Node]("node").toList)
+    assertEquals(List(n2), engine.execute(queryText, Map[String, Any]("ids" -> n2.getId)).columnAs[Node]("node").toList)
+    assertEquals(1, engine.planCacheMisses)
+    assertEquals(1, engine.planCacheHits)
+  }
+
+  @Test(expected = classOf[ParameterNotFoundException]) def shouldComplainAboutMissingParameters() {
+    engine.execute("start node = ({ids}) return node", Map[String, Any]()).toList
+  }
+
   @Test def shouldFilterOnGreaterThan() {
     val query = Query(
       Return(EntityOutput("node")),
@@ -224,6 +239,39 @@ class ExecutionEngineTest extends ExecutionEngineTestBase {
     println(result.dumpToString())
   }
 
+  @Test def shouldMatchFromOneStartPointWhenThePatternConnectsThem() {
+    val n1: Node = createNode()
+    val n2: Node = createNode()
+    val n3: Node = createNode()
+    relate(n1, n2, "KNOWS")
+    relate(n1, n3, "KNOWS")
+
+    val query = Query(
+      Return(EntityOutput("a"), EntityOutput("b")),
+      Start(NodeById("a", n1.getId, n2.getId), NodeById("b", n2.getId)),
+      Match(RelatedTo("a", "b", None, Some("KNOWS"), Direction.OUTGOING)))
+
+    val result = execute(query)
+
+    assertEquals(List(Map("a" -> n1, "b" -> n2)), result.toList)
+  }
+
+  @Test def shouldFilterStartPointsBeforeJoiningThem() {
+    val n1: Node = createNode(Map("name" -> "x"))
+    val n2: Node = createNode(Map("name" -> "z"))
+    val n3: Node = createNode(Map("name" -> "y"))
+    val n4: Node = createNode(Map("name" -> "z"))
+
+    val query = Query(
+      Return(EntityOutput("a"), EntityOutput("b")),
+      Start(NodeById("a", n1.getId, n2.getId), NodeById("b", n3.getId, n4.getId)),
+      And(Equals(PropertyValue("a", "name"), Literal("x")), Equals(PropertyValue("b", "name"), Literal("y"))))
+
+    val result = execute(query)
+
+    assertEquals(List(Map("a" -> n1, "b" -> n3)), result.toList)
+  }
+
   @Test def shouldGetRelatedToRelatedTo() {
     val n1: Node = createNode()
     val n2: Node = createNode()
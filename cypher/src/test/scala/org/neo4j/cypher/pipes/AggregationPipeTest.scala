@@ -80,4 +80,25 @@ class AggregationPipeTest extends JUnitSuite {
     assertEquals(List(Map("count(name)" -> 3)), aggregationPipe.toList)
   }
 
-}
\ No newline at end of file
+  @Test def shouldPassGroupsOnAsTheyCompleteWhenTheyArriveTogether() {
+    var pulled = 0
+    val source = new Pipe {
+      val symbols = new SymbolTable(NodeIdentifier("name"))
+
+      def iterator: Iterator[Map[String, Any]] = List("Andres", "Andres", "Peter", "Michael", "Michael").iterator.map(name => {
+        pulled += 1
+        Map("name" -> name)
+      })
+    }
+
+    val aggregationPipe = new AggregationPipe(source, List(EntityOutput("name")), List(CountStar()), true)
+    var pulledBeforeGroup = List[Int]()
+    aggregationPipe.foreach(row => pulledBeforeGroup = pulledBeforeGroup :+ pulled)
+
+    assertEquals(List(
+      Map("name" -> "Andres", "count(*)" -> 2),
+      Map("name" -> "Peter", "count(*)" -> 1),
+      Map("name" -> "Michael", "count(*)" -> 2)), aggregationPipe.toList)
+    assertEquals(List(3, 4, 5), pulledBeforeGroup)
+  }
+}
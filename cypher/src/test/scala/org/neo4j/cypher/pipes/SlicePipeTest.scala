@@ -0,0 +1,51 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.pipes
+
+import org.junit.Test
+import org.junit.Assert._
+import org.neo4j.cypher.SymbolTable
+import org.scalatest.junit.JUnitSuite
+
+class SlicePipeTest extends JUnitSuite {
+  @Test def skipsAndLimits() {
+    val source = new FakePipe(List(Map("x" -> 1), Map("x" -> 2), Map("x" -> 3), Map("x" -> 4)))
+
+    assertEquals(List(Map("x" -> 2), Map("x" -> 3)), new SlicePipe(source, Some(1), Some(2)).toList)
+    assertEquals(List(Map("x" -> 3), Map("x" -> 4)), new SlicePipe(source, Some(2), None).toList)
+    assertEquals(List(Map("x" -> 1)), new SlicePipe(source, None, Some(1)).toList)
+    assertEquals(List(), new SlicePipe(source, None, Some(0)).toList)
+  }
+
+  @Test def stopsPullingRowsAtTheLimit() {
+    var pulled = 0
+    val source = new Pipe {
+      val symbols = new SymbolTable()
+
+      def iterator: Iterator[Map[String, Any]] = (1 to 1000).iterator.map((i) => {
+        pulled += 1
+        Map("x" -> i)
+      })
+    }
+
+    assertEquals(List(Map("x" -> 1), Map("x" -> 2)), new SlicePipe(source, None, Some(2)).toList)
+    assertEquals(2, pulled)
+  }
+}
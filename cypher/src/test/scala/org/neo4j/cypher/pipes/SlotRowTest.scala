@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.pipes
+
+import org.junit.Test
+import org.junit.Assert._
+import org.scalatest.junit.JUnitSuite
+
+class SlotRowTest extends JUnitSuite {
+  @Test def readsLikeAMap() {
+    val row = new SlotRow(SlotLayout(Seq("a", "b")), Array[Any](1, null))
+
+    assertEquals(Map("a" -> 1, "b" -> null), row)
+    assertEquals(Map("a" -> 1, "b" -> null).hashCode, row.hashCode)
+    assertEquals(1, row("a"))
+    assertEquals(None, row.get("c"))
+    assertEquals(Map("a" -> 1, "b" -> 2), row + ("b" -> 2))
+    assertEquals(Map("b" -> null), row - "a")
+  }
+
+  @Test def mergedRowsShareTheirLayout() {
+    val merge = new SlotRowMerger
+    val left = SlotLayout(Seq("a", "b"))
+    val right = SlotLayout(Seq("b", "c"))
+
+    val first = merge(new SlotRow(left, Array[Any](1, 2)), new SlotRow(right, Array[Any](3, 4)))
+    val second = merge(new SlotRow(left, Array[Any](5, 6)), new SlotRow(right, Array[Any](7, 8)))
+
+    assertEquals(Map("a" -> 1, "b" -> 3, "c" -> 4), first)
+    assertEquals(Map("a" -> 5, "b" -> 7, "c" -> 8), second)
+    assertSame(first.layout, second.layout)
+  }
+
+  @Test def joinsPlainMapRows() {
+    val a = new FakePipe(List(Map("a" -> 1), Map("a" -> 2)))
+    val b = new FakePipe(List(Map("b" -> 3)))
+
+    assertEquals(List(Map("a" -> 1, "b" -> 3), Map("a" -> 2, "b" -> 3)), (a ++ b).toList)
+  }
+}
@@ -92,7 +92,5 @@ class SortPipeTest extends JUnitSuite{
 class FakePipe(data: Seq[Map[String, Any]], val symbols: SymbolTable) extends Pipe {
   def this(data: Seq[Map[String, Any]]) = this (data, new SymbolTable())
 
-  def foreach[U](f: (Map[String, Any]) => U) {
-    data.foreach(f(_))
-  }
+  def iterator: Iterator[Map[String, Any]] = data.iterator
 }
\ No newline at end of file
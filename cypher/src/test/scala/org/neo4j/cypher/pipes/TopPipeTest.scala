@@ -0,0 +1,53 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.pipes
+
+import org.junit.Test
+import org.junit.Assert._
+import org.neo4j.cypher.commands.{SortItem, EntityOutput}
+import org.scalatest.junit.JUnitSuite
+
+class TopPipeTest extends JUnitSuite {
+  @Test def returnsTheFirstRowsInSortOrder() {
+    val source = new FakePipe(List(
+      Map("x" -> 5), Map("x" -> 1), Map("x" -> 4), Map("x" -> 2), Map("x" -> 3)))
+    val topPipe = new TopPipe(source, List(SortItem(EntityOutput("x"), false)), 2)
+
+    assertEquals(List(Map("x" -> 5), Map("x" -> 4)), topPipe.toList)
+  }
+
+  @Test def equalRowsKeepTheirOrder() {
+    val source = new FakePipe(List(
+      Map("x" -> 1, "y" -> "a"), Map("x" -> 0, "y" -> "b"), Map("x" -> 1, "y" -> "c"), Map("x" -> 1, "y" -> "d")))
+    val topPipe = new TopPipe(source, List(SortItem(EntityOutput("x"), true)), 3)
+
+    assertEquals(List(
+      Map("x" -> 0, "y" -> "b"),
+      Map("x" -> 1, "y" -> "a"),
+      Map("x" -> 1, "y" -> "c")), topPipe.toList)
+  }
+
+  @Test def zeroRowsIsEmpty() {
+    val source = new FakePipe(List(Map("x" -> 1)))
+    val topPipe = new TopPipe(source, List(SortItem(EntityOutput("x"), true)), 0)
+
+    assertEquals(List(), topPipe.toList)
+  }
+}
@@ -55,6 +55,13 @@ class SumFunctionTest extends JUnitSuite {
     assertTrue(result.isInstanceOf[Int])
   }
 
+  @Test def longsYieldLong() {
+    val result = sumOn(1, 2L)
+
+    assertEquals(3L, result)
+    assertTrue(result.isInstanceOf[Long])
+  }
+
   @Test def noNumbersEqualsZero() {
     val result = sumOn()
 
@@ -23,6 +23,9 @@ import org.neo4j.graphalgo.impl.path.AStar;
 import org.neo4j.graphalgo.impl.path.AllPaths;
 import org.neo4j.graphalgo.impl.path.AllSimplePaths;
 import org.neo4j.graphalgo.impl.path.Dijkstra;
+import org.neo4j.graphalgo.impl.path.ParallelShortestPath;
+import org.neo4j.graphalgo.impl.path.PrimitiveAStar;
+import org.neo4j.graphalgo.impl.path.PrimitiveDijkstra;
 import org.neo4j.graphalgo.impl.path.ShortestPath;
 import org.neo4j.graphalgo.impl.util.DoubleEvaluator;
 import org.neo4j.graphdb.Node;
@@ -110,6 +113,46 @@ public abstract class GraphAlgoFactory
         return new ShortestPath( maxDepth, expander, maxHitCount );
     }
     
+    /**
+     * Returns an algorithm which finds the same paths as
+     * {@link #shortestPath(RelationshipExpander, int)}, but expands the two
+     * sides concurrently and only goes deeper on the side with the least
+     * relationships when one side has far more of them, f.ex. when the
+     * nodes are hubs with huge amounts of relationships. The expansion of the
+     * end node is done by another thread, so it can't see changes in the
+     * transaction of the calling thread.
+     * 
+     * @see ParallelShortestPath
+     * @param expander the {@link RelationshipExpander} to use for expanding
+     *            {@link Relationship}s for each {@link Node}, it must be
+     *            thread safe.
+     * @param maxDepth the max {@link Path#length()} returned paths are allowed
+     *            to have.
+     * @return an algorithm which finds shortest paths between two nodes.
+     */
+    public static PathFinder<Path> parallelShortestPath( RelationshipExpander expander, int maxDepth )
+    {
+        return new ParallelShortestPath( maxDepth, expander );
+    }
+
+    /**
+     * See {@link #parallelShortestPath(RelationshipExpander, int)}.
+     * 
+     * @see ParallelShortestPath
+     * @param expander the {@link RelationshipExpander} to use for expanding
+     *            {@link Relationship}s for each {@link Node}, it must be
+     *            thread safe.
+     * @param maxDepth the max {@link Path#length()} returned paths are allowed
+     *            to have.
+     * @param maxHitCount the maximum number of {@link Path}s to return.
+     * @return an algorithm which finds shortest paths between two nodes.
+     */
+    public static PathFinder<Path> parallelShortestPath( RelationshipExpander expander, int maxDepth,
+            int maxHitCount )
+    {
+        return new ParallelShortestPath( maxDepth, expander, maxHitCount );
+    }
+    
     /**
      * Returns an algorithm which can find simple all paths of a certain length
      * between two nodes. These returned paths cannot contain loops (i.e. a node
@@ -198,4 +241,72 @@ public abstract class GraphAlgoFactory
     {
         return dijkstra( expander, new DoubleEvaluator( relationshipPropertyRepresentingCost ) );
     }
+    
+    /**
+     * Returns a {@link PathFinder} which finds the same paths as
+     * {@link #aStar(RelationshipExpander, CostEvaluator, EstimateEvaluator)},
+     * but keeps the state of the search in primitive arrays indexed in the
+     * order nodes are discovered, with a primitive map from node id to index,
+     * instead of maps of nodes and boxed costs. Memory therefore grows with
+     * the number of nodes visited, not with the highest node id. Prefer this
+     * one when many searches are made, f.ex. for routing.
+     * 
+     * @see PrimitiveAStar
+     * @param expander the {@link RelationshipExpander} to use for expanding
+     * {@link Relationship}s for each {@link Node}.
+     * @param lengthEvaluator evaluator that can return the cost represented
+     * by each relationship the algorithm traverses.
+     * @param estimateEvaluator evaluator that returns an (optimistic)
+     * estimation of the cost to get from the current node (in the traversal)
+     * to the end node.
+     * @return an algorithm which finds the cheapest path between two nodes
+     * using the A* algorithm.
+     */
+    public static PathFinder<WeightedPath> primitiveAStar( RelationshipExpander expander,
+            CostEvaluator<Double> lengthEvaluator, EstimateEvaluator<Double> estimateEvaluator )
+    {
+        return new PrimitiveAStar( expander, lengthEvaluator, estimateEvaluator );
+    }
+    
+    /**
+     * Returns a {@link PathFinder} which finds the same paths as
+     * {@link #dijkstra(RelationshipExpander, CostEvaluator)}, but keeps the
+     * state of the search in primitive arrays indexed in the order nodes are
+     * discovered, with a primitive map from node id to index, instead of maps
+     * of nodes and boxed costs. Memory therefore grows with the number of
+     * nodes visited, not with the highest node id. Prefer this one when many
+     * searches are made, f.ex. for routing.
+     * 
+     * @see PrimitiveDijkstra
+     * @param expander the {@link RelationshipExpander} to use for expanding
+     * {@link Relationship}s for each {@link Node}.
+     * @param costEvaluator evaluator that can return the cost represented
+     * by each relationship the algorithm traverses.
+     * @return an algorithm which finds the cheapest paths between two nodes
+     * using the Dijkstra algorithm.
+     */
+    public static PathFinder<WeightedPath> primitiveDijkstra( RelationshipExpander expander,
+            CostEvaluator<Double> costEvaluator )
+    {
+        return new PrimitiveDijkstra( expander, costEvaluator );
+    }
+    
+    /**
+     * See {@link #primitiveDijkstra(RelationshipExpander, CostEvaluator)}.
+     * 
+     * Uses a cost evaluator which uses the supplied property key to
+     * represent the cost (values of type <bold>double</bold>). 
+     * 
+     * @param expander the {@link RelationshipExpander} to use for expanding
+     * {@link Relationship}s for each {@link Node}.
+     * @param relationshipPropertyRepresentingCost the property to represent cost
+     * on each relationship the algorithm traverses.
+     * @return an algorithm which finds the cheapest paths between two nodes
+     * using the Dijkstra algorithm.
+     */
+    public static PathFinder<WeightedPath> primitiveDijkstra( RelationshipExpander expander,
+            String relationshipPropertyRepresentingCost )
+    {
+        return primitiveDijkstra( expander, new DoubleEvaluator( relationshipPropertyRepresentingCost ) );
+    }
 }
@@ -0,0 +1,365 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.centrality;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.neo4j.graphalgo.impl.util.CompactGraph;
+import org.neo4j.graphalgo.impl.util.IndexedDoubleHeap;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+
+/**
+ * Calculates betweenness, stress and closeness centrality for all nodes of a
+ * {@link CompactGraph} at the same time, like a
+ * {@link ParallellCentralityCalculation} of {@link BetweennessCentrality},
+ * {@link StressCentrality} and {@link ClosenessCentrality} would, but with
+ * the single source shortest paths from different nodes run by several
+ * threads. Each thread adds up its contributions in its own arrays, which
+ * are summed when all the nodes are done.
+ * <p>
+ * The shortest paths are found with a breadth first search if the snapshot
+ * has no costs and with Dijkstra's algorithm if it has, and the centralities
+ * are then accumulated backwards from the farthest node as described by
+ * Brandes in "A Faster Algorithm for Betweenness Centrality".
+ * @complexity Using the snapshot's n nodes and m arcs, O(n*m) for a snapshot
+ *             without costs and O(n*(m + n*log(n))) with costs, divided by
+ *             the number of threads. Each thread needs O(n + m) memory.
+ */
+public class CompactGraphCentrality
+{
+    private final CompactGraph graph;
+    private final int threads;
+    private double[] betweenness;
+    private double[] stress;
+    private double[] closeness;
+
+    /**
+     * Calculates with as many threads as there are processors.
+     * @param graph
+     *            The snapshot of the nodes and relationships.
+     */
+    public CompactGraphCentrality( CompactGraph graph )
+    {
+        this( graph, Runtime.getRuntime().availableProcessors() );
+    }
+
+    /**
+     * @param graph
+     *            The snapshot of the nodes and relationships.
+     * @param threads
+     *            The number of threads to calculate with.
+     */
+    public CompactGraphCentrality( CompactGraph graph, int threads )
+    {
+        if ( threads < 1 )
+        {
+            throw new IllegalArgumentException( "threads=" + threads );
+        }
+        this.graph = graph;
+        this.threads = threads;
+    }
+
+    /**
+     * @return the betweenness centrality of the node, or null if it isn't in
+     *         the snapshot.
+     */
+    public Double getBetweennessCentrality( Node node )
+    {
+        calculate();
+        return valueOf( betweenness, node );
+    }
+
+    /**
+     * @return the stress centrality of the node, or null if it isn't in the
+     *         snapshot.
+     */
+    public Double getStressCentrality( Node node )
+    {
+        calculate();
+        return valueOf( stress, node );
+    }
+
+    /**
+     * @return the closeness centrality of the node, one divided by the sum of
+     *         the costs of the shortest paths to the nodes it reaches, 0 if it
+     *         reaches none, or null if it isn't in the snapshot.
+     */
+    public Double getClosenessCentrality( Node node )
+    {
+        calculate();
+        return valueOf( closeness, node );
+    }
+
+    private Double valueOf( double[] values, Node node )
+    {
+        int index = graph.indexOf( node );
+        return index == -1 ? null : values[index];
+    }
+
+    /**
+     * Runs the calculation. This should not need to be called explicitly,
+     * since all attempts to retrieve any kind of result should automatically
+     * call this.
+     */
+    public synchronized void calculate()
+    {
+        // Don't do it more than once
+        if ( betweenness != null )
+        {
+            return;
+        }
+        int nodeCount = graph.getNodeCount();
+        double[] betweenness = new double[nodeCount];
+        double[] stress = new double[nodeCount];
+        double[] closeness = new double[nodeCount];
+        AtomicInteger nextSource = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            List<Future<SourcePasses>> futures = new ArrayList<Future<SourcePasses>>();
+            for ( int i = 0; i < threads; i++ )
+            {
+                futures.add( executor.submit( new SourcePasses( nextSource ) ) );
+            }
+            for ( Future<SourcePasses> future : futures )
+            {
+                SourcePasses passes = future.get();
+                for ( int i = 0; i < nodeCount; i++ )
+                {
+                    betweenness[i] += passes.betweenness[i];
+                    stress[i] += passes.stress[i];
+                    closeness[i] += passes.closeness[i];
+                }
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( e );
+        }
+        catch ( ExecutionException e )
+        {
+            throw new RuntimeException( e.getCause() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        this.stress = stress;
+        this.closeness = closeness;
+        this.betweenness = betweenness;
+    }
+
+    /**
+     * Takes source nodes until there are none left and adds up what the
+     * shortest paths from them contribute. All the arrays are allocated once
+     * and reused for every source.
+     */
+    private class SourcePasses implements Callable<SourcePasses>
+    {
+        private final AtomicInteger nextSource;
+        private final double globalFactor;
+        final double[] betweenness;
+        final double[] stress;
+        final double[] closeness;
+
+        private final double[] distance;
+        private final double[] paths;
+        private final double[] dependency;
+        private final double[] successorStress;
+        // the nodes reached, in the order they were settled
+        private final int[] order;
+        private final boolean[] settled;
+        // the predecessors of each node on its shortest paths, as linked
+        // lists of entries, one entry per arc relaxed
+        private final int[] firstPredecessor;
+        private final int[] nextPredecessor;
+        private final int[] predecessor;
+        private final IndexedDoubleHeap heap;
+
+        SourcePasses( AtomicInteger nextSource )
+        {
+            this.nextSource = nextSource;
+            // Every path is found from both ends when direction doesn't matter
+            this.globalFactor = graph.getDirection() == Direction.BOTH ? 0.5
+                : 1.0;
+            int nodeCount = graph.getNodeCount();
+            betweenness = new double[nodeCount];
+            stress = new double[nodeCount];
+            closeness = new double[nodeCount];
+            distance = new double[nodeCount];
+            paths = new double[nodeCount];
+            dependency = new double[nodeCount];
+            successorStress = new double[nodeCount];
+            order = new int[nodeCount];
+            settled = new boolean[nodeCount];
+            firstPredecessor = new int[nodeCount];
+            nextPredecessor = new int[graph.getArcCount()];
+            predecessor = new int[graph.getArcCount()];
+            heap = graph.isWeighted() ? new IndexedDoubleHeap( nodeCount )
+                : null;
+            Arrays.fill( distance, Double.POSITIVE_INFINITY );
+            Arrays.fill( firstPredecessor, -1 );
+        }
+
+        public SourcePasses call()
+        {
+            int nodeCount = graph.getNodeCount();
+            for ( int source = nextSource.getAndIncrement(); source < nodeCount; source = nextSource
+                .getAndIncrement() )
+            {
+                int reached = heap == null ? breadthFirst( source )
+                    : dijkstra( source );
+                accumulate( source, reached );
+                clear( reached );
+            }
+            return this;
+        }
+
+        private int breadthFirst( int source )
+        {
+            distance[source] = 0;
+            paths[source] = 1;
+            order[0] = source;
+            int reached = 1;
+            for ( int next = 0; next < reached; next++ )
+            {
+                int node = order[next];
+                double distanceToTarget = distance[node] + 1;
+                int predecessors = 0;
+                for ( int arc = graph.firstArc( node ); arc < graph
+                    .endArc( node ); arc++ )
+                {
+                    int target = graph.target( arc );
+                    if ( distance[target] == Double.POSITIVE_INFINITY )
+                    {
+                        distance[target] = distanceToTarget;
+                        order[reached++] = target;
+                    }
+                    if ( distance[target] == distanceToTarget )
+                    {
+                        paths[target] += paths[node];
+                        addPredecessor( target, node, arc );
+                    }
+                }
+            }
+            return reached;
+        }
+
+        private int dijkstra( int source )
+        {
+            distance[source] = 0;
+            paths[source] = 1;
+            heap.offer( source, 0 );
+            int reached = 0;
+            while ( !heap.isEmpty() )
+            {
+                int node = heap.poll();
+                settled[node] = true;
+                order[reached++] = node;
+                for ( int arc = graph.firstArc( node ); arc < graph
+                    .endArc( node ); arc++ )
+                {
+                    int target = graph.target( arc );
+                    if ( settled[target] )
+                    {
+                        continue;
+                    }
+                    double distanceToTarget = distance[node] + graph.cost( arc );
+                    if ( distanceToTarget < distance[target] )
+                    {
+                        distance[target] = distanceToTarget;
+                        paths[target] = 0;
+                        firstPredecessor[target] = -1;
+                        heap.offer( target, distanceToTarget );
+                    }
+                    if ( distanceToTarget == distance[target] )
+                    {
+                        paths[target] += paths[node];
+                        addPredecessor( target, node, arc );
+                    }
+                }
+            }
+            return reached;
+        }
+
+        private void addPredecessor( int node, int predecessorNode, int entry )
+        {
+            predecessor[entry] = predecessorNode;
+            nextPredecessor[entry] = firstPredecessor[node];
+            firstPredecessor[node] = entry;
+        }
+
+        /*
+         * Goes through the reached nodes from the farthest one and hands
+         * their dependencies and stress on to their predecessors, in the same
+         * way as BetweennessCentrality and StressCentrality do recursively.
+         */
+        private void accumulate( int source, int reached )
+        {
+            double distanceSum = 0;
+            for ( int i = reached - 1; i >= 0; i-- )
+            {
+                int node = order[i];
+                distanceSum += distance[node];
+                double nodeStress = paths[node] * successorStress[node];
+                for ( int entry = firstPredecessor[node]; entry != -1; entry = nextPredecessor[entry] )
+                {
+                    int predecessorNode = predecessor[entry];
+                    dependency[predecessorNode] += ( dependency[node] + 1 )
+                        * paths[predecessorNode] / paths[node];
+                    successorStress[predecessorNode] += nodeStress + 1;
+                }
+                if ( node != source )
+                {
+                    betweenness[node] += dependency[node] * globalFactor;
+                    stress[node] += nodeStress * globalFactor;
+                }
+            }
+            if ( distanceSum != 0 )
+            {
+                closeness[source] = 1.0 / distanceSum;
+            }
+        }
+
+        private void clear( int reached )
+        {
+            for ( int i = 0; i < reached; i++ )
+            {
+                int node = order[i];
+                distance[node] = Double.POSITIVE_INFINITY;
+                paths[node] = 0;
+                dependency[node] = 0;
+                successorStress[node] = 0;
+                settled[node] = false;
+                firstPredecessor[node] = -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,385 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.centrality;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.neo4j.graphalgo.impl.util.CompactGraph;
+import org.neo4j.graphalgo.impl.util.IndexedDoubleHeap;
+import org.neo4j.graphdb.Node;
+
+/**
+ * Finds the shortest distances from many source nodes of a
+ * {@link CompactGraph} with several threads, each running a breadth first
+ * search if the snapshot has no costs and Dijkstra's algorithm if it has,
+ * from one source at a time. The distances from each source are handed to a
+ * {@link DistanceVisitor} as soon as they are known and then forgotten, so
+ * unlike {@link org.neo4j.graphalgo.impl.shortestpath.FloydWarshall} no
+ * matrix of all pairs is kept.
+ * <p>
+ * On top of that it calculates what {@link Eccentricity},
+ * {@link NetworkDiameter} and {@link NetworkRadius} do, keeping only the
+ * eccentricity of each node, and can estimate the diameter from a sample of
+ * the nodes.
+ * @complexity Using the snapshot's n nodes and m arcs, O(n + m) per source
+ *             without costs and O(m + n*log(n)) with costs, divided by the
+ *             number of threads. Each thread needs O(n) memory.
+ */
+public class CompactGraphDistances
+{
+    /**
+     * Receives the distances from one source at a time. It is called from
+     * several threads at once.
+     */
+    public interface DistanceVisitor
+    {
+        /**
+         * @param source
+         *            The index of the source node in the snapshot.
+         * @param reached
+         *            The indexes of the nodes reached from the source, the
+         *            source first and the farthest node last.
+         * @param reachedCount
+         *            The number of nodes in {@code reached}.
+         * @param distance
+         *            The distance to each reached node, by index. Only valid
+         *            during the call, the arrays are reused afterwards.
+         */
+        void visit( int source, int[] reached, int reachedCount,
+            double[] distance );
+    }
+
+    private final CompactGraph graph;
+    private final int threads;
+    private double[] eccentricities;
+
+    /**
+     * Calculates with as many threads as there are processors.
+     * @param graph
+     *            The snapshot of the nodes and relationships.
+     */
+    public CompactGraphDistances( CompactGraph graph )
+    {
+        this( graph, Runtime.getRuntime().availableProcessors() );
+    }
+
+    /**
+     * @param graph
+     *            The snapshot of the nodes and relationships.
+     * @param threads
+     *            The number of threads to calculate with.
+     */
+    public CompactGraphDistances( CompactGraph graph, int threads )
+    {
+        if ( threads < 1 )
+        {
+            throw new IllegalArgumentException( "threads=" + threads );
+        }
+        this.graph = graph;
+        this.threads = threads;
+    }
+
+    /**
+     * @return the eccentricity of the node, the largest distance to any node
+     *         it reaches, or null if it isn't in the snapshot.
+     */
+    public Double getEccentricity( Node node )
+    {
+        calculate();
+        int index = graph.indexOf( node );
+        return index == -1 ? null : eccentricities[index];
+    }
+
+    /**
+     * @return the largest eccentricity of all nodes, 0 for an empty snapshot.
+     */
+    public double getDiameter()
+    {
+        calculate();
+        double diameter = 0;
+        for ( double eccentricity : eccentricities )
+        {
+            diameter = Math.max( diameter, eccentricity );
+        }
+        return diameter;
+    }
+
+    /**
+     * @return the smallest eccentricity of all nodes, 0 for an empty
+     *         snapshot.
+     */
+    public double getRadius()
+    {
+        calculate();
+        double radius = eccentricities.length == 0 ? 0
+            : Double.POSITIVE_INFINITY;
+        for ( double eccentricity : eccentricities )
+        {
+            radius = Math.min( radius, eccentricity );
+        }
+        return radius;
+    }
+
+    /**
+     * Runs the calculation of the eccentricities from every node. This
+     * should not need to be called explicitly, since all attempts to retrieve
+     * any kind of result should automatically call this.
+     */
+    public synchronized void calculate()
+    {
+        // Don't do it more than once
+        if ( eccentricities != null )
+        {
+            return;
+        }
+        final double[] eccentricities = new double[graph.getNodeCount()];
+        int[] sources = new int[eccentricities.length];
+        for ( int i = 0; i < sources.length; i++ )
+        {
+            sources[i] = i;
+        }
+        visitDistances( sources, new DistanceVisitor()
+        {
+            public void visit( int source, int[] reached, int reachedCount,
+                double[] distance )
+            {
+                eccentricities[source] = distance[reached[reachedCount - 1]];
+            }
+        } );
+        this.eccentricities = eccentricities;
+    }
+
+    /**
+     * Estimates the diameter without searching from every node. A search is
+     * made from each of {@code sampleCount} randomly chosen nodes and then
+     * from the farthest node that search reached, since the ends of the
+     * longest shortest paths tend to be far away from most nodes.
+     * @param sampleCount
+     *            The number of nodes to start from.
+     * @param random
+     *            Chooses the nodes.
+     * @return the largest eccentricity of the searched nodes, which is never
+     *         larger than the diameter and equal to it for trees.
+     */
+    public double estimateDiameter( int sampleCount, Random random )
+    {
+        int nodeCount = graph.getNodeCount();
+        if ( nodeCount == 0 )
+        {
+            return 0;
+        }
+        int[] samples = new int[Math.min( sampleCount, nodeCount )];
+        // Pick distinct nodes by shuffling the first part of all indexes
+        int[] indexes = new int[nodeCount];
+        for ( int i = 0; i < nodeCount; i++ )
+        {
+            indexes[i] = i;
+        }
+        for ( int i = 0; i < samples.length; i++ )
+        {
+            int j = i + random.nextInt( nodeCount - i );
+            int swap = indexes[i];
+            indexes[i] = indexes[j];
+            indexes[j] = swap;
+            samples[i] = indexes[i];
+        }
+
+        final int[] farthest = new int[nodeCount];
+        final double[] largest = new double[1];
+        DistanceVisitor maximum = new DistanceVisitor()
+        {
+            public void visit( int source, int[] reached, int reachedCount,
+                double[] distance )
+            {
+                int node = reached[reachedCount - 1];
+                farthest[source] = node;
+                synchronized ( largest )
+                {
+                    largest[0] = Math.max( largest[0], distance[node] );
+                }
+            }
+        };
+        visitDistances( samples, maximum );
+        int[] sweeps = new int[samples.length];
+        for ( int i = 0; i < samples.length; i++ )
+        {
+            sweeps[i] = farthest[samples[i]];
+        }
+        visitDistances( sweeps, maximum );
+        return largest[0];
+    }
+
+    /**
+     * Finds the distances from each of the sources and hands them to the
+     * visitor, from several threads.
+     * @param sources
+     *            The indexes of the source nodes in the snapshot.
+     * @param visitor
+     *            Receives the distances, it must be thread safe.
+     */
+    public void visitDistances( int[] sources, DistanceVisitor visitor )
+    {
+        AtomicInteger nextSource = new AtomicInteger();
+        int workers = Math.max( 1, Math.min( threads, sources.length ) );
+        ExecutorService executor = Executors.newFixedThreadPool( workers );
+        try
+        {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for ( int i = 0; i < workers; i++ )
+            {
+                futures.add( executor.submit( new SourceSearches( sources,
+                    nextSource, visitor ) ) );
+            }
+            for ( Future<Void> future : futures )
+            {
+                future.get();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( e );
+        }
+        catch ( ExecutionException e )
+        {
+            throw new RuntimeException( e.getCause() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Takes sources until there are none left and searches from them. All
+     * the arrays are allocated once and reused for every source.
+     */
+    private class SourceSearches implements Callable<Void>
+    {
+        private final int[] sources;
+        private final AtomicInteger nextSource;
+        private final DistanceVisitor visitor;
+        private final double[] distance;
+        // the nodes reached, in the order they were settled
+        private final int[] order;
+        private final boolean[] settled;
+        private final IndexedDoubleHeap heap;
+
+        SourceSearches( int[] sources, AtomicInteger nextSource,
+            DistanceVisitor visitor )
+        {
+            this.sources = sources;
+            this.nextSource = nextSource;
+            this.visitor = visitor;
+            int nodeCount = graph.getNodeCount();
+            distance = new double[nodeCount];
+            order = new int[nodeCount];
+            settled = new boolean[nodeCount];
+            heap = graph.isWeighted() ? new IndexedDoubleHeap( nodeCount )
+                : null;
+            Arrays.fill( distance, Double.POSITIVE_INFINITY );
+        }
+
+        public Void call()
+        {
+            for ( int i = nextSource.getAndIncrement(); i < sources.length; i = nextSource
+                .getAndIncrement() )
+            {
+                int source = sources[i];
+                int reached = heap == null ? breadthFirst( source )
+                    : dijkstra( source );
+                visitor.visit( source, order, reached, distance );
+                clear( reached );
+            }
+            return null;
+        }
+
+        private int breadthFirst( int source )
+        {
+            distance[source] = 0;
+            order[0] = source;
+            int reached = 1;
+            for ( int next = 0; next < reached; next++ )
+            {
+                int node = order[next];
+                double distanceToTarget = distance[node] + 1;
+                for ( int arc = graph.firstArc( node ); arc < graph
+                    .endArc( node ); arc++ )
+                {
+                    int target = graph.target( arc );
+                    if ( distance[target] == Double.POSITIVE_INFINITY )
+                    {
+                        distance[target] = distanceToTarget;
+                        order[reached++] = target;
+                    }
+                }
+            }
+            return reached;
+        }
+
+        private int dijkstra( int source )
+        {
+            distance[source] = 0;
+            heap.offer( source, 0 );
+            int reached = 0;
+            while ( !heap.isEmpty() )
+            {
+                int node = heap.poll();
+                settled[node] = true;
+                order[reached++] = node;
+                for ( int arc = graph.firstArc( node ); arc < graph
+                    .endArc( node ); arc++ )
+                {
+                    int target = graph.target( arc );
+                    if ( settled[target] )
+                    {
+                        continue;
+                    }
+                    double distanceToTarget = distance[node] + graph.cost( arc );
+                    if ( distanceToTarget < distance[target] )
+                    {
+                        distance[target] = distanceToTarget;
+                        heap.offer( target, distanceToTarget );
+                    }
+                }
+            }
+            return reached;
+        }
+
+        private void clear( int reached )
+        {
+            for ( int i = 0; i < reached; i++ )
+            {
+                int node = order[i];
+                distance[node] = Double.POSITIVE_INFINITY;
+                settled[node] = false;
+            }
+        }
+    }
+}
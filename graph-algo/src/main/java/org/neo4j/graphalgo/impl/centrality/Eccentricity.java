@@ -27,7 +27,8 @@ import org.neo4j.graphdb.Node;
 
 /**
  * This can be used to calculate the eccentricity of nodes, which is defined as
- * the maximum distance to any other node.
+ * the maximum distance to any other node. {@link CompactGraphDistances}
+ * calculates it for all nodes of a snapshot from several threads.
  * @complexity Using a {@link SingleSourceShortestPath} algorithm with time
  *             complexity A, this algorithm runs in time O(A + n) for every
  *             vertex the eccentricity is to be computed for. Thus doing it for
@@ -27,7 +27,9 @@ import org.neo4j.graphdb.Node;
 
 /**
  * This can be used to calculate the diameter of a network, which is defined as
- * the largest eccentricity of all the nodes in the network.
+ * the largest eccentricity of all the nodes in the network. For large networks
+ * see {@link CompactGraphDistances#getDiameter()}, which can also estimate it
+ * from a sample of the nodes.
  * @complexity The distance comparator is called once for every vertex. The main
  *             work is the computation of {@link Eccentricity} for all vertices
  *             which is done in O(n * (A + n)) time.
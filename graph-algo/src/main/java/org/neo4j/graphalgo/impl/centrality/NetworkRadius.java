@@ -27,7 +27,8 @@ import org.neo4j.graphdb.Node;
 
 /**
  * This can be used to calculate the radius of a network, which is defined as
- * the smallest eccentricity of all the nodes in the network.
+ * the smallest eccentricity of all the nodes in the network. Also available
+ * as {@link CompactGraphDistances#getRadius()}.
  * @complexity Identical to {@link NetworkDiameter}.
  * @author Patrik Larsson
  */
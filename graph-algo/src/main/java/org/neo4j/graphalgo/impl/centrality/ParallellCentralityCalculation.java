@@ -32,7 +32,9 @@ import org.neo4j.graphdb.Node;
  * the results of the underlying {@link SingleSourceShortestPath} algorithm,
  * instead of re-running it for each centrality measure. We do it by collecting
  * a number of {@link ShortestPathBasedCentrality} and then running the
- * {@link SingleSourceShortestPath} for every node.
+ * {@link SingleSourceShortestPath} for every node. The nodes are processed
+ * one after the other, for large node sets {@link CompactGraphCentrality}
+ * calculates betweenness, stress and closeness from several threads.
  * @complexity The sum of the complexities of the centrality measures to
  *             compute, except that all the n*A terms implode into one single
  *             n*A term.
@@ -0,0 +1,395 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.centrality;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.neo4j.graphalgo.CostEvaluator;
+import org.neo4j.graphalgo.impl.util.CompactGraph;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+
+/**
+ * Computing eigenvector centrality with the "power method", like
+ * {@link EigenvectorCentralityPower}, but on a {@link CompactGraph} snapshot
+ * where the costs of the relationships are read once. The snapshot is
+ * transposed so that the new value of each node is the sum of the values of
+ * the nodes with arcs to it, which lets several threads compute the values
+ * of different ranges of nodes, with about as many arcs each, at the same
+ * time.
+ * @complexity Using the snapshot's n nodes and m arcs, O(i(n + m)) when i
+ *             iterations are done, divided by the number of threads for the
+ *             O(m) part. It needs O(n + m) memory.
+ */
+public class SparseEigenvectorCentrality implements EigenvectorCentrality
+{
+    // the arcs of a node in this snapshot are the ones leading to it
+    protected final CompactGraph incoming;
+    protected final double precision;
+    private final int threads;
+    private int maxIterations = Integer.MAX_VALUE;
+    private int totalIterations;
+    private double[] values;
+
+    /**
+     * Snapshots the relationships and calculates with as many threads as
+     * there are processors.
+     * @param relationDirection
+     *            The direction in which the paths should follow the
+     *            relationships.
+     * @param costEvaluator
+     * @see CostEvaluator
+     * @param nodeSet
+     *            The set of nodes the calculation should be run on.
+     * @param relationshipSet
+     *            The set of relationships that should be processed.
+     * @param precision
+     *            Precision factor (ex. 0.01 for 1% error). Note that this is
+     *            not the error from the correct values, but the amount of
+     *            change tolerated in one iteration.
+     */
+    public SparseEigenvectorCentrality( Direction relationDirection,
+        CostEvaluator<Double> costEvaluator, Set<Node> nodeSet,
+        Set<Relationship> relationshipSet, double precision )
+    {
+        this( CompactGraph.snapshot( nodeSet, relationshipSet, costEvaluator,
+            relationDirection ), precision, Runtime.getRuntime()
+            .availableProcessors() );
+    }
+
+    /**
+     * @param graph
+     *            The snapshot of the nodes and relationships, the values
+     *            are passed along its arcs.
+     * @param precision
+     *            Precision factor, see
+     *            {@link #SparseEigenvectorCentrality(Direction, CostEvaluator, Set, Set, double)}.
+     * @param threads
+     *            The number of threads to multiply with.
+     */
+    public SparseEigenvectorCentrality( CompactGraph graph, double precision,
+        int threads )
+    {
+        if ( threads < 1 )
+        {
+            throw new IllegalArgumentException( "threads=" + threads );
+        }
+        this.incoming = graph.transpose();
+        this.precision = precision;
+        this.threads = threads;
+    }
+
+    /**
+     * This can be used to retrieve the result for every node. Will return null
+     * if the node is not contained in the snapshot. The calculation is done
+     * the first time this method is run. Upon successive requests, the old
+     * result is returned, unless the calculation is reset via {@link #reset()}
+     * @param node
+     * @return
+     */
+    public Double getCentrality( Node node )
+    {
+        calculate();
+        int index = incoming.indexOf( node );
+        return index == -1 ? null : values[index];
+    }
+
+    /**
+     * This resets the calculation if we for some reason would like to redo it.
+     */
+    public synchronized void reset()
+    {
+        values = null;
+    }
+
+    /**
+     * Internal calculate method that will do the calculation. This can however
+     * be called externally to manually trigger the calculation.
+     */
+    public synchronized void calculate()
+    {
+        // Don't do it more than once
+        if ( values != null )
+        {
+            return;
+        }
+        int nodeCount = incoming.getNodeCount();
+        double[] weights = arcWeights();
+        double[] current = initialValues();
+        double[] next = new double[nodeCount];
+        List<RowProduct> products = new ArrayList<RowProduct>();
+        int arcsPerProduct = incoming.getArcCount() / threads + 1;
+        for ( int from = 0; from < nodeCount; )
+        {
+            int to = from + 1;
+            while ( to < nodeCount
+                && incoming.firstArc( to ) - incoming.firstArc( from ) < arcsPerProduct )
+            {
+                to++;
+            }
+            products.add( new RowProduct( weights, from, to ) );
+            from = to;
+        }
+
+        totalIterations = 0;
+        ExecutorService executor = products.size() > 1 ? Executors
+            .newFixedThreadPool( products.size() ) : null;
+        try
+        {
+            while ( totalIterations < maxIterations )
+            {
+                for ( RowProduct product : products )
+                {
+                    product.in = current;
+                    product.out = next;
+                }
+                if ( executor == null )
+                {
+                    for ( RowProduct product : products )
+                    {
+                        product.call();
+                    }
+                }
+                else
+                {
+                    for ( Future<Void> done : executor.invokeAll( products ) )
+                    {
+                        done.get();
+                    }
+                }
+                totalIterations++;
+                completeIteration( current, next );
+                double[] previous = current;
+                current = next;
+                next = previous;
+                if ( converged( next, current ) )
+                {
+                    break;
+                }
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( e );
+        }
+        catch ( ExecutionException e )
+        {
+            throw new RuntimeException( e.getCause() );
+        }
+        finally
+        {
+            if ( executor != null )
+            {
+                executor.shutdownNow();
+            }
+        }
+        // If the first value is negative (possibly the whole vector), negate
+        // the whole vector
+        if ( nodeCount > 0 && current[0] < 0 )
+        {
+            for ( int i = 0; i < nodeCount; i++ )
+            {
+                current[i] = -current[i];
+            }
+        }
+        values = current;
+    }
+
+    /**
+     * @return the weight of each arc of {@link #incoming}, by which the value
+     *         of the node it comes from is multiplied.
+     */
+    protected double[] arcWeights()
+    {
+        double[] weights = new double[incoming.getArcCount()];
+        for ( int arc = 0; arc < weights.length; arc++ )
+        {
+            weights[arc] = incoming.cost( arc );
+        }
+        return weights;
+    }
+
+    /**
+     * @return the values to start iterating from.
+     */
+    protected double[] initialValues()
+    {
+        double[] initial = new double[incoming.getNodeCount()];
+        Arrays.fill( initial, 1 / Math.sqrt( initial.length ) );
+        return initial;
+    }
+
+    /**
+     * Called after each multiplication, normalizes the new values.
+     * @param previous
+     *            The values the multiplication started from.
+     * @param next
+     *            The result of the multiplication.
+     */
+    protected void completeIteration( double[] previous, double[] next )
+    {
+        double sum = 0;
+        for ( double value : next )
+        {
+            sum += value * value;
+        }
+        sum = Math.sqrt( sum );
+        if ( sum > 0.0 )
+        {
+            for ( int i = 0; i < next.length; i++ )
+            {
+                next[i] /= sum;
+            }
+        }
+    }
+
+    /**
+     * Stop condition for the iteration.
+     * @return true if enough precision has been achieved.
+     */
+    protected boolean converged( double[] previous, double[] next )
+    {
+        for ( int i = 0; i < previous.length; i++ )
+        {
+            if ( previous[i] == 0.0 )
+            {
+                if ( Math.abs( next[i] ) > precision )
+                {
+                    return false;
+                }
+                continue;
+            }
+            double factor = Math.abs( next[i] / previous[i] );
+            if ( factor - precision > 1.0 || factor + precision < 1.0 )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sets the centrality of every node in the snapshot as a property on
+     * it, in one transaction per {@code batchSize} nodes. If the calling
+     * thread already has a transaction they all become part of that.
+     * @param propertyKey
+     *            The key of the property.
+     * @param batchSize
+     *            The number of nodes to set the property on per transaction.
+     */
+    public void writeCentralities( String propertyKey, int batchSize )
+    {
+        calculate();
+        int nodeCount = incoming.getNodeCount();
+        if ( nodeCount == 0 )
+        {
+            return;
+        }
+        GraphDatabaseService graphDb = incoming.getNode( 0 ).getGraphDatabase();
+        for ( int from = 0; from < nodeCount; from += batchSize )
+        {
+            Transaction tx = graphDb.beginTx();
+            try
+            {
+                for ( int i = from; i < Math.min( from + batchSize, nodeCount ); i++ )
+                {
+                    incoming.getNode( i ).setProperty( propertyKey, values[i] );
+                }
+                tx.success();
+            }
+            finally
+            {
+                tx.finish();
+            }
+        }
+    }
+
+    /**
+     * @return the number of iterations made.
+     */
+    public int getTotalIterations()
+    {
+        return totalIterations;
+    }
+
+    /**
+     * @return the maxIterations
+     */
+    public int getMaxIterations()
+    {
+        return maxIterations;
+    }
+
+    /**
+     * Limit the maximum number of iterations to run. Per default,
+     * the maximum iterations are set to Integer.MAX_VALUE, which should
+     * be limited to 50-100 normally.
+     * @param maxIterations
+     *            the maxIterations to set
+     */
+    public void setMaxIterations( int maxIterations )
+    {
+        this.maxIterations = maxIterations;
+    }
+
+    // Multiplies a range of rows of the transposed matrix with the values
+    private class RowProduct implements Callable<Void>
+    {
+        private final double[] weights;
+        private final int from;
+        private final int to;
+        private double[] in;
+        private double[] out;
+
+        RowProduct( double[] weights, int from, int to )
+        {
+            this.weights = weights;
+            this.from = from;
+            this.to = to;
+        }
+
+        public Void call()
+        {
+            for ( int node = from; node < to; node++ )
+            {
+                double sum = 0;
+                for ( int arc = incoming.firstArc( node ), end = incoming
+                    .endArc( node ); arc < end; arc++ )
+                {
+                    sum += in[incoming.target( arc )] * weights[arc];
+                }
+                out[node] = sum;
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.centrality;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import org.neo4j.graphalgo.CostEvaluator;
+import org.neo4j.graphalgo.impl.util.CompactGraph;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+
+/**
+ * Computing PageRank with the power method on the same sparse engine as
+ * {@link SparseEigenvectorCentrality}. Each node passes its value on to the
+ * nodes its arcs lead to, in proportion to the costs of the arcs, which is
+ * damped by a factor, and the rest of the value, as well as all of the value
+ * of nodes without arcs, is spread evenly over all nodes. The values add up
+ * to 1.
+ * @complexity Using the snapshot's n nodes and m arcs, O(i(n + m)) when i
+ *             iterations are done, divided by the number of threads for the
+ *             O(m) part. It needs O(n + m) memory.
+ */
+public class SparsePageRank extends SparseEigenvectorCentrality
+{
+    private final double damping;
+    private boolean[] dangling;
+
+    /**
+     * Snapshots the relationships and calculates with as many threads as
+     * there are processors.
+     * @param relationDirection
+     *            The direction in which the relationships pass values on.
+     * @param costEvaluator
+     * @see CostEvaluator
+     * @param nodeSet
+     *            The set of nodes the calculation should be run on.
+     * @param relationshipSet
+     *            The set of relationships that should be processed.
+     * @param damping
+     *            The part of the value of a node that is passed on along its
+     *            arcs, usually 0.85.
+     * @param precision
+     *            The total change of the values tolerated in one iteration.
+     */
+    public SparsePageRank( Direction relationDirection,
+        CostEvaluator<Double> costEvaluator, Set<Node> nodeSet,
+        Set<Relationship> relationshipSet, double damping, double precision )
+    {
+        this( CompactGraph.snapshot( nodeSet, relationshipSet, costEvaluator,
+            relationDirection ), damping, precision, Runtime.getRuntime()
+            .availableProcessors() );
+    }
+
+    /**
+     * @param graph
+     *            The snapshot of the nodes and relationships, the values
+     *            are passed along its arcs.
+     * @param damping
+     *            The part of the value of a node that is passed on along its
+     *            arcs, usually 0.85.
+     * @param precision
+     *            The total change of the values tolerated in one iteration.
+     * @param threads
+     *            The number of threads to multiply with.
+     */
+    public SparsePageRank( CompactGraph graph, double damping,
+        double precision, int threads )
+    {
+        super( graph, precision, threads );
+        if ( damping < 0 || damping >= 1 )
+        {
+            throw new IllegalArgumentException( "damping=" + damping );
+        }
+        this.damping = damping;
+    }
+
+    /**
+     * Divides the cost of each arc by the total cost of the arcs from the
+     * same node, so that each node passes on all of its value.
+     */
+    @Override
+    protected double[] arcWeights()
+    {
+        double[] totals = new double[incoming.getNodeCount()];
+        for ( int arc = 0; arc < incoming.getArcCount(); arc++ )
+        {
+            totals[incoming.target( arc )] += incoming.cost( arc );
+        }
+        dangling = new boolean[totals.length];
+        for ( int i = 0; i < totals.length; i++ )
+        {
+            dangling[i] = totals[i] == 0;
+        }
+        double[] weights = new double[incoming.getArcCount()];
+        for ( int arc = 0; arc < weights.length; arc++ )
+        {
+            double total = totals[incoming.target( arc )];
+            weights[arc] = total == 0 ? 0 : incoming.cost( arc ) / total;
+        }
+        return weights;
+    }
+
+    @Override
+    protected double[] initialValues()
+    {
+        double[] initial = new double[incoming.getNodeCount()];
+        Arrays.fill( initial, 1.0 / initial.length );
+        return initial;
+    }
+
+    @Override
+    protected void completeIteration( double[] previous, double[] next )
+    {
+        double danglingSum = 0;
+        for ( int i = 0; i < previous.length; i++ )
+        {
+            if ( dangling[i] )
+            {
+                danglingSum += previous[i];
+            }
+        }
+        double spread = ( 1 - damping + damping * danglingSum ) / next.length;
+        for ( int i = 0; i < next.length; i++ )
+        {
+            next[i] = spread + damping * next[i];
+        }
+    }
+
+    @Override
+    protected boolean converged( double[] previous, double[] next )
+    {
+        double change = 0;
+        for ( int i = 0; i < previous.length; i++ )
+        {
+            change += Math.abs( next[i] - previous[i] );
+        }
+        return change <= precision;
+    }
+}
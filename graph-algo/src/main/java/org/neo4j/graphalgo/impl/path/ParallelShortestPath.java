@@ -0,0 +1,453 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.neo4j.graphalgo.PathFinder;
+import org.neo4j.graphalgo.impl.util.LongIntHashMap;
+import org.neo4j.graphalgo.impl.util.PathImpl;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipExpander;
+
+/**
+ * Finds (all or one) simple shortest path(s) between two nodes, like
+ * {@link ShortestPath}, but loads the relationships of the two sides
+ * concurrently, one of them in a thread of an {@link ExecutorService}.
+ * <p>
+ * The search goes one depth at the time. For each depth both sides first
+ * collect the relationships of their outermost nodes at the same time. A side
+ * gives up collecting when it has collected {@value #EXPANSION_RATIO} times as
+ * many relationships as the other side has in total, and only the other side
+ * goes deeper then. That way a node with a huge amount of relationships on
+ * one side is only expanded if the other side can't reach it cheaper. The
+ * visited nodes of each side are kept in primitive arrays indexed by the order
+ * in which they were found, mapped from node ids with a
+ * {@link LongIntHashMap}, together with the ids of the relationships leading
+ * to them.
+ * <p>
+ * Relationships are traversed in the specified directions from the start node,
+ * but in the reverse direction ( {@link org.neo4j.graphdb.Direction#reverse()} )
+ * from the end node. The expander must be thread safe. Since the end side is
+ * expanded by another thread it can't see changes made in the transaction of
+ * the calling thread, so only committed data should be searched.
+ */
+public class ParallelShortestPath implements PathFinder<Path>
+{
+    static final int EXPANSION_RATIO = 2;
+
+    private static ExecutorService defaultExecutor;
+
+    private final int maxDepth;
+    private final RelationshipExpander relExpander;
+    private final int maxResultCount;
+    private final ExecutorService executor;
+
+    /**
+     * @param maxDepth the maximum depth for the traversal. Returned paths
+     * will never have a greater {@link Path#length()} than {@code maxDepth}.
+     * @param relExpander the {@link RelationshipExpander} to use for deciding
+     * which relationships to expand for each {@link Node}.
+     */
+    public ParallelShortestPath( int maxDepth, RelationshipExpander relExpander )
+    {
+        this( maxDepth, relExpander, Integer.MAX_VALUE );
+    }
+
+    /**
+     * @param maxDepth the maximum depth for the traversal. Returned paths
+     * will never have a greater {@link Path#length()} than {@code maxDepth}.
+     * @param relExpander the {@link RelationshipExpander} to use for deciding
+     * which relationships to expand for each {@link Node}.
+     * @param maxResultCount the maximum number of paths to return.
+     */
+    public ParallelShortestPath( int maxDepth, RelationshipExpander relExpander,
+            int maxResultCount )
+    {
+        this( maxDepth, relExpander, maxResultCount, getDefaultExecutor() );
+    }
+
+    /**
+     * @param maxDepth the maximum depth for the traversal. Returned paths
+     * will never have a greater {@link Path#length()} than {@code maxDepth}.
+     * @param relExpander the {@link RelationshipExpander} to use for deciding
+     * which relationships to expand for each {@link Node}.
+     * @param maxResultCount the maximum number of paths to return.
+     * @param executor runs the expansion of the end side.
+     */
+    public ParallelShortestPath( int maxDepth, RelationshipExpander relExpander,
+            int maxResultCount, ExecutorService executor )
+    {
+        this.maxDepth = maxDepth;
+        this.relExpander = relExpander;
+        this.maxResultCount = maxResultCount;
+        this.executor = executor;
+    }
+
+    private static synchronized ExecutorService getDefaultExecutor()
+    {
+        if ( defaultExecutor == null )
+        {
+            defaultExecutor = Executors.newCachedThreadPool( new ThreadFactory()
+            {
+                private final AtomicInteger count = new AtomicInteger();
+
+                public Thread newThread( Runnable runnable )
+                {
+                    Thread thread = new Thread( runnable, "Shortest path-" +
+                            count.incrementAndGet() );
+                    thread.setDaemon( true );
+                    return thread;
+                }
+            } );
+        }
+        return defaultExecutor;
+    }
+
+    public Iterable<Path> findAllPaths( Node start, Node end )
+    {
+        return internalPaths( start, end, maxResultCount );
+    }
+
+    public Path findSinglePath( Node start, Node end )
+    {
+        List<Path> paths = internalPaths( start, end, 1 );
+        return paths.isEmpty() ? null : paths.get( 0 );
+    }
+
+    private List<Path> internalPaths( Node start, Node end, int maxResults )
+    {
+        if ( start.equals( end ) )
+        {
+            return Arrays.asList( PathImpl.singular( start ) );
+        }
+
+        Side startSide = new Side( start, relExpander );
+        Side endSide = new Side( end, relExpander.reversed() );
+        int depth = 0;
+        while ( depth < maxDepth && startSide.canGoDeeper() && endSide.canGoDeeper() )
+        {
+            collect( startSide, endSide );
+            boolean expandStart = startSide.collectedCount != -1;
+            boolean expandEnd = endSide.collectedCount != -1;
+            if ( expandStart && expandEnd && depth + 1 == maxDepth )
+            {
+                // Only one more step allowed, take the cheaper one
+                if ( startSide.collectedCount <= endSide.collectedCount )
+                {
+                    expandEnd = false;
+                }
+                else
+                {
+                    expandStart = false;
+                }
+            }
+            if ( expandStart )
+            {
+                startSide.expand();
+                depth++;
+            }
+            if ( expandEnd )
+            {
+                endSide.expand();
+                depth++;
+            }
+
+            int length = Math.min(
+                    expandStart ? startSide.shortestHit( endSide ) : Integer.MAX_VALUE,
+                    expandEnd ? endSide.shortestHit( startSide ) : Integer.MAX_VALUE );
+            if ( length != Integer.MAX_VALUE )
+            {
+                return toPaths( startSide, endSide, length, maxResults );
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private void collect( final Side startSide, final Side endSide )
+    {
+        startSide.collectedCount = -1;
+        endSide.collectedCount = -1;
+        Future<?> endCollection = executor.submit( new Callable<Void>()
+        {
+            public Void call()
+            {
+                endSide.collect( startSide );
+                return null;
+            }
+        } );
+        try
+        {
+            startSide.collect( endSide );
+        }
+        finally
+        {
+            try
+            {
+                endCollection.get();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException( e );
+            }
+            catch ( ExecutionException e )
+            {
+                Throwable cause = e.getCause();
+                if ( cause instanceof RuntimeException )
+                {
+                    throw (RuntimeException) cause;
+                }
+                throw new RuntimeException( cause );
+            }
+        }
+    }
+
+    /**
+     * Every shortest path of the given length has exactly one node at the
+     * depth from the start where the depths of the two sides meet, so the
+     * paths are built through those nodes and no path is returned twice.
+     */
+    private List<Path> toPaths( Side startSide, Side endSide, int length, int maxResults )
+    {
+        int startDepth = Math.max( 0, length - endSide.depth );
+        int endDepth = length - startDepth;
+        List<Path> paths = new ArrayList<Path>();
+        for ( int i = 0; i < startSide.nodeCount; i++ )
+        {
+            if ( startSide.depths[i] != startDepth )
+            {
+                continue;
+            }
+            int endIndex = endSide.indexes.get( startSide.nodeIds[i], -1 );
+            if ( endIndex == -1 || endSide.depths[endIndex] != endDepth )
+            {
+                continue;
+            }
+            List<PathImpl.Builder> endBuilders = endSide.builders( endIndex );
+            for ( PathImpl.Builder startBuilder : startSide.builders( i ) )
+            {
+                for ( PathImpl.Builder endBuilder : endBuilders )
+                {
+                    paths.add( startBuilder.build( endBuilder ) );
+                    if ( paths.size() >= maxResults )
+                    {
+                        return paths;
+                    }
+                }
+            }
+        }
+        return paths;
+    }
+
+    // Two instances per search, index 0 is the node the side starts from
+    private static class Side
+    {
+        private final Node startNode;
+        private final RelationshipExpander expander;
+        private final GraphDatabaseService graphDb;
+        private final LongIntHashMap indexes = new LongIntHashMap();
+
+        // per node, by index
+        private int nodeCount;
+        private long[] nodeIds = new long[16];
+        private int[] depths = new int[16];
+        private int[] firstPredecessor = new int[16];
+
+        // the relationships leading to the nodes, linked per node
+        private int predecessorCount;
+        private long[] predecessorRelationship = new long[16];
+        private int[] predecessorNode = new int[16];
+        private int[] nextPredecessor = new int[16];
+
+        // the nodes of the current depth are the ones from levelStart
+        private int depth;
+        private int levelStart;
+
+        // the relationships of the current depth, collected before expanding
+        private int collectedSize;
+        private long[] collectedRelationship = new long[16];
+        private long[] collectedNode = new long[16];
+        private int[] collectedParent = new int[16];
+        private volatile long collectedCount;
+
+        Side( Node startNode, RelationshipExpander expander )
+        {
+            this.startNode = startNode;
+            this.expander = expander;
+            this.graphDb = startNode.getGraphDatabase();
+            addNode( startNode.getId() );
+        }
+
+        boolean canGoDeeper()
+        {
+            return levelStart < nodeCount;
+        }
+
+        /**
+         * Collects the relationships of the nodes of the current depth,
+         * unless it turns out that the other side has far less of them.
+         * {@link #collectedCount} is set when all have been collected.
+         */
+        void collect( Side other )
+        {
+            collectedSize = 0;
+            for ( int i = levelStart; i < nodeCount; i++ )
+            {
+                Node node = i == 0 ? startNode : graphDb.getNodeById( nodeIds[i] );
+                for ( Relationship rel : expander.expand( node ) )
+                {
+                    long otherCount = other.collectedCount;
+                    if ( otherCount != -1 && collectedSize >= otherCount * EXPANSION_RATIO )
+                    {
+                        return;
+                    }
+                    addCollected( rel.getId(), rel.getOtherNode( node ).getId(), i );
+                }
+            }
+            collectedCount = collectedSize;
+        }
+
+        private void addCollected( long relationshipId, long nodeId, int parent )
+        {
+            if ( collectedSize == collectedNode.length )
+            {
+                int capacity = collectedSize * 2;
+                collectedRelationship = Arrays.copyOf( collectedRelationship, capacity );
+                collectedNode = Arrays.copyOf( collectedNode, capacity );
+                collectedParent = Arrays.copyOf( collectedParent, capacity );
+            }
+            collectedRelationship[collectedSize] = relationshipId;
+            collectedNode[collectedSize] = nodeId;
+            collectedParent[collectedSize] = parent;
+            collectedSize++;
+        }
+
+        /**
+         * Goes one depth deeper using the collected relationships.
+         */
+        void expand()
+        {
+            depth++;
+            levelStart = nodeCount;
+            for ( int i = 0; i < collectedSize; i++ )
+            {
+                int index = indexes.get( collectedNode[i], -1 );
+                if ( index == -1 )
+                {
+                    index = addNode( collectedNode[i] );
+                }
+                else if ( depths[index] != depth )
+                {
+                    continue;
+                }
+                addPredecessor( index, collectedRelationship[i], collectedParent[i] );
+            }
+            collectedSize = 0;
+        }
+
+        /**
+         * @return the shortest length of the paths through the nodes of the
+         * current depth which the other side has visited, or
+         * {@link Integer#MAX_VALUE} if there are none.
+         */
+        int shortestHit( Side other )
+        {
+            int shortest = Integer.MAX_VALUE;
+            for ( int i = levelStart; i < nodeCount; i++ )
+            {
+                int otherIndex = other.indexes.get( nodeIds[i], -1 );
+                if ( otherIndex != -1 )
+                {
+                    shortest = Math.min( shortest, depth + other.depths[otherIndex] );
+                }
+            }
+            return shortest;
+        }
+
+        /**
+         * @return a builder for each shortest path from the node this side
+         * starts from to the node with the given index.
+         */
+        List<PathImpl.Builder> builders( int index )
+        {
+            if ( index == 0 )
+            {
+                return Collections.singletonList( new PathImpl.Builder( startNode ) );
+            }
+            List<PathImpl.Builder> result = new ArrayList<PathImpl.Builder>();
+            for ( int entry = firstPredecessor[index]; entry != -1; entry = nextPredecessor[entry] )
+            {
+                Relationship rel = graphDb.getRelationshipById( predecessorRelationship[entry] );
+                for ( PathImpl.Builder builder : builders( predecessorNode[entry] ) )
+                {
+                    result.add( builder.push( rel ) );
+                }
+            }
+            return result;
+        }
+
+        private int addNode( long nodeId )
+        {
+            if ( nodeCount == nodeIds.length )
+            {
+                int capacity = nodeCount * 2;
+                nodeIds = Arrays.copyOf( nodeIds, capacity );
+                depths = Arrays.copyOf( depths, capacity );
+                firstPredecessor = Arrays.copyOf( firstPredecessor, capacity );
+            }
+            int index = nodeCount++;
+            nodeIds[index] = nodeId;
+            depths[index] = depth;
+            firstPredecessor[index] = -1;
+            indexes.put( nodeId, index );
+            return index;
+        }
+
+        private void addPredecessor( int index, long relationshipId, int predecessor )
+        {
+            if ( predecessorCount == predecessorNode.length )
+            {
+                int capacity = predecessorCount * 2;
+                predecessorRelationship = Arrays.copyOf( predecessorRelationship, capacity );
+                predecessorNode = Arrays.copyOf( predecessorNode, capacity );
+                nextPredecessor = Arrays.copyOf( nextPredecessor, capacity );
+            }
+            int entry = predecessorCount++;
+            predecessorRelationship[entry] = relationshipId;
+            predecessorNode[entry] = predecessor;
+            nextPredecessor[entry] = firstPredecessor[index];
+            firstPredecessor[index] = entry;
+        }
+    }
+}
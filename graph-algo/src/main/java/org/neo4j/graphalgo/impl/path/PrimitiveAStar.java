@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.path;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.neo4j.graphalgo.CostEvaluator;
+import org.neo4j.graphalgo.EstimateEvaluator;
+import org.neo4j.graphalgo.WeightedPath;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.RelationshipExpander;
+
+/**
+ * The A* algorithm on top of the primitive search state of
+ * {@link PrimitiveDijkstra}. Like {@link AStar} it only returns one path,
+ * also from {@link #findAllPaths(Node, Node)}.
+ */
+public class PrimitiveAStar extends PrimitiveDijkstra
+{
+    private final EstimateEvaluator<Double> estimateEvaluator;
+
+    public PrimitiveAStar( RelationshipExpander expander,
+            CostEvaluator<Double> lengthEvaluator, EstimateEvaluator<Double> estimateEvaluator )
+    {
+        super( expander, lengthEvaluator );
+        this.estimateEvaluator = estimateEvaluator;
+    }
+
+    @Override
+    public Iterable<WeightedPath> findAllPaths( Node start, Node end )
+    {
+        WeightedPath path = findSinglePath( start, end );
+        return path != null ? Arrays.asList( path ) : Collections.<WeightedPath>emptyList();
+    }
+
+    @Override
+    protected double estimate( Node node, Node end )
+    {
+        return estimateEvaluator.getCost( node, end );
+    }
+}
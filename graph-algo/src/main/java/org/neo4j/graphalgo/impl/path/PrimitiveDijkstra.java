@@ -0,0 +1,277 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.path;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+
+import org.neo4j.graphalgo.CostEvaluator;
+import org.neo4j.graphalgo.PathFinder;
+import org.neo4j.graphalgo.WeightedPath;
+import org.neo4j.graphalgo.impl.util.IndexedDoubleHeap;
+import org.neo4j.graphalgo.impl.util.LongIntHashMap;
+import org.neo4j.graphalgo.impl.util.PathImpl;
+import org.neo4j.graphalgo.impl.util.WeightedPathImpl;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipExpander;
+import org.neo4j.helpers.collection.PrefetchingIterator;
+
+/**
+ * Finds the cheapest paths between two nodes with the Dijkstra algorithm,
+ * like {@link Dijkstra} does, but keeps the state of the search in primitive
+ * arrays indexed by the order in which nodes are found. Node ids are mapped
+ * to those indexes with a {@link LongIntHashMap}, the queue is an
+ * {@link IndexedDoubleHeap} and the predecessors of each node are kept as
+ * linked lists of relationship ids in arrays, so the search creates hardly
+ * any objects besides the ones the {@link RelationshipExpander} returns.
+ * <p>
+ * A node is settled when it is taken from the queue and after that no more
+ * paths to it are considered, so paths over relationships with a cost of
+ * zero to an already settled node aren't found.
+ */
+public class PrimitiveDijkstra implements PathFinder<WeightedPath>
+{
+    private final RelationshipExpander expander;
+    private final CostEvaluator<Double> costEvaluator;
+
+    public PrimitiveDijkstra( RelationshipExpander expander, CostEvaluator<Double> costEvaluator )
+    {
+        this.expander = expander;
+        this.costEvaluator = costEvaluator;
+    }
+
+    public Iterable<WeightedPath> findAllPaths( Node start, Node end )
+    {
+        final Search search = new Search( start, end );
+        if ( !search.run() )
+        {
+            return Collections.emptyList();
+        }
+        return new Iterable<WeightedPath>()
+        {
+            public Iterator<WeightedPath> iterator()
+            {
+                return search.paths();
+            }
+        };
+    }
+
+    public WeightedPath findSinglePath( Node start, Node end )
+    {
+        Search search = new Search( start, end );
+        return search.run() ? search.paths().next() : null;
+    }
+
+    /**
+     * The estimated cost to get from {@code node} to {@code end}, which is
+     * added to the cost of getting to {@code node} when ordering the queue.
+     * Zero here, which makes this the plain Dijkstra algorithm.
+     */
+    protected double estimate( Node node, Node end )
+    {
+        return 0;
+    }
+
+    private class Search
+    {
+        private final Node start;
+        private final Node end;
+        private final GraphDatabaseService graphDb;
+        private final LongIntHashMap indexes = new LongIntHashMap();
+        private final IndexedDoubleHeap queue = new IndexedDoubleHeap( 16 );
+
+        // per node, by index
+        private int nodeCount;
+        private long[] nodeIds = new long[16];
+        private double[] costs = new double[16];
+        private double[] estimates = new double[16];
+        private boolean[] settled = new boolean[16];
+        private int[] firstPredecessor = new int[16];
+
+        // the predecessor entries, linked per node through nextPredecessor
+        private int predecessorCount;
+        private long[] predecessorRelationship = new long[16];
+        private int[] predecessorNode = new int[16];
+        private int[] nextPredecessor = new int[16];
+
+        private int endIndex = -1;
+
+        Search( Node start, Node end )
+        {
+            this.start = start;
+            this.end = end;
+            this.graphDb = start.getGraphDatabase();
+        }
+
+        /**
+         * @return whether or not {@code end} could be reached.
+         */
+        boolean run()
+        {
+            long endId = end.getId();
+            int startIndex = addNode( start.getId(), 0, estimate( start, end ) );
+            queue.offer( startIndex, estimates[startIndex] );
+            while ( !queue.isEmpty() )
+            {
+                int index = queue.poll();
+                settled[index] = true;
+                if ( nodeIds[index] == endId )
+                {
+                    endIndex = index;
+                    return true;
+                }
+
+                Node node = index == startIndex ? start : graphDb.getNodeById( nodeIds[index] );
+                double cost = costs[index];
+                for ( Relationship rel : expander.expand( node ) )
+                {
+                    Node otherNode = rel.getOtherNode( node );
+                    double otherCost = cost + costEvaluator.getCost( rel, Direction.OUTGOING );
+                    int otherIndex = indexes.get( otherNode.getId(), -1 );
+                    if ( otherIndex == -1 )
+                    {
+                        otherIndex = addNode( otherNode.getId(), otherCost,
+                                estimate( otherNode, end ) );
+                    }
+                    else if ( settled[otherIndex] || otherCost > costs[otherIndex] )
+                    {
+                        continue;
+                    }
+                    else if ( otherCost < costs[otherIndex] )
+                    {
+                        // A cheaper way there, forget the ones found so far
+                        costs[otherIndex] = otherCost;
+                        firstPredecessor[otherIndex] = -1;
+                    }
+                    addPredecessor( otherIndex, rel.getId(), index );
+                    queue.offer( otherIndex, otherCost + estimates[otherIndex] );
+                }
+            }
+            return false;
+        }
+
+        private int addNode( long nodeId, double cost, double estimate )
+        {
+            if ( nodeCount == nodeIds.length )
+            {
+                int capacity = nodeCount * 2;
+                nodeIds = Arrays.copyOf( nodeIds, capacity );
+                costs = Arrays.copyOf( costs, capacity );
+                estimates = Arrays.copyOf( estimates, capacity );
+                settled = Arrays.copyOf( settled, capacity );
+                firstPredecessor = Arrays.copyOf( firstPredecessor, capacity );
+            }
+            int index = nodeCount++;
+            nodeIds[index] = nodeId;
+            costs[index] = cost;
+            estimates[index] = estimate;
+            firstPredecessor[index] = -1;
+            indexes.put( nodeId, index );
+            return index;
+        }
+
+        private void addPredecessor( int index, long relationshipId, int predecessor )
+        {
+            if ( predecessorCount == predecessorNode.length )
+            {
+                int capacity = predecessorCount * 2;
+                predecessorRelationship = Arrays.copyOf( predecessorRelationship, capacity );
+                predecessorNode = Arrays.copyOf( predecessorNode, capacity );
+                nextPredecessor = Arrays.copyOf( nextPredecessor, capacity );
+            }
+            int entry = predecessorCount++;
+            predecessorRelationship[entry] = relationshipId;
+            predecessorNode[entry] = predecessor;
+            nextPredecessor[entry] = firstPredecessor[index];
+            firstPredecessor[index] = entry;
+        }
+
+        /**
+         * Walks the predecessors back from {@code end} depth first, the
+         * stack holds the predecessor entry chosen at each step.
+         */
+        Iterator<WeightedPath> paths()
+        {
+            return new PrefetchingIterator<WeightedPath>()
+            {
+                private final int[] stack = new int[nodeCount];
+                private int depth = -1;
+
+                @Override
+                protected WeightedPath fetchNextOrNull()
+                {
+                    if ( depth == -1 )
+                    {
+                        if ( firstPredecessor[endIndex] == -1 )
+                        {
+                            // start and end are the same node
+                            depth = 0;
+                            return toPath();
+                        }
+                        stack[0] = firstPredecessor[endIndex];
+                        depth = 1;
+                    }
+                    while ( depth > 0 )
+                    {
+                        int node = predecessorNode[stack[depth - 1]];
+                        int predecessor = firstPredecessor[node];
+                        if ( predecessor == -1 )
+                        {
+                            WeightedPath path = toPath();
+                            backtrack();
+                            return path;
+                        }
+                        stack[depth++] = predecessor;
+                    }
+                    return null;
+                }
+
+                private void backtrack()
+                {
+                    while ( depth > 0 )
+                    {
+                        int next = nextPredecessor[stack[depth - 1]];
+                        if ( next != -1 )
+                        {
+                            stack[depth - 1] = next;
+                            return;
+                        }
+                        depth--;
+                    }
+                }
+
+                private WeightedPath toPath()
+                {
+                    PathImpl.Builder builder = new PathImpl.Builder( start );
+                    for ( int i = depth - 1; i >= 0; i-- )
+                    {
+                        builder = builder.push( graphDb.getRelationshipById(
+                                predecessorRelationship[stack[i]] ) );
+                    }
+                    return new WeightedPathImpl( costs[endIndex], builder.build() );
+                }
+            };
+        }
+    }
+}
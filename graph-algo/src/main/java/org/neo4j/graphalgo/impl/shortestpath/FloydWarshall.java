@@ -34,7 +34,10 @@ import org.neo4j.graphdb.Relationship;
 
 /**
  * This provides an implementation of the Floyd Warshall algorithm solving the
- * all pair shortest path problem.
+ * all pair shortest path problem. It keeps n^2 costs and predecessors; when
+ * only the distances from each node are needed,
+ * {@link org.neo4j.graphalgo.impl.centrality.CompactGraphDistances} hands
+ * them over one source at a time instead.
  * @complexity The {@link CostEvaluator} is called once for every relationship.
  *             The {@link CostAccumulator} and cost comparator are both called
  *             n^3 times. Assuming they run in constant time, the time
@@ -0,0 +1,360 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.neo4j.graphalgo.CostEvaluator;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+
+/**
+ * A read only snapshot of a set of nodes and the relationships between them,
+ * in compressed sparse row form. The nodes are numbered <code>0</code> to
+ * <code>{@link #getNodeCount()} - 1</code> and the relationships a node can be
+ * followed along, in the given direction, are stored as arcs in one array
+ * ordered by node, with the cost of each arc in another. Algorithms that
+ * visit the same relationships many times, like the centrality measures, can
+ * then run on a few primitive arrays instead of the graph, and from several
+ * threads at once.
+ * <p>
+ * Relationships to nodes outside of the set are left out.
+ */
+public class CompactGraph
+{
+    private final Node[] nodes;
+    private final LongIntHashMap indexes;
+    private final Direction direction;
+    // the arcs of node i are firstArc[i] until firstArc[i + 1]
+    private final int[] firstArc;
+    private final int[] targets;
+    // null when every arc costs 1
+    private final double[] costs;
+
+    private CompactGraph( Node[] nodes, LongIntHashMap indexes,
+        Direction direction, int[] firstArc, int[] targets, double[] costs )
+    {
+        this.nodes = nodes;
+        this.indexes = indexes;
+        this.direction = direction;
+        this.firstArc = firstArc;
+        this.targets = targets;
+        this.costs = costs;
+    }
+
+    /**
+     * Makes a snapshot where every relationship costs 1.
+     *
+     * @param nodeSet the nodes to include.
+     * @param direction the direction relationships are followed in.
+     * @param types the types of the relationships to include, all types if
+     *            none are given.
+     * @return the snapshot.
+     */
+    public static CompactGraph snapshot( Iterable<Node> nodeSet,
+        Direction direction, RelationshipType... types )
+    {
+        return snapshot( nodeSet, null, direction, types );
+    }
+
+    /**
+     * Makes a snapshot with the costs of the relationships.
+     *
+     * @param nodeSet the nodes to include.
+     * @param costEvaluator gives the cost of each relationship, in the
+     *            direction it is followed in, or <code>null</code> if every
+     *            relationship costs 1.
+     * @param direction the direction relationships are followed in.
+     * @param types the types of the relationships to include, all types if
+     *            none are given.
+     * @return the snapshot.
+     */
+    public static CompactGraph snapshot( Iterable<Node> nodeSet,
+        CostEvaluator<Double> costEvaluator, Direction direction,
+        RelationshipType... types )
+    {
+        List<Node> nodeList = new ArrayList<Node>();
+        LongIntHashMap indexes = index( nodeSet, nodeList );
+
+        int[] firstArc = new int[nodeList.size() + 1];
+        int[] targets = new int[Math.max( 16, nodeList.size() * 2 )];
+        double[] costs = costEvaluator == null ? null
+            : new double[targets.length];
+        int arcs = 0;
+        for ( int i = 0; i < nodeList.size(); i++ )
+        {
+            firstArc[i] = arcs;
+            Node node = nodeList.get( i );
+            Iterable<Relationship> relationships = types.length == 0 ? node
+                .getRelationships( direction ) : node.getRelationships(
+                direction, types );
+            for ( Relationship relationship : relationships )
+            {
+                int target = indexes.get(
+                    relationship.getOtherNode( node ).getId(), -1 );
+                if ( target == -1 )
+                {
+                    continue;
+                }
+                if ( arcs == targets.length )
+                {
+                    targets = Arrays.copyOf( targets, arcs * 2 );
+                    if ( costs != null )
+                    {
+                        costs = Arrays.copyOf( costs, arcs * 2 );
+                    }
+                }
+                targets[arcs] = target;
+                if ( costs != null )
+                {
+                    // Same as the shortest path algorithms
+                    Direction costDirection = relationship.getEndNode()
+                        .equals( node ) ? Direction.INCOMING
+                        : Direction.OUTGOING;
+                    costs[arcs] = costEvaluator.getCost( relationship,
+                        costDirection );
+                }
+                arcs++;
+            }
+        }
+        firstArc[nodeList.size()] = arcs;
+
+        return new CompactGraph( nodeList.toArray( new Node[nodeList.size()] ),
+            indexes, direction, firstArc, Arrays.copyOf( targets, arcs ),
+            costs == null ? null : Arrays.copyOf( costs, arcs ) );
+    }
+
+    /**
+     * Makes a snapshot of a given set of relationships, which is iterated
+     * twice.
+     *
+     * @param nodeSet the nodes to include.
+     * @param relationshipSet the relationships to include.
+     * @param costEvaluator gives the cost of each relationship, in the
+     *            direction it is followed in, or <code>null</code> if every
+     *            relationship costs 1.
+     * @param direction the direction relationships are followed in.
+     * @return the snapshot.
+     */
+    public static CompactGraph snapshot( Iterable<Node> nodeSet,
+        Iterable<Relationship> relationshipSet,
+        CostEvaluator<Double> costEvaluator, Direction direction )
+    {
+        List<Node> nodeList = new ArrayList<Node>();
+        LongIntHashMap indexes = index( nodeSet, nodeList );
+        boolean outgoing = direction != Direction.INCOMING;
+        boolean incoming = direction != Direction.OUTGOING;
+
+        // Count the arcs of each node first, so that they can be put in place
+        int[] firstArc = new int[nodeList.size() + 1];
+        for ( Relationship relationship : relationshipSet )
+        {
+            int start = indexes.get( relationship.getStartNode().getId(), -1 );
+            int end = indexes.get( relationship.getEndNode().getId(), -1 );
+            if ( start == -1 || end == -1 )
+            {
+                continue;
+            }
+            if ( outgoing )
+            {
+                firstArc[start + 1]++;
+            }
+            if ( incoming )
+            {
+                firstArc[end + 1]++;
+            }
+        }
+        for ( int i = 0; i < nodeList.size(); i++ )
+        {
+            firstArc[i + 1] += firstArc[i];
+        }
+
+        int arcs = firstArc[nodeList.size()];
+        int[] targets = new int[arcs];
+        double[] costs = costEvaluator == null ? null : new double[arcs];
+        int[] nextArc = Arrays.copyOf( firstArc, nodeList.size() );
+        for ( Relationship relationship : relationshipSet )
+        {
+            int start = indexes.get( relationship.getStartNode().getId(), -1 );
+            int end = indexes.get( relationship.getEndNode().getId(), -1 );
+            if ( start == -1 || end == -1 )
+            {
+                continue;
+            }
+            if ( outgoing )
+            {
+                int arc = nextArc[start]++;
+                targets[arc] = end;
+                if ( costs != null )
+                {
+                    costs[arc] = costEvaluator.getCost( relationship,
+                        Direction.OUTGOING );
+                }
+            }
+            if ( incoming )
+            {
+                int arc = nextArc[end]++;
+                targets[arc] = start;
+                if ( costs != null )
+                {
+                    costs[arc] = costEvaluator.getCost( relationship,
+                        Direction.INCOMING );
+                }
+            }
+        }
+
+        return new CompactGraph( nodeList.toArray( new Node[nodeList.size()] ),
+            indexes, direction, firstArc, targets, costs );
+    }
+
+    private static LongIntHashMap index( Iterable<Node> nodeSet,
+        List<Node> nodeList )
+    {
+        LongIntHashMap indexes = new LongIntHashMap();
+        for ( Node node : nodeSet )
+        {
+            if ( indexes.get( node.getId(), -1 ) == -1 )
+            {
+                indexes.put( node.getId(), nodeList.size() );
+                nodeList.add( node );
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * Makes a snapshot of the same nodes where every arc goes the other way,
+     * i.e. the arcs of a node are the ones that lead to it in this snapshot.
+     * Algorithms that gather values from the arcs leading to each node can
+     * then handle the nodes independently of each other.
+     *
+     * @return the transposed snapshot, with the reversed direction.
+     */
+    public CompactGraph transpose()
+    {
+        int nodeCount = nodes.length;
+        int[] reversedFirstArc = new int[nodeCount + 1];
+        for ( int arc = 0; arc < targets.length; arc++ )
+        {
+            reversedFirstArc[targets[arc] + 1]++;
+        }
+        for ( int i = 0; i < nodeCount; i++ )
+        {
+            reversedFirstArc[i + 1] += reversedFirstArc[i];
+        }
+        int[] reversedTargets = new int[targets.length];
+        double[] reversedCosts = costs == null ? null
+            : new double[costs.length];
+        int[] nextArc = Arrays.copyOf( reversedFirstArc, nodeCount );
+        for ( int node = 0; node < nodeCount; node++ )
+        {
+            for ( int arc = firstArc[node]; arc < firstArc[node + 1]; arc++ )
+            {
+                int reversedArc = nextArc[targets[arc]]++;
+                reversedTargets[reversedArc] = node;
+                if ( costs != null )
+                {
+                    reversedCosts[reversedArc] = costs[arc];
+                }
+            }
+        }
+        return new CompactGraph( nodes, indexes, direction.reverse(),
+            reversedFirstArc, reversedTargets, reversedCosts );
+    }
+
+    public int getNodeCount()
+    {
+        return nodes.length;
+    }
+
+    public int getArcCount()
+    {
+        return targets.length;
+    }
+
+    public Direction getDirection()
+    {
+        return direction;
+    }
+
+    /**
+     * @return <code>true</code> if the arcs have costs, <code>false</code>
+     *         if every arc costs 1.
+     */
+    public boolean isWeighted()
+    {
+        return costs != null;
+    }
+
+    public Node getNode( int index )
+    {
+        return nodes[index];
+    }
+
+    /**
+     * @param node the node to find.
+     * @return the index of the node, or <code>-1</code> if it isn't in the
+     *         snapshot.
+     */
+    public int indexOf( Node node )
+    {
+        return indexes.get( node.getId(), -1 );
+    }
+
+    /**
+     * @param node the index of a node.
+     * @return the first of the arcs from the node.
+     */
+    public int firstArc( int node )
+    {
+        return firstArc[node];
+    }
+
+    /**
+     * @param node the index of a node.
+     * @return the arc after the last of the arcs from the node.
+     */
+    public int endArc( int node )
+    {
+        return firstArc[node + 1];
+    }
+
+    /**
+     * @param arc an arc.
+     * @return the index of the node the arc leads to.
+     */
+    public int target( int arc )
+    {
+        return targets[arc];
+    }
+
+    /**
+     * @param arc an arc.
+     * @return the cost of following the arc.
+     */
+    public double cost( int arc )
+    {
+        return costs == null ? 1.0 : costs[arc];
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.util;
+
+import java.util.Arrays;
+
+/**
+ * A binary min heap of the non-negative <code>int</code> items, each with a
+ * <code>double</code> priority. It grows when offered an item beyond its
+ * capacity. It keeps the
+ * position of each item so that lowering its priority doesn't need a search,
+ * which is what Dijkstra style searches do all the time.
+ */
+public class IndexedDoubleHeap
+{
+    private int[] heap;
+    private double[] priorities;
+    // the position of each item in the heap, -1 if it isn't in it
+    private int[] positions;
+    private int size;
+
+    public IndexedDoubleHeap( int capacity )
+    {
+        heap = new int[capacity];
+        priorities = new double[capacity];
+        positions = new int[capacity];
+        Arrays.fill( positions, -1 );
+    }
+
+    /**
+     * Adds the item, or lowers its priority if it is already in the heap
+     * with a higher one.
+     *
+     * @param item the item.
+     * @param priority the priority, lower comes first.
+     */
+    public void offer( int item, double priority )
+    {
+        if ( item >= positions.length )
+        {
+            grow( item + 1 );
+        }
+        int position = positions[item];
+        if ( position == -1 )
+        {
+            position = size++;
+        }
+        else if ( priority >= priorities[item] )
+        {
+            return;
+        }
+        priorities[item] = priority;
+        siftUp( item, position );
+    }
+
+    /**
+     * @return the item with the lowest priority, which is removed.
+     */
+    public int poll()
+    {
+        int first = heap[0];
+        positions[first] = -1;
+        int last = heap[--size];
+        if ( size > 0 )
+        {
+            siftDown( last, 0 );
+        }
+        return first;
+    }
+
+    /**
+     * @return the priority of the item that {@link #poll()} would return.
+     */
+    public double peekPriority()
+    {
+        return priorities[heap[0]];
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public void clear()
+    {
+        for ( int i = 0; i < size; i++ )
+        {
+            positions[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void grow( int minCapacity )
+    {
+        int oldCapacity = positions.length;
+        int capacity = Math.max( minCapacity, oldCapacity * 2 );
+        heap = Arrays.copyOf( heap, capacity );
+        priorities = Arrays.copyOf( priorities, capacity );
+        positions = Arrays.copyOf( positions, capacity );
+        Arrays.fill( positions, oldCapacity, capacity, -1 );
+    }
+
+    private void siftUp( int item, int position )
+    {
+        double priority = priorities[item];
+        while ( position > 0 )
+        {
+            int parentPosition = ( position - 1 ) >>> 1;
+            int parent = heap[parentPosition];
+            if ( priorities[parent] <= priority )
+            {
+                break;
+            }
+            place( parent, position );
+            position = parentPosition;
+        }
+        place( item, position );
+    }
+
+    private void siftDown( int item, int position )
+    {
+        double priority = priorities[item];
+        int half = size >>> 1;
+        while ( position < half )
+        {
+            int childPosition = 2 * position + 1;
+            int child = heap[childPosition];
+            int rightPosition = childPosition + 1;
+            if ( rightPosition < size && priorities[heap[rightPosition]] < priorities[child] )
+            {
+                childPosition = rightPosition;
+                child = heap[childPosition];
+            }
+            if ( priority <= priorities[child] )
+            {
+                break;
+            }
+            place( child, position );
+            position = childPosition;
+        }
+        place( item, position );
+    }
+
+    private void place( int item, int position )
+    {
+        heap[position] = item;
+        positions[item] = position;
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.util;
+
+import java.util.Arrays;
+
+/**
+ * Maps <code>long</code> keys, such as node ids, to <code>int</code> values
+ * in an open addressing hash table with linear probing, without boxing
+ * either of them. Keys can't be negative.
+ */
+public class LongIntHashMap
+{
+    private static final long FREE = -1;
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int shift;
+    private int resizeAt;
+    private int size;
+
+    public LongIntHashMap()
+    {
+        this( MIN_CAPACITY );
+    }
+
+    public LongIntHashMap( int expectedSize )
+    {
+        int capacity = MIN_CAPACITY;
+        while ( capacity * 3 / 4 <= expectedSize )
+        {
+            capacity <<= 1;
+        }
+        allocate( capacity );
+    }
+
+    private void allocate( int capacity )
+    {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill( keys, FREE );
+        mask = capacity - 1;
+        shift = 64 - Integer.numberOfTrailingZeros( capacity );
+        resizeAt = capacity * 3 / 4;
+    }
+
+    private int slot( long key )
+    {
+        return (int) ( ( key * 0x9E3779B97F4A7C15L ) >>> shift );
+    }
+
+    /**
+     * @param key the key to look up.
+     * @param missing the value to return if the key isn't in the map.
+     * @return the value of the key, or <code>missing</code>.
+     */
+    public int get( long key, int missing )
+    {
+        int i = slot( key );
+        while ( keys[i] != FREE )
+        {
+            if ( keys[i] == key )
+            {
+                return values[i];
+            }
+            i = ( i + 1 ) & mask;
+        }
+        return missing;
+    }
+
+    /**
+     * Sets the value of a key.
+     *
+     * @param key the key, which can't be negative.
+     * @param value the value.
+     */
+    public void put( long key, int value )
+    {
+        if ( key < 0 )
+        {
+            throw new IllegalArgumentException( "Negative key " + key );
+        }
+        int i = slot( key );
+        while ( keys[i] != FREE )
+        {
+            if ( keys[i] == key )
+            {
+                values[i] = value;
+                return;
+            }
+            i = ( i + 1 ) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if ( ++size >= resizeAt )
+        {
+            grow();
+        }
+    }
+
+    private void grow()
+    {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate( oldKeys.length * 2 );
+        for ( int j = 0; j < oldKeys.length; j++ )
+        {
+            if ( oldKeys[j] != FREE )
+            {
+                int i = slot( oldKeys[j] );
+                while ( keys[i] != FREE )
+                {
+                    i = ( i + 1 ) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    public int size()
+    {
+        return size;
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.centrality;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.Test;
+import org.neo4j.graphalgo.CommonEvaluators;
+import org.neo4j.graphalgo.CostEvaluator;
+import org.neo4j.graphalgo.impl.centrality.BetweennessCentrality;
+import org.neo4j.graphalgo.impl.centrality.ClosenessCentrality;
+import org.neo4j.graphalgo.impl.centrality.CompactGraphCentrality;
+import org.neo4j.graphalgo.impl.centrality.CostDivider;
+import org.neo4j.graphalgo.impl.centrality.ParallellCentralityCalculation;
+import org.neo4j.graphalgo.impl.centrality.StressCentrality;
+import org.neo4j.graphalgo.impl.shortestpath.SingleSourceShortestPath;
+import org.neo4j.graphalgo.impl.shortestpath.SingleSourceShortestPathDijkstra;
+import org.neo4j.graphalgo.impl.util.CompactGraph;
+import org.neo4j.graphalgo.impl.util.DoubleAdder;
+import org.neo4j.graphalgo.impl.util.DoubleComparator;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+
+import common.Neo4jAlgoTestCase;
+
+public class CompactGraphCentralityTest extends Neo4jAlgoTestCase
+{
+    @Test
+    public void testPlusShape()
+    {
+        graph.makeEdgeChain( "a,b,c" );
+        graph.makeEdgeChain( "d,b,e" );
+        CompactGraphCentrality centrality = new CompactGraphCentrality(
+            CompactGraph.snapshot( graph.getAllNodes(), Direction.BOTH,
+                MyRelTypes.R1 ), 2 );
+
+        assertEquals( 0.0, centrality.getBetweennessCentrality( graph.getNode( "a" ) ), 0 );
+        assertEquals( 6.0, centrality.getBetweennessCentrality( graph.getNode( "b" ) ), 0 );
+        assertEquals( 0.0, centrality.getStressCentrality( graph.getNode( "c" ) ), 0 );
+        assertEquals( 6.0, centrality.getStressCentrality( graph.getNode( "b" ) ), 0 );
+        assertEquals( 1.0 / 7, centrality.getClosenessCentrality( graph.getNode( "d" ) ), 0 );
+        assertEquals( 1.0 / 4, centrality.getClosenessCentrality( graph.getNode( "b" ) ), 0 );
+    }
+
+    @Test
+    public void nodesOutsideOfTheSnapshotHaveNoCentrality()
+    {
+        graph.makeEdgeChain( "a,b" );
+        CompactGraphCentrality centrality = new CompactGraphCentrality(
+            CompactGraph.snapshot( Collections.singleton( graph.getNode( "a" ) ),
+                Direction.BOTH ) );
+
+        assertEquals( 0.0, centrality.getBetweennessCentrality( graph.getNode( "a" ) ), 0 );
+        assertNull( centrality.getBetweennessCentrality( graph.getNode( "b" ) ) );
+    }
+
+    @Test
+    public void sameAsTheShortestPathBasedCentralitiesWithCosts()
+    {
+        makeRandomGraph( 40, 100 );
+        CostEvaluator<Double> costEvaluator = CommonEvaluators.doubleCostEvaluator( "cost" );
+        SingleSourceShortestPath<Double> singleSourceShortestPath = new SingleSourceShortestPathDijkstra<Double>(
+            0.0, null, costEvaluator, new DoubleAdder(), new DoubleComparator(),
+            Direction.BOTH, MyRelTypes.R1 );
+        CompactGraphCentrality centrality = new CompactGraphCentrality(
+            CompactGraph.snapshot( graph.getAllNodes(), costEvaluator,
+                Direction.BOTH, MyRelTypes.R1 ), 4 );
+
+        assertSameCentralities( singleSourceShortestPath, centrality, true );
+    }
+
+    @Test
+    public void sameAsTheShortestPathBasedCentralitiesInOneDirection()
+    {
+        makeRandomGraph( 40, 100 );
+        SingleSourceShortestPath<Double> singleSourceShortestPath = new SingleSourceShortestPathDijkstra<Double>(
+            0.0, null, CommonEvaluators.doubleCostEvaluator( "none", 1.0 ),
+            new DoubleAdder(), new DoubleComparator(), Direction.OUTGOING,
+            MyRelTypes.R1 );
+        CompactGraphCentrality centrality = new CompactGraphCentrality(
+            CompactGraph.snapshot( graph.getAllNodes(), Direction.OUTGOING,
+                MyRelTypes.R1 ), 3 );
+
+        assertSameCentralities( singleSourceShortestPath, centrality, false );
+    }
+
+    /*
+     * A chain through all the nodes, so that they are all connected, and
+     * random relationships with small costs, so that there are ties.
+     */
+    private void makeRandomGraph( int nodes, int relationships )
+    {
+        Random random = new Random( 1234 );
+        for ( int i = 1; i < nodes; i++ )
+        {
+            graph.makeEdge( "n" + ( i - 1 ), "n" + i, "cost",
+                (double) ( 1 + random.nextInt( 3 ) ) );
+        }
+        for ( int i = 0; i < relationships; i++ )
+        {
+            graph.makeEdge( "n" + random.nextInt( nodes ), "n"
+                + random.nextInt( nodes ), "cost",
+                (double) ( 1 + random.nextInt( 3 ) ) );
+        }
+    }
+
+    private void assertSameCentralities(
+        SingleSourceShortestPath<Double> singleSourceShortestPath,
+        CompactGraphCentrality centrality, boolean closeness )
+    {
+        ParallellCentralityCalculation<Double> pcc = new ParallellCentralityCalculation<Double>(
+            singleSourceShortestPath, graph.getAllNodes() );
+        BetweennessCentrality<Double> betweennessCentrality = new BetweennessCentrality<Double>(
+            singleSourceShortestPath, graph.getAllNodes() );
+        StressCentrality<Double> stressCentrality = new StressCentrality<Double>(
+            singleSourceShortestPath, graph.getAllNodes() );
+        pcc.addCalculation( betweennessCentrality );
+        pcc.addCalculation( stressCentrality );
+        ClosenessCentrality<Double> closenessCentrality = null;
+        if ( closeness )
+        {
+            closenessCentrality = new ClosenessCentrality<Double>(
+                singleSourceShortestPath,
+                new DoubleAdder(), 0.0, graph.getAllNodes(),
+                new CostDivider<Double>()
+                {
+                    public Double divideByCost( Double d, Double c )
+                    {
+                        return d / c;
+                    }
+
+                    public Double divideCost( Double c, Double d )
+                    {
+                        return c / d;
+                    }
+                } );
+            pcc.addCalculation( closenessCentrality );
+        }
+        pcc.calculate();
+
+        for ( Node node : graph.getAllNodes() )
+        {
+            assertEquals( betweennessCentrality.getCentrality( node ),
+                centrality.getBetweennessCentrality( node ), 1e-9 );
+            assertEquals( stressCentrality.getCentrality( node ),
+                centrality.getStressCentrality( node ), 1e-9 );
+            if ( closeness )
+            {
+                assertEquals( closenessCentrality.getCentrality( node ),
+                    centrality.getClosenessCentrality( node ), 1e-9 );
+            }
+        }
+    }
+}
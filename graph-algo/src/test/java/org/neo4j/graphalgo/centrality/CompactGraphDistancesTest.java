@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.centrality;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.neo4j.graphalgo.CommonEvaluators;
+import org.neo4j.graphalgo.CostEvaluator;
+import org.neo4j.graphalgo.impl.centrality.CompactGraphDistances;
+import org.neo4j.graphalgo.impl.centrality.Eccentricity;
+import org.neo4j.graphalgo.impl.centrality.NetworkDiameter;
+import org.neo4j.graphalgo.impl.centrality.NetworkRadius;
+import org.neo4j.graphalgo.impl.shortestpath.SingleSourceShortestPath;
+import org.neo4j.graphalgo.impl.shortestpath.SingleSourceShortestPathDijkstra;
+import org.neo4j.graphalgo.impl.util.CompactGraph;
+import org.neo4j.graphalgo.impl.util.DoubleAdder;
+import org.neo4j.graphalgo.impl.util.DoubleComparator;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+
+import common.Neo4jAlgoTestCase;
+
+public class CompactGraphDistancesTest extends Neo4jAlgoTestCase
+{
+    @Test
+    public void testChain()
+    {
+        graph.makeEdgeChain( "a,b,c,d,e" );
+        CompactGraphDistances distances = new CompactGraphDistances(
+            CompactGraph.snapshot( graph.getAllNodes(), Direction.BOTH,
+                MyRelTypes.R1 ), 2 );
+
+        assertEquals( 4.0, distances.getEccentricity( graph.getNode( "a" ) ), 0 );
+        assertEquals( 3.0, distances.getEccentricity( graph.getNode( "b" ) ), 0 );
+        assertEquals( 2.0, distances.getEccentricity( graph.getNode( "c" ) ), 0 );
+        assertEquals( 4.0, distances.getDiameter(), 0 );
+        assertEquals( 2.0, distances.getRadius(), 0 );
+        // Exact for trees, whichever node it starts from
+        assertEquals( 4.0, distances.estimateDiameter( 1, new Random( 5 ) ), 0 );
+    }
+
+    @Test
+    public void visitsTheDistancesFromEachSource()
+    {
+        graph.makeEdgeChain( "a,b,c" );
+        CompactGraph snapshot = CompactGraph.snapshot( graph.getAllNodes(),
+            Direction.OUTGOING );
+        final int a = snapshot.indexOf( graph.getNode( "a" ) );
+        final int c = snapshot.indexOf( graph.getNode( "c" ) );
+        final AtomicInteger visits = new AtomicInteger();
+        new CompactGraphDistances( snapshot, 2 ).visitDistances( new int[] {
+            a, c }, new CompactGraphDistances.DistanceVisitor()
+        {
+            public void visit( int source, int[] reached, int reachedCount,
+                double[] distance )
+            {
+                visits.incrementAndGet();
+                assertEquals( source, reached[0] );
+                if ( source == a )
+                {
+                    assertEquals( 3, reachedCount );
+                    assertEquals( c, reached[2] );
+                    assertEquals( 2.0, distance[c], 0 );
+                }
+                else
+                {
+                    assertEquals( 1, reachedCount );
+                }
+            }
+        } );
+        assertEquals( 2, visits.get() );
+    }
+
+    @Test
+    public void sameAsTheShortestPathBasedMeasuresWithCosts()
+    {
+        Random random = new Random( 4321 );
+        for ( int i = 1; i < 50; i++ )
+        {
+            graph.makeEdge( "n" + ( i - 1 ), "n" + i, "cost",
+                (double) ( 1 + random.nextInt( 5 ) ) );
+        }
+        for ( int i = 0; i < 60; i++ )
+        {
+            graph.makeEdge( "n" + random.nextInt( 50 ), "n"
+                + random.nextInt( 50 ), "cost",
+                (double) ( 1 + random.nextInt( 5 ) ) );
+        }
+        CostEvaluator<Double> costEvaluator = CommonEvaluators.doubleCostEvaluator( "cost" );
+        SingleSourceShortestPath<Double> singleSourceShortestPath = new SingleSourceShortestPathDijkstra<Double>(
+            0.0, null, costEvaluator, new DoubleAdder(), new DoubleComparator(),
+            Direction.BOTH, MyRelTypes.R1 );
+        CompactGraphDistances distances = new CompactGraphDistances(
+            CompactGraph.snapshot( graph.getAllNodes(), costEvaluator,
+                Direction.BOTH, MyRelTypes.R1 ), 3 );
+
+        Eccentricity<Double> eccentricity = new Eccentricity<Double>(
+            singleSourceShortestPath, 0.0, graph.getAllNodes(),
+            new DoubleComparator() );
+        for ( Node node : graph.getAllNodes() )
+        {
+            assertEquals( eccentricity.getCentrality( node ),
+                distances.getEccentricity( node ), 0 );
+        }
+        double diameter = new NetworkDiameter<Double>( singleSourceShortestPath,
+            0.0, graph.getAllNodes(), new DoubleComparator() ).getCentrality( null );
+        assertEquals( diameter, distances.getDiameter(), 0 );
+        assertEquals( new NetworkRadius<Double>( singleSourceShortestPath, 0.0,
+            graph.getAllNodes(), new DoubleComparator() ).getCentrality( null ),
+            distances.getRadius(), 0 );
+        double estimate = distances.estimateDiameter( 5, new Random( 1 ) );
+        assertTrue( estimate + " > " + diameter, estimate <= diameter );
+        assertTrue( estimate > 0 );
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.centrality;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.neo4j.graphalgo.CommonEvaluators;
+import org.neo4j.graphalgo.CostEvaluator;
+import org.neo4j.graphalgo.impl.centrality.EigenvectorCentrality;
+import org.neo4j.graphalgo.impl.centrality.SparseEigenvectorCentrality;
+import org.neo4j.graphalgo.impl.centrality.SparsePageRank;
+import org.neo4j.graphalgo.impl.util.CompactGraph;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+
+public class SparseEigenvectorCentralityTest extends EigenvectorCentralityTest
+{
+    @Override
+    public EigenvectorCentrality getEigenvectorCentrality(
+        Direction relationDirection, CostEvaluator<Double> costEvaluator,
+        Set<Node> nodeSet, Set<Relationship> relationshipSet, double precision )
+    {
+        return new SparseEigenvectorCentrality( relationDirection,
+            costEvaluator, nodeSet, relationshipSet, precision );
+    }
+
+    @Test
+    public void sameResultWithSeveralThreads()
+    {
+        Random random = new Random( 3 );
+        for ( int i = 0; i < 300; i++ )
+        {
+            graph.makeEdge( "n" + random.nextInt( 100 ), "n"
+                + random.nextInt( 100 ), "cost", random.nextDouble() );
+        }
+        CompactGraph snapshot = CompactGraph.snapshot( graph.getAllNodes(),
+            graph.getAllEdges(), CommonEvaluators.doubleCostEvaluator( "cost" ),
+            Direction.OUTGOING );
+        SparseEigenvectorCentrality single = new SparseEigenvectorCentrality(
+            snapshot, 0.001, 1 );
+        SparseEigenvectorCentrality several = new SparseEigenvectorCentrality(
+            snapshot, 0.001, 4 );
+        single.setMaxIterations( 50 );
+        several.setMaxIterations( 50 );
+        for ( int i = 0; i < snapshot.getNodeCount(); i++ )
+        {
+            Node node = snapshot.getNode( i );
+            assertEquals( single.getCentrality( node ),
+                several.getCentrality( node ), 0 );
+        }
+        assertEquals( single.getTotalIterations(), several.getTotalIterations() );
+    }
+
+    @Test
+    public void pageRankOfACycleIsEven()
+    {
+        graph.makeEdgeChain( "a,b,c,a" );
+        SparsePageRank pageRank = new SparsePageRank( Direction.OUTGOING, null,
+            graph.getAllNodes(), graph.getAllEdges(), 0.85, 0.0001 );
+        assertEquals( 1.0 / 3, pageRank.getCentrality( graph.getNode( "a" ) ), 0.0001 );
+        assertEquals( 1.0 / 3, pageRank.getCentrality( graph.getNode( "b" ) ), 0.0001 );
+        assertEquals( 1.0 / 3, pageRank.getCentrality( graph.getNode( "c" ) ), 0.0001 );
+    }
+
+    @Test
+    public void pageRankSpreadsTheValueOfNodesWithoutRelationships()
+    {
+        // (b) has no outgoing relationships, so its value is spread over all
+        // nodes: with d = 0.85 the leaves get s = (1 - d + d * b) / 4 and
+        // b = s + 3 * d * s, which adds up to 1 when s = 1 / (4 + 3 * d)
+        graph.makeEdges( "a,b,c,b,d,b" );
+        SparsePageRank pageRank = new SparsePageRank( Direction.OUTGOING,
+            CommonEvaluators.doubleCostEvaluator( "cost", 1.0 ),
+            graph.getAllNodes(), graph.getAllEdges(), 0.85, 0.000001 );
+        double leaf = 1 / ( 4 + 3 * 0.85 );
+        assertEquals( leaf, pageRank.getCentrality( graph.getNode( "a" ) ), 0.00001 );
+        assertEquals( leaf, pageRank.getCentrality( graph.getNode( "d" ) ), 0.00001 );
+        assertEquals( leaf * ( 1 + 3 * 0.85 ),
+            pageRank.getCentrality( graph.getNode( "b" ) ), 0.00001 );
+    }
+
+    @Test
+    public void canWriteTheCentralitiesAsProperties()
+    {
+        graph.makeEdgeChain( "a,b,c,d,e" );
+        SparsePageRank pageRank = new SparsePageRank( Direction.BOTH, null,
+            graph.getAllNodes(), graph.getAllEdges(), 0.85, 0.0001 );
+        pageRank.writeCentralities( "rank", 2 );
+        for ( Node node : graph.getAllNodes() )
+        {
+            assertEquals( pageRank.getCentrality( node ), node.getProperty( "rank" ) );
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.neo4j.graphalgo.GraphAlgoFactory;
+import org.neo4j.graphalgo.PathFinder;
+import org.neo4j.graphalgo.impl.path.ParallelShortestPath;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipExpander;
+import org.neo4j.helpers.collection.IterableWrapper;
+import org.neo4j.kernel.Traversal;
+
+/**
+ * Runs the {@link TestShortestPath} tests with {@link ParallelShortestPath},
+ * with both sides expanded by the calling thread since the graphs aren't
+ * committed.
+ */
+public class TestParallelShortestPath extends TestShortestPath
+{
+    private static final ExecutorService CALLING_THREAD = new AbstractExecutorService()
+    {
+        public void execute( Runnable command )
+        {
+            command.run();
+        }
+
+        public void shutdown()
+        {
+        }
+
+        public List<Runnable> shutdownNow()
+        {
+            return Collections.emptyList();
+        }
+
+        public boolean isShutdown()
+        {
+            return false;
+        }
+
+        public boolean isTerminated()
+        {
+            return false;
+        }
+
+        public boolean awaitTermination( long timeout, TimeUnit unit )
+        {
+            return true;
+        }
+    };
+
+    @Override
+    protected PathFinder<Path> instantiatePathFinder( RelationshipExpander expander, int maxDepth )
+    {
+        return new ParallelShortestPath( maxDepth, expander, Integer.MAX_VALUE, CALLING_THREAD );
+    }
+
+    @Test
+    public void doesntExpandAHubWhenTheOtherSideIsCheaper()
+    {
+        // Layout:
+        //
+        // (s)--(h)--(m)--(t)
+        //      /|\
+        //    500 leaves
+        graph.makeEdgeChain( "s,h,m,t" );
+        for ( int i = 0; i < 500; i++ )
+        {
+            graph.makeEdge( "h", "leaf" + i );
+        }
+
+        CountingExpander expander = new CountingExpander();
+        assertPaths( instantiatePathFinder( expander, 10 ).findAllPaths(
+                graph.getNode( "s" ), graph.getNode( "t" ) ), "s,h,m,t" );
+        assertTrue( "expanded " + expander.count[0] + " relationships",
+                expander.count[0] < 50 );
+    }
+
+    @Test
+    public void findsTheSamePathsAsShortestPathWithAnotherThread()
+    {
+        Random random = new Random( 11 );
+        int nodeCount = 80;
+        for ( int i = 0; i < nodeCount * 2; i++ )
+        {
+            graph.makeEdge( "n" + random.nextInt( nodeCount ), "n" + random.nextInt( nodeCount ) );
+        }
+        // The other thread only sees committed data
+        restartTx();
+
+        RelationshipExpander expander = Traversal.expanderForAllTypes();
+        PathFinder<Path> expected = GraphAlgoFactory.shortestPath( expander, 10 );
+        PathFinder<Path> parallel = GraphAlgoFactory.parallelShortestPath( expander, 10 );
+        for ( int i = 0; i < 30; i++ )
+        {
+            Node start = graph.getNode( "n" + random.nextInt( nodeCount ) );
+            Node end = graph.getNode( "n" + random.nextInt( nodeCount ) );
+            if ( start == null || end == null )
+            {
+                continue;
+            }
+            assertEquals( pathDefs( expected.findAllPaths( start, end ) ),
+                    pathDefs( parallel.findAllPaths( start, end ) ) );
+        }
+    }
+
+    private List<String> pathDefs( Iterable<Path> paths )
+    {
+        List<String> result = new ArrayList<String>();
+        for ( Path path : paths )
+        {
+            result.add( getPathDef( path ) );
+        }
+        Collections.sort( result );
+        return result;
+    }
+
+    private static class CountingExpander implements RelationshipExpander
+    {
+        private final RelationshipExpander expander;
+        private final int[] count;
+
+        CountingExpander()
+        {
+            this( Traversal.expanderForAllTypes(), new int[1] );
+        }
+
+        private CountingExpander( RelationshipExpander expander, int[] count )
+        {
+            this.expander = expander;
+            this.count = count;
+        }
+
+        public Iterable<Relationship> expand( Node node )
+        {
+            return new IterableWrapper<Relationship, Relationship>( expander.expand( node ) )
+            {
+                @Override
+                protected Relationship underlyingObjectToObject( Relationship rel )
+                {
+                    count[0]++;
+                    return rel;
+                }
+            };
+        }
+
+        public RelationshipExpander reversed()
+        {
+            return new CountingExpander( expander.reversed(), count );
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.neo4j.graphalgo.CommonEvaluators;
+import org.neo4j.graphalgo.CostEvaluator;
+import org.neo4j.graphalgo.GraphAlgoFactory;
+import org.neo4j.graphalgo.PathFinder;
+import org.neo4j.graphalgo.WeightedPath;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.kernel.Traversal;
+
+import common.Neo4jAlgoTestCase;
+
+public class TestPrimitiveDijkstra extends Neo4jAlgoTestCase
+{
+    private static final CostEvaluator<Double> LENGTH =
+            CommonEvaluators.doubleCostEvaluator( "length" );
+
+    @Test
+    public void canGetAllCheapestPaths()
+    {
+        graph.makeEdge( "start", "a", "length", 1d );
+        graph.makeEdge( "a", "x", "length", 9d );
+        graph.makeEdge( "a", "b", "length", 1d );
+        graph.makeEdge( "b", "x", "length", 7d );
+        graph.makeEdge( "b", "c", "length", 1d );
+        graph.makeEdge( "c", "x", "length", 5d );
+        Relationship shortCToX = graph.makeEdge( "c", "x", "length", 3d );
+        graph.makeEdge( "c", "d", "length", 1d );
+        graph.makeEdge( "d", "x", "length", 3d );
+        graph.makeEdge( "d", "e", "length", 1d );
+        graph.makeEdge( "e", "x", "length", 1d );
+        graph.makeEdge( "e", "f", "length", 2d );
+        graph.makeEdge( "x", "y", "length", 2d );
+
+        PathFinder<WeightedPath> finder = GraphAlgoFactory.primitiveDijkstra(
+                Traversal.expanderForTypes( MyRelTypes.R1, Direction.OUTGOING ), "length" );
+        Node start = graph.getNode( "start" );
+        Node x = graph.getNode( "x" );
+        assertPaths( finder.findAllPaths( start, x ), "start,a,b,c,x", "start,a,b,c,d,e,x" );
+        for ( WeightedPath path : finder.findAllPaths( start, x ) )
+        {
+            assertEquals( 6d, path.weight(), 0 );
+            if ( getPathDef( path ).equals( "start,a,b,c,x" ) )
+            {
+                assertEquals( shortCToX, path.lastRelationship() );
+            }
+        }
+        assertEquals( 6d, finder.findSinglePath( start, x ).weight(), 0 );
+    }
+
+    @Test
+    public void canGetPathsOverParallelRelationships()
+    {
+        Node nodeA = graph.makeNode( "A" );
+        Node nodeB = graph.makeNode( "B" );
+        Node nodeC = graph.makeNode( "C" );
+        Set<Relationship> expectedFirsts = new HashSet<Relationship>();
+        expectedFirsts.add( graph.makeEdge( "A", "B", "length", 1d ) );
+        expectedFirsts.add( graph.makeEdge( "A", "B", "length", 1d ) );
+        graph.makeEdge( "B", "C", "length", 2d );
+        graph.makeEdge( "A", "C", "length", 5d );
+
+        PathFinder<WeightedPath> finder = GraphAlgoFactory.primitiveDijkstra(
+                Traversal.expanderForAllTypes(), LENGTH );
+        Iterator<WeightedPath> paths = finder.findAllPaths( nodeA, nodeC ).iterator();
+        for ( int i = 0; i < 2; i++ )
+        {
+            assertTrue( paths.hasNext() );
+            WeightedPath path = paths.next();
+            assertPath( path, nodeA, nodeB, nodeC );
+            assertTrue( expectedFirsts.remove( path.relationships().iterator().next() ) );
+        }
+        assertFalse( paths.hasNext() );
+    }
+
+    @Test
+    public void startAndEndCanBeTheSameNode()
+    {
+        Node nodeA = graph.makeNode( "A" );
+        graph.makeEdge( "A", "B", "length", 1d );
+
+        WeightedPath path = GraphAlgoFactory.primitiveDijkstra(
+                Traversal.expanderForAllTypes(), LENGTH ).findSinglePath( nodeA, nodeA );
+        assertPath( path, nodeA );
+        assertEquals( 0d, path.weight(), 0 );
+    }
+
+    @Test
+    public void noPathsBetweenUnconnectedNodes()
+    {
+        graph.makeEdge( "A", "B", "length", 1d );
+        graph.makeEdge( "C", "D", "length", 1d );
+
+        PathFinder<WeightedPath> finder = GraphAlgoFactory.primitiveDijkstra(
+                Traversal.expanderForAllTypes(), LENGTH );
+        assertNull( finder.findSinglePath( graph.getNode( "A" ), graph.getNode( "D" ) ) );
+        assertFalse( finder.findAllPaths( graph.getNode( "A" ), graph.getNode( "D" ) ).iterator().hasNext() );
+        PathFinder<WeightedPath> astar = GraphAlgoFactory.primitiveAStar(
+                Traversal.expanderForAllTypes(), LENGTH, TestAStar.ESTIMATE_EVALUATOR );
+        graph.getNode( "A" ).setProperty( "x", 0d );
+        graph.getNode( "A" ).setProperty( "y", 0d );
+        graph.getNode( "B" ).setProperty( "x", 1d );
+        graph.getNode( "B" ).setProperty( "y", 0d );
+        graph.getNode( "D" ).setProperty( "x", 5d );
+        graph.getNode( "D" ).setProperty( "y", 0d );
+        assertNull( astar.findSinglePath( graph.getNode( "A" ), graph.getNode( "D" ) ) );
+    }
+
+    @Test
+    public void sameCheapestPathsAsTheObjectBasedDijkstra()
+    {
+        Random random = new Random( 7 );
+        int nodeCount = 60;
+        for ( int i = 0; i < nodeCount; i++ )
+        {
+            graph.makeNode( "n" + i, "x", random.nextDouble() * 10, "y", random.nextDouble() * 10 );
+        }
+        for ( int i = 0; i < nodeCount * 3; i++ )
+        {
+            String from = "n" + random.nextInt( nodeCount );
+            String to = "n" + random.nextInt( nodeCount );
+            // never shorter than the straight line, so that the A* estimate holds
+            double length = TestAStar.ESTIMATE_EVALUATOR.getCost(
+                    graph.getNode( from ), graph.getNode( to ) ) * ( 1 + random.nextDouble() );
+            graph.makeEdge( from, to, "length", length );
+        }
+
+        PathFinder<WeightedPath> dijkstra = GraphAlgoFactory.dijkstra(
+                Traversal.expanderForAllTypes(), LENGTH );
+        PathFinder<WeightedPath> primitiveDijkstra = GraphAlgoFactory.primitiveDijkstra(
+                Traversal.expanderForAllTypes(), LENGTH );
+        PathFinder<WeightedPath> primitiveAStar = GraphAlgoFactory.primitiveAStar(
+                Traversal.expanderForAllTypes(), LENGTH, TestAStar.ESTIMATE_EVALUATOR );
+        for ( int i = 0; i < 20; i++ )
+        {
+            Node start = graph.getNode( "n" + random.nextInt( nodeCount ) );
+            Node end = graph.getNode( "n" + random.nextInt( nodeCount ) );
+            WeightedPath expected = dijkstra.findSinglePath( start, end );
+            if ( expected == null )
+            {
+                assertNull( primitiveDijkstra.findSinglePath( start, end ) );
+                assertNull( primitiveAStar.findSinglePath( start, end ) );
+                continue;
+            }
+            assertEquals( getPathDef( expected ),
+                    getPathDef( primitiveDijkstra.findSinglePath( start, end ) ) );
+            assertEquals( expected.weight(),
+                    primitiveDijkstra.findSinglePath( start, end ).weight(), 0.0000001 );
+            assertEquals( expected.weight(),
+                    primitiveAStar.findSinglePath( start, end ).weight(), 0.0000001 );
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.jmx;
+
+@ManagementInterface( name = Cache.NAME )
+@Description( "Information about the caching of nodes and relationships in Neo4j" )
+public interface Cache
+{
+    final String NAME = "Cache";
+
+    @Description( "The type of cache used by Neo4j" )
+    String getCacheType();
+
+    @Description( "The number of nodes currently in the node cache" )
+    int getNodeCacheSize();
+
+    @Description( "The number of relationships currently in the relationship cache" )
+    int getRelationshipCacheSize();
+
+    @Description( "The number of node lookups that found the node in the cache" )
+    long getNodeCacheHits();
+
+    @Description( "The number of node lookups that didn't find the node in the cache" )
+    long getNodeCacheMisses();
+
+    @Description( "The number of relationship lookups that found the relationship in the cache" )
+    long getRelationshipCacheHits();
+
+    @Description( "The number of relationship lookups that didn't find the relationship in the cache" )
+    long getRelationshipCacheMisses();
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.jmx;
+
+@ManagementInterface( name = GroupCommit.NAME )
+@Description( "Statistics about the forces of the Neo4j logs when group commit is enabled, "
+              + "covering the logical log of every data source and the transaction manager log" )
+public interface GroupCommit
+{
+    final String NAME = "Group commit";
+
+    @Description( "Whether group commit is enabled for the Neo4j logs" )
+    boolean isEnabled();
+
+    @Description( "The number of times the logs have been forced by group commits" )
+    long getNumberOfForces();
+
+    @Description( "The number of commits covered by the group commit forces" )
+    long getNumberOfCommits();
+
+    @Description( "The average number of commits covered by one force" )
+    double getAverageBatchSize();
+
+    @Description( "The largest number of commits covered by one force" )
+    long getLargestBatchSize();
+
+    @Description( "The number of forces (fsyncs) per second of all logs, measured over the last second" )
+    double getForcesPerSecond();
+
+    @Description( "The group commit statistics of each log" )
+    String[] getLogs();
+}
@@ -36,4 +36,10 @@ public interface Primitives
 
     @Description( "An estimation of the number of properties used in this Neo4j instance" )
     long getNumberOfPropertyIdsInUse();
+
+    @Description( "The number of node, relationship and property id requests made to the id generators" )
+    long getNumberOfIdRequests();
+
+    @Description( "The number of node, relationship and property id requests that had to wait for another thread" )
+    long getNumberOfContendedIdRequests();
 }
@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.jmx.impl;
+
+import javax.management.NotCompliantMBeanException;
+
+import org.neo4j.helpers.Service;
+import org.neo4j.jmx.Cache;
+import org.neo4j.kernel.impl.core.NodeManager;
+
+@Service.Implementation( ManagementBeanProvider.class )
+public final class CacheBean extends ManagementBeanProvider
+{
+    public CacheBean()
+    {
+        super( Cache.class );
+    }
+
+    @Override
+    protected Neo4jMBean createMBean( ManagementData management ) throws NotCompliantMBeanException
+    {
+        return new CacheImpl( management );
+    }
+
+    private static class CacheImpl extends Neo4jMBean implements Cache
+    {
+        CacheImpl( ManagementData management ) throws NotCompliantMBeanException
+        {
+            super( management );
+            this.nodeManager = management.getKernelData().getConfig().getGraphDbModule().getNodeManager();
+        }
+
+        private final NodeManager nodeManager;
+
+        public String getCacheType()
+        {
+            return nodeManager.getCacheType().name();
+        }
+
+        public int getNodeCacheSize()
+        {
+            return nodeManager.getNodeCacheSize();
+        }
+
+        public int getRelationshipCacheSize()
+        {
+            return nodeManager.getRelationshipCacheSize();
+        }
+
+        public long getNodeCacheHits()
+        {
+            return nodeManager.getNodeCacheHitCount();
+        }
+
+        public long getNodeCacheMisses()
+        {
+            return nodeManager.getNodeCacheMissCount();
+        }
+
+        public long getRelationshipCacheHits()
+        {
+            return nodeManager.getRelationshipCacheHitCount();
+        }
+
+        public long getRelationshipCacheMisses()
+        {
+            return nodeManager.getRelationshipCacheMissCount();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.jmx.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.NotCompliantMBeanException;
+
+import org.neo4j.helpers.Service;
+import org.neo4j.jmx.GroupCommit;
+import org.neo4j.kernel.KernelData;
+import org.neo4j.kernel.impl.transaction.TxModule;
+import org.neo4j.kernel.impl.transaction.xaframework.GroupCommitter;
+import org.neo4j.kernel.impl.transaction.xaframework.XaDataSource;
+
+@Service.Implementation( ManagementBeanProvider.class )
+public final class GroupCommitBean extends ManagementBeanProvider
+{
+    public GroupCommitBean()
+    {
+        super( GroupCommit.class );
+    }
+
+    @Override
+    protected Neo4jMBean createMBean( ManagementData management ) throws NotCompliantMBeanException
+    {
+        return new GroupCommitImpl( management );
+    }
+
+    private static class GroupCommitImpl extends Neo4jMBean implements GroupCommit
+    {
+        GroupCommitImpl( ManagementData management ) throws NotCompliantMBeanException
+        {
+            super( management );
+            this.kernel = management.getKernelData();
+        }
+
+        private final KernelData kernel;
+
+        /*
+         * Looked up on every read since data sources, like the lucene index
+         * one, may be registered after this bean has been created.
+         */
+        private List<GroupCommitter> groupCommitters()
+        {
+            List<GroupCommitter> result = new ArrayList<GroupCommitter>();
+            TxModule txModule = kernel.getConfig().getTxModule();
+            for ( XaDataSource dataSource : txModule.getXaDataSourceManager().getAllRegisteredDataSources() )
+            {
+                GroupCommitter groupCommitter;
+                try
+                {
+                    groupCommitter = dataSource.getXaContainer().getLogicalLog().getGroupCommitter();
+                }
+                catch ( UnsupportedOperationException e )
+                {
+                    // a data source without a logical log of its own
+                    continue;
+                }
+                if ( groupCommitter != null )
+                {
+                    result.add( groupCommitter );
+                }
+            }
+            if ( txModule.getGroupCommitter() != null )
+            {
+                result.add( txModule.getGroupCommitter() );
+            }
+            return result;
+        }
+
+        public boolean isEnabled()
+        {
+            return !groupCommitters().isEmpty();
+        }
+
+        public long getNumberOfForces()
+        {
+            long result = 0;
+            for ( GroupCommitter groupCommitter : groupCommitters() )
+            {
+                result += groupCommitter.getForceCount();
+            }
+            return result;
+        }
+
+        public long getNumberOfCommits()
+        {
+            long result = 0;
+            for ( GroupCommitter groupCommitter : groupCommitters() )
+            {
+                result += groupCommitter.getForcedCommitCount();
+            }
+            return result;
+        }
+
+        public double getAverageBatchSize()
+        {
+            long forces = 0;
+            long commits = 0;
+            for ( GroupCommitter groupCommitter : groupCommitters() )
+            {
+                forces += groupCommitter.getForceCount();
+                commits += groupCommitter.getForcedCommitCount();
+            }
+            return forces == 0 ? 0 : (double) commits / forces;
+        }
+
+        public long getLargestBatchSize()
+        {
+            long result = 0;
+            for ( GroupCommitter groupCommitter : groupCommitters() )
+            {
+                result = Math.max( result, groupCommitter.getLargestBatchSize() );
+            }
+            return result;
+        }
+
+        public double getForcesPerSecond()
+        {
+            double result = 0;
+            for ( GroupCommitter groupCommitter : groupCommitters() )
+            {
+                result += groupCommitter.getForcesPerSecond();
+            }
+            return result;
+        }
+
+        public String[] getLogs()
+        {
+            List<String> result = new ArrayList<String>();
+            for ( GroupCommitter groupCommitter : groupCommitters() )
+            {
+                result.add( groupCommitter.getName() + ": forces=" + groupCommitter.getForceCount() +
+                        ", commits=" + groupCommitter.getForcedCommitCount() + ", largestBatch=" +
+                        groupCommitter.getLargestBatchSize() + ", forcesPerSecond=" +
+                        groupCommitter.getForcesPerSecond() );
+            }
+            return result.toArray( new String[result.size()] );
+        }
+    }
+}
@@ -28,6 +28,7 @@ import org.neo4j.helpers.Service;
 import org.neo4j.jmx.Primitives;
 import org.neo4j.kernel.impl.core.NodeManager;
 import org.neo4j.kernel.impl.nioneo.store.PropertyStore;
+import org.neo4j.kernel.impl.nioneo.xa.NeoStoreXaDataSource;
 
 @Service.Implementation( ManagementBeanProvider.class )
 public final class PrimitivesBean extends ManagementBeanProvider
@@ -49,9 +50,11 @@ public final class PrimitivesBean extends ManagementBeanProvider
         {
             super( management );
             this.nodeManager = management.getKernelData().getConfig().getGraphDbModule().getNodeManager();
+            this.dataSource = KernelBean.getNeoDataSource( management.getKernelData() );
         }
 
         private final NodeManager nodeManager;
+        private final NeoStoreXaDataSource dataSource;
 
         public long getNumberOfNodeIdsInUse()
         {
@@ -72,5 +75,19 @@ public final class PrimitivesBean extends ManagementBeanProvider
         {
             return nodeManager.getNumberOfIdsInUse( RelationshipType.class );
         }
+
+        public long getNumberOfIdRequests()
+        {
+            return dataSource.getIdRequestCount( Node.class )
+                   + dataSource.getIdRequestCount( Relationship.class )
+                   + dataSource.getIdRequestCount( PropertyStore.class );
+        }
+
+        public long getNumberOfContendedIdRequests()
+        {
+            return dataSource.getContendedIdRequestCount( Node.class )
+                   + dataSource.getContendedIdRequestCount( Relationship.class )
+                   + dataSource.getContendedIdRequestCount( PropertyStore.class );
+        }
     }
 }
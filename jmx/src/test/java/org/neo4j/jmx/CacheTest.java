@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.jmx;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.AbstractGraphDatabase;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+
+public class CacheTest
+{
+    private static AbstractGraphDatabase graphdb;
+
+    @BeforeClass
+    public static void startDb()
+    {
+        graphdb = new EmbeddedGraphDatabase( "target" + File.separator + "var" + File.separator
+                                             + CacheTest.class.getSimpleName() );
+    }
+
+    @AfterClass
+    public static void stopDb()
+    {
+        if ( graphdb != null ) graphdb.shutdown();
+        graphdb = null;
+    }
+
+    @Test
+    public void nodeLookupsAreCounted() throws Exception
+    {
+        Cache cache = graphdb.getManagementBean( Cache.class );
+        Node node;
+        Transaction tx = graphdb.beginTx();
+        try
+        {
+            node = graphdb.createNode();
+            tx.success();
+        }
+        finally
+        {
+            tx.finish();
+        }
+        long hits = cache.getNodeCacheHits();
+        long misses = cache.getNodeCacheMisses();
+        graphdb.getNodeById( node.getId() );
+        graphdb.getConfig().getGraphDbModule().getNodeManager().clearCache();
+        graphdb.getNodeById( node.getId() );
+        assertTrue( cache.getNodeCacheHits() > hits );
+        assertTrue( cache.getNodeCacheMisses() > misses );
+        assertTrue( cache.getNodeCacheSize() > 0 );
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.jmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.helpers.collection.MapUtil.stringMap;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.AbstractGraphDatabase;
+import org.neo4j.kernel.Config;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+
+public class GroupCommitTest
+{
+    private static AbstractGraphDatabase graphdb;
+
+    @BeforeClass
+    public static void startDb()
+    {
+        graphdb = new EmbeddedGraphDatabase( "target" + File.separator + "var" + File.separator
+                                             + GroupCommitTest.class.getSimpleName(),
+                stringMap( Config.GROUP_COMMIT, "true" ) );
+    }
+
+    @AfterClass
+    public static void stopDb()
+    {
+        if ( graphdb != null ) graphdb.shutdown();
+        graphdb = null;
+    }
+
+    @Test
+    public void forcesOfEveryLogAreCounted() throws Exception
+    {
+        GroupCommit groupCommit = graphdb.getManagementBean( GroupCommit.class );
+        assertTrue( groupCommit.isEnabled() );
+        long forces = groupCommit.getNumberOfForces();
+        Transaction tx = graphdb.beginTx();
+        try
+        {
+            graphdb.createNode();
+            tx.success();
+        }
+        finally
+        {
+            tx.finish();
+        }
+        assertTrue( groupCommit.getNumberOfForces() > forces );
+        assertTrue( groupCommit.getNumberOfCommits() >= groupCommit.getNumberOfForces() );
+        // the logical log of the store and the transaction manager log
+        String[] logs = groupCommit.getLogs();
+        assertEquals( Arrays.toString( logs ), 2, logs.length );
+    }
+}
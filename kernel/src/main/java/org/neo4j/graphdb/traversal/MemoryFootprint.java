@@ -0,0 +1,35 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphdb.traversal;
+
+/**
+ * Something which can tell approximately how much heap memory it occupies.
+ * The {@link Traverser}s returned from
+ * {@link TraversalDescription#traverse(org.neo4j.graphdb.Node)} implement
+ * this, telling how much memory their latest iteration uses to keep track
+ * of what it has visited, as required by its {@link UniquenessFilter}.
+ */
+public interface MemoryFootprint
+{
+    /**
+     * @return the approximate number of bytes of heap memory occupied.
+     */
+    long getMemoryFootprint();
+}
@@ -19,10 +19,11 @@
  */
 package org.neo4j.kernel;
 
+import org.neo4j.graphdb.traversal.MemoryFootprint;
 import org.neo4j.graphdb.traversal.TraversalBranch;
 import org.neo4j.graphdb.traversal.UniquenessFilter;
 
-abstract class AbstractUniquenessFilter implements UniquenessFilter
+abstract class AbstractUniquenessFilter implements UniquenessFilter, MemoryFootprint
 {
     final PrimitiveTypeFetcher type;
 
@@ -35,4 +36,9 @@ abstract class AbstractUniquenessFilter implements UniquenessFilter
     {
         return type == PrimitiveTypeFetcher.RELATIONSHIP ? true : check( branch );
     }
+
+    public long getMemoryFootprint()
+    {
+        return 0;
+    }
 }
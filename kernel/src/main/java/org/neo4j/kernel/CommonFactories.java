@@ -56,6 +56,21 @@ public class CommonFactories
             }
         };
     }
+
+    /**
+     * Returns a factory for lock managers splitting their resource to lock
+     * map into <CODE>stripes</CODE> stripes, see {@link Config#LOCK_STRIPES}.
+     */
+    public static LockManagerFactory stripedLockManagerFactory( final int stripes )
+    {
+        return new LockManagerFactory()
+        {
+            public LockManager create( TxModule txModule )
+            {
+                return new LockManager( txModule.getTxManager(), stripes );
+            }
+        };
+    }
     
     public static class DefaultIdGeneratorFactory implements IdGeneratorFactory
     {
@@ -72,6 +72,50 @@ public class Config
      */
     @Documented
     public static final String KEEP_LOGICAL_LOGS = "keep_logical_logs";
+    /**
+     * Boolean (one of true,false) defining whether committing transactions
+     * should share forces of the logical logs and the transaction manager log.
+     * A transaction is still not reported as committed before its commit
+     * record has been forced, but its changes are applied while it waits for
+     * the force, so an operating system crash during that window could leave
+     * changes in the store which aren't in the log. Defaults to false.
+     */
+    @Documented
+    public static final String GROUP_COMMIT = "group_commit";
+    /**
+     * The maximum time in milliseconds a committing transaction will wait for
+     * more transactions to join its group commit before forcing the log,
+     * defaults to 0 (batches only form from transactions that arrive while
+     * another force is in progress).
+     */
+    @Documented
+    public static final String GROUP_COMMIT_MAX_WAIT = "group_commit_max_wait";
+    /**
+     * The number of commits a group commit will wait for before forcing the
+     * log without waiting the full {@link #GROUP_COMMIT_MAX_WAIT}, defaults
+     * to 64.
+     */
+    @Documented
+    public static final String GROUP_COMMIT_MAX_BATCH_SIZE = "group_commit_max_batch_size";
+    /**
+     * Boolean (one of true,false) defining whether a logical log that has
+     * reached its target size should be rotated by a background thread. The
+     * store flush and the copying of the active transactions to the next log
+     * are then done by that thread while transactions keep committing, only
+     * switching to the prepared log makes the committers wait. Defaults to
+     * false, the log is then rotated by the committing transaction that
+     * found it full.
+     */
+    @Documented
+    public static final String BACKGROUND_LOG_ROTATION = "background_log_rotation";
+    /**
+     * The number of stripes the lock manager splits its resource to lock map
+     * into, each guarded by its own monitor, so that concurrent transactions
+     * locking different entities don't wait for each other. Defaults to
+     * <CODE>1</CODE>, a single map.
+     */
+    @Documented
+    public static final String LOCK_STRIPES = "lock_stripes";
     /** Enable a remote shell server which shell clients can log in to */
     @Documented
     public static final String ENABLE_REMOTE_SHELL = "enable_remote_shell";
@@ -94,6 +138,16 @@ public class Config
      */
     @Documented
     public static final String REBUILD_IDGENERATORS_FAST = "rebuild_idgenerators_fast";
+    /**
+     * The maximum number of node, relationship and property ids a
+     * transaction leases from the id generators in one go, so that
+     * concurrent transactions creating many entities don't contend on the id
+     * generators for every id. Ids not used are given back when the
+     * transaction completes. <CODE>1</CODE> disables leasing, defaults to
+     * <CODE>64</CODE>.
+     */
+    @Documented
+    public static final String ID_LEASE_SIZE = "id_lease_size";
     /** The size to allocate for memory mapping the node store */
     @Documented
     public static final String NODE_STORE_MMAP_SIZE = "neostore.nodestore.db.mapped_memory";
@@ -129,10 +183,38 @@ public class Config
     public static final String NEO_STORE = "neo_store";
     /**
      * The type of cache to use for nodes and relationships, one of [weak, soft,
-     * none]
+     * strong, clock, offheap, none]
      */
     @Documented
     public static final String CACHE_TYPE = "cache_type";
+    /**
+     * The amount of off-heap memory used by the <CODE>offheap</CODE> cache
+     * type, shared equally between nodes and relationships, for example
+     * <CODE>512M</CODE>. Default is <CODE>64M</CODE>
+     */
+    @Documented
+    public static final String OFF_HEAP_CACHE_SIZE = "off_heap_cache_size";
+    /**
+     * The number of times relationships of certain types can be asked for on
+     * a node which has more relationships than fit in one
+     * <CODE>relationship_grab_size</CODE> batch before all of its
+     * relationships are loaded into the cache. Until then such requests read
+     * the rest of the relationship chain from the store and only keep the
+     * relationships asked for. <CODE>0</CODE> always loads all
+     * relationships, default is <CODE>10</CODE>.
+     */
+    @Documented
+    public static final String FILTERED_RELATIONSHIP_LOADS = "filtered_relationship_loads";
+    /**
+     * The number of threads reading nodes and their first batch of
+     * relationships into the cache ahead of a traversal, the nodes being
+     * the other nodes of the relationships a traversal is about to expand.
+     * Helps traversals over a cold cache when the store files don't fit in
+     * memory mapped windows or are on slow disks. <CODE>0</CODE>, the
+     * default, disables prefetching.
+     */
+    @Documented
+    public static final String RELATIONSHIP_PREFETCH_THREADS = "relationship_prefetch_threads";
     /**
      * The name of the Transaction Manager service to use as defined in the TM
      * service provider constructor, defaults to native.
@@ -226,7 +308,8 @@ public class Config
         this.txModule = txModule;
         this.lockManager = lockManager;
         this.lockReleaser = lockReleaser;
-        this.idGeneratorModule = new IdGeneratorModule( new IdGenerator() );
+        this.idGeneratorModule = new IdGeneratorModule( new IdGenerator(
+                txModule.getTxManager(), getIdLeaseSize( params ) ) );
         this.readOnly = Boolean.parseBoolean( (String) params.get( READ_ONLY ) );
         this.backupSlave = Boolean.parseBoolean( (String) params.get( BACKUP_SLAVE ) );
         this.syncHookFactory = txSyncHookFactory;
@@ -406,6 +489,12 @@ public class Config
         return result;
     }
 
+    public static int getIdLeaseSize( Map<?, ?> config )
+    {
+        return Integer.parseInt( (String) getFromConfig( config, ID_LEASE_SIZE,
+                "64" ) );
+    }
+
     public static Object getFromConfig( Map<?, ?> config, Object key,
             Object defaultValue )
     {
@@ -77,7 +77,7 @@ public final class EmbeddedGraphDatabase extends AbstractGraphDatabase
     public EmbeddedGraphDatabase( String storeDir, Map<String,String> params )
     {
         this.graphDbImpl = new EmbeddedGraphDbImpl( storeDir, null, params, this,
-                CommonFactories.defaultLockManagerFactory(),
+                lockManagerFactory( params ),
                 CommonFactories.defaultIdGeneratorFactory(),
                 CommonFactories.defaultRelationshipTypeCreator(),
                 CommonFactories.defaultTxIdGeneratorFactory(),
@@ -86,6 +86,17 @@ public final class EmbeddedGraphDatabase extends AbstractGraphDatabase
                 CommonFactories.defaultFileSystemAbstraction() );
     }
 
+    private static LockManagerFactory lockManagerFactory( Map<String,String> params )
+    {
+        String stripes = params.get( Config.LOCK_STRIPES );
+        if ( stripes != null )
+        {
+            return CommonFactories.stripedLockManagerFactory(
+                    Integer.parseInt( stripes ) );
+        }
+        return CommonFactories.defaultLockManagerFactory();
+    }
+
     /**
      * A non-standard convenience method that loads a standard property file and
      * converts it into a generic <Code>Map<String,String></CODE>. Will most
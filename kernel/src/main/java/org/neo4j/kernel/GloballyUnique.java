@@ -19,15 +19,22 @@
  */
 package org.neo4j.kernel;
 
-import java.util.HashSet;
-import java.util.Set;
-
 import org.neo4j.graphdb.traversal.TraversalBranch;
+import org.neo4j.kernel.impl.util.LongBitmap;
+import org.neo4j.kernel.impl.util.LongHashSet;
+import org.neo4j.kernel.impl.util.PrimitiveLongSet;
 
 class GloballyUnique extends AbstractUniquenessFilter
 {
-    private final Set<Long> visited = new HashSet<Long>();
-    
+    private static final int FIRST_DENSITY_CHECK = 1024;
+
+    // visited ids are kept in a hash set until they turn out to be dense
+    // enough for a bitmap to take up less memory
+    private PrimitiveLongSet visited = new LongHashSet();
+    private long lowest = Long.MAX_VALUE;
+    private long highest = Long.MIN_VALUE;
+    private int nextDensityCheck = FIRST_DENSITY_CHECK;
+
     GloballyUnique( PrimitiveTypeFetcher type )
     {
         super( type );
@@ -35,6 +42,40 @@ class GloballyUnique extends AbstractUniquenessFilter
 
     public boolean check( TraversalBranch branch )
     {
-        return visited.add( type.getId( branch ) );
+        long id = type.getId( branch );
+        if ( !visited.add( id ) )
+        {
+            return false;
+        }
+        lowest = Math.min( lowest, id );
+        highest = Math.max( highest, id );
+        if ( visited.size() >= nextDensityCheck )
+        {
+            checkDensity();
+        }
+        return true;
+    }
+
+    private void checkDensity()
+    {
+        nextDensityCheck = nextDensityCheck < Integer.MAX_VALUE / 2 ?
+                nextDensityCheck * 2 : Integer.MAX_VALUE;
+        if ( lowest >= 0 && LongBitmap.estimateFootprint( lowest, highest ) <
+                visited.getMemoryFootprint() )
+        {
+            PrimitiveLongSet bitmap = new LongBitmap();
+            for ( long id : ((LongHashSet) visited).toArray() )
+            {
+                bitmap.add( id );
+            }
+            visited = bitmap;
+            nextDensityCheck = Integer.MAX_VALUE;
+        }
+    }
+
+    @Override
+    public long getMemoryFootprint()
+    {
+        return visited.getMemoryFootprint();
     }
 }
@@ -20,31 +20,49 @@
 package org.neo4j.kernel;
 
 import org.neo4j.graphdb.traversal.TraversalBranch;
-import org.neo4j.kernel.impl.cache.LruCache;
+import org.neo4j.kernel.impl.util.LongHashSet;
 
 class RecentlyUnique extends AbstractUniquenessFilter
 {
-    private static final Object PLACE_HOLDER = new Object();
     private static final int DEFAULT_RECENT_SIZE = 10000; 
     
-    private final LruCache<Long, Object> recentlyVisited;
+    // the most recently visited ids, oldest first starting at next
+    private final long[] recent;
+    private final LongHashSet recentlyVisited;
+    private int next;
     
     RecentlyUnique( PrimitiveTypeFetcher type, Object parameter )
     {
         super( type );
         parameter = parameter != null ? parameter : DEFAULT_RECENT_SIZE;
-        recentlyVisited = new LruCache<Long, Object>( "Recently visited",
-                ((Number) parameter).intValue(), null );
+        int size = ((Number) parameter).intValue();
+        if ( size < 1 )
+        {
+            throw new IllegalArgumentException( "Illegal recent size " + size );
+        }
+        recent = new long[size];
+        recentlyVisited = new LongHashSet( size );
     }
 
     public boolean check( TraversalBranch branch )
     {
         long id = type.getId( branch );
-        boolean add = recentlyVisited.get( id ) == null;
-        if ( add )
+        if ( !recentlyVisited.add( id ) )
+        {
+            return false;
+        }
+        if ( recentlyVisited.size() > recent.length )
         {
-            recentlyVisited.put( id, PLACE_HOLDER );
+            recentlyVisited.remove( recent[next] );
         }
-        return add;
+        recent[next] = id;
+        next = ( next + 1 ) % recent.length;
+        return true;
+    }
+
+    @Override
+    public long getMemoryFootprint()
+    {
+        return 16 + recent.length * 8L + recentlyVisited.getMemoryFootprint();
     }
 }
@@ -20,6 +20,7 @@
 package org.neo4j.kernel;
 
 import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
 
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.Expander;
@@ -36,6 +37,7 @@ import org.neo4j.graphdb.traversal.TraversalBranch;
 import org.neo4j.graphdb.traversal.TraversalDescription;
 import org.neo4j.helpers.Predicate;
 import org.neo4j.kernel.impl.traversal.FinalTraversalBranch;
+import org.neo4j.kernel.impl.traversal.ParallelBreadthFirstOrdering;
 import org.neo4j.kernel.impl.traversal.TraversalDescriptionImpl;
 
 /**
@@ -348,6 +350,40 @@ public class Traversal
         return CommonBranchOrdering.POSTORDER_BREADTH_FIRST;
     }
 
+    /**
+     * Returns a breadth first ordering policy which expands all positions on
+     * the current depth in parallel, using a shared pool with one thread per
+     * processor. Positions on the same depth are returned as soon as they
+     * have been expanded, in no particular order. The evaluators and the
+     * expander of a traversal with this ordering must be thread safe and
+     * since the expansion is done by other threads than the one iterating
+     * over the traversal it only sees committed data.
+     *
+     * @return a {@link BranchOrderingPolicy} for a parallel breadth first
+     *         selector.
+     */
+    public static BranchOrderingPolicy parallelBreadthFirst()
+    {
+        return new ParallelBreadthFirstOrdering();
+    }
+
+    /**
+     * Returns a breadth first ordering policy like
+     * {@link #parallelBreadthFirst()}, which expands the positions using
+     * <code>executor</code>.
+     *
+     * @param executor the executor to expand positions with.
+     * @param parallelism the number of threads of <code>executor</code> which
+     *            can be expected to expand the positions of a depth.
+     * @return a {@link BranchOrderingPolicy} for a parallel breadth first
+     *         selector.
+     */
+    public static BranchOrderingPolicy parallelBreadthFirst( ExecutorService executor,
+            int parallelism )
+    {
+        return new ParallelBreadthFirstOrdering( executor, parallelism );
+    }
+
     /**
      * Provides hooks to help build a string representation of a {@link Path}.
      * @param <T> the type of {@link Path}.
@@ -122,7 +122,35 @@ public interface BatchInserter
      */
     public long createRelationship( long node1, long node2, RelationshipType
         type, Map<String,Object> properties );
-    
+
+    /**
+     * Creates a node for each property map in <code>nodes</code>. The nodes
+     * get consecutive ids in iteration order. Properties are encoded by
+     * several threads and the stores are written sequentially, which is a lot
+     * faster than invoking {@link #createNode(Map)} for each node.
+     *
+     * @param nodes property maps, <code>null</code> elements creates nodes
+     * without properties.
+     * @return the id of the first created node or <code>-1</code> if
+     * <code>nodes</code> is empty.
+     */
+    public long importNodes( Iterable<Map<String,Object>> nodes );
+
+    /**
+     * Creates the relationships in <code>relationships</code>. The
+     * relationships get consecutive ids in iteration order. Instead of
+     * updating both nodes for every relationship as
+     * {@link #createRelationship(long, long, RelationshipType, Map)} does, the
+     * relationships are grouped per node in large batches and the
+     * relationship chains are linked in one pass per batch, while properties
+     * are encoded by several threads.
+     *
+     * @param relationships the relationships to create, the nodes must exist.
+     * @return the id of the first created relationship or <code>-1</code> if
+     * <code>relationships</code> is empty.
+     */
+    public long importRelationships( Iterable<BatchRelationship> relationships );
+
     /**
      * Gets a relationship by id.
      * 
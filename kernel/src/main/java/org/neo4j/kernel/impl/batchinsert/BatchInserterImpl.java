@@ -178,11 +178,7 @@ public class BatchInserterImpl implements BatchInserter
     {
         NodeRecord firstNode = getNodeRecord( node1 );
         NodeRecord secondNode = getNodeRecord( node2 );
-        int typeId = typeHolder.getTypeId( type.name() );
-        if ( typeId == -1 )
-        {
-            typeId = createNewRelationshipType( type.name() );
-        }
+        int typeId = getOrCreateRelationshipTypeId( type.name() );
         long id = getRelationshipStore().nextId();
         RelationshipRecord record = new RelationshipRecord( id, node1, node2, typeId );
         record.setInUse( true );
@@ -195,6 +191,31 @@ public class BatchInserterImpl implements BatchInserter
         return id;
     }
 
+    public long importNodes( Iterable<Map<String,Object>> nodes )
+    {
+        return newBulkImporter().importNodes( nodes );
+    }
+
+    public long importRelationships( Iterable<BatchRelationship> relationships )
+    {
+        try
+        {
+            return newBulkImporter().importRelationships( relationships );
+        }
+        finally
+        {
+            // nodes got their relationship chains changed under the hood
+            graphDbService.clearCaches();
+        }
+    }
+
+    private BulkImporter newBulkImporter()
+    {
+        return new BulkImporter( this, getNodeStore(), getRelationshipStore(),
+            getPropertyStore(), Runtime.getRuntime().availableProcessors(),
+            BulkImporter.BATCH_SIZE );
+    }
+
     private void connectRelationship( NodeRecord firstNode,
             NodeRecord secondNode, RelationshipRecord rel )
     {
@@ -402,11 +423,7 @@ public class BatchInserterImpl implements BatchInserter
         PropertyRecord prevRecord = null;
         for ( Entry<String,Object> entry : properties.entrySet() )
         {
-            int keyId = indexHolder.getKeyId( entry.getKey() );
-            if ( keyId == -1 )
-            {
-                keyId = createNewPropertyIndex( entry.getKey() );
-            }
+            int keyId = getOrCreatePropertyKeyId( entry.getKey() );
             long propertyId = propStore.nextId();
             PropertyRecord propertyRecord = new PropertyRecord( propertyId );
             propertyRecord.setInUse( true );
@@ -468,6 +485,26 @@ public class BatchInserterImpl implements BatchInserter
         return properties;
     }
 
+    int getOrCreatePropertyKeyId( String key )
+    {
+        int keyId = indexHolder.getKeyId( key );
+        if ( keyId == -1 )
+        {
+            keyId = createNewPropertyIndex( key );
+        }
+        return keyId;
+    }
+
+    int getOrCreateRelationshipTypeId( String name )
+    {
+        int typeId = typeHolder.getTypeId( name );
+        if ( typeId == -1 )
+        {
+            typeId = createNewRelationshipType( name );
+        }
+        return typeId;
+    }
+
     private int createNewPropertyIndex( String stringKey )
     {
         PropertyIndexStore idxStore = getPropertyIndexStore();
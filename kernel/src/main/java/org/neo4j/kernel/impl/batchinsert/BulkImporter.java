@@ -0,0 +1,591 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.batchinsert;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.kernel.impl.nioneo.store.IdGeneratorImpl;
+import org.neo4j.kernel.impl.nioneo.store.InvalidRecordException;
+import org.neo4j.kernel.impl.nioneo.store.NodeRecord;
+import org.neo4j.kernel.impl.nioneo.store.NodeStore;
+import org.neo4j.kernel.impl.nioneo.store.PropertyRecord;
+import org.neo4j.kernel.impl.nioneo.store.PropertyStore;
+import org.neo4j.kernel.impl.nioneo.store.Record;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipRecord;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipStore;
+import org.neo4j.kernel.impl.nioneo.store.UnderlyingStorageException;
+
+/**
+ * Imports streams of nodes and relationships as a pipeline of batches. The
+ * calling thread reads a batch from the input, assigns ids and resolves
+ * property keys and relationship types while the previous batch is
+ * processed by a writer thread. The writer has the properties of the batch
+ * encoded by a pool of threads, meanwhile linking the relationship chains,
+ * and then writes the records in id order.
+ * <p>
+ * Relationship chains are linked by sorting the end points of a batch on
+ * node id. Each node in the batch then gets its new relationships linked in
+ * front of its existing chain, which means reading and writing each node
+ * once per batch, in node id order, and updating the previous first
+ * relationship of the node. Relationships are only written once, with all
+ * pointers set.
+ */
+class BulkImporter
+{
+    static final int BATCH_SIZE = 100000;
+
+    // a batch index is packed into the low bits of the node id when sorting
+    private static final int INDEX_BITS = 24;
+    private static final long INDEX_MASK = ( 1L << INDEX_BITS ) - 1;
+
+    private static final long NO_PROPERTY = Record.NO_NEXT_PROPERTY.intValue();
+    private static final long NO_NEXT_REL =
+        Record.NO_NEXT_RELATIONSHIP.intValue();
+    private static final long NO_PREV_REL =
+        Record.NO_PREV_RELATIONSHIP.intValue();
+
+    private final BatchInserterImpl inserter;
+    private final NodeStore nodeStore;
+    private final RelationshipStore relStore;
+    private final PropertyStore propStore;
+    private final int encoderCount;
+    private final int batchSize;
+
+    BulkImporter( BatchInserterImpl inserter, NodeStore nodeStore,
+        RelationshipStore relStore, PropertyStore propStore, int encoderCount,
+        int batchSize )
+    {
+        assert batchSize <= INDEX_MASK;
+        this.inserter = inserter;
+        this.nodeStore = nodeStore;
+        this.relStore = relStore;
+        this.propStore = propStore;
+        this.encoderCount = encoderCount;
+        this.batchSize = batchSize;
+    }
+
+    long importNodes( Iterable<Map<String,Object>> nodes )
+    {
+        final Pipeline pipeline = new Pipeline();
+        try
+        {
+            long firstId = -1;
+            Iterator<Map<String,Object>> iterator = nodes.iterator();
+            while ( iterator.hasNext() )
+            {
+                final NodeBatch batch = new NodeBatch( batchSize );
+                while ( batch.size < batchSize && iterator.hasNext() )
+                {
+                    batch.add( iterator.next() );
+                }
+                if ( firstId == -1 )
+                {
+                    firstId = batch.ids[0];
+                }
+                pipeline.submit( new Runnable()
+                {
+                    public void run()
+                    {
+                        writeNodes( batch, pipeline.encode( batch ) );
+                    }
+                } );
+            }
+            pipeline.finish();
+            return firstId;
+        }
+        finally
+        {
+            pipeline.shutdown();
+        }
+    }
+
+    long importRelationships( Iterable<BatchRelationship> relationships )
+    {
+        final Pipeline pipeline = new Pipeline();
+        try
+        {
+            long firstId = -1;
+            Iterator<BatchRelationship> iterator = relationships.iterator();
+            while ( iterator.hasNext() )
+            {
+                final RelationshipBatch batch = new RelationshipBatch( batchSize );
+                while ( batch.size < batchSize && iterator.hasNext() )
+                {
+                    batch.add( iterator.next() );
+                }
+                if ( firstId == -1 )
+                {
+                    firstId = batch.ids[0];
+                }
+                pipeline.submit( new Runnable()
+                {
+                    public void run()
+                    {
+                        List<Future<List<PropertyRecord>>> properties =
+                            pipeline.encodeAsync( batch );
+                        RelationshipRecord[] records = link( batch );
+                        writeRelationships( batch, records,
+                            pipeline.awaitAll( properties ) );
+                    }
+                } );
+            }
+            pipeline.finish();
+            return firstId;
+        }
+        finally
+        {
+            pipeline.shutdown();
+        }
+    }
+
+    private void writeNodes( NodeBatch batch, List<PropertyRecord> properties )
+    {
+        writeProperties( properties );
+        for ( int i = 0; i < batch.size; i++ )
+        {
+            NodeRecord record = new NodeRecord( batch.ids[i] );
+            record.setInUse( true );
+            record.setCreated();
+            record.setNextProp( batch.firstProperty[i] );
+            nodeStore.updateRecord( record );
+        }
+    }
+
+    private void writeRelationships( RelationshipBatch batch,
+        RelationshipRecord[] records, List<PropertyRecord> properties )
+    {
+        writeProperties( properties );
+        for ( int i = 0; i < batch.size; i++ )
+        {
+            records[i].setNextProp( batch.firstProperty[i] );
+            relStore.updateRecord( records[i] );
+        }
+    }
+
+    private void writeProperties( List<PropertyRecord> properties )
+    {
+        Collections.sort( properties, new Comparator<PropertyRecord>()
+        {
+            public int compare( PropertyRecord o1, PropertyRecord o2 )
+            {
+                long id1 = o1.getId();
+                long id2 = o2.getId();
+                return id1 < id2 ? -1 : ( id1 == id2 ? 0 : 1 );
+            }
+        } );
+        for ( PropertyRecord record : properties )
+        {
+            propStore.updateRecord( record );
+        }
+    }
+
+    /*
+     * Links the relationships of the batch into the chains of their nodes,
+     * writing the nodes and updating the relationships that were first in
+     * the chains before. The returned records are ready to be written.
+     */
+    private RelationshipRecord[] link( RelationshipBatch batch )
+    {
+        RelationshipRecord[] records = new RelationshipRecord[batch.size];
+        int endPointCount = 0;
+        long[] endPoints = new long[batch.size * 2];
+        for ( int i = 0; i < batch.size; i++ )
+        {
+            long startNode = batch.startNodes[i];
+            long endNode = batch.endNodes[i];
+            RelationshipRecord record = new RelationshipRecord( batch.ids[i],
+                startNode, endNode, batch.types[i] );
+            record.setInUse( true );
+            record.setCreated();
+            records[i] = record;
+            endPoints[endPointCount++] = ( startNode << INDEX_BITS ) | i;
+            if ( endNode != startNode )
+            {
+                endPoints[endPointCount++] = ( endNode << INDEX_BITS ) | i;
+            }
+        }
+        Arrays.sort( endPoints, 0, endPointCount );
+        int groupStart = 0;
+        while ( groupStart < endPointCount )
+        {
+            long nodeId = endPoints[groupStart] >>> INDEX_BITS;
+            int groupEnd = groupStart + 1;
+            while ( groupEnd < endPointCount
+                && ( endPoints[groupEnd] >>> INDEX_BITS ) == nodeId )
+            {
+                groupEnd++;
+            }
+            linkNode( nodeId, records, endPoints, groupStart, groupEnd );
+            groupStart = groupEnd;
+        }
+        return records;
+    }
+
+    /*
+     * The relationships of a node are in ascending id order in the group,
+     * the last one ends up first in the chain just as if they had been
+     * created one by one.
+     */
+    private void linkNode( long nodeId, RelationshipRecord[] records,
+        long[] endPoints, int groupStart, int groupEnd )
+    {
+        NodeRecord node = nodeStore.getRecord( nodeId );
+        long previousFirst = node.getNextRel();
+        long prev = NO_PREV_REL;
+        for ( int i = groupEnd - 1; i >= groupStart; i-- )
+        {
+            RelationshipRecord record =
+                records[(int) ( endPoints[i] & INDEX_MASK )];
+            long next = i > groupStart ? records[(int) ( endPoints[i - 1]
+                & INDEX_MASK )].getId() : previousFirst;
+            if ( record.getFirstNode() == nodeId )
+            {
+                record.setFirstPrevRel( prev );
+                record.setFirstNextRel( next );
+            }
+            if ( record.getSecondNode() == nodeId )
+            {
+                record.setSecondPrevRel( prev );
+                record.setSecondNextRel( next );
+            }
+            prev = record.getId();
+        }
+        if ( previousFirst != NO_NEXT_REL )
+        {
+            RelationshipRecord first = relStore.getRecord( previousFirst );
+            boolean changed = false;
+            if ( first.getFirstNode() == nodeId )
+            {
+                first.setFirstPrevRel( prev );
+                changed = true;
+            }
+            if ( first.getSecondNode() == nodeId )
+            {
+                first.setSecondPrevRel( prev );
+                changed = true;
+            }
+            if ( !changed )
+            {
+                throw new InvalidRecordException( node + " dont match " + first );
+            }
+            relStore.updateRecord( first );
+        }
+        node.setNextRel( records[(int) ( endPoints[groupEnd - 1]
+            & INDEX_MASK )].getId() );
+        nodeStore.updateRecord( node );
+    }
+
+    private static long nextId( long id )
+    {
+        return id == IdGeneratorImpl.INTEGER_MINUS_ONE ? id + 1 : id;
+    }
+
+    /*
+     * Entities read from the input, with ids assigned and properties ready
+     * to be encoded.
+     */
+    private abstract static class Batch
+    {
+        final long[] ids;
+        final int[][] propertyKeys;
+        final Object[][] propertyValues;
+        final long[] firstProperty;
+        int size;
+
+        Batch( int capacity )
+        {
+            ids = new long[capacity];
+            propertyKeys = new int[capacity][];
+            propertyValues = new Object[capacity][];
+            firstProperty = new long[capacity];
+        }
+
+        void addProperties( BatchInserterImpl inserter,
+            Map<String,Object> properties )
+        {
+            firstProperty[size] = NO_PROPERTY;
+            if ( properties == null || properties.isEmpty() )
+            {
+                return;
+            }
+            int[] keys = new int[properties.size()];
+            Object[] values = new Object[keys.length];
+            int i = 0;
+            for ( Map.Entry<String,Object> entry : properties.entrySet() )
+            {
+                keys[i] = inserter.getOrCreatePropertyKeyId( entry.getKey() );
+                values[i++] = entry.getValue();
+            }
+            propertyKeys[size] = keys;
+            propertyValues[size] = values;
+        }
+    }
+
+    private class NodeBatch extends Batch
+    {
+        NodeBatch( int capacity )
+        {
+            super( capacity );
+        }
+
+        void add( Map<String,Object> properties )
+        {
+            long id = nextId( nodeStore.getHighId() );
+            nodeStore.setHighId( id + 1 );
+            ids[size] = id;
+            addProperties( inserter, properties );
+            size++;
+        }
+    }
+
+    private class RelationshipBatch extends Batch
+    {
+        final long[] startNodes;
+        final long[] endNodes;
+        final int[] types;
+
+        RelationshipBatch( int capacity )
+        {
+            super( capacity );
+            startNodes = new long[capacity];
+            endNodes = new long[capacity];
+            types = new int[capacity];
+        }
+
+        void add( BatchRelationship relationship )
+        {
+            long startNode = relationship.getStartNode();
+            long endNode = relationship.getEndNode();
+            long highNodeId = nodeStore.getHighId();
+            if ( startNode < 0 || startNode >= highNodeId )
+            {
+                throw new NotFoundException( "id=" + startNode );
+            }
+            if ( endNode < 0 || endNode >= highNodeId )
+            {
+                throw new NotFoundException( "id=" + endNode );
+            }
+            long id = nextId( relStore.getHighId() );
+            relStore.setHighId( id + 1 );
+            ids[size] = id;
+            startNodes[size] = startNode;
+            endNodes[size] = endNode;
+            types[size] = inserter.getOrCreateRelationshipTypeId(
+                relationship.getType().name() );
+            addProperties( inserter, relationship.getProperties() );
+            size++;
+        }
+    }
+
+    /*
+     * The two stages that aren't run by the calling thread. A single writer
+     * processes one batch at a time while the calling thread prepares the
+     * next, and the encoders encode the properties of the batch being
+     * processed.
+     */
+    private class Pipeline
+    {
+        private final ExecutorService writer =
+            Executors.newSingleThreadExecutor( threads( "writer" ) );
+        private final ExecutorService encoders =
+            Executors.newFixedThreadPool( encoderCount, threads( "encoder" ) );
+        private Future<?> current;
+
+        void submit( Runnable batchWriter )
+        {
+            if ( current != null )
+            {
+                await( current );
+            }
+            current = writer.submit( batchWriter );
+        }
+
+        void finish()
+        {
+            if ( current != null )
+            {
+                await( current );
+                current = null;
+            }
+        }
+
+        /*
+         * Lets a batch being written finish, even if the import failed, since
+         * interrupting a thread doing I/O closes the store files
+         */
+        void shutdown()
+        {
+            writer.shutdown();
+            encoders.shutdown();
+            boolean interrupted = false;
+            while ( !writer.isTerminated() || !encoders.isTerminated() )
+            {
+                try
+                {
+                    writer.awaitTermination( 1, TimeUnit.SECONDS );
+                    encoders.awaitTermination( 1, TimeUnit.SECONDS );
+                }
+                catch ( InterruptedException e )
+                {
+                    interrupted = true;
+                }
+            }
+            if ( interrupted )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        List<PropertyRecord> encode( Batch batch )
+        {
+            return awaitAll( encodeAsync( batch ) );
+        }
+
+        /*
+         * Splits the batch between the encoders, property ids are handed out
+         * concurrently but only to this batch so they end up close together.
+         */
+        List<Future<List<PropertyRecord>>> encodeAsync( final Batch batch )
+        {
+            List<Future<List<PropertyRecord>>> parts =
+                new ArrayList<Future<List<PropertyRecord>>>();
+            int partSize = ( batch.size + encoderCount - 1 ) / encoderCount;
+            for ( int start = 0; start < batch.size; start += partSize )
+            {
+                final int from = start;
+                final int to = Math.min( start + partSize, batch.size );
+                parts.add( encoders.submit( new Callable<List<PropertyRecord>>()
+                {
+                    public List<PropertyRecord> call()
+                    {
+                        return encodeProperties( batch, from, to );
+                    }
+                } ) );
+            }
+            return parts;
+        }
+
+        List<PropertyRecord> awaitAll( List<Future<List<PropertyRecord>>> parts )
+        {
+            List<PropertyRecord> result = new ArrayList<PropertyRecord>();
+            for ( Future<List<PropertyRecord>> part : parts )
+            {
+                result.addAll( await( part ) );
+            }
+            return result;
+        }
+
+        <T> T await( Future<T> future )
+        {
+            try
+            {
+                return future.get();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new UnderlyingStorageException(
+                    "Interrupted while importing", e );
+            }
+            catch ( ExecutionException e )
+            {
+                Throwable cause = e.getCause();
+                if ( cause instanceof RuntimeException )
+                {
+                    throw (RuntimeException) cause;
+                }
+                if ( cause instanceof Error )
+                {
+                    throw (Error) cause;
+                }
+                throw new UnderlyingStorageException( cause );
+            }
+        }
+    }
+
+    /*
+     * Same chain as BatchInserterImpl.createPropertyChain builds
+     */
+    private List<PropertyRecord> encodeProperties( Batch batch, int from,
+        int to )
+    {
+        List<PropertyRecord> records = new ArrayList<PropertyRecord>();
+        for ( int i = from; i < to; i++ )
+        {
+            int[] keys = batch.propertyKeys[i];
+            if ( keys == null )
+            {
+                continue;
+            }
+            Object[] values = batch.propertyValues[i];
+            PropertyRecord prevRecord = null;
+            for ( int j = 0; j < keys.length; j++ )
+            {
+                long propertyId = propStore.nextId();
+                PropertyRecord propertyRecord = new PropertyRecord( propertyId );
+                propertyRecord.setInUse( true );
+                propertyRecord.setCreated();
+                propertyRecord.setKeyIndexId( keys[j] );
+                propStore.encodeValue( propertyRecord, values[j] );
+                if ( prevRecord != null )
+                {
+                    prevRecord.setPrevProp( propertyId );
+                    propertyRecord.setNextProp( prevRecord.getId() );
+                }
+                records.add( propertyRecord );
+                prevRecord = propertyRecord;
+            }
+            batch.firstProperty[i] = prevRecord.getId();
+            // the input may be large, don't hold on to what's encoded
+            batch.propertyValues[i] = null;
+        }
+        return records;
+    }
+
+    private static ThreadFactory threads( final String stage )
+    {
+        return new ThreadFactory()
+        {
+            private int count = 0;
+
+            public synchronized Thread newThread( Runnable runnable )
+            {
+                Thread thread = new Thread( runnable, "Neo4j batch import "
+                    + stage + " " + ( ++count ) );
+                thread.setDaemon( true );
+                return thread;
+            }
+        };
+    }
+}
@@ -97,4 +97,20 @@ public interface Cache<K,V>
     public void setAdaptiveStatus( boolean status );
     
     public void putAll( Map<K,V> map );
+
+    /**
+     * Returns the number of <CODE>get</CODE> invocations that found the
+     * requested element in this cache.
+     * 
+     * @return number of cache hits
+     */
+    public long getHitCount();
+
+    /**
+     * Returns the number of <CODE>get</CODE> invocations that did not find
+     * the requested element in this cache.
+     * 
+     * @return number of cache misses
+     */
+    public long getMissCount();
 }
@@ -0,0 +1,392 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrent cache using the CLOCK (second chance) replacement policy.
+ * 
+ * Unlike {@link LruCache} reads never take a lock: a <CODE>get</CODE> is a
+ * lookup in a {@link ConcurrentHashMap} followed by setting the
+ * <CODE>referenced</CODE> bit of the entry. When the number of cached
+ * elements exceeds <CODE>maxSize</CODE> the thread that caused the overflow
+ * sweeps the clock, giving referenced entries a second chance and removing
+ * the first unreferenced ones it finds. Only one thread sweeps at a time,
+ * other writers never wait for it, so the cache may temporarily hold a few
+ * more elements than <CODE>maxSize</CODE>.
+ * <p>
+ * If the cache is registered with an {@link AdaptiveCacheManager} it will
+ * ask the manager to adapt its size before evicting, just like
+ * {@link LruCache} does.
+ */
+public class ClockCache<K,E> implements Cache<K,E>
+{
+    private static final int STRIPES = 16;
+    private static final int MIN_STALE_BEFORE_PURGE = 1024;
+
+    private final String name;
+    private final AdaptiveCacheManager cacheManager;
+    private final ConcurrentHashMap<K,Entry<K,E>> cache;
+    private final ConcurrentLinkedQueue<Entry<K,E>> clock =
+        new ConcurrentLinkedQueue<Entry<K,E>>();
+    private final AtomicInteger size = new AtomicInteger();
+    // estimate of removed entries still sitting in the clock
+    private final AtomicInteger stale = new AtomicInteger();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final HitCounter counter = new HitCounter();
+    private volatile int maxSize;
+    private volatile boolean resizing = false;
+    private volatile boolean adaptive = false;
+
+    private static class Entry<K,E>
+    {
+        private final K key;
+        private final E element;
+        private volatile boolean referenced = false;
+        private volatile boolean removed = false;
+
+        Entry( K key, E element )
+        {
+            this.key = key;
+            this.element = element;
+        }
+    }
+
+    /**
+     * Creates a concurrent CLOCK cache. If <CODE>maxSize < 1</CODE> an
+     * IllegalArgumentException is thrown.
+     * 
+     * @param name
+     *            name of cache
+     * @param maxSize
+     *            maximum size of this cache
+     * @param cacheManager
+     *            adaptive cache manager or null if adaptive caching not needed
+     */
+    public ClockCache( String name, int maxSize,
+        AdaptiveCacheManager cacheManager )
+    {
+        if ( name == null || maxSize < 1 )
+        {
+            throw new IllegalArgumentException( "maxSize=" + maxSize
+                + ", name=" + name );
+        }
+        this.name = name;
+        this.maxSize = maxSize;
+        this.cacheManager = cacheManager;
+        this.cache = new ConcurrentHashMap<K,Entry<K,E>>( 500, 0.75f,
+            STRIPES );
+    }
+
+    public String getName()
+    {
+        return this.name;
+    }
+
+    public void put( K key, E element )
+    {
+        if ( key == null || element == null )
+        {
+            throw new IllegalArgumentException( "key=" + key + ", element="
+                + element );
+        }
+        Entry<K,E> entry = new Entry<K,E>( key, element );
+        Entry<K,E> previous = cache.put( key, entry );
+        if ( previous == null )
+        {
+            size.incrementAndGet();
+        }
+        else
+        {
+            markRemoved( previous );
+        }
+        clock.offer( entry );
+        if ( needsSweep() )
+        {
+            sweep();
+        }
+    }
+
+    /**
+     * Puts <CODE>element</CODE> in the cache unless there already is an
+     * element cached for <CODE>key</CODE>.
+     * 
+     * @param key
+     *            the key
+     * @param element
+     *            the element to cache
+     * @return the element already cached for <CODE>key</CODE> or
+     *         <CODE>null</CODE> if <CODE>element</CODE> was put in the cache
+     */
+    public E putIfAbsent( K key, E element )
+    {
+        if ( key == null || element == null )
+        {
+            throw new IllegalArgumentException( "key=" + key + ", element="
+                + element );
+        }
+        Entry<K,E> entry = new Entry<K,E>( key, element );
+        Entry<K,E> existing = cache.putIfAbsent( key, entry );
+        if ( existing != null )
+        {
+            existing.referenced = true;
+            return existing.element;
+        }
+        size.incrementAndGet();
+        clock.offer( entry );
+        if ( needsSweep() )
+        {
+            sweep();
+        }
+        return null;
+    }
+
+    public E remove( K key )
+    {
+        if ( key == null )
+        {
+            throw new IllegalArgumentException( "Null parameter" );
+        }
+        Entry<K,E> entry = cache.remove( key );
+        if ( entry == null )
+        {
+            return null;
+        }
+        size.decrementAndGet();
+        markRemoved( entry );
+        return entry.element;
+    }
+
+    public E get( K key )
+    {
+        if ( key == null )
+        {
+            throw new IllegalArgumentException();
+        }
+        Entry<K,E> entry = cache.get( key );
+        if ( entry == null )
+        {
+            return counter.count( null );
+        }
+        if ( !entry.referenced )
+        {
+            entry.referenced = true;
+        }
+        return counter.count( entry.element );
+    }
+
+    public void clear()
+    {
+        for ( Entry<K,E> entry : cache.values() )
+        {
+            if ( cache.remove( entry.key, entry ) )
+            {
+                size.decrementAndGet();
+                markRemoved( entry );
+            }
+        }
+        if ( needsSweep() )
+        {
+            sweep();
+        }
+    }
+
+    public int size()
+    {
+        return size.get();
+    }
+
+    /**
+     * Returns the maximum size of this cache.
+     * 
+     * @return maximum size
+     */
+    public int maxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Changes the max size of the cache. If <CODE>newMaxSize</CODE> is less
+     * then <CODE>size()</CODE> the cache will shrink itself, removing
+     * elements not referenced since the last sweep first, until
+     * <CODE>size()</CODE> equals <CODE>newMaxSize</CODE>. For each element
+     * removed the {@link #elementCleaned} method is invoked.
+     * <p>
+     * If <CODE>newMaxSize</CODE> is less then <CODE>1</CODE> an
+     * {@link IllegalArgumentException} is thrown.
+     * 
+     * @param newMaxSize
+     *            the new maximum size of the cache
+     */
+    public void resize( int newMaxSize )
+    {
+        if ( newMaxSize < 1 )
+        {
+            throw new IllegalArgumentException( "newMaxSize=" + newMaxSize );
+        }
+        evictionLock.lock();
+        try
+        {
+            resizing = true;
+            maxSize = newMaxSize;
+            sweep();
+        }
+        finally
+        {
+            resizing = false;
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Invoked by the sweeping thread right before <CODE>element</CODE> is
+     * removed from the cache, {@link #elementCleaned} is invoked once it has
+     * been removed. If the element was removed by some other thread in the
+     * meantime {@link #elementCleaned} won't be invoked.
+     * 
+     * @param key
+     *            the key of the element about to be removed
+     * @param element
+     *            the element about to be removed
+     */
+    protected void elementEvicting( K key, E element )
+    {
+    }
+
+    public void elementCleaned( E element )
+    {
+    }
+
+    public boolean isAdaptive()
+    {
+        return adaptive;
+    }
+
+    public void setAdaptiveStatus( boolean status )
+    {
+        this.adaptive = status;
+    }
+
+    public void putAll( Map<K,E> map )
+    {
+        for ( Map.Entry<K,E> entry : map.entrySet() )
+        {
+            put( entry.getKey(), entry.getValue() );
+        }
+    }
+
+    public long getHitCount()
+    {
+        return counter.getHitCount();
+    }
+
+    public long getMissCount()
+    {
+        return counter.getMissCount();
+    }
+
+    private void markRemoved( Entry<K,E> entry )
+    {
+        entry.removed = true;
+        stale.incrementAndGet();
+    }
+
+    private boolean needsSweep()
+    {
+        return size.get() > maxSize
+            || stale.get() > Math.max( size.get(), MIN_STALE_BEFORE_PURGE );
+    }
+
+    private void sweep()
+    {
+        // if someone else is sweeping we let them do the work
+        if ( !evictionLock.tryLock() )
+        {
+            return;
+        }
+        try
+        {
+            if ( size.get() > maxSize && adaptive && !resizing
+                && cacheManager != null )
+            {
+                cacheManager.adaptCache( this );
+            }
+            // every live entry gets at most one second chance, bounding the
+            // sweep even if concurrent readers keep referencing entries
+            int budget = 2 * ( size.get() + stale.get() ) + STRIPES;
+            while ( size.get() > maxSize && budget-- > 0 )
+            {
+                Entry<K,E> entry = clock.poll();
+                if ( entry == null )
+                {
+                    break;
+                }
+                if ( entry.removed )
+                {
+                    stale.decrementAndGet();
+                }
+                else if ( entry.referenced )
+                {
+                    entry.referenced = false;
+                    clock.offer( entry );
+                }
+                else
+                {
+                    elementEvicting( entry.key, entry.element );
+                    if ( !cache.remove( entry.key, entry ) )
+                    {
+                        continue;
+                    }
+                    entry.removed = true;
+                    size.decrementAndGet();
+                    elementCleaned( entry.element );
+                }
+            }
+            if ( stale.get() > Math.max( size.get(), MIN_STALE_BEFORE_PURGE ) )
+            {
+                purgeStale();
+            }
+        }
+        finally
+        {
+            evictionLock.unlock();
+        }
+    }
+
+    private void purgeStale()
+    {
+        Iterator<Entry<K,E>> itr = clock.iterator();
+        while ( itr.hasNext() )
+        {
+            if ( itr.next().removed )
+            {
+                itr.remove();
+                stale.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,704 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Two level cache keeping a small set of live elements on the Java heap and
+ * a serialized copy of elements evicted from the heap in direct (off-heap)
+ * memory.
+ * <p>
+ * The heap level is a {@link ClockCache} and works exactly like any other
+ * object cache, elements are mutated in place and handed out with a stable
+ * identity. When the heap level evicts an element it is serialized using a
+ * {@link Codec} and copied into one of a number of segments of direct memory, each one
+ * a ring buffer with its own lock and a primitive hash index. A
+ * <CODE>get</CODE> missing the heap level decodes the element from direct
+ * memory and moves it back to the heap level. Since the serialized elements
+ * aren't objects they cost next to nothing for the garbage collector, so the
+ * direct memory level can hold a much larger part of the graph than the heap.
+ * When a segment is full its oldest entries are overwritten.
+ * <p>
+ * Serialized copies don't see modifications made to the live element
+ * after it has been evicted, so a modification of an element has to be
+ * followed by a call to {@link #invalidate(long)}. Every serialized entry
+ * is stamped with a version taken before it was encoded and only entries
+ * whose version is still current are decoded.
+ */
+public class DirectMemoryCache<E> implements Cache<Long,E>
+{
+    /**
+     * Serializes elements to and from direct memory.
+     */
+    public interface Codec<E>
+    {
+        /**
+         * Returns the serialized form of <CODE>element</CODE> or
+         * <CODE>null</CODE> if the element shouldn't be kept in direct
+         * memory.
+         */
+        byte[] encode( E element );
+
+        /**
+         * Decodes the element with the given id from <CODE>source</CODE>,
+         * starting at its current position.
+         */
+        E decode( long id, ByteBuffer source );
+    }
+
+    private static final int SEGMENT_COUNT = 16;
+    private static final int MIN_VERSION_STRIPES = 4096;
+    private static final int MAX_VERSION_STRIPES = 1 << 20;
+    // header plus a small node or relationship, only used to size the stripes
+    private static final int ESTIMATED_ENTRY_SIZE = 64;
+    private static final int HEADER_SIZE = 8 + 8 + 4;
+
+    private final String name;
+    private final Codec<E> codec;
+    private final HeapLevel heap;
+    private final Segment[] segments;
+    /*
+     * Versions are kept per stripe of ids rather than per id, so invalidating
+     * one id also makes the serialized copies of the other ids in its stripe
+     * look out of date and they will be read from the store again. The stripe
+     * count is sized from how many elements the cache can hold when it's
+     * created, trading 8 bytes of heap per stripe for fewer such false
+     * invalidations.
+     */
+    private final AtomicLongArray versions;
+    private final int versionMask;
+    private final AtomicLong directHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private class HeapLevel extends ClockCache<Long,E>
+    {
+        // only touched by the (single) sweeping thread
+        private long evictingId;
+        private long evictingVersion;
+
+        HeapLevel( String name, int maxSize, AdaptiveCacheManager cacheManager )
+        {
+            super( name, maxSize, cacheManager );
+        }
+
+        @Override
+        protected void elementEvicting( Long key, E element )
+        {
+            evictingId = key;
+            evictingVersion = versionOf( key );
+        }
+
+        @Override
+        public void elementCleaned( E element )
+        {
+            spill( evictingId, evictingVersion, element );
+        }
+    }
+
+    /**
+     * Creates a direct memory cache. If <CODE>maxSize < 1</CODE> or
+     * <CODE>memoryBudget < 0</CODE> an IllegalArgumentException is thrown.
+     * 
+     * @param name
+     *            name of cache
+     * @param maxSize
+     *            maximum number of elements to keep on the heap
+     * @param memoryBudget
+     *            number of bytes of direct memory to use for evicted elements
+     * @param codec
+     *            codec used to serialize elements
+     * @param cacheManager
+     *            adaptive cache manager or null if adaptive caching not needed
+     */
+    public DirectMemoryCache( String name, int maxSize, long memoryBudget,
+        Codec<E> codec, AdaptiveCacheManager cacheManager )
+    {
+        if ( name == null || codec == null )
+        {
+            throw new IllegalArgumentException( "name=" + name + ", codec="
+                + codec );
+        }
+        this.name = name;
+        this.codec = codec;
+        this.heap = new HeapLevel( name, maxSize, cacheManager );
+        int stripes = versionStripes( Math.max( maxSize, memoryBudget / ESTIMATED_ENTRY_SIZE ) );
+        this.versions = new AtomicLongArray( stripes );
+        this.versionMask = stripes - 1;
+        this.segments = newSegments();
+        setMemoryBudget( memoryBudget );
+    }
+
+    private static int versionStripes( long capacity )
+    {
+        int stripes = MIN_VERSION_STRIPES;
+        while ( stripes < capacity && stripes < MAX_VERSION_STRIPES )
+        {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+
+    private static Segment[] newSegments()
+    {
+        Segment[] segments = new Segment[SEGMENT_COUNT];
+        for ( int i = 0; i < segments.length; i++ )
+        {
+            segments[i] = new Segment();
+        }
+        return segments;
+    }
+
+    public String getName()
+    {
+        return this.name;
+    }
+
+    /**
+     * Changes the amount of direct memory used by this cache, discarding all
+     * elements currently kept in direct memory. Memory is allocated lazily,
+     * segment by segment, when the first element is written to it.
+     * 
+     * @param memoryBudget
+     *            the number of bytes of direct memory to use
+     */
+    public void setMemoryBudget( long memoryBudget )
+    {
+        if ( memoryBudget < 0 )
+        {
+            throw new IllegalArgumentException( "memoryBudget="
+                + memoryBudget );
+        }
+        int segmentSize = (int) Math.min( memoryBudget / SEGMENT_COUNT,
+            Integer.MAX_VALUE );
+        for ( Segment segment : segments )
+        {
+            segment.lock.lock();
+            try
+            {
+                segment.reset( segmentSize );
+            }
+            finally
+            {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    public void put( Long key, E element )
+    {
+        heap.put( key, element );
+    }
+
+    public E remove( Long key )
+    {
+        if ( key == null )
+        {
+            throw new IllegalArgumentException( "Null parameter" );
+        }
+        Segment segment = segmentFor( key );
+        segment.lock.lock();
+        try
+        {
+            E element = heap.remove( key );
+            versions.incrementAndGet( versionStripe( key ) );
+            segment.remove( key );
+            return element;
+        }
+        finally
+        {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Marks the serialized copy of the element with the given id, if any, as
+     * out of date. Must be called after each modification of a cached
+     * element, the element kept on the heap is left untouched.
+     * 
+     * @param id
+     *            the id of the modified element
+     */
+    public void invalidate( long id )
+    {
+        Segment segment = segmentFor( id );
+        segment.lock.lock();
+        try
+        {
+            versions.incrementAndGet( versionStripe( id ) );
+            segment.remove( id );
+        }
+        finally
+        {
+            segment.lock.unlock();
+        }
+    }
+
+    public E get( Long key )
+    {
+        if ( key == null )
+        {
+            throw new IllegalArgumentException();
+        }
+        E element = heap.get( key );
+        if ( element != null )
+        {
+            return element;
+        }
+        Segment segment = segmentFor( key );
+        segment.lock.lock();
+        try
+        {
+            // promotion has to be atomic with respect to invalidate, or an
+            // out of date copy could make it to the heap level
+            element = heap.get( key );
+            if ( element != null )
+            {
+                return element;
+            }
+            element = segment.read( key, versionOf( key ), codec );
+            if ( element == null )
+            {
+                misses.incrementAndGet();
+                return null;
+            }
+            directHits.incrementAndGet();
+            E existing = heap.putIfAbsent( key, element );
+            return existing != null ? existing : element;
+        }
+        finally
+        {
+            segment.lock.unlock();
+        }
+    }
+
+    public void clear()
+    {
+        heap.clear();
+        for ( Segment segment : segments )
+        {
+            segment.lock.lock();
+            try
+            {
+                segment.clear();
+            }
+            finally
+            {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of elements kept on the heap, use
+     * {@link #directMemorySize()} for the number of elements kept in direct
+     * memory.
+     */
+    public int size()
+    {
+        return heap.size();
+    }
+
+    public int maxSize()
+    {
+        return heap.maxSize();
+    }
+
+    /**
+     * Changes the maximum number of elements kept on the heap. Elements
+     * evicted from the heap are moved to direct memory.
+     */
+    public void resize( int newMaxSize )
+    {
+        heap.resize( newMaxSize );
+    }
+
+    public void elementCleaned( E element )
+    {
+    }
+
+    public boolean isAdaptive()
+    {
+        return heap.isAdaptive();
+    }
+
+    public void setAdaptiveStatus( boolean status )
+    {
+        heap.setAdaptiveStatus( status );
+    }
+
+    public void putAll( Map<Long,E> map )
+    {
+        heap.putAll( map );
+    }
+
+    /**
+     * Returns the number of elements kept in direct memory.
+     * 
+     * @return number of elements in direct memory
+     */
+    public int directMemorySize()
+    {
+        int size = 0;
+        for ( Segment segment : segments )
+        {
+            segment.lock.lock();
+            try
+            {
+                size += segment.entries;
+            }
+            finally
+            {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the number of bytes of direct memory allocated by this cache.
+     * 
+     * @return allocated direct memory in bytes
+     */
+    public long directMemoryAllocated()
+    {
+        long bytes = 0;
+        for ( Segment segment : segments )
+        {
+            segment.lock.lock();
+            try
+            {
+                bytes += segment.buffer != null ? segment.capacity : 0;
+            }
+            finally
+            {
+                segment.lock.unlock();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the number of <CODE>get</CODE> invocations that found the
+     * element, either on the heap or in direct memory.
+     */
+    public long getHitCount()
+    {
+        return getHeapHitCount() + getDirectMemoryHitCount();
+    }
+
+    /**
+     * Returns the number of <CODE>get</CODE> invocations that found the
+     * element on the heap.
+     */
+    public long getHeapHitCount()
+    {
+        return heap.getHitCount();
+    }
+
+    /**
+     * Returns the number of <CODE>get</CODE> invocations that found the
+     * element in direct memory.
+     */
+    public long getDirectMemoryHitCount()
+    {
+        return directHits.get();
+    }
+
+    /**
+     * Returns the number of <CODE>get</CODE> invocations that found the
+     * element neither on the heap nor in direct memory.
+     */
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+
+    private void spill( long id, long version, E element )
+    {
+        byte[] data = codec.encode( element );
+        if ( data == null )
+        {
+            return;
+        }
+        Segment segment = segmentFor( id );
+        segment.lock.lock();
+        try
+        {
+            segment.write( id, version, data );
+        }
+        finally
+        {
+            segment.lock.unlock();
+        }
+    }
+
+    private long versionOf( long id )
+    {
+        return versions.get( versionStripe( id ) );
+    }
+
+    private int versionStripe( long id )
+    {
+        return (int) ( id ^ ( id >>> 32 ) ) & versionMask;
+    }
+
+    private Segment segmentFor( long id )
+    {
+        int hash = (int) ( id ^ ( id >>> 32 ) );
+        hash ^= ( hash >>> 16 );
+        return segments[( hash >>> 4 ) & ( SEGMENT_COUNT - 1 )];
+    }
+
+    /**
+     * A ring buffer of entries, each one laid out as
+     * <CODE>[id (8)][version (8)][length (4)][payload (length)]</CODE>,
+     * indexed by an open addressing hash table from id to offset. All access
+     * is guarded by <CODE>lock</CODE>.
+     */
+    private static class Segment
+    {
+        private final ReentrantLock lock = new ReentrantLock();
+        private int capacity;
+        private ByteBuffer buffer;
+        // ring state, [tail,head) holds data unless wrapped in which case
+        // [tail,end) and [0,head) do
+        private int head;
+        private int tail;
+        private int end;
+        private boolean wrapped;
+        private int records;
+        // index
+        private long[] keys;
+        private int[] offsets;
+        private int entries;
+
+        void reset( int capacity )
+        {
+            this.capacity = capacity;
+            this.buffer = null;
+            clear();
+        }
+
+        void clear()
+        {
+            head = 0;
+            tail = 0;
+            end = capacity;
+            wrapped = false;
+            records = 0;
+            keys = new long[16];
+            Arrays.fill( keys, -1 );
+            offsets = new int[16];
+            entries = 0;
+        }
+
+        <E> E read( long id, long version, Codec<E> codec )
+        {
+            int slot = find( id );
+            if ( slot == -1 )
+            {
+                return null;
+            }
+            int offset = offsets[slot];
+            if ( buffer.getLong( offset + 8 ) != version )
+            {
+                // modified since it was written
+                removeSlot( slot );
+                return null;
+            }
+            ByteBuffer source = buffer.duplicate();
+            source.position( offset + HEADER_SIZE );
+            source.limit( offset + HEADER_SIZE + buffer.getInt( offset + 16 ) );
+            E element = codec.decode( id, source );
+            // the heap level owns it from now on
+            removeSlot( slot );
+            return element;
+        }
+
+        void write( long id, long version, byte[] data )
+        {
+            int recordSize = HEADER_SIZE + data.length;
+            if ( recordSize > capacity )
+            {
+                return;
+            }
+            if ( buffer == null )
+            {
+                buffer = ByteBuffer.allocateDirect( capacity );
+            }
+            remove( id );
+            int offset = allocate( recordSize );
+            buffer.putLong( offset, id );
+            buffer.putLong( offset + 8, version );
+            buffer.putInt( offset + 16, data.length );
+            ByteBuffer target = buffer.duplicate();
+            target.position( offset + HEADER_SIZE );
+            target.put( data );
+            records++;
+            insert( id, offset );
+        }
+
+        void remove( long id )
+        {
+            int slot = find( id );
+            if ( slot != -1 )
+            {
+                removeSlot( slot );
+            }
+        }
+
+        private int allocate( int recordSize )
+        {
+            while ( true )
+            {
+                if ( records == 0 )
+                {
+                    head = 0;
+                    tail = 0;
+                    end = capacity;
+                    wrapped = false;
+                }
+                if ( !wrapped )
+                {
+                    if ( capacity - head >= recordSize )
+                    {
+                        int offset = head;
+                        head += recordSize;
+                        return offset;
+                    }
+                    end = head;
+                    head = 0;
+                    wrapped = true;
+                }
+                else if ( tail - head >= recordSize )
+                {
+                    int offset = head;
+                    head += recordSize;
+                    return offset;
+                }
+                else
+                {
+                    evictOldest();
+                }
+            }
+        }
+
+        private void evictOldest()
+        {
+            long id = buffer.getLong( tail );
+            int slot = find( id );
+            if ( slot != -1 && offsets[slot] == tail )
+            {
+                removeSlot( slot );
+            }
+            tail += HEADER_SIZE + buffer.getInt( tail + 16 );
+            records--;
+            if ( tail >= end )
+            {
+                tail = 0;
+                end = capacity;
+                wrapped = false;
+            }
+        }
+
+        private int find( long id )
+        {
+            int mask = keys.length - 1;
+            int slot = hash( id ) & mask;
+            while ( keys[slot] != -1 )
+            {
+                if ( keys[slot] == id )
+                {
+                    return slot;
+                }
+                slot = ( slot + 1 ) & mask;
+            }
+            return -1;
+        }
+
+        private void insert( long id, int offset )
+        {
+            if ( ( entries + 1 ) * 2 > keys.length )
+            {
+                rehash( keys.length * 2 );
+            }
+            int mask = keys.length - 1;
+            int slot = hash( id ) & mask;
+            while ( keys[slot] != -1 )
+            {
+                slot = ( slot + 1 ) & mask;
+            }
+            keys[slot] = id;
+            offsets[slot] = offset;
+            entries++;
+        }
+
+        private void removeSlot( int slot )
+        {
+            // backward shift deletion, keeps the probe sequences intact
+            // without tombstones
+            int mask = keys.length - 1;
+            int hole = slot;
+            int next = ( hole + 1 ) & mask;
+            while ( keys[next] != -1 )
+            {
+                int home = hash( keys[next] ) & mask;
+                if ( ( ( next - home ) & mask ) >= ( ( next - hole ) & mask ) )
+                {
+                    keys[hole] = keys[next];
+                    offsets[hole] = offsets[next];
+                    hole = next;
+                }
+                next = ( next + 1 ) & mask;
+            }
+            keys[hole] = -1;
+            entries--;
+        }
+
+        private void rehash( int newLength )
+        {
+            long[] oldKeys = keys;
+            int[] oldOffsets = offsets;
+            keys = new long[newLength];
+            Arrays.fill( keys, -1 );
+            offsets = new int[newLength];
+            entries = 0;
+            for ( int i = 0; i < oldKeys.length; i++ )
+            {
+                if ( oldKeys[i] != -1 )
+                {
+                    insert( oldKeys[i], oldOffsets[i] );
+                }
+            }
+        }
+
+        private int hash( long id )
+        {
+            int hash = (int) ( id ^ ( id >>> 32 ) );
+            return hash ^ ( hash >>> 16 ) ^ ( hash >>> 7 );
+        }
+    }
+}
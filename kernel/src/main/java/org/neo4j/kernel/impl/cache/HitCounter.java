@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the hits and misses of a cache. The counts are spread over stripes
+ * so that readers on different cores don't contend on the same cache line,
+ * and summed up when they are read.
+ */
+class HitCounter
+{
+    private static final int STRIPES = 16;
+    private static final int PADDING = 8;
+    private static final int MISSES = STRIPES * PADDING;
+
+    private final AtomicLongArray counts = new AtomicLongArray( STRIPES * PADDING * 2 );
+
+    /**
+     * Counts a hit if <CODE>element</CODE> was found, otherwise a miss.
+     *
+     * @return <CODE>element</CODE>
+     */
+    <E> E count( E element )
+    {
+        count( element != null ? 0 : MISSES );
+        return element;
+    }
+
+    long getHitCount()
+    {
+        return sum( 0 );
+    }
+
+    long getMissCount()
+    {
+        return sum( MISSES );
+    }
+
+    private void count( int offset )
+    {
+        int stripe = (int) ( Thread.currentThread().getId() % STRIPES );
+        counts.incrementAndGet( offset + stripe * PADDING );
+    }
+
+    private long sum( int offset )
+    {
+        long sum = 0;
+        for ( int i = 0; i < STRIPES; i++ )
+        {
+            sum += counts.get( offset + i * PADDING );
+        }
+        return sum;
+    }
+}
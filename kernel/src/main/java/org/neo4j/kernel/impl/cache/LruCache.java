@@ -34,6 +34,8 @@ public class LruCache<K,E> implements Cache<K,E>
     int maxSize = 1000;
     private boolean resizing = false;
     private boolean adaptive = false;
+    private long hitCount = 0;
+    private long missCount = 0;
     
     private final AdaptiveCacheManager cacheManager;
 
@@ -124,7 +126,26 @@ public class LruCache<K,E> implements Cache<K,E>
         {
             throw new IllegalArgumentException();
         }
-        return cache.get( key );
+        E element = cache.get( key );
+        if ( element != null )
+        {
+            hitCount++;
+        }
+        else
+        {
+            missCount++;
+        }
+        return element;
+    }
+
+    public synchronized long getHitCount()
+    {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount()
+    {
+        return missCount;
     }
 
     public synchronized void clear()
@@ -24,6 +24,7 @@ import java.util.Map;
 public class NoCache<K,V> implements Cache<K,V>
 {
     private final String name;
+    private final HitCounter counter = new HitCounter();
     
     public NoCache( String name )
     {
@@ -40,7 +41,17 @@ public class NoCache<K,V> implements Cache<K,V>
     
     public V get( K key )
     {
-        return null;
+        return counter.count( null );
+    }
+
+    public long getHitCount()
+    {
+        return 0;
+    }
+
+    public long getMissCount()
+    {
+        return counter.getMissCount();
     }
     
     public V remove( K key )
@@ -21,5 +21,17 @@ package org.neo4j.kernel.impl.cache;
 
 public abstract class ReferenceCache<K,V> implements Cache<K,V>
 {
+    final HitCounter counter = new HitCounter();
+
     protected abstract void pollClearedValues();
+
+    public long getHitCount()
+    {
+        return counter.getHitCount();
+    }
+
+    public long getMissCount()
+    {
+        return counter.getMissCount();
+    }
 }
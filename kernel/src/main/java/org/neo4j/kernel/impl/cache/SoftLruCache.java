@@ -70,9 +70,9 @@ public class SoftLruCache<K,V> extends ReferenceCache<K,V>
             {
                 cache.remove( key );
             }
-            return ref.get();
+            return counter.count( ref.get() );
         }
-        return null;
+        return counter.count( null );
     }
     
     public V remove( K key )
@@ -26,6 +26,7 @@ public class StrongReferenceCache<K,V> implements Cache<K,V>
 {
     private final String name;
     private final ConcurrentHashMap<K, V> cache = new ConcurrentHashMap<K, V>();
+    private final HitCounter counter = new HitCounter();
 
     public StrongReferenceCache( String name )
     {
@@ -43,7 +44,17 @@ public class StrongReferenceCache<K,V> implements Cache<K,V>
 
     public V get( K key )
     {
-        return cache.get( key );
+        return counter.count( cache.get( key ) );
+    }
+
+    public long getHitCount()
+    {
+        return counter.getHitCount();
+    }
+
+    public long getMissCount()
+    {
+        return counter.getMissCount();
     }
 
     public String getName()
@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.helpers.collection.PrefetchingIterator;
+import org.neo4j.kernel.impl.nioneo.store.Record;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipRecord;
+import org.neo4j.kernel.impl.util.RelIdArray.DirectionWrapper;
+
+/**
+ * Iterates over the relationships of some types of a node which doesn't have
+ * all its relationships loaded. The relationships already loaded are returned
+ * first, then the rest of the relationship chain is read from the store a
+ * batch at a time, keeping only the relationships of the wanted types and
+ * direction. Nothing is added to the node, so asking a node with many
+ * relationships for a few of them doesn't fill the cache with all of them.
+ */
+class FilteredRelationshipIterator extends PrefetchingIterator<Relationship>
+    implements Iterable<Relationship>
+{
+    private final Iterator<Relationship> loaded;
+    private final NodeImpl fromNode;
+    private final DirectionWrapper direction;
+    private final NodeManager nodeManager;
+    // wanted type id -> relationships removed in this transaction
+    private final Map<Integer,Collection<Long>> types =
+        new HashMap<Integer,Collection<Long>>();
+    private final List<RelationshipRecord> batch = new ArrayList<RelationshipRecord>();
+    private int batchIndex;
+    private long position;
+
+    FilteredRelationshipIterator( Iterator<Relationship> loaded, NodeImpl fromNode,
+        long position, DirectionWrapper direction, NodeManager nodeManager,
+        RelationshipType[] types )
+    {
+        this.loaded = loaded;
+        this.fromNode = fromNode;
+        this.position = position;
+        this.direction = direction;
+        this.nodeManager = nodeManager;
+        for ( RelationshipType type : types )
+        {
+            Integer typeId = nodeManager.getRelationshipTypeIdIfExists( type.name() );
+            if ( typeId != null )
+            {
+                this.types.put( typeId, nodeManager.getCowRelationshipRemoveMap(
+                    fromNode, type.name() ) );
+            }
+        }
+    }
+
+    public Iterator<Relationship> iterator()
+    {
+        return this;
+    }
+
+    @Override
+    protected Relationship fetchNextOrNull()
+    {
+        if ( loaded.hasNext() )
+        {
+            return loaded.next();
+        }
+        while ( true )
+        {
+            while ( batchIndex < batch.size() )
+            {
+                RelationshipRecord record = batch.get( batchIndex++ );
+                Collection<Long> removed = types.get( record.getType() );
+                if ( removed == null || !removed.contains( record.getId() ) )
+                {
+                    try
+                    {
+                        return new RelationshipProxy( record.getId(), nodeManager );
+                    }
+                    catch ( NotFoundException e )
+                    { // ok deleted
+                    }
+                }
+            }
+            if ( position == Record.NO_NEXT_RELATIONSHIP.intValue() || types.isEmpty() )
+            {
+                return null;
+            }
+            batch.clear();
+            batchIndex = 0;
+            long nextPosition = nodeManager.getMoreRelationshipsOfTypes( fromNode, position,
+                types.keySet(), direction, batch );
+            if ( nextPosition == position )
+            {
+                // the chain couldn't be read any further
+                return null;
+            }
+            position = nextPosition;
+        }
+    }
+}
@@ -45,12 +45,22 @@ class IntArrayIterator extends PrefetchingIterator<Relationship> implements Iter
     
     // This is just for optimization
     private boolean isFullyLoaded;
+    // false if the relationships not yet loaded are read by someone else
+    private final boolean loadMore;
 
     IntArrayIterator( List<RelIdIterator> rels, NodeImpl fromNode,
         DirectionWrapper direction, NodeManager nodeManager, RelationshipType[] types,
         boolean isFullyLoaded )
+    {
+        this( rels, fromNode, direction, nodeManager, types, isFullyLoaded, true );
+    }
+
+    IntArrayIterator( List<RelIdIterator> rels, NodeImpl fromNode,
+        DirectionWrapper direction, NodeManager nodeManager, RelationshipType[] types,
+        boolean isFullyLoaded, boolean loadMore )
     {
         this.rels = rels;
+        this.loadMore = loadMore;
         this.isFullyLoaded = isFullyLoaded;
         this.typeIterator = rels.iterator();
         this.currentTypeIterator = typeIterator.hasNext() ? typeIterator.next() : RelIdArray.EMPTY.iterator( direction );
@@ -88,7 +98,7 @@ class IntArrayIterator extends PrefetchingIterator<Relationship> implements Iter
                 {
                     currentTypeIterator = typeIterator.next();
                 }
-                else if ( fromNode.getMoreRelationships( nodeManager ) ||
+                else if ( ( loadMore && fromNode.getMoreRelationships( nodeManager ) ) ||
                         // This is here to guard for that someone else might have loaded
                         // stuff in this relationship chain (and exhausted it) while I
                         // iterated over my batch of relationships. It will only happen
@@ -100,7 +110,7 @@ class IntArrayIterator extends PrefetchingIterator<Relationship> implements Iter
                     for ( RelIdIterator itr : rels )
                     {
                         RelIdIterator newItr = itr;
-                        String type = itr.getIds().getType();
+                        String type = itr.getType();
                         RelIdArray newSrc = fromNode.getRelationshipIds( type );
                         if ( newSrc != null )
                         {
@@ -108,8 +118,10 @@ class IntArrayIterator extends PrefetchingIterator<Relationship> implements Iter
                             {
                                 newItr = newSrc.iterator( direction );
                             }
-                            else if ( newSrc.couldBeNeedingUpdate() )
+                            else if ( newSrc.couldBeNeedingUpdate() || itr.getIds() == RelIdArray.EMPTY )
                             {
+                                // Also when no relationships of this type were
+                                // loaded when the iterator was created
                                 itr.updateSource( newSrc );
                             }
                             newItr.doAnotherRound();
@@ -381,6 +381,7 @@ public class LockReleaser
                         nodeElement.relationshipRemoveMap );
                     node.commitPropertyMaps( nodeElement.propertyAddMap,
                         nodeElement.propertyRemoveMap );
+                    nodeManager.nodeChangesCommitted( node );
                 }
                 else if ( param != Status.STATUS_ROLLEDBACK )
                 {
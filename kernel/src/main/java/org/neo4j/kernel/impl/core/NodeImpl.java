@@ -54,6 +54,9 @@ class NodeImpl extends Primitive
     private volatile RelIdArray[] relationships;
     private long relChainPosition = Record.NO_NEXT_RELATIONSHIP.intValue();
     private long id;
+    // number of times relationships of certain types have been read from the
+    // part of the relationship chain not yet loaded, without loading it
+    private int filteredLoads;
 
     NodeImpl( long id )
     {
@@ -71,6 +74,14 @@ class NodeImpl extends Primitive
         }
     }
     
+    // used when rebuilding a node, with all its relationships loaded, from
+    // a serialized copy
+    NodeImpl( long id, RelIdArray[] relationships )
+    {
+        this( id, false );
+        this.relationships = relationships;
+    }
+    
     @Override
     public long getId()
     {
@@ -164,12 +175,23 @@ class NodeImpl extends Primitive
         DirectionWrapper direction, RelationshipType... types)
     {
         ensureRelationshipMapNotNull( nodeManager );
+        return getLoadedRelationshipsOfType( nodeManager, direction, false, types );
+    }
+
+    // copy is for when more relationships may be loaded while iterating
+    private List<RelIdIterator> getLoadedRelationshipsOfType( NodeManager nodeManager,
+        DirectionWrapper direction, boolean copy, RelationshipType... types )
+    {
         List<RelIdIterator> relTypeList = new LinkedList<RelIdIterator>();
         boolean hasModifications = nodeManager.getLockReleaser().hasRelationshipModifications( this );
         for ( RelationshipType type : types )
         {
             String typeName = type.name();
             RelIdArray src = getRelIdArray( typeName );
+            if ( copy && src != null )
+            {
+                src = src.newSimilarInstance().addAll( src );
+            }
             Collection<Long> remove = null;
             RelIdArray add = null;
             RelIdIterator iterator = null;
@@ -204,23 +226,55 @@ class NodeImpl extends Primitive
     public Iterable<Relationship> getRelationships( NodeManager nodeManager, RelationshipType type )
     {
         RelationshipType types[] = new RelationshipType[] { type };
-        return new IntArrayIterator( getAllRelationshipsOfType( nodeManager, DirectionWrapper.BOTH, types ),
-            this, DirectionWrapper.BOTH, nodeManager, types, !hasMoreRelationshipsToLoad() );
+        return getRelationshipsOfType( nodeManager, DirectionWrapper.BOTH, types );
     }
 
     public Iterable<Relationship> getRelationships( NodeManager nodeManager,
             RelationshipType... types )
     {
-        return new IntArrayIterator( getAllRelationshipsOfType( nodeManager, DirectionWrapper.BOTH, types ),
-            this, DirectionWrapper.BOTH, nodeManager, types, !hasMoreRelationshipsToLoad() );
+        return getRelationshipsOfType( nodeManager, DirectionWrapper.BOTH, types );
     }
 
     public Iterable<Relationship> getRelationships( NodeManager nodeManager,
             Direction direction, RelationshipType... types )
     {
         DirectionWrapper dir = RelIdArray.wrap( direction );
-        return new IntArrayIterator( getAllRelationshipsOfType( nodeManager, dir, types ),
-            this, dir, nodeManager, types, !hasMoreRelationshipsToLoad() );
+        return getRelationshipsOfType( nodeManager, dir, types );
+    }
+
+    /*
+     * For a node with more relationships than have been loaded the rest of
+     * the relationship chain is read, keeping only the relationships asked
+     * for, instead of loading all of them. Once that has been done
+     * filtered_relationship_loads times the relationships are loaded as usual.
+     */
+    private Iterable<Relationship> getRelationshipsOfType( NodeManager nodeManager,
+            DirectionWrapper direction, RelationshipType[] types )
+    {
+        ensureRelationshipMapNotNull( nodeManager );
+        if ( types.length > 0 && hasMoreRelationshipsToLoad() &&
+                filteredLoads < nodeManager.getFilteredRelationshipLoads() )
+        {
+            List<RelIdIterator> loaded = null;
+            long position;
+            synchronized ( this )
+            {
+                position = relChainPosition;
+                if ( hasMoreRelationshipsToLoad() )
+                {
+                    loaded = getLoadedRelationshipsOfType( nodeManager, direction, true, types );
+                }
+            }
+            if ( loaded != null )
+            {
+                filteredLoads++;
+                return new FilteredRelationshipIterator( new IntArrayIterator( loaded, this,
+                    direction, nodeManager, types, true, false ), this, position, direction,
+                    nodeManager, types );
+            }
+        }
+        return new IntArrayIterator( getAllRelationshipsOfType( nodeManager, direction, types ),
+            this, direction, nodeManager, types, !hasMoreRelationshipsToLoad() );
     }
     
     public Relationship getSingleRelationship( NodeManager nodeManager, RelationshipType type,
@@ -228,8 +282,8 @@ class NodeImpl extends Primitive
     {
         DirectionWrapper direction = RelIdArray.wrap( dir );
         RelationshipType types[] = new RelationshipType[] { type };
-        Iterator<Relationship> rels = new IntArrayIterator( getAllRelationshipsOfType( nodeManager,
-                direction, types ), this, direction, nodeManager, types, !hasMoreRelationshipsToLoad() );
+        Iterator<Relationship> rels = getRelationshipsOfType( nodeManager, direction,
+            types ).iterator();
         if ( !rels.hasNext() )
         {
             return null;
@@ -248,8 +302,7 @@ class NodeImpl extends Primitive
     {
         RelationshipType types[] = new RelationshipType[] { type };
         DirectionWrapper direction = RelIdArray.wrap( dir );
-        return new IntArrayIterator( getAllRelationshipsOfType( nodeManager, direction, types ),
-            this, direction, nodeManager, types, !hasMoreRelationshipsToLoad() );
+        return getRelationshipsOfType( nodeManager, direction, types );
     }
 
     public void delete( NodeManager nodeManager )
@@ -313,7 +366,7 @@ class NodeImpl extends Primitive
         relationshipSet.add( relId );
     }
 
-    private void ensureRelationshipMapNotNull( NodeManager nodeManager )
+    void ensureRelationshipMapNotNull( NodeManager nodeManager )
     {
         if ( relationships == null )
         {
@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.core;
+
+import java.nio.ByteBuffer;
+
+import org.neo4j.kernel.impl.cache.DirectMemoryCache;
+import org.neo4j.kernel.impl.util.RelIdArray;
+import org.neo4j.kernel.impl.util.RelIdArrayWithLoops;
+import org.neo4j.kernel.impl.util.RelIdArray.DirectionWrapper;
+import org.neo4j.kernel.impl.util.RelIdIterator;
+
+/**
+ * Serializes the relationship ids of a node for the {@link DirectMemoryCache}.
+ * Only nodes with all their relationships loaded are kept, properties are
+ * left out and will be loaded again when needed.
+ * <p>
+ * Layout: <CODE>[type count (4)]</CODE> followed by, for each type,
+ * <CODE>[name length (2)][name chars]</CODE> and for each of outgoing,
+ * incoming and loops <CODE>[id count (4)][ids (8 each)]</CODE>.
+ */
+class NodeImplCodec implements DirectMemoryCache.Codec<NodeImpl>
+{
+    private static final DirectionWrapper[] DIRECTIONS = new DirectionWrapper[] {
+        DirectionWrapper.OUTGOING, DirectionWrapper.INCOMING, DirectionWrapper.BOTH };
+
+    public byte[] encode( NodeImpl node )
+    {
+        synchronized ( node )
+        {
+            RelIdArray[] relationships = node.getRelationshipIds();
+            if ( relationships == null || node.hasMoreRelationshipsToLoad() )
+            {
+                return null;
+            }
+            int size = 4;
+            int[][] counts = new int[relationships.length][DIRECTIONS.length];
+            for ( int i = 0; i < relationships.length; i++ )
+            {
+                size += 2 + relationships[i].getType().length() * 2;
+                for ( int d = 0; d < DIRECTIONS.length; d++ )
+                {
+                    RelIdIterator ids = relationships[i].exactIterator( DIRECTIONS[d] );
+                    while ( ids.hasNext() )
+                    {
+                        ids.next();
+                        counts[i][d]++;
+                    }
+                    size += 4 + counts[i][d] * 8;
+                }
+            }
+            ByteBuffer target = ByteBuffer.allocate( size );
+            target.putInt( relationships.length );
+            for ( int i = 0; i < relationships.length; i++ )
+            {
+                String type = relationships[i].getType();
+                target.putShort( (short) type.length() );
+                for ( int c = 0; c < type.length(); c++ )
+                {
+                    target.putChar( type.charAt( c ) );
+                }
+                for ( int d = 0; d < DIRECTIONS.length; d++ )
+                {
+                    target.putInt( counts[i][d] );
+                    RelIdIterator ids = relationships[i].exactIterator( DIRECTIONS[d] );
+                    while ( ids.hasNext() )
+                    {
+                        target.putLong( ids.next() );
+                    }
+                }
+            }
+            return target.array();
+        }
+    }
+
+    public NodeImpl decode( long id, ByteBuffer source )
+    {
+        RelIdArray[] relationships = new RelIdArray[source.getInt()];
+        for ( int i = 0; i < relationships.length; i++ )
+        {
+            char[] type = new char[source.getShort()];
+            for ( int c = 0; c < type.length; c++ )
+            {
+                type[c] = source.getChar();
+            }
+            RelIdArray ids = new RelIdArrayWithLoops( new String( type ) );
+            for ( DirectionWrapper direction : DIRECTIONS )
+            {
+                int count = source.getInt();
+                for ( int j = 0; j < count; j++ )
+                {
+                    ids.add( source.getLong(), direction );
+                }
+            }
+            relationships[i] = ids.downgradeIfPossible().shrink();
+        }
+        return new NodeImpl( id, relationships );
+    }
+}
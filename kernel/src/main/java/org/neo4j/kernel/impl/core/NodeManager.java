@@ -22,6 +22,12 @@ package org.neo4j.kernel.impl.core;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -37,8 +43,11 @@ import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.event.TransactionData;
 import org.neo4j.helpers.Pair;
 import org.neo4j.helpers.Triplet;
+import org.neo4j.kernel.Config;
 import org.neo4j.kernel.impl.cache.AdaptiveCacheManager;
 import org.neo4j.kernel.impl.cache.Cache;
+import org.neo4j.kernel.impl.cache.ClockCache;
+import org.neo4j.kernel.impl.cache.DirectMemoryCache;
 import org.neo4j.kernel.impl.cache.LruCache;
 import org.neo4j.kernel.impl.cache.NoCache;
 import org.neo4j.kernel.impl.cache.SoftLruCache;
@@ -83,6 +92,17 @@ public class NodeManager
     private int minRelCacheSize = 0;
     private int maxNodeCacheSize = 1500;
     private int maxRelCacheSize = 3500;
+    private long offHeapCacheSize = 64 * 1024 * 1024;
+    private int filteredRelationshipLoads = 10;
+    private int relationshipPrefetchThreads = 0;
+    // read by traversing threads, set to null by stop()
+    private volatile ThreadPoolExecutor prefetcher;
+    private final AtomicLong prefetchCount = new AtomicLong();
+
+    // prefetch requests beyond this many are dropped
+    private static final int MAX_PENDING_PREFETCHES = 1000;
+    // how long stop() waits for running prefetches to finish
+    private static final long PREFETCHER_SHUTDOWN_SECONDS = 10;
 
     private static final int LOCK_STRIPE_COUNT = 32;
     private final ReentrantLock loadLocks[] =
@@ -216,6 +236,71 @@ public class NodeManager
                     + value );
             }
         }
+        if ( params.containsKey( Config.OFF_HEAP_CACHE_SIZE ) )
+        {
+            Object value = params.get( Config.OFF_HEAP_CACHE_SIZE );
+            try
+            {
+                offHeapCacheSize = parseMemorySize( (String) value );
+            }
+            catch ( NumberFormatException e )
+            {
+                log.warning( "Unable to parse " + Config.OFF_HEAP_CACHE_SIZE
+                    + " " + value );
+            }
+        }
+        if ( params.containsKey( Config.FILTERED_RELATIONSHIP_LOADS ) )
+        {
+            Object value = params.get( Config.FILTERED_RELATIONSHIP_LOADS );
+            try
+            {
+                filteredRelationshipLoads = Integer.parseInt( (String) value );
+            }
+            catch ( NumberFormatException e )
+            {
+                log.warning( "Unable to parse " + Config.FILTERED_RELATIONSHIP_LOADS
+                    + " " + value );
+            }
+        }
+        if ( params.containsKey( Config.RELATIONSHIP_PREFETCH_THREADS ) )
+        {
+            Object value = params.get( Config.RELATIONSHIP_PREFETCH_THREADS );
+            try
+            {
+                relationshipPrefetchThreads = Integer.parseInt( (String) value );
+            }
+            catch ( NumberFormatException e )
+            {
+                log.warning( "Unable to parse " + Config.RELATIONSHIP_PREFETCH_THREADS
+                    + " " + value );
+            }
+        }
+    }
+
+    int getFilteredRelationshipLoads()
+    {
+        return filteredRelationshipLoads;
+    }
+
+    private long parseMemorySize( String value )
+    {
+        long multiplier = 1;
+        if ( value.endsWith( "M" ) )
+        {
+            multiplier = 1024 * 1024;
+            value = value.substring( 0, value.length() - 1 );
+        }
+        else if ( value.endsWith( "k" ) )
+        {
+            multiplier = 1024;
+            value = value.substring( 0, value.length() - 1 );
+        }
+        else if ( value.endsWith( "G" ) )
+        {
+            multiplier = 1024 * 1024 * 1024;
+            value = value.substring( 0, value.length() - 1 );
+        }
+        return Long.parseLong( value ) * multiplier;
     }
 
     public void start( Map<Object,Object> params )
@@ -223,6 +308,14 @@ public class NodeManager
         parseParams( params );
         nodeCache.resize( maxNodeCacheSize );
         relCache.resize( maxRelCacheSize );
+        if ( nodeCache instanceof DirectMemoryCache )
+        {
+            ((DirectMemoryCache<NodeImpl>) nodeCache).setMemoryBudget( offHeapCacheSize / 2 );
+        }
+        if ( relCache instanceof DirectMemoryCache )
+        {
+            ((DirectMemoryCache<RelationshipImpl>) relCache).setMemoryBudget( offHeapCacheSize / 2 );
+        }
         if ( useAdaptiveCache && cacheType.needsCacheManagerRegistration )
         {
             cacheManager.registerCache( nodeCache, adaptiveCacheHeapRatio,
@@ -231,10 +324,56 @@ public class NodeManager
                 minRelCacheSize );
             cacheManager.start( params );
         }
+        if ( relationshipPrefetchThreads > 0 )
+        {
+            prefetcher = newPrefetcher( relationshipPrefetchThreads );
+        }
+    }
+
+    private static ThreadPoolExecutor newPrefetcher( int threads )
+    {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor( threads, threads, 10,
+            TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>( MAX_PENDING_PREFETCHES ),
+            new ThreadFactory()
+            {
+                private final AtomicInteger threadNumber = new AtomicInteger();
+
+                public Thread newThread( Runnable runnable )
+                {
+                    Thread thread = new Thread( runnable,
+                        "Neo4j relationship prefetcher-" + threadNumber.incrementAndGet() );
+                    thread.setDaemon( true );
+                    return thread;
+                }
+            }, new ThreadPoolExecutor.DiscardPolicy() );
+        executor.allowCoreThreadTimeOut( true );
+        return executor;
     }
 
     public void stop()
     {
+        ThreadPoolExecutor prefetcher = this.prefetcher;
+        if ( prefetcher != null )
+        {
+            // Queued prefetches see the null and return. Running ones can't
+            // be interrupted since that would close the store file channel
+            // they read from, so wait for them before the store is closed.
+            this.prefetcher = null;
+            prefetcher.shutdown();
+            try
+            {
+                if ( !prefetcher.awaitTermination( PREFETCHER_SHUTDOWN_SECONDS,
+                    TimeUnit.SECONDS ) )
+                {
+                    log.warning( "Relationship prefetch threads still running after "
+                        + PREFETCHER_SHUTDOWN_SECONDS + "s" );
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
         if ( useAdaptiveCache && cacheType.needsCacheManagerRegistration )
         {
             cacheManager.stop();
@@ -420,6 +559,70 @@ public class NodeManager
         }
     }
 
+    /**
+     * @return <code>true</code> if {@link #prefetchRelationships(long)}
+     * reads anything, i.e. if <code>relationship_prefetch_threads</code> is
+     * configured.
+     */
+    public boolean isPrefetchingRelationships()
+    {
+        return prefetcher != null;
+    }
+
+    /**
+     * @return the number of nodes the prefetch threads have made sure are
+     * cached together with their first batch of relationships.
+     */
+    public long getRelationshipPrefetchCount()
+    {
+        return prefetchCount.get();
+    }
+
+    /**
+     * Reads the node with id <code>nodeId</code> and its first batch of
+     * relationships into the cache in the background, unless they are
+     * cached already. It's a hint that they will be needed soon, so it does
+     * nothing if prefetching isn't configured, or if enough requests are
+     * waiting already. A node which doesn't exist is ignored.
+     */
+    public void prefetchRelationships( final long nodeId )
+    {
+        ThreadPoolExecutor prefetcher = this.prefetcher;
+        if ( prefetcher == null )
+        {
+            return;
+        }
+        NodeImpl node = nodeCache.get( nodeId );
+        if ( node != null && node.getRelationshipIds() != null )
+        {
+            return;
+        }
+        prefetcher.execute( new Runnable()
+        {
+            public void run()
+            {
+                if ( NodeManager.this.prefetcher == null )
+                {
+                    return;
+                }
+                try
+                {
+                    NodeImpl node = getLightNode( nodeId );
+                    if ( node != null )
+                    {
+                        node.ensureRelationshipMapNotNull( NodeManager.this );
+                        prefetchCount.incrementAndGet();
+                    }
+                }
+                catch ( RuntimeException e )
+                {
+                    // Only a hint, the traversal reads it again if needed
+                    log.log( Level.FINE, "Unable to prefetch Node[" + nodeId + "]", e );
+                }
+            }
+        } );
+    }
+
     NodeImpl getLightNode( long nodeId )
     {
         NodeImpl node = nodeCache.get( nodeId );
@@ -588,6 +791,16 @@ public class NodeManager
         relCache.remove( id );
     }
 
+    // serialized copies of a node kept by the cache must be discarded once
+    // changes have been committed to the live instance
+    void nodeChangesCommitted( NodeImpl node )
+    {
+        if ( nodeCache instanceof DirectMemoryCache )
+        {
+            ((DirectMemoryCache<NodeImpl>) nodeCache).invalidate( node.getId() );
+        }
+    }
+
     Object loadPropertyValue( long id )
     {
         return persistenceManager.loadPropertyValue( id );
@@ -655,6 +868,51 @@ public class NodeManager
         }
     }
 
+    /**
+     * Reads the next batch of the relationship chain of <CODE>node</CODE>,
+     * starting at <CODE>position</CODE>, without adding it to the node. Only
+     * the relationships with a type in <CODE>typeIds</CODE> and going in
+     * <CODE>direction</CODE> are added to <CODE>result</CODE> and put in the
+     * relationship cache.
+     *
+     * @return the position of the next batch.
+     */
+    long getMoreRelationshipsOfTypes( NodeImpl node, long position,
+            Collection<Integer> typeIds, DirectionWrapper direction,
+            Collection<RelationshipRecord> result )
+    {
+        Pair<Map<DirectionWrapper, Iterable<RelationshipRecord>>, Long> rels =
+            persistenceManager.getMoreRelationships( node.getId(), position );
+        Map<Long,RelationshipImpl> relsMap = new HashMap<Long,RelationshipImpl>();
+        for ( Map.Entry<DirectionWrapper, Iterable<RelationshipRecord>> entry :
+                rels.first().entrySet() )
+        {
+            // loops (BOTH) go in any direction
+            if ( direction != DirectionWrapper.BOTH &&
+                    entry.getKey() != DirectionWrapper.BOTH && entry.getKey() != direction )
+            {
+                continue;
+            }
+            for ( RelationshipRecord rel : entry.getValue() )
+            {
+                if ( !typeIds.contains( rel.getType() ) )
+                {
+                    continue;
+                }
+                result.add( rel );
+                long relId = rel.getId();
+                if ( relCache.get( relId ) == null )
+                {
+                    relsMap.put( relId, newRelationshipImpl( relId, rel.getFirstNode(),
+                            rel.getSecondNode(), getRelationshipTypeById( rel.getType() ),
+                            rel.getType(), false ) );
+                }
+            }
+        }
+        relCache.putAll( relsMap );
+        return rels.other();
+    }
+
     void putAllInRelCache( Map<Long,RelationshipImpl> map )
     {
          relCache.putAll( map );
@@ -682,6 +940,26 @@ public class NodeManager
         return relCache.size();
     }
 
+    public long getNodeCacheHitCount()
+    {
+        return nodeCache.getHitCount();
+    }
+
+    public long getNodeCacheMissCount()
+    {
+        return nodeCache.getMissCount();
+    }
+
+    public long getRelationshipCacheHitCount()
+    {
+        return relCache.getHitCount();
+    }
+
+    public long getRelationshipCacheMissCount()
+    {
+        return relCache.getMissCount();
+    }
+
     public void clearCache()
     {
         nodeCache.clear();
@@ -827,6 +1105,15 @@ public class NodeManager
         return relTypeHolder.getIdFor( type );
     }
 
+    /**
+     * @return the id of the relationship type named <CODE>name</CODE> or
+     *         <CODE>null</CODE> if there is no such type.
+     */
+    Integer getRelationshipTypeIdIfExists( String name )
+    {
+        return relTypeHolder.getIdFor( name );
+    }
+
     void addRawRelationshipTypes( RelationshipTypeData[] relTypes )
     {
         relTypeHolder.addRawRelationshipTypes( relTypes );
@@ -1039,6 +1326,37 @@ public class NodeManager
                         RELATIONSHIP_CACHE_NAME, 3500, cacheManager );
             }
         },
+        clock( true, "concurrent clock cache" )
+        {
+            @Override
+            Cache<Long, NodeImpl> node( AdaptiveCacheManager cacheManager )
+            {
+                return new ClockCache<Long,NodeImpl>( NODE_CACHE_NAME, 1500, cacheManager );
+            }
+
+            @Override
+            Cache<Long, RelationshipImpl> relationship( AdaptiveCacheManager cacheManager )
+            {
+                return new ClockCache<Long,RelationshipImpl>(
+                        RELATIONSHIP_CACHE_NAME, 3500, cacheManager );
+            }
+        },
+        offheap( true, "lru cache backed by off-heap memory" )
+        {
+            @Override
+            Cache<Long, NodeImpl> node( AdaptiveCacheManager cacheManager )
+            {
+                return new DirectMemoryCache<NodeImpl>( NODE_CACHE_NAME, 1500, 0,
+                        new NodeImplCodec(), cacheManager );
+            }
+
+            @Override
+            Cache<Long, RelationshipImpl> relationship( AdaptiveCacheManager cacheManager )
+            {
+                return new DirectMemoryCache<RelationshipImpl>( RELATIONSHIP_CACHE_NAME, 3500, 0,
+                        new RelationshipImplCodec(), cacheManager );
+            }
+        },
         none( false, "no cache" )
         {
             @Override
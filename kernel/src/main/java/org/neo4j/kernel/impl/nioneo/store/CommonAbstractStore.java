@@ -350,6 +350,18 @@ public abstract class CommonAbstractStore
         return idGenerator.nextId();
     }
 
+    /**
+     * Returns up to <CODE>size</CODE> ids from this store's
+     * {@link IdGenerator}, see {@link IdGeneratorImpl#nextIdBatch(int)}.
+     *
+     * @param size the number of ids wanted
+     * @return The ids
+     */
+    public IdRange nextIdBatch( int size )
+    {
+        return idGenerator.nextIdBatch( size );
+    }
+
     /**
      * Frees an id for this store's {@link IdGenerator}.
      *
@@ -526,6 +538,27 @@ public abstract class CommonAbstractStore
         return windowPool.acquire( position, type );
     }
 
+    /**
+     * Returns the window encapsulating the record at <CODE>position</CODE>
+     * if it can be read without locking, see
+     * {@link PersistenceWindowPool#getUnlockedWindow(long)}. Returns
+     * <CODE>null</CODE> for records that have to be read through
+     * {@link #acquireWindow(long, OperationType)}, which also takes care of
+     * positions outside of the store.
+     *
+     * @param position
+     *            The record position
+     * @return the window encapsulating the record or <CODE>null</CODE>
+     */
+    LockableWindow getUnlockedWindow( long position )
+    {
+        if ( isInRecoveryMode() || position > getHighId() || !storeOk )
+        {
+            return null;
+        }
+        return windowPool.getUnlockedWindow( position );
+    }
+
     /**
      * Releases the window and writes the data (async) if the
      * <CODE>window</CODE> was a {@link PersistenceRow}.
@@ -749,6 +782,16 @@ public abstract class CommonAbstractStore
         return idGenerator.getNumberOfIdsInUse();
     }
 
+    public long getIdRequestCount()
+    {
+        return idGenerator.getIdRequestCount();
+    }
+
+    public long getContendedIdRequestCount()
+    {
+        return idGenerator.getContendedIdRequestCount();
+    }
+
     public WindowPoolStats getWindowPoolStats()
     {
         return windowPool.getStats();
@@ -29,4 +29,6 @@ public interface IdGenerator
     void close();
     long getNumberOfIdsInUse();
     long getDefragCount();
+    long getIdRequestCount();
+    long getContendedIdRequestCount();
 }
@@ -27,6 +27,7 @@ import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.LinkedList;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * This class generates unique ids for a resource type. For example, nodes in a
@@ -97,6 +98,12 @@ public class IdGeneratorImpl implements IdGenerator
 
     private final long max;
 
+    // guards everything but nextFreeId, requests for ids first try to grab
+    // it without blocking so contention can be counted
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicLong idRequestCount = new AtomicLong();
+    private final AtomicLong contendedIdRequestCount = new AtomicLong();
+
     /**
      * Opens the id generator represented by <CODE>fileName</CODE>. The
      * <CODE>grabSize</CODE> means how many defragged ids we should keep in
@@ -131,7 +138,15 @@ public class IdGeneratorImpl implements IdGenerator
         this.grabSize = grabSize;
         readBuffer = ByteBuffer.allocate( grabSize * 8 );
         writeBuffer = ByteBuffer.allocate( grabSize * 8 );
-        initGenerator();
+        lock.lock();
+        try
+        {
+            initGenerator();
+        }
+        finally
+        {
+            lock.unlock();
+        }
     }
 
     /**
@@ -145,7 +160,20 @@ public class IdGeneratorImpl implements IdGenerator
      *             If the capacity is exceeded
      * @throws IllegalStateException if this id generator has been closed
      */
-    public synchronized long nextId()
+    public long nextId()
+    {
+        lockForIdRequest();
+        try
+        {
+            return nextIdInternal();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private long nextIdInternal()
     {
         assertStillOpen();
         long nextDefragId = nextIdFromDefragList();
@@ -165,6 +193,16 @@ public class IdGeneratorImpl implements IdGenerator
         return id;
     }
 
+    private void lockForIdRequest()
+    {
+        idRequestCount.incrementAndGet();
+        if ( !lock.tryLock() )
+        {
+            contendedIdRequestCount.incrementAndGet();
+            lock.lock();
+        }
+    }
+
     private void assertIdWithinCapacity( long id )
     {
         if ( id > max || id < 0  )
@@ -196,7 +234,31 @@ public class IdGeneratorImpl implements IdGenerator
         }
     }
     
+    /**
+     * Returns up to <CODE>size</CODE> ids in one go, defragged ids first and
+     * then a range of new ids. The range is cut short rather than including
+     * the integer -1 so fewer ids than requested may be returned, but always
+     * at least one.
+     * 
+     * @param size the number of ids wanted
+     * @return the ids
+     * @throws UnderlyingStorageException If the capacity is exceeded
+     * @throws IllegalStateException if this id generator has been closed
+     */
     public IdRange nextIdBatch( int size )
+    {
+        lockForIdRequest();
+        try
+        {
+            return nextIdBatchInternal( size );
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private IdRange nextIdBatchInternal( int size )
     {
         assertStillOpen();
         
@@ -220,6 +282,15 @@ public class IdGeneratorImpl implements IdGenerator
         
         int sizeLeftForRange = size-count;
         long start = nextFreeId.get();
+        if ( start == INTEGER_MINUS_ONE )
+        {
+            start++;
+        }
+        else if ( start < INTEGER_MINUS_ONE &&
+            start + sizeLeftForRange > INTEGER_MINUS_ONE )
+        {
+            sizeLeftForRange = (int) (INTEGER_MINUS_ONE - start);
+        }
         long newHighId = start + sizeLeftForRange;
         assertIdWithinCapacity( newHighId );
         nextFreeId.set( newHighId );
@@ -265,7 +336,20 @@ public class IdGeneratorImpl implements IdGenerator
      * @throws IOException
      *             If id is negative or greater than the highest returned id
      */
-    public synchronized void freeId( long id )
+    public void freeId( long id )
+    {
+        lockForIdRequest();
+        try
+        {
+            freeIdInternal( id );
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void freeIdInternal( long id )
     {
         if ( id == INTEGER_MINUS_ONE )
         {
@@ -288,6 +372,28 @@ public class IdGeneratorImpl implements IdGenerator
         }
     }
 
+    /**
+     * Returns the number of {@link #nextId()}, {@link #nextIdBatch(int)} and
+     * {@link #freeId(long)} invocations made on this id generator.
+     * 
+     * @return the number of id requests
+     */
+    public long getIdRequestCount()
+    {
+        return idRequestCount.get();
+    }
+
+    /**
+     * Returns the number of id requests (see {@link #getIdRequestCount()})
+     * that had to wait for another thread using this id generator.
+     * 
+     * @return the number of contended id requests
+     */
+    public long getContendedIdRequestCount()
+    {
+        return contendedIdRequestCount.get();
+    }
+
     /**
      * Closes the id generator flushing defragged ids in memory to file. The
      * file will be truncated to the minimal size required to hold all defragged
@@ -300,7 +406,20 @@ public class IdGeneratorImpl implements IdGenerator
      * @throws IOException
      *             If unable to close this id generator
      */
-    public synchronized void close()
+    public void close()
+    {
+        lock.lock();
+        try
+        {
+            closeInternal();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void closeInternal()
     {
         if ( nextFreeId.get() == -1 )
         {
@@ -425,7 +544,7 @@ public class IdGeneratorImpl implements IdGenerator
     }
 
     // initialize the id generator and performs a simple validation
-    private synchronized void initGenerator()
+    private void initGenerator()
     {
         try
         {
@@ -555,7 +674,20 @@ public class IdGeneratorImpl implements IdGenerator
      * @throws IOException
      *             If problem dumping free ids
      */
-    public synchronized void dumpFreeIds()
+    public void dumpFreeIds()
+    {
+        lock.lock();
+        try
+        {
+            dumpFreeIdsInternal();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void dumpFreeIdsInternal()
     {
         while ( haveMore )
         {
@@ -570,9 +702,17 @@ public class IdGeneratorImpl implements IdGenerator
         close();
     }
 
-    public synchronized long getNumberOfIdsInUse()
+    public long getNumberOfIdsInUse()
     {
-        return nextFreeId.get() - defraggedIdCount;
+        lock.lock();
+        try
+        {
+            return nextFreeId.get() - defraggedIdCount;
+        }
+        finally
+        {
+            lock.unlock();
+        }
     }
 
     public long getDefragCount()
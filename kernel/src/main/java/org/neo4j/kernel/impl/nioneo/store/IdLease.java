@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+/**
+ * Hands out ids from batches leased from an id generator so that a
+ * transaction creating many records only has to go to the (shared) id
+ * generator once in a while. The first lease is a single id and every lease
+ * after that is twice as large as the previous one, up to
+ * <CODE>maxLeaseSize</CODE>, so a transaction creating a single record
+ * doesn't hold on to ids it will never use.
+ * <p>
+ * Ids leased but not handed out must be given back with {@link #release()}
+ * when the transaction completes. An <CODE>IdLease</CODE> isn't thread safe.
+ */
+public abstract class IdLease
+{
+    private static final long[] NO_IDS = new long[0];
+
+    private final int maxLeaseSize;
+    private int nextLeaseSize = 1;
+    private long[] defragIds = NO_IDS;
+    private int defragIndex = 0;
+    private long rangeNext = 0;
+    private long rangeEnd = 0;
+
+    public IdLease( int maxLeaseSize )
+    {
+        if ( maxLeaseSize < 1 )
+        {
+            throw new IllegalArgumentException( "Illegal lease size: "
+                + maxLeaseSize );
+        }
+        this.maxLeaseSize = maxLeaseSize;
+    }
+
+    /**
+     * Leases up to <CODE>size</CODE> ids, at least one.
+     *
+     * @param size the number of ids wanted
+     * @return the leased ids
+     */
+    protected abstract IdRange leaseIds( int size );
+
+    /**
+     * Gives back an id that was leased but never handed out.
+     *
+     * @param id the id to give back
+     */
+    protected abstract void freeId( long id );
+
+    public long nextId()
+    {
+        if ( defragIndex < defragIds.length )
+        {
+            return defragIds[defragIndex++];
+        }
+        if ( rangeNext < rangeEnd )
+        {
+            return rangeNext++;
+        }
+        IdRange range = leaseIds( nextLeaseSize );
+        nextLeaseSize = Math.min( nextLeaseSize * 2, maxLeaseSize );
+        defragIds = range.getDefragIds();
+        defragIndex = 0;
+        rangeNext = range.getRangeStart();
+        rangeEnd = rangeNext + range.getRangeLength();
+        return nextId();
+    }
+
+    /**
+     * Gives back all ids leased but not handed out by {@link #nextId()}. The
+     * lease may be used again after this, starting over with a single id.
+     */
+    public void release()
+    {
+        while ( defragIndex < defragIds.length )
+        {
+            freeId( defragIds[defragIndex++] );
+        }
+        while ( rangeNext < rangeEnd )
+        {
+            freeId( rangeNext++ );
+        }
+        defragIds = NO_IDS;
+        defragIndex = 0;
+        nextLeaseSize = 1;
+    }
+}
@@ -21,6 +21,7 @@ package org.neo4j.kernel.impl.nioneo.store;
 
 import java.nio.channels.FileChannel;
 import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import org.neo4j.kernel.impl.transaction.LockException;
 
@@ -31,6 +32,9 @@ import org.neo4j.kernel.impl.transaction.LockException;
  */
 abstract class LockableWindow implements PersistenceWindow
 {
+    private static final AtomicIntegerFieldUpdater<LockableWindow> WRITE_STAMP =
+        AtomicIntegerFieldUpdater.newUpdater( LockableWindow.class, "writeStamp" );
+
     public abstract Buffer getBuffer();
 
     public abstract long position();
@@ -49,6 +53,10 @@ abstract class LockableWindow implements PersistenceWindow
         new LinkedList<LockElement>();
     private int lockCount = 0;
     private int marked = 0;
+    // bumped when the locking thread starts and when it stops writing to
+    // the window, so it's odd while the window is being written
+    private volatile int writeStamp = 0;
+    private boolean writing = false;
 
     LockableWindow( FileChannel fileChannel )
     {
@@ -85,6 +93,19 @@ abstract class LockableWindow implements PersistenceWindow
         return marked > 0;
     }
 
+    synchronized void unmark()
+    {
+        this.marked--;
+    }
+
+    /*
+     * A window is in use from the moment it's marked until it's unlocked
+     */
+    synchronized boolean isInUse()
+    {
+        return marked > 0 || lockCount > 0 || waitingThreadList.size() > 0;
+    }
+
     private static class LockElement
     {
         private final Thread thread;
@@ -118,6 +139,56 @@ abstract class LockableWindow implements PersistenceWindow
         marked--;
     }
 
+    /*
+     * Locks the window, without waiting, if no other thread is using it
+     */
+    synchronized boolean lockIfNotInUse()
+    {
+        if ( isInUse() )
+        {
+            return false;
+        }
+        lockCount++;
+        lockingThread = Thread.currentThread();
+        return true;
+    }
+
+    /*
+     * Must be called holding the lock, the window counts as being written
+     * until the lock is released
+     */
+    synchronized void beginWrite()
+    {
+        if ( !writing )
+        {
+            writing = true;
+            writeStamp++;
+        }
+    }
+
+    /*
+     * Returns a stamp for reading the window without locking it or -1 if
+     * the window is being written, see validateUnlockedRead
+     */
+    int startUnlockedRead()
+    {
+        int stamp = writeStamp;
+        return ( stamp & 1 ) == 0 ? stamp : -1;
+    }
+
+    /*
+     * Returns true if nothing has been written to the window since the
+     * stamp was taken, meaning what was read without locking is consistent.
+     * A plain volatile read of the stamp would let the reads of the buffer
+     * be reordered after it, and there's no load fence to put in between
+     * before Java 8, so the stamp is compared with a CAS that leaves it as
+     * is. That orders the reads before it like a fence would.
+     */
+    boolean validateUnlockedRead( int stamp )
+    {
+        return stamp != -1 && WRITE_STAMP.compareAndSet( this, stamp, stamp );
+    }
+
     synchronized void unLock()
     {
         Thread currentThread = Thread.currentThread();
@@ -130,6 +201,11 @@ abstract class LockableWindow implements PersistenceWindow
         if ( lockCount == 0 )
         {
             lockingThread = null;
+            if ( writing )
+            {
+                writing = false;
+                writeStamp++;
+            }
             if ( waitingThreadList.size() > 0 )
             {
                 LockElement le = waitingThreadList.removeLast();
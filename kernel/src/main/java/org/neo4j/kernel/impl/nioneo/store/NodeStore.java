@@ -20,6 +20,7 @@
 package org.neo4j.kernel.impl.nioneo.store;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -39,6 +40,10 @@ public class NodeStore extends AbstractStore implements Store
     // in_use(byte)+next_rel_id(int)+next_prop_id(int)
     public static final int RECORD_SIZE = 9;
 
+    // returned by getRecordUnlocked when the record has to be read through a
+    // locked window
+    private static final NodeRecord NOT_READ = new NodeRecord( -1 );
+
     /**
      * See {@link AbstractStore#AbstractStore(String, Map)}
      */
@@ -89,11 +94,20 @@ public class NodeStore extends AbstractStore implements Store
 
     public NodeRecord getRecord( long id )
     {
+        NodeRecord record = getRecordUnlocked( id );
+        if ( record != NOT_READ )
+        {
+            if ( record == null )
+            {
+                throw new InvalidRecordException( "Record[" + id
+                    + "] not in use" );
+            }
+            return record;
+        }
         PersistenceWindow window = acquireWindow( id, OperationType.READ );
         try
         {
-            NodeRecord record = getRecord( id, window, false );
-            return record;
+            return getRecord( id, window, false );
         }
         finally
         {
@@ -132,6 +146,11 @@ public class NodeStore extends AbstractStore implements Store
 
     public boolean loadLightNode( long id )
     {
+        Boolean inUse = isInUseUnlocked( id );
+        if ( inUse != null )
+        {
+            return inUse;
+        }
         PersistenceWindow window = null;
         try
         {
@@ -162,25 +181,115 @@ public class NodeStore extends AbstractStore implements Store
         boolean check )
     {
         Buffer buffer = window.getOffsettedBuffer( id );
-        
+        NodeRecord record = readRecord( id, buffer.getBuffer(),
+            buffer.getOffset() );
+        if ( record == null && !check )
+        {
+            throw new InvalidRecordException( "Record[" + id + "] not in use" );
+        }
+        return record;
+    }
+
+    /*
+     * Reads the record straight from the memory mapped window without
+     * locking it. Returns null if the record isn't in use and NOT_READ if it
+     * couldn't be read consistently. The fields are kept in locals until the
+     * read has been validated so only a record handed out gets allocated.
+     */
+    private NodeRecord getRecordUnlocked( long id )
+    {
+        LockableWindow window = getUnlockedWindow( id );
+        if ( window == null )
+        {
+            return NOT_READ;
+        }
+        int stamp = window.startUnlockedRead();
+        if ( stamp == -1 )
+        {
+            return NOT_READ;
+        }
+        long inUseByte;
+        long nextRel;
+        long nextProp;
+        try
+        {
+            ByteBuffer buffer = window.getBuffer().getBuffer();
+            int offset = (int) (id - window.position()) * RECORD_SIZE;
+            inUseByte = buffer.get( offset );
+            nextRel = buffer.getInt( offset + 1 ) & 0xFFFFFFFFL;
+            nextProp = buffer.getInt( offset + 5 ) & 0xFFFFFFFFL;
+        }
+        catch ( IndexOutOfBoundsException e )
+        {
+            // unmapped while we were reading, validation would fail too
+            return NOT_READ;
+        }
+        if ( !window.validateUnlockedRead( stamp ) )
+        {
+            return NOT_READ;
+        }
+        return newRecord( id, inUseByte, nextRel, nextProp );
+    }
+
+    /*
+     * Like getRecordUnlocked but only reads the in use flag, so checking
+     * that a node exists doesn't allocate anything. Returns null if the flag
+     * couldn't be read consistently.
+     */
+    private Boolean isInUseUnlocked( long id )
+    {
+        LockableWindow window = getUnlockedWindow( id );
+        if ( window == null )
+        {
+            return null;
+        }
+        int stamp = window.startUnlockedRead();
+        if ( stamp == -1 )
+        {
+            return null;
+        }
+        byte inUseByte;
+        try
+        {
+            inUseByte = window.getBuffer().getBuffer().get(
+                (int) (id - window.position()) * RECORD_SIZE );
+        }
+        catch ( IndexOutOfBoundsException e )
+        {
+            // unmapped while we were reading, validation would fail too
+            return null;
+        }
+        if ( !window.validateUnlockedRead( stamp ) )
+        {
+            return null;
+        }
+        return (inUseByte & 0x1) == Record.IN_USE.intValue();
+    }
+
+    /*
+     * Uses absolute gets only so the buffer can be shared by readers that
+     * don't hold the window lock
+     */
+    private NodeRecord readRecord( long id, ByteBuffer buffer, int offset )
+    {
+        long inUseByte = buffer.get( offset );
+        long nextRel = buffer.getInt( offset + 1 ) & 0xFFFFFFFFL;
+        long nextProp = buffer.getInt( offset + 5 ) & 0xFFFFFFFFL;
+        return newRecord( id, inUseByte, nextRel, nextProp );
+    }
+
+    private NodeRecord newRecord( long id, long inUseByte, long nextRel,
+        long nextProp )
+    {
         // [    ,   x] in use bit
         // [    ,xxx ] higher bits for rel id
         // [xxxx,    ] higher bits for prop id
-        long inUseByte = buffer.get();
-        
         boolean inUse = (inUseByte & 0x1) == Record.IN_USE.intValue();
         if ( !inUse )
         {
-            if ( check )
-            {
-                return null;
-            }
-            throw new InvalidRecordException( "Record[" + id + "] not in use" );
+            return null;
         }
         
-        long nextRel = buffer.getUnsignedInt();
-        long nextProp = buffer.getUnsignedInt();
-        
         long relModifier = (inUseByte & 0xEL) << 31;
         long propModifier = (inUseByte & 0xF0L) << 28;
         
@@ -20,13 +20,18 @@
 package org.neo4j.kernel.impl.nioneo.store;
 
 import java.io.IOException;
-import java.io.Serializable;
 import java.nio.channels.FileChannel;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -37,37 +42,78 @@ import java.util.logging.Logger;
  * make the most efficient use of those windows by allocating them in such a way
  * that the most frequently used records/blocks (be it for read or write
  * operations) are encapsulated by a memory mapped persistence window.
+ * <p>
+ * Acquiring a window never takes a pool wide lock. The window of each brick
+ * is published through a volatile field and hit counts are sampled without
+ * synchronization. Every <CODE>REFRESH_BRICK_COUNT</CODE> misses a refresh
+ * of which bricks to map is handed to a background thread, shared by all
+ * pools, so the thread that missed doesn't pay for it. A window is only
+ * unmapped while the remapping thread holds its lock, so a reader either
+ * gets a window that stays valid until released or finds out it has been
+ * unmapped and falls back to a {@link PersistenceRow}.
  */
 class PersistenceWindowPool
 {
     private static final int MAX_BRICK_COUNT = 100000;
+    private static final int ROW_LOCK_STRIPES = 64;
+    private static final long MAX_ROW_WAIT_MILLIS = 100;
+
+    private static final ThreadPoolExecutor remapper = newRemapper();
 
     private final String storeName;
     // == recordSize
     private final int blockSize;
     private FileChannel fileChannel;
-    private final Map<Integer,PersistenceRow> activeRowWindows =
-        new HashMap<Integer,PersistenceRow>();
+    private final ConcurrentHashMap<Long,PersistenceRow> activeRowWindows =
+        new ConcurrentHashMap<Long,PersistenceRow>();
+    private final Object[] rowLocks = new Object[ROW_LOCK_STRIPES];
     private long availableMem = 0;
-    private long memUsed = 0;
-    private int brickCount = 0;
+    private volatile long memUsed = 0;
+    private volatile int brickCount = 0;
     private int brickSize = 0;
-    private BrickElement brickArray[] = new BrickElement[0];
-    private int brickMiss = 0;
+    private volatile BrickElement brickArray[] = new BrickElement[0];
+    private final AtomicInteger brickMiss = new AtomicInteger();
+
+    // guards mapping, unmapping and flushing of windows, never taken when
+    // acquiring a window within the current bricks
+    private final ReentrantLock remapLock = new ReentrantLock();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    private volatile boolean closed = false;
 
     private static Logger log = Logger.getLogger( PersistenceWindowPool.class
         .getName() );
     private static final int REFRESH_BRICK_COUNT = 50000;
     private final FileChannel.MapMode mapMode;
 
+    // not atomic on purpose, it's only statistics and a shared counter
+    // updated on every hit would have all readers contend on it
     private int hit = 0;
-    private int miss = 0;
+    private final AtomicInteger miss = new AtomicInteger();
     private int switches = 0;
     private int ooe = 0;
     private boolean useMemoryMapped = true;
 
     private final boolean readOnly;
 
+    private final Runnable refreshTask = new Runnable()
+    {
+        public void run()
+        {
+            try
+            {
+                refreshBricks();
+            }
+            catch ( RuntimeException e )
+            {
+                logWarn( "Unable to refresh bricks", e );
+            }
+            finally
+            {
+                refreshScheduled.set( false );
+            }
+        }
+    };
+
     /**
      * Create new pool for a store.
      *
@@ -100,10 +146,32 @@ class PersistenceWindowPool
         {
             mapMode = FileChannel.MapMode.READ_WRITE;
         }
+        for ( int i = 0; i < rowLocks.length; i++ )
+        {
+            rowLocks[i] = new Object();
+        }
         setupBricks();
         dumpStatus();
     }
 
+    private static ThreadPoolExecutor newRemapper()
+    {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor( 1, 1, 10,
+            TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactory()
+            {
+                public Thread newThread( Runnable runnable )
+                {
+                    Thread thread = new Thread( runnable,
+                        "Neo4j persistence window remapper" );
+                    thread.setDaemon( true );
+                    return thread;
+                }
+            } );
+        executor.allowCoreThreadTimeOut( true );
+        return executor;
+    }
+
     /**
      * Acquires a windows for <CODE>position</CODE> and <CODE>operationType</CODE>
      * locking the window preventing other threads from using it.
@@ -119,73 +187,146 @@ class PersistenceWindowPool
     PersistenceWindow acquire( long position, OperationType operationType )
     {
         LockableWindow window = null;
-        boolean readPos = false;
-//        synchronized ( activeRowWindows )
-//        {
-            if ( brickMiss >= REFRESH_BRICK_COUNT )
+        BrickElement brick = null;
+        if ( brickSize > 0 )
+        {
+            int brickIndex = (int) (position * blockSize / brickSize);
+            BrickElement[] bricks = brickArray;
+            if ( brickIndex >= bricks.length )
             {
-//                brickMiss = 0;
-                refreshBricks();
+                expandBricks( brickIndex + 1 );
+                bricks = brickArray;
             }
-            if ( brickSize > 0 )
+            brick = bricks[brickIndex];
+            window = lockBrickWindowOrEnterRow( brick );
+            brick.setHit();
+        }
+        if ( window != null )
+        {
+            hit++;
+            if ( operationType == OperationType.WRITE )
             {
-                int brickIndex = (int) (position * blockSize / brickSize);
-                if ( brickIndex < brickArray.length )
-                {
-                    synchronized ( this )
-                    {
-                        window = brickArray[brickIndex].getWindow();
-                        if ( window != null )
-                        {
-                            window.mark();
-                        }
-                    }
-                    // assert window == null || window.encapsulates( position );
-                    brickArray[brickIndex].setHit();
-                }
-                else
-                {
-                    expandBricks( brickIndex + 1 );
-                    window = brickArray[brickIndex].getWindow();
-                }
+                window.beginWrite();
             }
-            if ( window == null )
-            {
-                synchronized ( this )
-                {
-                    miss++;
-                    brickMiss++;
-
-                    PersistenceRow dpw = activeRowWindows.get( (int) position );
+            window.setOperationType( operationType );
+            return window;
+        }
+        miss.incrementAndGet();
+        if ( brick != null
+            && brickMiss.incrementAndGet() >= REFRESH_BRICK_COUNT )
+        {
+            scheduleRefresh();
+        }
+        PersistenceRow dpw = markRow( position );
+        dpw.lock();
+        if ( operationType == OperationType.READ )
+        {
+            dpw.readPosition();
+        }
+        dpw.setOperationType( operationType );
+        return dpw;
+    }
 
-                    if ( dpw == null )
-                    {
-                        dpw = new PersistenceRow( position, blockSize,
-                            fileChannel );
-                    }
-                    if ( operationType == OperationType.READ )
-                    {
-                        readPos = true;
-                    }
-                    window = dpw;
-                    activeRowWindows.put( (int) position, dpw );
-                    window.mark();
-                }
+    /*
+     * Returns the locked window of the brick or null if the caller should use
+     * a row, in which case the row has been accounted for in the brick. The
+     * row is registered before the window is checked again and mapBrick
+     * publishes the window before checking for rows, so either we see the
+     * window or the remapping thread sees our row.
+     */
+    private LockableWindow lockBrickWindowOrEnterRow( BrickElement brick )
+    {
+        while ( true )
+        {
+            LockableWindow window = lockBrickWindow( brick );
+            if ( window != null )
+            {
+                return window;
             }
-            else
+            brick.enterRow();
+            if ( brick.getWindow() == null )
             {
-                hit++;
+                return null;
             }
-//        }
-        window.lock();
-        if ( readPos )
+            brick.exitRow();
+        }
+    }
+
+    private LockableWindow lockBrickWindow( BrickElement brick )
+    {
+        LockableWindow window = brick.getWindow();
+        while ( window != null )
+        {
+            window.mark();
+            window.lock();
+            LockableWindow current = brick.getWindow();
+            if ( current == window )
+            {
+                return window;
+            }
+            // unmapped while we were waiting for the lock
+            window.unLock();
+            window = current;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the window of the brick encapsulating <CODE>position</CODE>
+     * without locking it, or <CODE>null</CODE> if the record has to be read
+     * through {@link #acquire(long, OperationType)}. The window may be
+     * written to or unmapped at any time so whatever is read from it must be
+     * checked with {@link LockableWindow#validateUnlockedRead(int)}.
+     *
+     * @param position
+     *            The position the window should encapsulate
+     * @return The window of the brick or <CODE>null</CODE>
+     */
+    LockableWindow getUnlockedWindow( long position )
+    {
+        if ( brickSize <= 0 )
+        {
+            return null;
+        }
+        int brickIndex = (int) (position * blockSize / brickSize);
+        BrickElement[] bricks = brickArray;
+        if ( brickIndex >= bricks.length )
         {
-            ((PersistenceRow) window).readPosition();
+            return null;
         }
-        window.setOperationType( operationType );
+        BrickElement brick = bricks[brickIndex];
+        LockableWindow window = brick.getWindow();
+        // rows write to the file behind the back of a memory mapped window,
+        // no new ones are taken in the brick once the window is published
+        if ( window == null || brick.hasRowsInUse() )
+        {
+            return null;
+        }
+        brick.setHit();
+        hit++;
         return window;
     }
 
+    private Object rowLock( long position )
+    {
+        return rowLocks[(int) ( position & ( ROW_LOCK_STRIPES - 1 ) )];
+    }
+
+    private PersistenceRow markRow( long position )
+    {
+        synchronized ( rowLock( position ) )
+        {
+            PersistenceRow dpw = activeRowWindows.get( position );
+            if ( dpw == null )
+            {
+                dpw = new PersistenceRow( position, blockSize, fileChannel );
+                activeRowWindows.put( position, dpw );
+            }
+            dpw.mark();
+            return dpw;
+        }
+    }
+
     void dumpStatistics()
     {
         log.finest( storeName + " hit=" + hit + " miss=" + miss + " switches="
@@ -207,15 +348,19 @@ class PersistenceWindowPool
         {
             PersistenceRow dpw = (PersistenceRow) window;
             dpw.writeOut();
-            synchronized ( this )
+            long key = dpw.position();
+            synchronized ( rowLock( key ) )
             {
                 if ( dpw.getWaitingThreadsCount() == 0 && !dpw.isMarked() )
                 {
-                    int key = (int) dpw.position();
                     activeRowWindows.remove( key );
                 }
             }
             dpw.unLock();
+            if ( brickSize > 0 )
+            {
+                brickArray[(int) (key * blockSize / brickSize)].exitRow();
+            }
         }
         else
         {
@@ -223,11 +368,13 @@ class PersistenceWindowPool
         }
     }
 
-    synchronized void close()
+    void close()
     {
-        flushAll();
-//        synchronized ( activeRowWindows )
-//        {
+        remapLock.lock();
+        try
+        {
+            flushAll();
+            closed = true;
             for ( BrickElement element : brickArray )
             {
                 if ( element.getWindow() != null )
@@ -238,8 +385,11 @@ class PersistenceWindowPool
             }
             fileChannel = null;
             activeRowWindows.clear();
-//        }
-        // activeRowWindows = null;
+        }
+        finally
+        {
+            remapLock.unlock();
+        }
         dumpStatistics();
     }
 
@@ -247,8 +397,9 @@ class PersistenceWindowPool
     {
         if ( readOnly ) return;
 
-        //        synchronized ( activeRowWindows )
-//        {
+        remapLock.lock();
+        try
+        {
             for ( BrickElement element : brickArray )
             {
                 PersistenceWindow window = element.getWindow();
@@ -257,7 +408,11 @@ class PersistenceWindowPool
                     window.force();
                 }
             }
-//        }
+        }
+        finally
+        {
+            remapLock.unlock();
+        }
         try
         {
             fileChannel.force( false );
@@ -271,14 +426,17 @@ class PersistenceWindowPool
 
     private static class BrickElement
     {
-        private final int index;
-        private int hitCount;
-        private LockableWindow window = null;
+        private static final AtomicIntegerFieldUpdater<BrickElement> ROWS_IN_USE =
+            AtomicIntegerFieldUpdater.newUpdater( BrickElement.class, "rowsInUse" );
 
-        BrickElement( int index )
-        {
-            this.index = index;
-        }
+        // updated without synchronization by readers, lost updates only
+        // make the sample a little less accurate
+        private int hitCount;
+        private volatile LockableWindow window = null;
+        // rows acquired for positions within this brick and not yet released,
+        // a field updater instead of an AtomicInteger per brick since large
+        // stores have many bricks
+        private volatile int rowsInUse;
 
         void setWindow( LockableWindow window )
         {
@@ -290,17 +448,27 @@ class PersistenceWindowPool
             return window;
         }
 
-        int index()
+        void enterRow()
+        {
+            ROWS_IN_USE.incrementAndGet( this );
+        }
+
+        void exitRow()
+        {
+            ROWS_IN_USE.decrementAndGet( this );
+        }
+
+        boolean hasRowsInUse()
         {
-            return index;
+            return rowsInUse > 0;
         }
 
         void setHit()
         {
-            hitCount += 10;
-            if ( hitCount < 0 )
+            int count = hitCount + 10;
+            if ( count > 0 )
             {
-                hitCount -= 10;
+                hitCount = count;
             }
         }
 
@@ -309,16 +477,19 @@ class PersistenceWindowPool
             return hitCount;
         }
 
-        void refresh()
+        int refresh()
         {
+            int count = hitCount;
             if ( window == null )
             {
-                hitCount /= 1.25;
+                count /= 1.25;
             }
             else
             {
-                hitCount /= 1.15;
+                count /= 1.15;
             }
+            hitCount = count;
+            return count;
         }
 
         @Override
@@ -411,188 +582,299 @@ class PersistenceWindowPool
             }
             brickSize = (brickSize / blockSize) * blockSize;
         }
-        brickArray = new BrickElement[brickCount];
+        BrickElement[] bricks = new BrickElement[brickCount];
         for ( int i = 0; i < brickCount; i++ )
         {
-            BrickElement element = new BrickElement( i );
-            brickArray[i] = element;
+            bricks[i] = new BrickElement();
         }
+        brickArray = bricks;
     }
 
-    private synchronized void freeWindows( int nr )
+    private void scheduleRefresh()
     {
-        if ( brickSize <= 0 )
+        if ( refreshScheduled.compareAndSet( false, true ) )
         {
-            // memory mapped turned off
-            return;
+            try
+            {
+                remapper.execute( refreshTask );
+            }
+            catch ( RejectedExecutionException e )
+            {
+                refreshScheduled.set( false );
+            }
         }
-        ArrayList<BrickElement> mappedBricks = new ArrayList<BrickElement>();
-        for ( int i = 0; i < brickCount; i++ )
+    }
+
+    /*
+     * Must be called holding remapLock
+     */
+    private boolean mapBrick( BrickElement brick, int index )
+    {
+        try
         {
-            BrickElement be = brickArray[i];
-            if ( be.getWindow() != null )
+            LockableWindow window = allocateNewWindow( index );
+            if ( window instanceof PlainPersistenceWindow
+                && !fillPlainWindow( brick, (PlainPersistenceWindow) window ) )
             {
-                mappedBricks.add( be );
+                return false;
             }
+            brick.setWindow( window );
+            memUsed += brickSize;
+            return true;
+        }
+        catch ( MappedMemException e )
+        {
+            ooe++;
+            logWarn( "Unable to memory map", e );
         }
-        Collections.sort( mappedBricks, new BrickSorter() );
-        for ( int i = 0; i < nr && i < mappedBricks.size(); i++ )
+        catch ( OutOfMemoryError e )
         {
-            BrickElement mappedBrick = mappedBricks.get( i );
-            LockableWindow window = mappedBrick.getWindow();
-            if ( window.getWaitingThreadsCount() == 0 && !window.isMarked() )
+            ooe++;
+            logWarn( "Unable to allocate direct buffer", e );
+        }
+        return false;
+    }
+
+    /*
+     * A plain window is a copy of the file so it may not be read while rows
+     * within the brick are written, or those writes would be lost. The window
+     * is published locked, which makes new readers of the brick wait for it
+     * instead of taking rows, and then we wait for the rows already in use
+     * to be released. We never wait for long since a thread holding a row
+     * could be waiting for remapLock in expandBricks, if the rows aren't
+     * released in time the brick stays unmapped and the readers waiting for
+     * the window fall back to rows.
+     */
+    private boolean fillPlainWindow( BrickElement brick,
+        PlainPersistenceWindow window )
+    {
+        window.lockIfNotInUse();
+        window.beginWrite();
+        brick.setWindow( window );
+        try
+        {
+            long waitUntil = System.currentTimeMillis() + MAX_ROW_WAIT_MILLIS;
+            while ( brick.hasRowsInUse() )
             {
-                if ( window instanceof MappedPersistenceWindow )
+                if ( System.currentTimeMillis() > waitUntil )
                 {
-                    ((MappedPersistenceWindow) window).unmap();
+                    brick.setWindow( null );
+                    return false;
                 }
-                else if ( window instanceof PlainPersistenceWindow )
-                {
-                    ((PlainPersistenceWindow) window).writeOut();
-                }
-                mappedBrick.setWindow( null );
-                memUsed -= brickSize;
+                Thread.yield();
             }
+            window.readPosition();
+            return true;
+        }
+        catch ( RuntimeException e )
+        {
+            brick.setWindow( null );
+            throw e;
+        }
+        finally
+        {
+            window.unLock();
         }
     }
 
-    private synchronized void refreshBricks()
+    /*
+     * Must be called holding remapLock. Windows in use are left alone and we
+     * never wait for a window lock here, since the thread holding it could be
+     * waiting for remapLock in expandBricks.
+     */
+    private boolean unmapBrick( BrickElement brick )
     {
-        if ( brickMiss < REFRESH_BRICK_COUNT )
+        LockableWindow window = brick.getWindow();
+        if ( !window.lockIfNotInUse() )
         {
-            return;
+            return false;
+        }
+        try
+        {
+            // invalidates unlocked reads in progress
+            window.beginWrite();
+            if ( window instanceof MappedPersistenceWindow )
+            {
+                ((MappedPersistenceWindow) window).unmap();
+            }
+            else if ( !readOnly && window instanceof PlainPersistenceWindow )
+            {
+                ((PlainPersistenceWindow) window).writeOut();
+            }
+            brick.setWindow( null );
+        }
+        finally
+        {
+            window.unLock();
         }
-        brickMiss = 0;
+        memUsed -= brickSize;
+        return true;
+    }
+
+    /*
+     * Hit counts keep changing while sorting, so bricks are sorted by a
+     * sample of the hit count taken up front. The sample goes in the high
+     * bits and the brick index in the low bits of a long, hit counts are
+     * never negative so sorting the longs sorts the bricks by sample.
+     */
+    private static long sample( int hitCount, int brickIndex )
+    {
+        return ((long) hitCount << 32) | brickIndex;
+    }
+
+    private static int hitCountOf( long sample )
+    {
+        return (int) (sample >>> 32);
+    }
+
+    private static int brickIndexOf( long sample )
+    {
+        return (int) sample;
+    }
+
+    private void freeWindows( int nr )
+    {
         if ( brickSize <= 0 )
         {
             // memory mapped turned off
             return;
         }
-        ArrayList<BrickElement> nonMappedBricks = new ArrayList<BrickElement>();
-        ArrayList<BrickElement> mappedBricks = new ArrayList<BrickElement>();
-        for ( int i = 0; i < brickCount; i++ )
+        BrickElement[] bricks = brickArray;
+        int mappedCount = 0;
+        for ( BrickElement be : bricks )
         {
-            BrickElement be = brickArray[i];
             if ( be.getWindow() != null )
             {
-                mappedBricks.add( be );
+                mappedCount++;
             }
-            else
+        }
+        long[] mappedBricks = new long[mappedCount];
+        mappedCount = 0;
+        for ( int i = 0; i < bricks.length && mappedCount < mappedBricks.length; i++ )
+        {
+            if ( bricks[i].getWindow() != null )
             {
-                nonMappedBricks.add( be );
+                mappedBricks[mappedCount++] = sample( bricks[i].getHit(), i );
             }
-            be.refresh();
         }
-        Collections.sort( nonMappedBricks, new BrickSorter() );
-        Collections.sort( mappedBricks, new BrickSorter() );
-        int mappedIndex = 0;
-        int nonMappedIndex = nonMappedBricks.size() - 1;
-        // fill up unused memory
-        while ( memUsed + brickSize <= availableMem && nonMappedIndex >= 0 )
+        Arrays.sort( mappedBricks, 0, mappedCount );
+        for ( int i = 0; i < nr && i < mappedCount; i++ )
         {
-            BrickElement nonMappedBrick = nonMappedBricks.get(
-                nonMappedIndex-- );
-            if ( nonMappedBrick.getHit() == 0 )
+            unmapBrick( bricks[brickIndexOf( mappedBricks[i] )] );
+        }
+    }
+
+    private void refreshBricks()
+    {
+        remapLock.lock();
+        try
+        {
+            if ( closed || brickMiss.get() < REFRESH_BRICK_COUNT )
             {
                 return;
             }
-            try
-            {
-                nonMappedBrick.setWindow(
-                    allocateNewWindow( nonMappedBrick.index() ) );
-                memUsed += brickSize;
-            }
-            catch ( MappedMemException e )
-            {
-                ooe++;
-                logWarn( "Unable to memory map", e );
-            }
-            catch ( OutOfMemoryError e )
+            brickMiss.set( 0 );
+            if ( brickSize <= 0 )
             {
-                ooe++;
-                logWarn( "Unable to allocate direct buffer", e );
+                // memory mapped turned off
+                return;
             }
-        }
-
-        // switch bad mappings
-        while ( nonMappedIndex >= 0 && mappedIndex < mappedBricks.size() )
-        {
-            BrickElement mappedBrick = mappedBricks.get( mappedIndex++ );
-            BrickElement nonMappedBrick = nonMappedBricks
-                .get( nonMappedIndex-- );
-            if ( mappedBrick.getHit() >= nonMappedBrick.getHit() )
+            // windows are only mapped and unmapped holding remapLock, so
+            // which bricks are mapped doesn't change while we're at it
+            BrickElement[] bricks = brickArray;
+            int mappedCount = 0;
+            for ( BrickElement be : bricks )
             {
-                break;
+                if ( be.getWindow() != null )
+                {
+                    mappedCount++;
+                }
             }
-            LockableWindow window = mappedBrick.getWindow();
-            if ( window.getWaitingThreadsCount() == 0 && !window.isMarked() )
+            long[] nonMappedBricks = new long[bricks.length - mappedCount];
+            long[] mappedBricks = new long[mappedCount];
+            int nonMappedIndex = 0;
+            int mappedIndex = 0;
+            for ( int i = 0; i < bricks.length; i++ )
             {
-                if ( window instanceof MappedPersistenceWindow )
+                BrickElement be = bricks[i];
+                if ( be.getWindow() != null )
                 {
-                    ((MappedPersistenceWindow) window).unmap();
+                    mappedBricks[mappedIndex++] = sample( be.refresh(), i );
                 }
-                else if ( !readOnly && window instanceof PlainPersistenceWindow )
+                else
                 {
-                    ((PlainPersistenceWindow) window).writeOut();
+                    nonMappedBricks[nonMappedIndex++] = sample( be.refresh(), i );
                 }
-                mappedBrick.setWindow( null );
-                memUsed -= brickSize;
-                try
+            }
+            Arrays.sort( nonMappedBricks );
+            Arrays.sort( mappedBricks );
+            mappedIndex = 0;
+            nonMappedIndex = nonMappedBricks.length - 1;
+            // fill up unused memory
+            while ( memUsed + brickSize <= availableMem && nonMappedIndex >= 0 )
+            {
+                long nonMappedBrick = nonMappedBricks[nonMappedIndex--];
+                if ( hitCountOf( nonMappedBrick ) == 0 )
                 {
-                    nonMappedBrick.setWindow(
-                        allocateNewWindow( nonMappedBrick.index() ) );
-                    memUsed += brickSize;
-                    switches++;
+                    return;
                 }
-                catch ( MappedMemException e )
+                int index = brickIndexOf( nonMappedBrick );
+                mapBrick( bricks[index], index );
+            }
+
+            // switch bad mappings
+            while ( nonMappedIndex >= 0 && mappedIndex < mappedBricks.length )
+            {
+                long mappedBrick = mappedBricks[mappedIndex++];
+                long nonMappedBrick = nonMappedBricks[nonMappedIndex--];
+                if ( hitCountOf( mappedBrick ) >= hitCountOf( nonMappedBrick ) )
                 {
-                    ooe++;
-                    logWarn( "Unable to memory map" );
+                    break;
                 }
-                catch ( OutOfMemoryError e )
+                int index = brickIndexOf( nonMappedBrick );
+                if ( unmapBrick( bricks[brickIndexOf( mappedBrick )] )
+                    && mapBrick( bricks[index], index ) )
                 {
-                    ooe++;
-                    logWarn( "Unable to allocate direct buffer" );
+                    switches++;
                 }
             }
         }
+        finally
+        {
+            remapLock.unlock();
+        }
     }
 
-    private synchronized void expandBricks( int newBrickCount )
+    private void expandBricks( int newBrickCount )
     {
-        if ( newBrickCount > brickCount )
+        remapLock.lock();
+        try
         {
-            BrickElement tmpArray[] = new BrickElement[newBrickCount];
-            System.arraycopy( brickArray, 0, tmpArray, 0, brickArray.length );
-            if ( memUsed + brickSize >= availableMem )
-            {
-                freeWindows( 1 );
-            }
-            for ( int i = brickArray.length; i < tmpArray.length; i++ )
+            BrickElement[] bricks = brickArray;
+            if ( newBrickCount > bricks.length )
             {
-                BrickElement be = new BrickElement( i );
-                tmpArray[i] = be;
-                if ( memUsed + brickSize <= availableMem )
+                BrickElement tmpArray[] = new BrickElement[newBrickCount];
+                System.arraycopy( bricks, 0, tmpArray, 0, bricks.length );
+                if ( memUsed + brickSize >= availableMem )
                 {
-                    try
-                    {
-                        be.setWindow( allocateNewWindow( i ) );
-                        memUsed += brickSize;
-                    }
-                    catch ( MappedMemException e )
-                    {
-                        ooe++;
-                        logWarn( "Unable to memory map" );
-                    }
-                    catch ( OutOfMemoryError e )
+                    freeWindows( 1 );
+                }
+                for ( int i = bricks.length; i < tmpArray.length; i++ )
+                {
+                    BrickElement be = new BrickElement();
+                    tmpArray[i] = be;
+                    if ( memUsed + brickSize <= availableMem )
                     {
-                        ooe++;
-                        logWarn( "Unable to allocate direct buffer" );
+                        mapBrick( be, i );
                     }
                 }
+                brickCount = tmpArray.length;
+                brickArray = tmpArray;
             }
-            brickArray = tmpArray;
-            brickCount = tmpArray.length;
+        }
+        finally
+        {
+            remapLock.unlock();
         }
     }
 
@@ -604,36 +886,8 @@ class PersistenceWindowPool
                 brick * brickSize / blockSize, blockSize,
                 brickSize, fileChannel, mapMode );
         }
-        PlainPersistenceWindow dpw =
-            new PlainPersistenceWindow(
-                brick * brickSize / blockSize,
-                blockSize, brickSize, fileChannel );
-        dpw.readPosition();
-        return dpw;
-    }
-
-    static class BrickSorter implements Comparator<BrickElement>, Serializable
-    {
-        public int compare( BrickElement o1, BrickElement o2 )
-        {
-            return o1.getHit() - o2.getHit();
-        }
-
-        @Override
-        public boolean equals( Object o )
-        {
-            if ( o instanceof BrickSorter )
-            {
-                return true;
-            }
-            return false;
-        }
-
-        @Override
-        public int hashCode()
-        {
-            return 7371;
-        }
+        return new PlainPersistenceWindow(
+            brick * brickSize / blockSize, blockSize, brickSize, fileChannel );
     }
 
     private void dumpStatus()
@@ -664,6 +918,6 @@ class PersistenceWindowPool
     WindowPoolStats getStats()
     {
         return new WindowPoolStats( storeName, availableMem, memUsed, brickCount,
-                brickSize, hit, miss, ooe );
+                brickSize, hit, miss.get(), ooe );
     }
 }
\ No newline at end of file
@@ -75,4 +75,14 @@ public class ReadOnlyIdGenerator implements IdGenerator
     {
         return 0;
     }
+
+    public long getIdRequestCount()
+    {
+        return 0;
+    }
+
+    public long getContendedIdRequestCount()
+    {
+        return 0;
+    }
 }
\ No newline at end of file
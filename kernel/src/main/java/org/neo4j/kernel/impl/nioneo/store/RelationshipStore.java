@@ -20,6 +20,7 @@
 package org.neo4j.kernel.impl.nioneo.store;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -42,6 +43,11 @@ public class RelationshipStore extends AbstractStore implements Store
     // second_next_rel_id+next_prop_id(int)
     public static final int RECORD_SIZE = 33;
 
+    // returned by getRecordUnlocked when the record has to be read through a
+    // locked window
+    private static final RelationshipRecord NOT_READ =
+        new RelationshipRecord( -1, -1, -1, -1 );
+
     /**
      * See {@link AbstractStore#AbstractStore(String, Map)}
      */
@@ -91,11 +97,15 @@ public class RelationshipStore extends AbstractStore implements Store
 
     public RelationshipRecord getRecord( long id )
     {
+        RelationshipRecord record = getRecordUnlocked( id );
+        if ( record != NOT_READ )
+        {
+            return checkInUse( id, record );
+        }
         PersistenceWindow window = acquireWindow( id, OperationType.READ );
         try
         {
-            RelationshipRecord record = getRecord( id, window, false );
-            return record;
+            return getRecord( id, window, false );
         }
         finally
         {
@@ -105,6 +115,11 @@ public class RelationshipStore extends AbstractStore implements Store
 
     public RelationshipRecord getLightRel( long id )
     {
+        RelationshipRecord record = getRecordUnlocked( id );
+        if ( record != NOT_READ )
+        {
+            return record;
+        }
         PersistenceWindow window = null;
         try
         {
@@ -117,8 +132,7 @@ public class RelationshipStore extends AbstractStore implements Store
         }
         try
         {
-            RelationshipRecord record = getRecord( id, window, true );
-            return record;
+            return getRecord( id, window, true );
         }
         finally
         {
@@ -214,26 +228,80 @@ public class RelationshipStore extends AbstractStore implements Store
         boolean checkInUse )
     {
         Buffer buffer = window.getOffsettedBuffer( id );
-        
+        RelationshipRecord record = readRecord( id, buffer.getBuffer(),
+            buffer.getOffset() );
+        if ( checkInUse )
+        {
+            return record;
+        }
+        return checkInUse( id, record );
+    }
+
+    private RelationshipRecord checkInUse( long id, RelationshipRecord record )
+    {
+        if ( record == null )
+        {
+            throw new InvalidRecordException( "Record[" + id + "] not in use" );
+        }
+        return record;
+    }
+
+    /*
+     * Decodes the record straight from the memory mapped window without
+     * locking it. Returns null if the record isn't in use and NOT_READ if it
+     * couldn't be read consistently.
+     */
+    private RelationshipRecord getRecordUnlocked( long id )
+    {
+        LockableWindow window = getUnlockedWindow( id );
+        if ( window == null )
+        {
+            return NOT_READ;
+        }
+        int stamp = window.startUnlockedRead();
+        if ( stamp == -1 )
+        {
+            return NOT_READ;
+        }
+        try
+        {
+            int offset = (int) (id - window.position()) * RECORD_SIZE;
+            RelationshipRecord record = readRecord( id,
+                window.getBuffer().getBuffer(), offset );
+            if ( window.validateUnlockedRead( stamp ) )
+            {
+                return record;
+            }
+        }
+        catch ( IndexOutOfBoundsException e )
+        {
+            // unmapped while we were reading, validation would fail too
+        }
+        return NOT_READ;
+    }
+
+    /*
+     * Uses absolute gets only so the buffer can be shared by readers that
+     * don't hold the window lock
+     */
+    private RelationshipRecord readRecord( long id, ByteBuffer buffer,
+        int offset )
+    {
         // [    ,   x] in use flag
         // [    ,xxx ] first node high order bits
         // [xxxx,    ] next prop high order bits
-        long inUseByte = buffer.get();
+        long inUseByte = buffer.get( offset );
         
         boolean inUse = (inUseByte & 0x1) == Record.IN_USE.intValue();
         if ( !inUse )
         {
-            if ( checkInUse )
-            {
-                return null;
-            }
-            throw new InvalidRecordException( "Record[" + id + "] not in use" );
+            return null;
         }
         
-        long firstNode = buffer.getUnsignedInt();
+        long firstNode = buffer.getInt( offset + 1 ) & 0xFFFFFFFFL;
         long firstNodeMod = (inUseByte & 0xEL) << 31;
         
-        long secondNode = buffer.getUnsignedInt();
+        long secondNode = buffer.getInt( offset + 5 ) & 0xFFFFFFFFL;
         
         // [ xxx,    ][    ,    ][    ,    ][    ,    ] second node high order bits,     0x70000000
         // [    ,xxx ][    ,    ][    ,    ][    ,    ] first prev rel high order bits,  0xE000000
@@ -241,7 +309,7 @@ public class RelationshipStore extends AbstractStore implements Store
         // [    ,    ][  xx,x   ][    ,    ][    ,    ] second prev rel high order bits, 0x380000
         // [    ,    ][    , xxx][    ,    ][    ,    ] second next rel high order bits, 0x70000
         // [    ,    ][    ,    ][xxxx,xxxx][xxxx,xxxx] type
-        long typeInt = buffer.getInt();
+        long typeInt = buffer.getInt( offset + 9 );
         long secondNodeMod = (typeInt & 0x70000000L) << 4;
         int type = (int)(typeInt & 0xFFFF);
         
@@ -250,23 +318,23 @@ public class RelationshipStore extends AbstractStore implements Store
             longFromIntAndMod( secondNode, secondNodeMod ), type );
         record.setInUse( inUse );
         
-        long firstPrevRel = buffer.getUnsignedInt();
+        long firstPrevRel = buffer.getInt( offset + 13 ) & 0xFFFFFFFFL;
         long firstPrevRelMod = (typeInt & 0xE000000L) << 7;
         record.setFirstPrevRel( longFromIntAndMod( firstPrevRel, firstPrevRelMod ) );
         
-        long firstNextRel = buffer.getUnsignedInt();
+        long firstNextRel = buffer.getInt( offset + 17 ) & 0xFFFFFFFFL;
         long firstNextRelMod = (typeInt & 0x1C00000L) << 10;
         record.setFirstNextRel( longFromIntAndMod( firstNextRel, firstNextRelMod ) );
         
-        long secondPrevRel = buffer.getUnsignedInt();
+        long secondPrevRel = buffer.getInt( offset + 21 ) & 0xFFFFFFFFL;
         long secondPrevRelMod = (typeInt & 0x380000L) << 13;
         record.setSecondPrevRel( longFromIntAndMod( secondPrevRel, secondPrevRelMod ) );
         
-        long secondNextRel = buffer.getUnsignedInt();
+        long secondNextRel = buffer.getInt( offset + 25 ) & 0xFFFFFFFFL;
         long secondNextRelMod = (typeInt & 0x70000L) << 16;
         record.setSecondNextRel( longFromIntAndMod( secondNextRel, secondNextRelMod ) );
         
-        long nextProp = buffer.getUnsignedInt();
+        long nextProp = buffer.getInt( offset + 29 ) & 0xFFFFFFFFL;
         long nextPropMod = (inUseByte & 0xF0L) << 28;
         
         record.setNextProp( longFromIntAndMod( nextProp, nextPropMod ) );
@@ -321,6 +389,11 @@ public class RelationshipStore extends AbstractStore implements Store
 
     public RelationshipRecord getChainRecord( long relId )
     {
+        RelationshipRecord record = getRecordUnlocked( relId );
+        if ( record != NOT_READ )
+        {
+            return checkInUse( relId, record );
+        }
         PersistenceWindow window = null;
         try
         {
@@ -35,10 +35,37 @@ public interface Store
      *             If unable to
      */
     public long nextId();
+
+    /**
+     * Returns up to <CODE>size</CODE> ids of free records, at least one.
+     * 
+     * @param size the number of ids wanted
+     * @return The ids of free records
+     */
+    public IdRange nextIdBatch( int size );
+
+    /**
+     * Makes the record with id <CODE>id</CODE> available for reuse.
+     * 
+     * @param id The id of the record
+     */
+    public void freeId( long id );
     
     public long getHighestPossibleIdInUse();
 
     public long getNumberOfIdsInUse();
+
+    /**
+     * @return The number of id requests made to the id generator of this
+     * store, see {@link IdGeneratorImpl#getIdRequestCount()}.
+     */
+    public long getIdRequestCount();
+
+    /**
+     * @return The number of id requests that had to wait for another thread,
+     * see {@link IdGeneratorImpl#getContendedIdRequestCount()}.
+     */
+    public long getContendedIdRequestCount();
     
     public WindowPoolStats getWindowPoolStats();
 }
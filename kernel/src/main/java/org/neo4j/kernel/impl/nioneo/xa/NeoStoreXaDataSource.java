@@ -40,6 +40,7 @@ import org.neo4j.kernel.Config;
 import org.neo4j.kernel.impl.core.LockReleaser;
 import org.neo4j.kernel.impl.core.PropertyIndex;
 import org.neo4j.kernel.impl.index.IndexStore;
+import org.neo4j.kernel.impl.nioneo.store.IdRange;
 import org.neo4j.kernel.impl.nioneo.store.NeoStore;
 import org.neo4j.kernel.impl.nioneo.store.PropertyStore;
 import org.neo4j.kernel.impl.nioneo.store.Store;
@@ -83,6 +84,7 @@ public class NeoStoreXaDataSource extends LogBackedXaDataSource
     private final LockReleaser lockReleaser;
     private final String storeDir;
     private final boolean readOnly;
+    private final int idLeaseSize;
 
     private boolean logApplied = false;
     
@@ -113,6 +115,7 @@ public class NeoStoreXaDataSource extends LogBackedXaDataSource
     {
         super( config );
         readOnly = Boolean.parseBoolean( (String) config.get( Config.READ_ONLY ) );
+        idLeaseSize = Config.getIdLeaseSize( config );
         this.lockManager = (LockManager) config.get( LockManager.class );
         this.lockReleaser = (LockReleaser) config.get( LockReleaser.class );
         storeDir = (String) config.get( "store_dir" );
@@ -303,7 +306,7 @@ public class NeoStoreXaDataSource extends LogBackedXaDataSource
         public XaTransaction create( int identifier )
         {
             return new WriteTransaction( identifier, getLogicalLog(), neoStore,
-                lockReleaser, lockManager );
+                lockReleaser, lockManager, idLeaseSize );
         }
 
         @Override
@@ -367,6 +370,30 @@ public class NeoStoreXaDataSource extends LogBackedXaDataSource
         return store.nextId();
     }
 
+    public IdRange nextIdBatch( Class<?> clazz, int size )
+    {
+        Store store = idGenerators.get( clazz );
+
+        if ( store == null )
+        {
+            throw new IdGenerationFailedException( "No IdGenerator for: "
+                + clazz );
+        }
+        return store.nextIdBatch( size );
+    }
+
+    public void freeId( Class<?> clazz, long id )
+    {
+        Store store = idGenerators.get( clazz );
+
+        if ( store == null )
+        {
+            throw new IdGenerationFailedException( "No IdGenerator for: "
+                + clazz );
+        }
+        store.freeId( id );
+    }
+
     public long getHighestPossibleIdInUse( Class<?> clazz )
     {
         Store store = idGenerators.get( clazz );
@@ -389,6 +416,28 @@ public class NeoStoreXaDataSource extends LogBackedXaDataSource
         return store.getNumberOfIdsInUse();
     }
 
+    public long getIdRequestCount( Class<?> clazz )
+    {
+        Store store = idGenerators.get( clazz );
+        if ( store == null )
+        {
+            throw new IdGenerationFailedException( "No IdGenerator for: "
+                + clazz );
+        }
+        return store.getIdRequestCount();
+    }
+
+    public long getContendedIdRequestCount( Class<?> clazz )
+    {
+        Store store = idGenerators.get( clazz );
+        if ( store == null )
+        {
+            throw new IdGenerationFailedException( "No IdGenerator for: "
+                + clazz );
+        }
+        return store.getContendedIdRequestCount();
+    }
+
     public String getStoreDir()
     {
         return storeDir;
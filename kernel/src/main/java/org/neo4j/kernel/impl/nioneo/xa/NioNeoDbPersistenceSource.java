@@ -22,6 +22,7 @@ package org.neo4j.kernel.impl.nioneo.xa;
 import javax.transaction.xa.XAResource;
 
 import org.neo4j.kernel.impl.core.ReadOnlyDbException;
+import org.neo4j.kernel.impl.nioneo.store.IdRange;
 import org.neo4j.kernel.impl.persistence.NeoStoreTransaction;
 import org.neo4j.kernel.impl.persistence.PersistenceSource;
 import org.neo4j.kernel.impl.transaction.XaDataSourceManager;
@@ -110,6 +111,16 @@ public class NioNeoDbPersistenceSource implements PersistenceSource
         return xaDs.nextId( clazz );
     }
 
+    public IdRange nextIdBatch( Class<?> clazz, int size )
+    {
+        return xaDs.nextIdBatch( clazz, size );
+    }
+
+    public void freeId( Class<?> clazz, long id )
+    {
+        xaDs.freeId( clazz, id );
+    }
+
     // for recovery, returns a xa
     public XAResource getXaResource()
     {
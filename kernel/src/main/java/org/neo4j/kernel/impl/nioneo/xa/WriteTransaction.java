@@ -37,6 +37,8 @@ import org.neo4j.helpers.Pair;
 import org.neo4j.kernel.impl.core.LockReleaser;
 import org.neo4j.kernel.impl.core.PropertyIndex;
 import org.neo4j.kernel.impl.nioneo.store.DynamicRecord;
+import org.neo4j.kernel.impl.nioneo.store.IdLease;
+import org.neo4j.kernel.impl.nioneo.store.IdRange;
 import org.neo4j.kernel.impl.nioneo.store.InvalidRecordException;
 import org.neo4j.kernel.impl.nioneo.store.NeoStore;
 import org.neo4j.kernel.impl.nioneo.store.NodeRecord;
@@ -100,15 +102,30 @@ public class WriteTransaction extends XaTransaction implements NeoStoreTransacti
 
     private final LockReleaser lockReleaser;
     private final LockManager lockManager;
+    private final IdLease propertyIdLease;
     private XaConnection xaConnection;
 
-    WriteTransaction( int identifier, XaLogicalLog log, NeoStore neoStore,
-        LockReleaser lockReleaser, LockManager lockManager )
+    WriteTransaction( int identifier, XaLogicalLog log, final NeoStore neoStore,
+        LockReleaser lockReleaser, LockManager lockManager, int idLeaseSize )
     {
         super( identifier, log );
         this.neoStore = neoStore;
         this.lockReleaser = lockReleaser;
         this.lockManager = lockManager;
+        this.propertyIdLease = new IdLease( idLeaseSize )
+        {
+            @Override
+            protected IdRange leaseIds( int size )
+            {
+                return neoStore.getPropertyStore().nextIdBatch( size );
+            }
+
+            @Override
+            protected void freeId( long id )
+            {
+                neoStore.getPropertyStore().freeId( id );
+            }
+        };
     }
 
     @Override
@@ -337,6 +354,7 @@ public class WriteTransaction extends XaTransaction implements NeoStoreTransacti
         }
         finally
         {
+            propertyIdLease.release();
             nodeRecords.clear();
             propertyRecords.clear();
             relRecords.clear();
@@ -448,6 +466,7 @@ public class WriteTransaction extends XaTransaction implements NeoStoreTransacti
         }
         finally
         {
+            propertyIdLease.release();
             nodeRecords.clear();
             propertyRecords.clear();
             relRecords.clear();
@@ -1737,14 +1756,14 @@ public class WriteTransaction extends XaTransaction implements NeoStoreTransacti
     @Override
     public PropertyData nodeAddProperty( long nodeId, PropertyIndex index, Object value )
     {
-        long propertyId = neoStore.getPropertyStore().nextId();
+        long propertyId = propertyIdLease.nextId();
         return nodeAddProperty( nodeId, propertyId, index, value ).newPropertyData( value );
     }
 
     @Override
     public PropertyData relAddProperty( long relId, PropertyIndex index, Object value )
     {
-        long propertyId = neoStore.getPropertyStore().nextId();
+        long propertyId = propertyIdLease.nextId();
         return relAddProperty( relId, propertyId, index, value ).newPropertyData( value );
     }
 
@@ -19,6 +19,20 @@
  */
 package org.neo4j.kernel.impl.persistence;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.transaction.RollbackException;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.SystemException;
+import javax.transaction.Transaction;
+import javax.transaction.TransactionManager;
+
+import org.neo4j.kernel.impl.nioneo.store.IdLease;
+import org.neo4j.kernel.impl.nioneo.store.IdRange;
+import org.neo4j.kernel.impl.util.ArrayMap;
+
 /**
  * The IdGenerator is responsible for generating unique ids for entities in the
  * kernel. The IdGenerator is configured via the {@link IdGeneratorModule}.
@@ -27,12 +41,37 @@ package org.neo4j.kernel.impl.persistence;
  * {@link IdGeneratorModule#setPersistenceSource persistence source} during
  * startup.
  * <P>
+ * Ids requested within a transaction are taken from an {@link IdLease} per
+ * transaction and entity type, the ids leased but not used are given back
+ * to the persistence source when the transaction completes.
  */
 public class IdGenerator implements EntityIdGenerator
 {
     // the persistence source used to store the HIGH keys
     private PersistenceSource persistenceSource = null;
 
+    private final TransactionManager transactionManager;
+    private final int leaseSize;
+    private final Map<Transaction,ArrayMap<Class<?>,IdLease>> txLeases =
+        new ConcurrentHashMap<Transaction,ArrayMap<Class<?>,IdLease>>();
+
+    public IdGenerator()
+    {
+        this( null, 1 );
+    }
+
+    /**
+     * @param transactionManager used to find the current transaction, may be
+     * <CODE>null</CODE> to disable leasing
+     * @param leaseSize the maximum number of ids leased in one go,
+     * <CODE>1</CODE> disables leasing
+     */
+    public IdGenerator( TransactionManager transactionManager, int leaseSize )
+    {
+        this.transactionManager = transactionManager;
+        this.leaseSize = leaseSize;
+    }
+
     /**
      * Returns the next unique ID for the entity type represented by
      * <CODE>clazz</CODE>.
@@ -40,9 +79,74 @@ public class IdGenerator implements EntityIdGenerator
      */
     public long nextId( Class<?> clazz )
     {
+        IdLease lease = getLease( clazz );
+        if ( lease != null )
+        {
+            return lease.nextId();
+        }
         return getPersistenceSource().nextId( clazz );
     }
 
+    private IdLease getLease( final Class<?> clazz )
+    {
+        if ( leaseSize <= 1 || transactionManager == null )
+        {
+            return null;
+        }
+        Transaction tx;
+        try
+        {
+            tx = transactionManager.getTransaction();
+            if ( tx == null || tx.getStatus() != Status.STATUS_ACTIVE )
+            {
+                return null;
+            }
+        }
+        catch ( SystemException e )
+        {
+            return null;
+        }
+        // only the thread the transaction is associated with gets here
+        ArrayMap<Class<?>,IdLease> leases = txLeases.get( tx );
+        if ( leases == null )
+        {
+            try
+            {
+                tx.registerSynchronization( new LeaseReleaser( tx ) );
+            }
+            catch ( RollbackException e )
+            {
+                return null;
+            }
+            catch ( SystemException e )
+            {
+                return null;
+            }
+            leases = new ArrayMap<Class<?>,IdLease>( 2, false, false );
+            txLeases.put( tx, leases );
+        }
+        IdLease lease = leases.get( clazz );
+        if ( lease == null )
+        {
+            lease = new IdLease( leaseSize )
+            {
+                @Override
+                protected IdRange leaseIds( int size )
+                {
+                    return getPersistenceSource().nextIdBatch( clazz, size );
+                }
+
+                @Override
+                protected void freeId( long id )
+                {
+                    getPersistenceSource().freeId( clazz, id );
+                }
+            };
+            leases.put( clazz, lease );
+        }
+        return lease;
+    }
+
     public long getHighestPossibleIdInUse( Class<?> clazz )
     {
         return getPersistenceSource().getHighestPossibleIdInUse( clazz );
@@ -70,4 +174,30 @@ public class IdGenerator implements EntityIdGenerator
     {
         return this.persistenceSource;
     }
+
+    private class LeaseReleaser implements Synchronization
+    {
+        private final Transaction tx;
+
+        LeaseReleaser( Transaction tx )
+        {
+            this.tx = tx;
+        }
+
+        public void beforeCompletion()
+        {
+        }
+
+        public void afterCompletion( int status )
+        {
+            ArrayMap<Class<?>,IdLease> leases = txLeases.remove( tx );
+            if ( leases != null )
+            {
+                for ( IdLease lease : leases.values() )
+                {
+                    lease.release();
+                }
+            }
+        }
+    }
 }
\ No newline at end of file
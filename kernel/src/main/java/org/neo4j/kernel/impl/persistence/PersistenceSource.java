@@ -19,6 +19,7 @@
  */
 package org.neo4j.kernel.impl.persistence;
 
+import org.neo4j.kernel.impl.nioneo.store.IdRange;
 import org.neo4j.kernel.impl.transaction.xaframework.XaConnection;
 import org.neo4j.kernel.impl.transaction.xaframework.XaDataSource;
 
@@ -47,6 +48,29 @@ public interface PersistenceSource
      */
     public long nextId( Class<?> clazz );
 
+    /**
+     * Returns up to <CODE>size</CODE> free unique ids (at least one) for
+     * <CODE>clazz</CODE> in one go.
+     * 
+     * @param clazz
+     *            the data structure to get free unique ids for
+     * @param size
+     *            the number of ids wanted
+     * @return the free unique ids for <CODE>clazz</CODE>
+     */
+    public IdRange nextIdBatch( Class<?> clazz, int size );
+
+    /**
+     * Makes an id returned from {@link #nextId(Class)} or
+     * {@link #nextIdBatch(Class, int)} that was never used available again.
+     * 
+     * @param clazz
+     *            the data structure the id was generated for
+     * @param id
+     *            the unused id
+     */
+    public void freeId( Class<?> clazz, long id );
+
     public long getHighestPossibleIdInUse( Class<?> clazz );
 
     public long getNumberOfIdsInUse( Class<?> clazz );
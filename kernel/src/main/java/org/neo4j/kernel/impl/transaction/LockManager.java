@@ -19,8 +19,10 @@
  */
 package org.neo4j.kernel.impl.transaction;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import javax.transaction.Transaction;
@@ -44,17 +46,53 @@ import org.neo4j.kernel.DeadlockDetectedException;
  * <p>
  * LockManager just maps locks to resources and they do all the hard work
  * together with a resource allocation graph.
+ * <p>
+ * The resource to lock map can be split into a number of stripes, each guarded
+ * by its own monitor, so that transactions locking different resources don't
+ * have to wait for each other just to find the locks.
  */
 public class LockManager
 {
-    private final Map<Object,RWLock> resourceLockMap =
-        new HashMap<Object,RWLock>();
+    private final List<Map<Object,RWLock>> resourceLockMaps;
 
     private final RagManager ragManager;
 
     public LockManager( TransactionManager tm )
     {
+        this( tm, 1 );
+    }
+
+    /**
+     * @param tm the transaction manager used to find the current transaction
+     * @param stripes the number of stripes to split the resource to lock map
+     * into
+     */
+    public LockManager( TransactionManager tm, int stripes )
+    {
+        if ( stripes < 1 )
+        {
+            throw new IllegalArgumentException( "Illegal number of stripes: "
+                + stripes );
+        }
         ragManager = new RagManager( tm );
+        resourceLockMaps = new ArrayList<Map<Object,RWLock>>( stripes );
+        for ( int i = 0; i < stripes; i++ )
+        {
+            resourceLockMaps.add( new HashMap<Object,RWLock>() );
+        }
+    }
+
+    private Map<Object,RWLock> getResourceLockMap( Object resource )
+    {
+        if ( resourceLockMaps.size() == 1 )
+        {
+            return resourceLockMaps.get( 0 );
+        }
+        // spread the bits since many resources have sequential hash codes
+        int hash = resource.hashCode();
+        hash ^= (hash >>> 20) ^ (hash >>> 12);
+        hash ^= (hash >>> 7) ^ (hash >>> 4);
+        return resourceLockMaps.get( (hash & 0x7fffffff) % resourceLockMaps.size() );
     }
 
     public long getDetectedDeadlockCount()
@@ -83,6 +121,7 @@ public class LockManager
         }
 
         RWLock lock = null;
+        Map<Object,RWLock> resourceLockMap = getResourceLockMap( resource );
         synchronized ( resourceLockMap )
         {
             lock = resourceLockMap.get( resource );
@@ -117,6 +156,7 @@ public class LockManager
         }
 
         RWLock lock = null;
+        Map<Object,RWLock> resourceLockMap = getResourceLockMap( resource );
         synchronized ( resourceLockMap )
         {
             lock = resourceLockMap.get( resource );
@@ -149,6 +189,7 @@ public class LockManager
         }
 
         RWLock lock = null;
+        Map<Object,RWLock> resourceLockMap = getResourceLockMap( resource );
         synchronized ( resourceLockMap )
         {
             lock = resourceLockMap.get( resource );
@@ -186,6 +227,7 @@ public class LockManager
         }
 
         RWLock lock = null;
+        Map<Object,RWLock> resourceLockMap = getResourceLockMap( resource );
         synchronized ( resourceLockMap )
         {
             lock = resourceLockMap.get( resource );
@@ -214,6 +256,7 @@ public class LockManager
     public void dumpLocksOnResource( Object resource )
     {
         RWLock lock = null;
+        Map<Object,RWLock> resourceLockMap = getResourceLockMap( resource );
         synchronized ( resourceLockMap )
         {
             if ( !resourceLockMap.containsKey( resource ) )
@@ -240,35 +283,38 @@ public class LockManager
      */
     public void dumpAllLocks()
     {
-        synchronized ( resourceLockMap )
+        int emptyLockCount = 0;
+        for ( Map<Object,RWLock> resourceLockMap : resourceLockMaps )
         {
-            Iterator<RWLock> itr = resourceLockMap.values().iterator();
-            int emptyLockCount = 0;
-            while ( itr.hasNext() )
+            synchronized ( resourceLockMap )
             {
-                RWLock lock = itr.next();
-                if ( lock.getWriteCount() > 0 || lock.getReadCount() > 0 )
-                {
-                    lock.dumpStack();
-                }
-                else
+                Iterator<RWLock> itr = resourceLockMap.values().iterator();
+                while ( itr.hasNext() )
                 {
-                    if ( lock.getWaitingThreadsCount() > 0 )
+                    RWLock lock = itr.next();
+                    if ( lock.getWriteCount() > 0 || lock.getReadCount() > 0 )
                     {
                         lock.dumpStack();
                     }
-                    emptyLockCount++;
+                    else
+                    {
+                        if ( lock.getWaitingThreadsCount() > 0 )
+                        {
+                            lock.dumpStack();
+                        }
+                        emptyLockCount++;
+                    }
                 }
             }
-            if ( emptyLockCount > 0 )
-            {
-                System.out.println( "There are " + emptyLockCount
-                    + " empty locks" );
-            }
-            else
-            {
-                System.out.println( "There are no empty locks" );
-            }
+        }
+        if ( emptyLockCount > 0 )
+        {
+            System.out.println( "There are " + emptyLockCount
+                + " empty locks" );
+        }
+        else
+        {
+            System.out.println( "There are no empty locks" );
         }
     }
 }
\ No newline at end of file
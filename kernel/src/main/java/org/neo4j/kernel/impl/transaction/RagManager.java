@@ -19,12 +19,13 @@
  */
 package org.neo4j.kernel.impl.transaction;
 
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.transaction.SystemException;
@@ -56,6 +57,12 @@ import org.neo4j.kernel.impl.util.ArrayMap;
  * traverse node nodespace starting on the resource and see if we can get back
  * to the tx ( T1 wants to wait on R1 and R1->T2->R2->T3->R8->T1 <==>
  * deadlock!).
+ * <p>
+ * Only transactions that have to wait synchronize on the RagManager. The R->T
+ * relationships of a resource are only changed by the {@link RWLock} of that
+ * resource, while holding its monitor, so they are kept in concurrent
+ * collections that the deadlock check can read without stopping transactions
+ * from acquiring and releasing other locks.
  */
 class RagManager
 {
@@ -72,9 +79,11 @@ class RagManager
     // in a DeadlockDetectedException the transaction must wait
     // o When the transaction wakes up from waiting on a resource the
     // stopWaitOn( resource ) method must be invoked
+    // o lockAcquired and lockReleased for a resource must be invoked while
+    // holding the monitor of that resource
 
     private final Map<Object,List<Transaction>> resourceMap =
-        new HashMap<Object,List<Transaction>>();
+        new ConcurrentHashMap<Object,List<Transaction>>();
 
     private final ArrayMap<Transaction,Object> waitingTxMap =
         new ArrayMap<Transaction,Object>( 5, false, true );
@@ -93,7 +102,7 @@ class RagManager
         return deadlockCount.longValue();
     }
 
-    synchronized void lockAcquired( Object resource, Transaction tx )
+    void lockAcquired( Object resource, Transaction tx )
     {
         List<Transaction> lockingTxList = resourceMap.get( resource );
         if ( lockingTxList != null )
@@ -103,13 +112,13 @@ class RagManager
         }
         else
         {
-            lockingTxList = new LinkedList<Transaction>();
+            lockingTxList = new CopyOnWriteArrayList<Transaction>();
             lockingTxList.add( tx );
             resourceMap.put( resource, lockingTxList );
         }
     }
 
-    synchronized void lockReleased( Object resource, Transaction tx )
+    void lockReleased( Object resource, Transaction tx )
     {
         List<Transaction> lockingTxList = resourceMap.get( resource );
         if ( lockingTxList == null )
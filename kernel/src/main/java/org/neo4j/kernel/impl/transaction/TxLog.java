@@ -22,6 +22,7 @@ package org.neo4j.kernel.impl.transaction;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -36,11 +37,11 @@ import javax.transaction.xa.Xid;
 
 import org.neo4j.helpers.UTF8;
 import org.neo4j.kernel.impl.transaction.xaframework.DirectMappedLogBuffer;
+import org.neo4j.kernel.impl.transaction.xaframework.GroupCommitter;
 import org.neo4j.kernel.impl.transaction.xaframework.LogBuffer;
 
 // TODO: fixed sized logs (pre-initialize them)
 // keep dangling records in memory for log switch
-// batch disk forces
 /**
  * This class is made public for testing purposes only, do not use.
  * <p>
@@ -53,6 +54,8 @@ public class TxLog
     private String name = null;
     private LogBuffer logBuffer;
     private int recordCount = 0;
+    // null if group commit isn't enabled
+    private final GroupCommitter groupCommitter;
 
     public static final byte TX_START = 1;
     public static final byte BRANCH_ADD = 2;
@@ -71,6 +74,25 @@ public class TxLog
      */
     public TxLog( String fileName ) throws IOException
     {
+        this( fileName, null );
+    }
+
+    /**
+     * Initializes a transaction log using <CODE>filename</CODE> which shares
+     * the forces of {@link #markAsCommitting(byte[])} between concurrently
+     * committing transactions using <CODE>groupCommitter</CODE>.
+     *
+     * @param fileName
+     *            Filename of file to use
+     * @param groupCommitter
+     *            The group committer to use or <CODE>null</CODE> to force
+     *            every <CODE>MARK_COMMIT</CODE> record on its own
+     * @throws IOException
+     *             If unable to open file
+     */
+    public TxLog( String fileName, GroupCommitter groupCommitter ) throws IOException
+    {
+        this.groupCommitter = groupCommitter;
         if ( fileName == null )
         {
             throw new IllegalArgumentException( "Null filename" );
@@ -183,13 +205,59 @@ public class TxLog
      */
     // mark_committing(byte)|gid_length(byte)|globalId
     // forces
-    public synchronized void markAsCommitting( byte globalId[] )
+    public void markAsCommitting( byte globalId[] )
+        throws IOException
+    {
+        long ticket = writeMarkAsCommitting( globalId, groupCommitter == null );
+        if ( groupCommitter != null )
+        {
+            // wait outside of the monitor so that others can join the batch
+            groupCommitter.awaitForced( ticket, forcer );
+        }
+    }
+
+    private synchronized long writeMarkAsCommitting( byte globalId[], boolean force )
         throws IOException
     {
         assertNotNull( globalId, "global id" );
         logBuffer.put( MARK_COMMIT ).put( (byte) globalId.length ).put( globalId );
-        logBuffer.force();
         recordCount++;
+        if ( force )
+        {
+            logBuffer.force();
+            return -1;
+        }
+        logBuffer.writeOut();
+        return groupCommitter.register();
+    }
+
+    private final GroupCommitter.Forcer forcer = new GroupCommitter.Forcer()
+    {
+        public void force() throws IOException
+        {
+            FileChannel channel;
+            synchronized ( TxLog.this )
+            {
+                channel = logBuffer.getFileChannel();
+            }
+            try
+            {
+                channel.force( false );
+            }
+            catch ( ClosedChannelException e )
+            {
+                // closed by switchToLogFile or close, which both force it first
+            }
+        }
+    };
+
+    /**
+     * Returns the group committer of this log or <CODE>null</CODE> if group
+     * commit isn't enabled.
+     */
+    public GroupCommitter getGroupCommitter()
+    {
+        return groupCommitter;
     }
 
     /**
@@ -289,7 +357,8 @@ public class TxLog
         }
         else if ( record.getType() == MARK_COMMIT )
         {
-            markAsCommitting( record.getGlobalId() );
+            // switchToLogFile forces the log when all records are written
+            writeMarkAsCommitting( record.getGlobalId(), groupCommitter == null );
         }
         else
         {
@@ -54,6 +54,7 @@ import org.neo4j.helpers.Exceptions;
 import org.neo4j.helpers.UTF8;
 import org.neo4j.helpers.collection.MapUtil;
 import org.neo4j.kernel.impl.core.KernelPanicEventGenerator;
+import org.neo4j.kernel.impl.transaction.xaframework.GroupCommitter;
 import org.neo4j.kernel.impl.transaction.xaframework.XaDataSource;
 import org.neo4j.kernel.impl.transaction.xaframework.XaResource;
 import org.neo4j.kernel.impl.util.ArrayMap;
@@ -79,6 +80,7 @@ public class TxManager extends AbstractTransactionManager
     private int eventIdentifierCounter = 0;
 
     private TxLog txLog = null;
+    private GroupCommitter groupCommitter = null;
     private XaDataSourceManager xaDsManager = null;
     private boolean tmOk = false;
 
@@ -101,6 +103,21 @@ public class TxManager extends AbstractTransactionManager
         this.finishHook = finishHook;
     }
 
+    /**
+     * Makes the transaction log share forces between concurrently committing
+     * transactions, see {@link TxLog#TxLog(String, GroupCommitter)}. Must be
+     * called before {@link #init(XaDataSourceManager)}.
+     */
+    void setGroupCommitter( GroupCommitter groupCommitter )
+    {
+        this.groupCommitter = groupCommitter;
+    }
+
+    GroupCommitter getGroupCommitter()
+    {
+        return groupCommitter;
+    }
+
     synchronized int getNextEventIdentifier()
     {
         return eventIdentifierCounter++;
@@ -163,7 +180,7 @@ public class TxManager extends AbstractTransactionManager
                                     "Unable to start TM, " + "active tx log file[" +
                                             currentTxLog + "] not found."));
                 }
-                txLog = new TxLog( currentTxLog );
+                txLog = new TxLog( currentTxLog, groupCommitter );
                 msgLog.logMessage( "TM opening log: " + currentTxLog, true );
             }
             else
@@ -185,7 +202,7 @@ public class TxManager extends AbstractTransactionManager
                 FileChannel fc = new RandomAccessFile( logSwitcherFileName,
                     "rw" ).getChannel();
                 fc.write( buf );
-                txLog = new TxLog( txLogDir + separator + txLog1FileName );
+                txLog = new TxLog( txLogDir + separator + txLog1FileName, groupCommitter );
                 msgLog.logMessage( "TM new log: " + txLog1FileName, true );
                 fc.force( true );
                 fc.close();
@@ -26,6 +26,7 @@ import javax.transaction.TransactionManager;
 import org.neo4j.graphdb.TransactionFailureException;
 import org.neo4j.helpers.Service;
 import org.neo4j.kernel.impl.core.KernelPanicEventGenerator;
+import org.neo4j.kernel.impl.transaction.xaframework.GroupCommitter;
 import org.neo4j.kernel.impl.transaction.xaframework.XaDataSource;
 
 /**
@@ -49,6 +50,12 @@ public class TxModule
     private final KernelPanicEventGenerator kpe;
 
     public TxModule( String txLogDir, KernelPanicEventGenerator kpe, TxFinishHook rollbackHook, String serviceName )
+    {
+        this( txLogDir, kpe, rollbackHook, serviceName, null );
+    }
+
+    public TxModule( String txLogDir, KernelPanicEventGenerator kpe, TxFinishHook rollbackHook,
+            String serviceName, Map<?,?> params )
     {
         this.txLogDir = txLogDir;
         this.kpe = kpe;
@@ -66,6 +73,11 @@ public class TxModule
             }
         }
         txManager = provider.loadTransactionManager( txLogDir, kpe, rollbackHook );
+        if ( txManager instanceof TxManager )
+        {
+            ((TxManager) txManager).setGroupCommitter(
+                    GroupCommitter.fromConfig( "tm_tx_log", params ) );
+        }
         this.xaDsManager = new XaDataSourceManager();
     }
 
@@ -207,6 +219,19 @@ public class TxModule
         return 0;
     }
 
+    /**
+     * @return the group committer of the transaction manager log or
+     *         <CODE>null</CODE> if group commit isn't enabled.
+     */
+    public GroupCommitter getGroupCommitter()
+    {
+        if ( txManager instanceof TxManager )
+        {
+            return ((TxManager) txManager).getGroupCommitter();
+        }
+        return null;
+    }
+
     public int getCommittedTxCount()
     {
         if ( txManager instanceof TxManager )
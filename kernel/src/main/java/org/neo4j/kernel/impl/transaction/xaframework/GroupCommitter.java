@@ -0,0 +1,261 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.xaframework;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.neo4j.kernel.Config;
+
+/**
+ * Lets many threads that have written commit records to the same log share a
+ * single {@link java.nio.channels.FileChannel#force(boolean) force}. A
+ * committer first writes its record out to the log file channel (without
+ * forcing it) and {@link #register() registers} it, getting a ticket back.
+ * It then calls {@link #awaitForced(long, Forcer)} after having released any
+ * lock the other committers need. The first thread to arrive there becomes
+ * the leader of the next batch: it waits at most <CODE>maxWait</CODE>
+ * milliseconds for the batch to fill up to <CODE>maxBatchSize</CODE>
+ * committers, forces the log once and releases everyone in the batch.
+ */
+public class GroupCommitter
+{
+    /**
+     * Forces whatever the log currently has written to its file channel.
+     */
+    public interface Forcer
+    {
+        void force() throws IOException;
+    }
+
+    private final String name;
+    private final long maxWait;
+    private final int maxBatchSize;
+
+    private long registered = 0;
+    private long forced = 0;
+    private boolean forcing = false;
+
+    private long forceCount = 0;
+    private long largestBatchSize = 0;
+
+    // forces per second are measured over intervals of RATE_INTERVAL ms,
+    // the last completed interval is what getForcesPerSecond returns
+    private static final long RATE_INTERVAL = 1000;
+    private long rateIntervalStart = System.currentTimeMillis();
+    private long rateIntervalForceCount = 0;
+    private double forcesPerSecond = 0;
+
+    public GroupCommitter( String name, long maxWait, int maxBatchSize )
+    {
+        if ( maxWait < 0 )
+        {
+            throw new IllegalArgumentException( "Negative max wait " + maxWait );
+        }
+        if ( maxBatchSize < 1 )
+        {
+            throw new IllegalArgumentException( "Illegal max batch size " + maxBatchSize );
+        }
+        this.name = name;
+        this.maxWait = maxWait;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Creates a group committer as configured by {@link Config#GROUP_COMMIT},
+     * {@link Config#GROUP_COMMIT_MAX_WAIT} and
+     * {@link Config#GROUP_COMMIT_MAX_BATCH_SIZE}.
+     *
+     * @return the group committer or <CODE>null</CODE> if group commit isn't
+     *         enabled in <CODE>config</CODE>.
+     */
+    public static GroupCommitter fromConfig( String name, Map<?,?> config )
+    {
+        if ( config == null || !Boolean.parseBoolean( (String) Config.getFromConfig(
+                config, Config.GROUP_COMMIT, "false" ) ) )
+        {
+            return null;
+        }
+        long maxWait = Long.parseLong( (String) Config.getFromConfig( config,
+                Config.GROUP_COMMIT_MAX_WAIT, "0" ) );
+        int maxBatchSize = Integer.parseInt( (String) Config.getFromConfig( config,
+                Config.GROUP_COMMIT_MAX_BATCH_SIZE, "64" ) );
+        return new GroupCommitter( name, maxWait, maxBatchSize );
+    }
+
+    /**
+     * Registers a commit record which has been written out to the log file
+     * channel, but not forced. Must be called in the same order as the records
+     * were written out.
+     *
+     * @return the ticket to pass in to {@link #awaitForced(long, Forcer)}.
+     */
+    public synchronized long register()
+    {
+        long ticket = ++registered;
+        if ( registered - forced >= maxBatchSize )
+        {
+            notifyAll();
+        }
+        return ticket;
+    }
+
+    /**
+     * Blocks until the record registered with <CODE>ticket</CODE> has been
+     * forced, either by this thread using <CODE>forcer</CODE> or by another
+     * thread forcing a batch containing it.
+     *
+     * @throws IOException if this thread had to force the log and failed.
+     */
+    public void awaitForced( long ticket, Forcer forcer ) throws IOException
+    {
+        long target;
+        synchronized ( this )
+        {
+            while ( forced < ticket && forcing )
+            {
+                waitUninterruptibly( 0 );
+            }
+            if ( forced >= ticket )
+            {
+                return;
+            }
+            forcing = true;
+            long deadline = System.currentTimeMillis() + maxWait;
+            long timeLeft = maxWait;
+            while ( registered - forced < maxBatchSize && timeLeft > 0 )
+            {
+                waitUninterruptibly( timeLeft );
+                timeLeft = deadline - System.currentTimeMillis();
+            }
+            target = registered;
+        }
+        boolean success = false;
+        try
+        {
+            forcer.force();
+            success = true;
+        }
+        finally
+        {
+            synchronized ( this )
+            {
+                forcing = false;
+                if ( success )
+                {
+                    largestBatchSize = Math.max( largestBatchSize, target - forced );
+                    forced = target;
+                    forceCount++;
+                    sampleForceRate( System.currentTimeMillis() );
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    private void sampleForceRate( long now )
+    {
+        long elapsed = now - rateIntervalStart;
+        if ( elapsed >= RATE_INTERVAL )
+        {
+            forcesPerSecond = (forceCount - rateIntervalForceCount) * 1000d / elapsed;
+            rateIntervalStart = now;
+            rateIntervalForceCount = forceCount;
+        }
+    }
+
+    private void waitUninterruptibly( long millis )
+    {
+        try
+        {
+            wait( millis );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.interrupted();
+        }
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public long getMaxWait()
+    {
+        return maxWait;
+    }
+
+    public int getMaxBatchSize()
+    {
+        return maxBatchSize;
+    }
+
+    /**
+     * Returns the number of times the log has been forced. The count only
+     * grows, so a monitor can compute the force rate from two samples.
+     */
+    public synchronized long getForceCount()
+    {
+        return forceCount;
+    }
+
+    /**
+     * Returns the number of commit records covered by a completed force.
+     */
+    public synchronized long getForcedCommitCount()
+    {
+        return forced;
+    }
+
+    public synchronized double getAverageBatchSize()
+    {
+        return forceCount == 0 ? 0 : (double) forced / forceCount;
+    }
+
+    public synchronized long getLargestBatchSize()
+    {
+        return largestBatchSize;
+    }
+
+    /**
+     * Returns the number of forces (fsyncs) per second, measured over the
+     * last completed interval of a second. Reading it doesn't reset anything,
+     * so any number of monitors can sample it. If no force has completed an
+     * interval for a while, the rate since the last interval started is
+     * returned, so that the rate drops when forcing stops.
+     */
+    public synchronized double getForcesPerSecond()
+    {
+        long elapsed = System.currentTimeMillis() - rateIntervalStart;
+        if ( elapsed >= 2 * RATE_INTERVAL )
+        {
+            return (forceCount - rateIntervalForceCount) * 1000d / elapsed;
+        }
+        return forcesPerSecond;
+    }
+
+    @Override
+    public String toString()
+    {
+        return getClass().getSimpleName() + "[" + name + ", maxWait=" + maxWait +
+                ", maxBatchSize=" + maxBatchSize + "]";
+    }
+}
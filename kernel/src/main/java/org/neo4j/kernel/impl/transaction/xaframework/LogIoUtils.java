@@ -271,7 +271,8 @@ public class LogIoUtils
         subdir.mkdir();
         for ( File file : storeDir.listFiles() )
         {
-            if ( file.getName().contains( "nioneo_logical.log.v" ) )
+            if ( file.getName().contains( "nioneo_logical.log.v" ) ||
+                file.getName().contains( "nioneo_logical.log.txindex.v" ) )
             {
                 file.renameTo( new File( subdir, file.getName() ) );
             }
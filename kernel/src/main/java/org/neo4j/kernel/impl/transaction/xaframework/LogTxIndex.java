@@ -0,0 +1,299 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.xaframework;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.neo4j.kernel.impl.transaction.xaframework.XaLogicalLog.TxPosition;
+import org.neo4j.kernel.impl.util.FileUtils;
+
+/**
+ * Keeps track of where the start entry of each committed transaction is in
+ * the logical logs, so that a committed transaction can be found without
+ * scanning logs. Positions of transactions in the current log version are kept
+ * in memory, when a log version is rotated (and kept) they are written to an
+ * index file next to the log:
+ * 
+ * <pre>
+ * [txId(8)][start position(8)][master id(4)][identifier(4)]...
+ * </pre>
+ * 
+ * sorted on tx id. Since tx ids in a log are consecutive the record of a
+ * transaction is usually found with one seek, at
+ * <CODE>(txId - first txId) * RECORD_SIZE</CODE>, with a binary search over
+ * the file as fallback. Only the first and last tx id of each index file is
+ * kept in memory.
+ * <p>
+ * All methods must be invoked while holding the monitor of the
+ * {@link XaLogicalLog} owning this index.
+ */
+class LogTxIndex
+{
+    static final int RECORD_SIZE = 24;
+
+    private final String logFileName;
+
+    // current log version
+    private long[] txIds = new long[1024];
+    private long[] positions = new long[1024];
+    private int[] masterIds = new int[1024];
+    private int[] identifiers = new int[1024];
+    private int size = 0;
+
+    // rotated log version -> { first tx id, last tx id }
+    private final Map<Long,long[]> rotated = new ConcurrentHashMap<Long,long[]>();
+
+    private final ByteBuffer recordBuffer = ByteBuffer.allocate( RECORD_SIZE );
+
+    LogTxIndex( String logFileName )
+    {
+        this.logFileName = logFileName;
+    }
+
+    String getIndexFileName( long version )
+    {
+        return logFileName + ".txindex.v" + version;
+    }
+
+    /**
+     * Records the start position of a transaction committed in the current
+     * log version.
+     */
+    void add( long txId, int masterId, int identifier, long position )
+    {
+        if ( size == txIds.length )
+        {
+            int newLength = size * 2;
+            txIds = Arrays.copyOf( txIds, newLength );
+            positions = Arrays.copyOf( positions, newLength );
+            masterIds = Arrays.copyOf( masterIds, newLength );
+            identifiers = Arrays.copyOf( identifiers, newLength );
+        }
+        // keep sorted, tx ids almost always come in order
+        int index = size;
+        while ( index > 0 && txIds[index - 1] >= txId )
+        {
+            index--;
+        }
+        if ( index < size && txIds[index] == txId )
+        {
+            positions[index] = position;
+            masterIds[index] = masterId;
+            identifiers[index] = identifier;
+            return;
+        }
+        System.arraycopy( txIds, index, txIds, index + 1, size - index );
+        System.arraycopy( positions, index, positions, index + 1, size - index );
+        System.arraycopy( masterIds, index, masterIds, index + 1, size - index );
+        System.arraycopy( identifiers, index, identifiers, index + 1, size - index );
+        txIds[index] = txId;
+        positions[index] = position;
+        masterIds[index] = masterId;
+        identifiers[index] = identifier;
+        size++;
+    }
+
+    /**
+     * Writes the positions recorded for the current log version to the index
+     * file of <CODE>version</CODE>, which has just been rotated and kept, and
+     * starts over for the next version.
+     */
+    void rotated( long version ) throws IOException
+    {
+        if ( size == 0 )
+        {
+            remove( version );
+            return;
+        }
+        String indexFileName = getIndexFileName( version );
+        FileChannel channel = new RandomAccessFile( indexFileName, "rw" ).getChannel();
+        try
+        {
+            channel.truncate( 0 );
+            ByteBuffer buffer = ByteBuffer.allocate( RECORD_SIZE * 1024 );
+            for ( int i = 0; i < size; i++ )
+            {
+                if ( !buffer.hasRemaining() )
+                {
+                    buffer.flip();
+                    channel.write( buffer );
+                    buffer.clear();
+                }
+                buffer.putLong( txIds[i] ).putLong( positions[i] ).putInt(
+                    masterIds[i] ).putInt( identifiers[i] );
+            }
+            buffer.flip();
+            channel.write( buffer );
+            channel.force( false );
+        }
+        finally
+        {
+            channel.close();
+        }
+        rotated.put( version, new long[] { txIds[0], txIds[size - 1] } );
+        clearCurrent();
+    }
+
+    /**
+     * Forgets the positions of the current log version, used when it is
+     * deleted instead of kept.
+     */
+    void clearCurrent()
+    {
+        size = 0;
+    }
+
+    /**
+     * Loads the tx id range of the index file for <CODE>version</CODE>, if
+     * there is one. Transactions before <CODE>previousLogLastTx</CODE>, the
+     * last committed tx according to the log header, can't be in the log so
+     * an index containing them belongs to some other log and is ignored.
+     * 
+     * @return <CODE>true</CODE> if the index was loaded
+     */
+    boolean load( long version, long previousLogLastTx ) throws IOException
+    {
+        File file = new File( getIndexFileName( version ) );
+        if ( !file.exists() || file.length() < RECORD_SIZE ||
+            file.length() % RECORD_SIZE != 0 )
+        {
+            return false;
+        }
+        FileChannel channel = new RandomAccessFile( file, "r" ).getChannel();
+        try
+        {
+            long count = channel.size() / RECORD_SIZE;
+            long firstTxId = readRecord( channel, 0 ).getLong( 0 );
+            long lastTxId = readRecord( channel, count - 1 ).getLong( 0 );
+            if ( firstTxId <= previousLogLastTx || lastTxId < firstTxId )
+            {
+                return false;
+            }
+            rotated.put( version, new long[] { firstTxId, lastTxId } );
+            return true;
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+
+    void remove( long version )
+    {
+        rotated.remove( version );
+        FileUtils.deleteFile( new File( getIndexFileName( version ) ) );
+    }
+
+    /**
+     * Returns the position of transaction <CODE>txId</CODE> in the current
+     * log version or in one of the rotated logs with an index, or
+     * <CODE>null</CODE> if it isn't known.
+     */
+    TxPosition find( long txId, long currentVersion ) throws IOException
+    {
+        int index = Arrays.binarySearch( txIds, 0, size, txId );
+        if ( index >= 0 )
+        {
+            return new TxPosition( currentVersion, masterIds[index],
+                identifiers[index], positions[index] );
+        }
+        for ( Map.Entry<Long,long[]> entry : rotated.entrySet() )
+        {
+            long[] range = entry.getValue();
+            if ( txId >= range[0] && txId <= range[1] )
+            {
+                TxPosition position = findInFile( entry.getKey(), range[0], txId );
+                if ( position != null )
+                {
+                    return position;
+                }
+            }
+        }
+        return null;
+    }
+
+    private TxPosition findInFile( long version, long firstTxId, long txId )
+        throws IOException
+    {
+        File file = new File( getIndexFileName( version ) );
+        if ( !file.exists() )
+        {
+            rotated.remove( version );
+            return null;
+        }
+        FileChannel channel = new RandomAccessFile( file, "r" ).getChannel();
+        try
+        {
+            long count = channel.size() / RECORD_SIZE;
+            long low = 0;
+            long high = count - 1;
+            // where it should be if tx ids are consecutive
+            long slot = Math.min( txId - firstTxId, high );
+            while ( low <= high )
+            {
+                ByteBuffer record = readRecord( channel, slot );
+                long foundTxId = record.getLong();
+                if ( foundTxId == txId )
+                {
+                    long position = record.getLong();
+                    int masterId = record.getInt();
+                    int identifier = record.getInt();
+                    return new TxPosition( version, masterId, identifier, position );
+                }
+                if ( foundTxId < txId )
+                {
+                    low = slot + 1;
+                }
+                else
+                {
+                    high = slot - 1;
+                }
+                slot = (low + high) >>> 1;
+            }
+            return null;
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+
+    private ByteBuffer readRecord( FileChannel channel, long slot ) throws IOException
+    {
+        recordBuffer.clear();
+        channel.position( slot * RECORD_SIZE );
+        while ( recordBuffer.hasRemaining() )
+        {
+            if ( channel.read( recordBuffer ) == -1 )
+            {
+                throw new IOException( "Unable to read tx index record " + slot );
+            }
+        }
+        recordBuffer.flip();
+        return recordBuffer;
+    }
+}
@@ -23,12 +23,16 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -36,6 +40,7 @@ import javax.transaction.xa.XAException;
 import javax.transaction.xa.Xid;
 
 import org.neo4j.helpers.Exceptions;
+import org.neo4j.kernel.Config;
 import org.neo4j.kernel.impl.cache.LruCache;
 import org.neo4j.kernel.impl.util.ArrayMap;
 import org.neo4j.kernel.impl.util.BufferedFileChannel;
@@ -101,6 +106,21 @@ public class XaLogicalLog
 
     private final LruCache<Long, TxPosition> txStartPositionCache =
         new LruCache<Long, TxPosition>( "Tx start position cache", 10000, null );
+    private final LogTxIndex txIndex;
+
+    // null if group commit isn't enabled
+    private final GroupCommitter groupCommitter;
+    // identifier -> group commit ticket for commit records not yet forced
+    private final Map<Integer,Long> pendingForces = new HashMap<Integer,Long>();
+
+    // false if rotation should be done by the committing thread
+    private boolean backgroundRotation;
+    private BackgroundRotator rotator;
+    // the background rotator catches up with the current log until no more
+    // than this is left to copy while holding the monitor, or gives up on
+    // that after the last round and copies what's left anyway
+    private static final int MAX_SWITCH_COPY_SIZE = 64*1024;
+    private static final int CATCH_UP_ROUNDS = 10;
 
 
     XaLogicalLog( String fileName, XaResourceManager xaRm, XaCommandFactory cf,
@@ -116,6 +136,10 @@ public class XaLogicalLog
             + Xid.MAXBQUALSIZE * 10 );
         storeDir = (String) config.get( "store_dir" );
         msgLog = StringLogger.getLogger( storeDir);
+        groupCommitter = GroupCommitter.fromConfig( fileName, config );
+        txIndex = new LogTxIndex( fileName );
+        backgroundRotation = config != null && Boolean.parseBoolean( (String)
+                Config.getFromConfig( config, Config.BACKGROUND_LOG_ROTATION, "false" ) );
     }
 
     synchronized void open() throws IOException
@@ -200,6 +224,35 @@ public class XaLogicalLog
         }
 
         instantiateCorrectWriteBuffer();
+        warmUpTxIndex();
+    }
+
+    // loads the tx index of each kept log version so that committed
+    // transactions in them can be found without scanning the logs
+    private void warmUpTxIndex() throws IOException
+    {
+        int loaded = 0;
+        for ( long version = logVersion - 1; version >= 0 && hasLogicalLog( version );
+            version-- )
+        {
+            ReadableByteChannel log = getLogicalLog( version );
+            try
+            {
+                long[] header = readAndAssertLogHeader( buffer, log, version );
+                if ( txIndex.load( version, header[1] ) )
+                {
+                    loaded++;
+                }
+            }
+            finally
+            {
+                log.close();
+            }
+        }
+        if ( loaded > 0 )
+        {
+            msgLog.logMessage( "Loaded tx index for " + loaded + " logical log(s)" );
+        }
     }
 
     private void instantiateCorrectWriteBuffer() throws IOException
@@ -336,7 +389,7 @@ public class XaLogicalLog
         try
         {
             LogIoUtils.writeCommit( false, writeBuffer, identifier, txId, masterId );
-            writeBuffer.force();
+            forceOrRegister( identifier );
             cacheTxStartPosition( txId, masterId, startEntry );
         }
         catch ( IOException e )
@@ -346,6 +399,105 @@ public class XaLogicalLog
         }
     }
 
+    private void forceOrRegister( int identifier ) throws IOException
+    {
+        if ( groupCommitter == null )
+        {
+            writeBuffer.force();
+        }
+        else
+        {
+            writeBuffer.writeOut();
+            pendingForces.put( identifier, groupCommitter.register() );
+        }
+    }
+
+    /**
+     * Blocks until the commit record of the transaction with the given
+     * identifier has been forced to disk. In group commit mode
+     * {@link #commitOnePhase(int, long, int)} and
+     * {@link #commitTwoPhase(int, long, int)} only write the commit record out
+     * and leave forcing it to this method, so that one force can cover many
+     * transactions. It must therefore be called without holding any lock
+     * other committing transactions need, and before the transaction is
+     * applied so that its changes can't reach the store before its commit
+     * record is on disk. Returns directly if group commit
+     * isn't enabled or the record already has been forced.
+     *
+     * @param identifier the identifier of the committed transaction.
+     * @throws XAException if the log couldn't be forced.
+     */
+    public void forceCommitted( int identifier ) throws XAException
+    {
+        if ( groupCommitter == null )
+        {
+            return;
+        }
+        Long ticket;
+        synchronized ( this )
+        {
+            ticket = pendingForces.remove( identifier );
+        }
+        if ( ticket == null )
+        {
+            return;
+        }
+        try
+        {
+            groupCommitter.awaitForced( ticket, forcer );
+        }
+        catch ( IOException e )
+        {
+            throw Exceptions.withCause( new XAException( "Logical log unable to force commit [" +
+                    identifier + "] " ), e );
+        }
+    }
+
+    /**
+     * Drops the pending force registered by the commit of the transaction
+     * with the given identifier, if any. Called when the commit failed after
+     * its record was written out, since {@link #forceCommitted(int)} then
+     * never will be called for it.
+     */
+    synchronized void forgetPendingForce( int identifier )
+    {
+        pendingForces.remove( identifier );
+    }
+
+    private final GroupCommitter.Forcer forcer = new GroupCommitter.Forcer()
+    {
+        public void force() throws IOException
+        {
+            FileChannel channel;
+            synchronized ( XaLogicalLog.this )
+            {
+                channel = fileChannel;
+            }
+            if ( channel == null )
+            {
+                // released, which means that it has been forced
+                return;
+            }
+            try
+            {
+                channel.force( false );
+            }
+            catch ( ClosedChannelException e )
+            {
+                // closed by rotate or close, which both force it first
+            }
+        }
+    };
+
+    /**
+     * @return the group committer of this log or <CODE>null</CODE> if group
+     *         commit isn't enabled.
+     */
+    public GroupCommitter getGroupCommitter()
+    {
+        return groupCommitter;
+    }
+
     private synchronized void cacheTxStartPosition( long txId, int masterId,
             LogEntry.Start startEntry )
     {
@@ -355,6 +507,21 @@ public class XaLogicalLog
         }
         txStartPositionCache.put( txId, new TxPosition( logVersion, masterId, startEntry.getIdentifier(),
                 startEntry.getStartPosition() ) );
+        txIndex.add( txId, masterId, startEntry.getIdentifier(), startEntry.getStartPosition() );
+    }
+
+    private TxPosition getTxPosition( long txId ) throws IOException
+    {
+        TxPosition txPosition = txStartPositionCache.get( txId );
+        if ( txPosition == null )
+        {
+            txPosition = txIndex.find( txId, logVersion );
+            if ( txPosition != null )
+            {
+                txStartPositionCache.put( txId, txPosition );
+            }
+        }
+        return txPosition;
     }
 
     // [DONE][identifier]
@@ -396,6 +563,7 @@ public class XaLogicalLog
         // force to make sure done record is there if 2PC tx and global log
         // marks tx as committed
         fileChannel.force( false );
+        pendingForces.remove( identifier );
     }
 
     // [TX_2P_COMMIT][identifier]
@@ -408,7 +576,7 @@ public class XaLogicalLog
         try
         {
             LogIoUtils.writeCommit( true, writeBuffer, identifier, txId, masterId );
-            writeBuffer.force();
+            forceOrRegister( identifier );
             cacheTxStartPosition( txId, masterId, startEntry );
         }
         catch ( IOException e )
@@ -512,6 +680,7 @@ public class XaLogicalLog
             XaTransaction xaTx = xaRm.getXaTransaction( xid );
             xaTx.setCommitTxId( txId );
             xaRm.injectOnePhaseCommit( xid );
+            indexRecoveredCommit( commit, startEntry );
             logRecoveryMessage( "Injected one phase commit, txId=" + commit.getTxId() );
         }
         catch ( XAException e )
@@ -520,6 +689,16 @@ public class XaLogicalLog
         }
     }
 
+    private void indexRecoveredCommit( LogEntry.Commit commit, LogEntry.Start startEntry )
+    {
+        // start positions are only known when recovering our own log
+        if ( doingRecovery )
+        {
+            txIndex.add( commit.getTxId(), commit.getMasterId(),
+                startEntry.getIdentifier(), startEntry.getStartPosition() );
+        }
+    }
+
     private void logRecoveryMessage( String string )
     {
         if ( doingRecovery )
@@ -562,6 +741,7 @@ public class XaLogicalLog
             XaTransaction xaTx = xaRm.getXaTransaction( xid );
             xaTx.setCommitTxId( txId );
             xaRm.injectTwoPhaseCommit( xid );
+            indexRecoveredCommit( commit, startEntry );
             logRecoveryMessage( "Injected two phase commit, txId=" + commit.getTxId() );
         }
         catch ( XAException e )
@@ -584,6 +764,26 @@ public class XaLogicalLog
     }
 
     private void checkLogRotation() throws IOException
+    {
+        if ( rotationNeeded() )
+        {
+            if ( backgroundRotation )
+            {
+                if ( rotator == null )
+                {
+                    rotator = new BackgroundRotator();
+                    rotator.start();
+                }
+                rotator.request();
+            }
+            else
+            {
+                rotate();
+            }
+        }
+    }
+
+    private boolean rotationNeeded() throws IOException
     {
         if ( autoRotate &&
             writeBuffer.getFileChannelPosition() >= rotateAtSize )
@@ -591,13 +791,411 @@ public class XaLogicalLog
             long currentPos = writeBuffer.getFileChannelPosition();
             long firstStartEntry = getFirstStartEntry( currentPos );
             // only rotate if no huge tx is running
-            if ( ( currentPos - firstStartEntry ) < rotateAtSize / 2 )
+            return ( currentPos - firstStartEntry ) < rotateAtSize / 2;
+        }
+        return false;
+    }
+
+    /*
+     * Returns the next log to prepare if the current log needs rotating. From
+     * the returned position on everything written to the current log is
+     * copied, the entries before it only for the transactions active now.
+     */
+    private synchronized NextLog startNextLog() throws IOException
+    {
+        if ( fileChannel == null || !fileChannel.isOpen() || !rotationNeeded() )
+        {
+            return null;
+        }
+        writeBuffer.writeOut();
+        long position = writeBuffer.getFileChannelPosition();
+        Set<Integer> activeIdentifiers = new HashSet<Integer>();
+        for ( Integer identifier : xidIdentMap.keySet() )
+        {
+            activeIdentifiers.add( identifier );
+        }
+        return new NextLog( xaTf.getCurrentVersion(), currentLog,
+            getFirstStartEntry( position ), position, activeIdentifiers );
+    }
+
+    /*
+     * Copies what is left of the current log and switches to the next log,
+     * unless more than MAX_SWITCH_COPY_SIZE is left and this isn't the last
+     * round, in which case the position to catch up to is set. Returns false
+     * without doing anything if the current log isn't the one the next log
+     * was copied from any more.
+     */
+    private synchronized boolean switchIfCaughtUp( NextLog next,
+        boolean lastRound ) throws IOException
+    {
+        if ( !next.isCopyOfCurrentLog() )
+        {
+            next.abandoned = true;
+            return false;
+        }
+        writeBuffer.writeOut();
+        long endPosition = writeBuffer.getFileChannelPosition();
+        if ( !lastRound
+            && endPosition - next.copiedPosition() > MAX_SWITCH_COPY_SIZE )
+        {
+            next.catchUpPosition = endPosition;
+            return false;
+        }
+        next.copyUpTo( endPosition );
+        String currentLogFile = getCurrentLogFileName();
+        msgLog.logMessage( "Rotating [" + currentLogFile + "] @ version=" +
+            next.version + " to prepared " + next.newLogFile + " from position " +
+            endPosition, true );
+        FileChannel newLog = next.finish( xaTf.getLastCommittedTx() );
+        List<Integer> activeIdentifiers = new ArrayList<Integer>();
+        for ( Integer identifier : xidIdentMap.keySet() )
+        {
+            activeIdentifiers.add( identifier );
+        }
+        for ( Integer identifier : activeIdentifiers )
+        {
+            LogEntry.Start startEntry = next.startEntries.get( identifier );
+            assert startEntry != null;
+            // positions are in the new log from now on
+            xidIdentMap.put( identifier, startEntry );
+        }
+        List<LogEntry.Commit> carriedOverCommits = new ArrayList<LogEntry.Commit>();
+        for ( LogEntry.Commit commit : next.commits )
+        {
+            if ( xidIdentMap.get( commit.getIdentifier() ) != null )
             {
-                rotate();
+                carriedOverCommits.add( commit );
+            }
+        }
+        switchToNewLog( newLog, next.newActiveLog, currentLogFile,
+            endPosition, next.version, carriedOverCommits );
+        return true;
+    }
+
+    private synchronized void backgroundRotationFailed( Throwable cause )
+    {
+        msgLog.logMessage( "Background rotation of " + fileName + " failed, " +
+                "rotating on the committing thread from now on", cause, true );
+        backgroundRotation = false;
+        rotator = null;
+    }
+
+    /**
+     * Rotates the log when a committing thread has found it to be full. The
+     * next log is prepared here without holding the log monitor. The entries
+     * of the transactions active at the start are copied to a new file, and
+     * so is everything written to the current log after that, while the
+     * committers keep writing to it. When the copy has caught up with the
+     * current log all that is left to do while holding the monitor is to copy
+     * the last few entries, force the new log and switch to it.
+     * <p>
+     * Everything done before the copying started is flushed to the store
+     * first, so the transactions that are in the new log are all that is
+     * needed for recovery once it's the active log. Transactions that
+     * completed while copying are replayed again by a recovery, the same as
+     * any completed transaction in the active log.
+     */
+    private class BackgroundRotator extends Thread
+    {
+        private boolean requested;
+        private boolean preparing;
+        private boolean stopped;
+
+        BackgroundRotator()
+        {
+            super( "Logical log rotator[" + fileName + "]" );
+            setDaemon( true );
+        }
+
+        synchronized void request()
+        {
+            if ( !requested )
+            {
+                requested = true;
+                notifyAll();
+            }
+        }
+
+        /**
+         * Stops this rotator, waiting for it if it is preparing the next log.
+         * Invoked while holding the log monitor, which preparing never
+         * takes.
+         */
+        synchronized void shutdown()
+        {
+            stopped = true;
+            notifyAll();
+            while ( preparing )
+            {
+                waitUninterruptibly();
+            }
+        }
+
+        private synchronized boolean awaitRequest()
+        {
+            while ( !requested && !stopped )
+            {
+                waitUninterruptibly();
+            }
+            requested = false;
+            return !stopped;
+        }
+
+        private synchronized boolean startPreparing()
+        {
+            if ( stopped )
+            {
+                return false;
+            }
+            preparing = true;
+            return true;
+        }
+
+        private synchronized void donePreparing()
+        {
+            preparing = false;
+            notifyAll();
+        }
+
+        private void waitUninterruptibly()
+        {
+            try
+            {
+                wait();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.interrupted();
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            while ( awaitRequest() )
+            {
+                try
+                {
+                    rotateInBackground();
+                }
+                catch ( Throwable t )
+                {
+                    backgroundRotationFailed( t );
+                    return;
+                }
+            }
+        }
+
+        private void rotateInBackground() throws IOException
+        {
+            NextLog next = startNextLog();
+            if ( next == null || !startPreparing() )
+            {
+                return;
+            }
+            boolean switched = false;
+            try
+            {
+                try
+                {
+                    xaTf.flushAll();
+                    next.open();
+                    next.copyUpTo( next.copyAllFrom );
+                }
+                finally
+                {
+                    donePreparing();
+                }
+                for ( int round = 1; !( switched = switchIfCaughtUp( next,
+                    round == CATCH_UP_ROUNDS ) ); round++ )
+                {
+                    if ( next.abandoned || !startPreparing() )
+                    {
+                        return;
+                    }
+                    try
+                    {
+                        next.copyUpTo( next.catchUpPosition );
+                    }
+                    finally
+                    {
+                        donePreparing();
+                    }
+                }
+            }
+            catch ( IOException e )
+            {
+                if ( next.isCopyOfCurrentLog() )
+                {
+                    throw e;
+                }
+                // rotated or closed meanwhile, nothing to prepare any more
+            }
+            finally
+            {
+                if ( !switched )
+                {
+                    next.delete();
+                }
             }
         }
     }
 
+    /**
+     * The next log as prepared by the {@link BackgroundRotator}, written to a
+     * temporary file until it's switched to. Only used by the rotator thread.
+     */
+    private class NextLog
+    {
+        final long version;
+        final char currentLog;
+        final char newActiveLog;
+        final String newLogFile;
+        final long copyAllFrom;
+        private final Set<Integer> activeIdentifiers;
+        private final File file = new File( fileName + ".rotating" );
+        private final ByteBuffer readBuffer = ByteBuffer.allocate( 9 +
+            Xid.MAXGTRIDSIZE + Xid.MAXBQUALSIZE * 10 );
+        private FileChannel source;
+        private FileChannel channel;
+        private LogBuffer logBuffer;
+        private long copiedPosition;
+        final Map<Integer,LogEntry.Start> startEntries =
+            new HashMap<Integer,LogEntry.Start>();
+        final List<LogEntry.Commit> commits = new ArrayList<LogEntry.Commit>();
+        long catchUpPosition;
+        boolean abandoned;
+
+        NextLog( long version, char currentLog, long firstStartEntry,
+            long copyAllFrom, Set<Integer> activeIdentifiers )
+        {
+            this.version = version;
+            this.currentLog = currentLog;
+            this.copiedPosition = firstStartEntry;
+            this.copyAllFrom = copyAllFrom;
+            this.activeIdentifiers = activeIdentifiers;
+            if ( currentLog == CLEAN || currentLog == LOG2 )
+            {
+                newActiveLog = LOG1;
+                newLogFile = getLog1FileName();
+            }
+            else
+            {
+                newActiveLog = LOG2;
+                newLogFile = getLog2FileName();
+            }
+        }
+
+        boolean isCopyOfCurrentLog()
+        {
+            synchronized ( XaLogicalLog.this )
+            {
+                return fileChannel != null && fileChannel.isOpen()
+                    && XaLogicalLog.this.currentLog == currentLog
+                    && xaTf.getCurrentVersion() == version;
+            }
+        }
+
+        void open() throws IOException
+        {
+            safeDeleteFile( file );
+            channel = new RandomAccessFile( file, "rw" ).getChannel();
+            // the last committed tx is filled in when switching
+            LogIoUtils.writeLogHeader( readBuffer, version + 1, -1 );
+            if ( channel.write( readBuffer ) != 16 )
+            {
+                throw new IOException( "Unable to write log version to new" );
+            }
+            logBuffer = instantiateCorrectWriteBuffer( channel );
+            source = new RandomAccessFile( currentLog == LOG1 ?
+                getLog1FileName() : getLog2FileName(), "r" ).getChannel();
+            source.position( copiedPosition );
+        }
+
+        long copiedPosition()
+        {
+            return copiedPosition;
+        }
+
+        void copyUpTo( long position ) throws IOException
+        {
+            while ( copiedPosition < position )
+            {
+                LogEntry entry = LogIoUtils.readEntry( readBuffer, source, cf );
+                if ( entry == null )
+                {
+                    throw new IOException( "Unable to read log entry @ pos=" +
+                        copiedPosition + " of " + fileName );
+                }
+                int identifier = entry.getIdentifier();
+                if ( copiedPosition >= copyAllFrom
+                    || activeIdentifiers.contains( identifier ) )
+                {
+                    if ( entry instanceof LogEntry.Start )
+                    {
+                        LogEntry.Start startEntry = (LogEntry.Start) entry;
+                        startEntry.setStartPosition(
+                            logBuffer.getFileChannelPosition() );
+                        startEntries.put( identifier, startEntry );
+                    }
+                    else if ( entry instanceof LogEntry.Commit )
+                    {
+                        commits.add( (LogEntry.Commit) entry );
+                    }
+                    LogIoUtils.writeLogEntry( entry, logBuffer );
+                }
+                copiedPosition = source.position();
+            }
+        }
+
+        /*
+         * Forces the copy and moves it in place, returning the new log
+         * positioned at its end
+         */
+        FileChannel finish( long lastCommittedTx ) throws IOException
+        {
+            LogIoUtils.writeLogHeader( readBuffer, version + 1, lastCommittedTx );
+            if ( channel.write( readBuffer, 0 ) != 16 )
+            {
+                throw new IOException( "Unable to write log version to new" );
+            }
+            logBuffer.force();
+            long endPosition = logBuffer.getFileChannelPosition();
+            channel.close();
+            source.close();
+            assertFileDoesntExist( newLogFile, "New log file" );
+            if ( !FileUtils.renameFile( file, new File( newLogFile ) ) )
+            {
+                throw new IOException( "Failed to rename " + file + " to " +
+                    newLogFile );
+            }
+            previousLogLastCommittedTx = lastCommittedTx;
+            FileChannel newLog = new RandomAccessFile( newLogFile, "rw" ).getChannel();
+            newLog.position( endPosition );
+            return newLog;
+        }
+
+        void delete()
+        {
+            try
+            {
+                if ( source != null )
+                {
+                    source.close();
+                }
+                if ( channel != null )
+                {
+                    channel.close();
+                }
+            }
+            catch ( IOException e )
+            {
+                log.log( Level.WARNING, "Unable to close " + file, e );
+            }
+            safeDeleteFile( file );
+        }
+    }
+
     private void renameCurrentLogFileAndIncrementVersion( String logFileName,
         long endPosition ) throws IOException
     {
@@ -607,7 +1205,8 @@ public class XaLogicalLog
             throw new IOException( "Logical log[" + logFileName +
                 "] not found" );
         }
-        String newName = getFileName( xaTf.getAndSetNewVersion() );
+        long version = xaTf.getAndSetNewVersion();
+        String newName = getFileName( version );
         File newFile = new File( newName );
         boolean renamed = FileUtils.renameFile( file, newFile );
 
@@ -635,6 +1234,7 @@ public class XaLogicalLog
                     channel.close();
                 }
             }
+            txIndex.rotated( version );
         }
     }
 
@@ -667,6 +1267,11 @@ public class XaLogicalLog
 
     public synchronized void close() throws IOException
     {
+        if ( rotator != null )
+        {
+            rotator.shutdown();
+            rotator = null;
+        }
         if ( fileChannel == null || !fileChannel.isOpen() )
         {
             log.fine( "Logical log: " + fileName + " already closed" );
@@ -920,12 +1525,11 @@ public class XaLogicalLog
         }
     }
 
-    private LogEntry.Commit extractTransactionFromLog( long txId,
+    private LogEntry.Commit extractTransactionFromLog( long txId, TxPosition txPosition,
             long expectedVersion, ReadableByteChannel log, LogBuffer targetBuffer ) throws IOException
     {
         // Assertions in read?
         LogEntry entry;
-        TxPosition txPosition = txStartPositionCache.get( txId );
         LogEntryCollector collector = txPosition != null ?
                 new KnownIdentifierCollector( txPosition.identifier, targetBuffer ) :
                 new KnownTxIdCollector( txId, targetBuffer );
@@ -987,7 +1591,7 @@ public class XaLogicalLog
     {
         long version = 0;
         ReadableByteChannel log = null;
-        TxPosition txPosition = txStartPositionCache.get( txId );
+        TxPosition txPosition = getTxPosition( txId );
         try
         {
             if ( txPosition != null )
@@ -1011,7 +1615,7 @@ public class XaLogicalLog
                 long prevTxId = header[1];
                 assertLogCanContainTx( txId, prevTxId );
             }
-            return extractTransactionFromLog( txId, version, log, targetBuffer );
+            return extractTransactionFromLog( txId, txPosition, version, log, targetBuffer );
         }
         finally
         {
@@ -1045,7 +1649,7 @@ public class XaLogicalLog
             return MASTER_ID_REPRESENTING_NO_MASTER;
         }
 
-        TxPosition cache = txStartPositionCache.get( txId );
+        TxPosition cache = getTxPosition( txId );
         if ( cache != null )
         {
             return cache.masterId;
@@ -1125,6 +1729,7 @@ public class XaLogicalLog
 
     public boolean deleteLogicalLog( long version )
     {
+        txIndex.remove( version );
         File file = new File(getFileName( version ) );
         return file.exists() ? FileUtils.deleteFile( file ) : false;
     }
@@ -1382,6 +1987,7 @@ public class XaLogicalLog
         }
         LogEntry entry;
         // Set<Integer> startEntriesWritten = new HashSet<Integer>();
+        List<LogEntry.Commit> carriedOverCommits = new ArrayList<LogEntry.Commit>();
         LogBuffer newLogBuffer = instantiateCorrectWriteBuffer( newLog );
         while ((entry = LogIoUtils.readEntry( buffer, fileChannel, cf )) != null )
         {
@@ -1398,8 +2004,8 @@ public class XaLogicalLog
                 else if ( entry instanceof LogEntry.Commit )
                 {
                     LogEntry.Start startEntry = xidIdentMap.get( entry.getIdentifier() );
-                    LogEntry.Commit commitEntry = (LogEntry.Commit) entry;
-                    cacheTxStartPosition( commitEntry.getTxId(), commitEntry.getMasterId(), startEntry );
+                    // positions are in the new log, cached once it is current
+                    carriedOverCommits.add( (LogEntry.Commit) entry );
                     msgLog.logMessage( "Updated tx " + ((LogEntry.Commit) entry ).getTxId() +
                             " with " + startEntry.getStartPosition() );
                 }
@@ -1416,6 +2022,19 @@ public class XaLogicalLog
         msgLog.logMessage( "Rotate: old log scanned, newLog @ pos=" +
                 newLog.position(), true );
         newLog.force( false );
+        switchToNewLog( newLog, newActiveLog, currentLogFile, endPosition,
+            currentVersion, carriedOverCommits );
+    }
+
+    /*
+     * Makes the forced new log the active one, deleting the current log or
+     * keeping it as the log of currentVersion. The start entries of the
+     * active transactions must have their positions in the new log.
+     */
+    private void switchToNewLog( FileChannel newLog, char newActiveLog,
+        String currentLogFile, long endPosition, long currentVersion,
+        List<LogEntry.Commit> carriedOverCommits ) throws IOException
+    {
         releaseCurrentLogFile();
         setActiveLog( newActiveLog );
         if ( keepLogs )
@@ -1427,12 +2046,18 @@ public class XaLogicalLog
         {
             deleteCurrentLogFile( currentLogFile );
             xaTf.getAndSetNewVersion();
+            txIndex.clearCurrent();
         }
         this.logVersion = xaTf.getCurrentVersion();
         if ( xaTf.getCurrentVersion() != ( currentVersion + 1 ) )
         {
             throw new IOException( "version change failed" );
         }
+        for ( LogEntry.Commit commitEntry : carriedOverCommits )
+        {
+            cacheTxStartPosition( commitEntry.getTxId(), commitEntry.getMasterId(),
+                xidIdentMap.get( commitEntry.getIdentifier() ) );
+        }
         fileChannel = newLog;
         instantiateCorrectWriteBuffer();
         msgLog.logMessage( "Log rotated, newLog @ pos=" +
@@ -1527,14 +2152,14 @@ public class XaLogicalLog
         return nonCleanShutdown;
     }
 
-    private static class TxPosition
+    static class TxPosition
     {
         final long version;
         final int masterId;
         final int identifier;
         final long position;
 
-        private TxPosition( long version, int masterId, int identifier, long position )
+        TxPosition( long version, int masterId, int identifier, long position )
         {
             this.version = version;
             this.masterId = masterId;
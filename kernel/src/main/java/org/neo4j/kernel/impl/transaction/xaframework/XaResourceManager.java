@@ -59,6 +59,11 @@ public class XaResourceManager
     private final XaDataSource dataSource;
     private StringLogger msgLog;
 
+    // commits are applied in the order their commit records were written
+    private long nextCommitTurn = 0;
+    private long nextApplyTurn = 0;
+    private long lastWrittenTxId = -1;
+
     XaResourceManager( XaDataSource dataSource, XaTransactionFactory tf,
             TxIdGenerator txIdGenerator, String name )
     {
@@ -393,8 +398,107 @@ public class XaResourceManager
         return xaTransaction;
     }
     
-    synchronized XaTransaction commit( Xid xid, boolean onePhase )
-        throws XAException
+    /**
+     * Commits the transaction in three steps. The commit record is written
+     * while holding this resource manager. The wait for the commit record to
+     * be forced happens without holding it, so that in group commit mode
+     * other transactions can write their commit records and share the force,
+     * see {@link XaLogicalLog#forceCommitted(int)}. Only then the transaction
+     * is applied, again holding this resource manager and in the same order
+     * as the commit records were written, since tx ids must be applied in
+     * sequence.
+     */
+    XaTransaction commit( Xid xid, boolean onePhase ) throws XAException
+    {
+        XaTransaction xaTransaction;
+        long turn;
+        synchronized ( this )
+        {
+            xaTransaction = getXaTransaction( xid );
+            boolean success = false;
+            try
+            {
+                writeCommit( xid, onePhase );
+                success = true;
+            }
+            finally
+            {
+                if ( !success )
+                {
+                    // forceCommitted won't be called for a failed commit
+                    log.forgetPendingForce( xaTransaction.getIdentifier() );
+                }
+            }
+            turn = nextCommitTurn++;
+        }
+
+        XAException forceFailure = null;
+        try
+        {
+            log.forceCommitted( xaTransaction.getIdentifier() );
+        }
+        catch ( XAException e )
+        {
+            forceFailure = e;
+        }
+
+        synchronized ( this )
+        {
+            awaitApplyTurn( turn );
+            try
+            {
+                if ( forceFailure != null )
+                {
+                    // the commit record may not be on disk, so the changes
+                    // must not be applied
+                    throw forceFailure;
+                }
+                return applyCommit( xid, xaTransaction, onePhase );
+            }
+            finally
+            {
+                nextApplyTurn++;
+                notifyAll();
+            }
+        }
+    }
+
+    private void awaitApplyTurn( long turn )
+    {
+        boolean interrupted = false;
+        while ( nextApplyTurn != turn )
+        {
+            try
+            {
+                wait();
+            }
+            catch ( InterruptedException e )
+            {
+                interrupted = true;
+            }
+        }
+        if ( interrupted )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Transactions that have written their commit records but wait for them
+     * to be forced haven't been applied, so the last committed tx id the
+     * generator goes by doesn't count them yet.
+     */
+    private long nextTxId( int identifier )
+    {
+        long txId = txIdGenerator.generate( dataSource, identifier );
+        if ( nextApplyTurn < nextCommitTurn )
+        {
+            txId = Math.max( txId, lastWrittenTxId + 1 );
+        }
+        return txId;
+    }
+
+    private void writeCommit( Xid xid, boolean onePhase ) throws XAException
     {
         XidStatus status = xidMap.get( xid );
         if ( status == null )
@@ -411,12 +515,12 @@ public class XaResourceManager
                 {
                     xaTransaction.prepare();
                     
-                    long txId = txIdGenerator.generate( dataSource,
-                            xaTransaction.getIdentifier() );
+                    long txId = nextTxId( xaTransaction.getIdentifier() );
                     int masterId = txIdGenerator.getCurrentMasterId();
                     xaTransaction.setCommitTxId( txId );
                     log.commitOnePhase( xaTransaction.getIdentifier(), 
                             xaTransaction.getCommitTxId(), masterId );
+                    lastWrittenTxId = txId;
                 }
             }
             txStatus.markAsPrepared();
@@ -432,15 +536,23 @@ public class XaResourceManager
             {
                 if ( !onePhase )
                 {
-                    long txId = txIdGenerator.generate( dataSource,
-                            xaTransaction.getIdentifier() );
+                    long txId = nextTxId( xaTransaction.getIdentifier() );
                     int masterId = txIdGenerator.getCurrentMasterId();
                     xaTransaction.setCommitTxId( txId );
                     log.commitTwoPhase( xaTransaction.getIdentifier(),
                             xaTransaction.getCommitTxId(), masterId );
+                    lastWrittenTxId = txId;
                 }
             }
             txStatus.markCommitStarted();
+        }
+    }
+
+    private XaTransaction applyCommit( Xid xid, XaTransaction xaTransaction,
+            boolean onePhase ) throws XAException
+    {
+        if ( !xaTransaction.isReadOnly() )
+        {
             if ( xaTransaction.isRecovered() && xaTransaction.getCommitTxId() == -1 )
             {
                 boolean previousRecoveredValue = dataSource.setRecovered( true );
@@ -0,0 +1,64 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.traversal;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.helpers.collection.PrefetchingIterator;
+import org.neo4j.kernel.impl.core.NodeManager;
+
+/**
+ * Reads a few relationships ahead of the one returned and asks the
+ * {@link NodeManager} to {@link NodeManager#prefetchRelationships(long)
+ * prefetch} their other nodes, so that those are read from the store in the
+ * background while the traversal still is busy with the nodes before them.
+ */
+class LookaheadRelationshipIterator extends PrefetchingIterator<Relationship>
+{
+    static final int LOOKAHEAD = 32;
+
+    private final Iterator<Relationship> relationships;
+    private final Node source;
+    private final NodeManager nodeManager;
+    private final LinkedList<Relationship> ahead = new LinkedList<Relationship>();
+
+    LookaheadRelationshipIterator( Iterator<Relationship> relationships, Node source,
+            NodeManager nodeManager )
+    {
+        this.relationships = relationships;
+        this.source = source;
+        this.nodeManager = nodeManager;
+    }
+
+    @Override
+    protected Relationship fetchNextOrNull()
+    {
+        while ( ahead.size() < LOOKAHEAD && relationships.hasNext() )
+        {
+            Relationship relationship = relationships.next();
+            ahead.add( relationship );
+            nodeManager.prefetchRelationships( relationship.getOtherNode( source ).getId() );
+        }
+        return ahead.isEmpty() ? null : ahead.removeFirst();
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.traversal;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.neo4j.graphdb.traversal.BranchOrderingPolicy;
+import org.neo4j.graphdb.traversal.BranchSelector;
+import org.neo4j.graphdb.traversal.TraversalBranch;
+
+/**
+ * A breadth first ordering which expands the branches of each depth in
+ * parallel, see {@link ParallelBreadthFirstSelector}. Since the expansion is
+ * done by other threads than the one iterating over the traversal the
+ * uniqueness filter is only accessed synchronized, but the evaluators and the
+ * expander of the traversal must be thread safe. The other threads also can't
+ * see changes made in the transaction of the iterating thread, so such a
+ * traversal only sees committed data.
+ */
+public class ParallelBreadthFirstOrdering implements BranchOrderingPolicy
+{
+    private static ExecutorService defaultExecutor;
+
+    private final ExecutorService executor;
+    private final int parallelism;
+
+    /**
+     * Expands the branches using a shared pool with one thread per
+     * processor.
+     */
+    public ParallelBreadthFirstOrdering()
+    {
+        this( getDefaultExecutor(), Runtime.getRuntime().availableProcessors() );
+    }
+
+    /**
+     * @param executor runs the expansions.
+     * @param parallelism the number of threads of <CODE>executor</CODE>
+     *            which can be expected to expand the branches of a depth.
+     */
+    public ParallelBreadthFirstOrdering( ExecutorService executor, int parallelism )
+    {
+        if ( parallelism < 1 )
+        {
+            throw new IllegalArgumentException( "Illegal parallelism " + parallelism );
+        }
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    private static synchronized ExecutorService getDefaultExecutor()
+    {
+        if ( defaultExecutor == null )
+        {
+            defaultExecutor = Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors(), new ThreadFactory()
+            {
+                private final AtomicInteger count = new AtomicInteger();
+
+                public Thread newThread( Runnable runnable )
+                {
+                    Thread thread = new Thread( runnable, "Parallel traversal-" +
+                            count.incrementAndGet() );
+                    thread.setDaemon( true );
+                    return thread;
+                }
+            } );
+        }
+        return defaultExecutor;
+    }
+
+    public BranchSelector create( TraversalBranch startBranch )
+    {
+        return new ParallelBreadthFirstSelector( startBranch, executor, parallelism );
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.traversal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.neo4j.graphdb.traversal.BranchSelector;
+import org.neo4j.graphdb.traversal.TraversalBranch;
+
+/**
+ * Selects {@link TraversalBranch}s in breadth first order, like
+ * {@link org.neo4j.kernel.Traversal#preorderBreadthFirst()}, but expands all
+ * branches of one depth in parallel. The branches of a depth are split up in
+ * chunks which are expanded by an {@link ExecutorService} and the branches of
+ * the next depth are returned as soon as they have been created, in no
+ * particular order. The next depth is expanded when all branches of the
+ * current depth have been returned, so an abandoned traversal expands at most
+ * one depth more than what has been returned.
+ */
+class ParallelBreadthFirstSelector implements BranchSelector
+{
+    private final TraversalBranch startSource;
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final BlockingQueue<Object> results = new LinkedBlockingQueue<Object>();
+    private boolean started;
+    private boolean expanding;
+
+    ParallelBreadthFirstSelector( TraversalBranch startSource,
+            ExecutorService executor, int parallelism )
+    {
+        this.startSource = startSource;
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    public TraversalBranch next()
+    {
+        if ( !started )
+        {
+            started = true;
+            TraversalBranch start = startSource.next();
+            if ( start != null )
+            {
+                expand( Collections.singletonList( start ) );
+            }
+            return start;
+        }
+        while ( expanding )
+        {
+            Object result = take();
+            if ( result instanceof TraversalBranch )
+            {
+                return (TraversalBranch) result;
+            }
+            expanding = false;
+            Depth depth = (Depth) result;
+            if ( depth.failure instanceof RuntimeException )
+            {
+                throw (RuntimeException) depth.failure;
+            }
+            else if ( depth.failure instanceof Error )
+            {
+                throw (Error) depth.failure;
+            }
+            if ( !depth.nextBranches.isEmpty() )
+            {
+                expand( depth.nextBranches );
+            }
+        }
+        return null;
+    }
+
+    private Object take()
+    {
+        boolean interrupted = false;
+        try
+        {
+            while ( true )
+            {
+                try
+                {
+                    return results.take();
+                }
+                catch ( InterruptedException e )
+                {
+                    interrupted = true;
+                }
+            }
+        }
+        finally
+        {
+            if ( interrupted )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void expand( List<TraversalBranch> branches )
+    {
+        int chunkSize = Math.max( 1, branches.size() / ( parallelism * 4 ) );
+        int chunks = ( branches.size() + chunkSize - 1 ) / chunkSize;
+        Depth depth = new Depth( chunks );
+        expanding = true;
+        for ( int i = 0; i < branches.size(); i += chunkSize )
+        {
+            executor.execute( new Expansion( depth, branches.subList( i,
+                    Math.min( i + chunkSize, branches.size() ) ) ) );
+        }
+    }
+
+    /**
+     * Collects the branches created from the branches of one depth and
+     * signals the selector when all of them have been expanded.
+     */
+    private class Depth
+    {
+        private int remainingChunks;
+        private final List<TraversalBranch> nextBranches = new ArrayList<TraversalBranch>();
+        private Throwable failure;
+
+        Depth( int chunks )
+        {
+            this.remainingChunks = chunks;
+        }
+
+        synchronized void expanded( List<TraversalBranch> branches, Throwable failure )
+        {
+            nextBranches.addAll( branches );
+            if ( failure != null && this.failure == null )
+            {
+                this.failure = failure;
+            }
+            if ( --remainingChunks == 0 )
+            {
+                results.add( this );
+            }
+        }
+    }
+
+    private class Expansion implements Runnable
+    {
+        private final Depth depth;
+        private final List<TraversalBranch> branches;
+
+        Expansion( Depth depth, List<TraversalBranch> branches )
+        {
+            this.depth = depth;
+            this.branches = branches;
+        }
+
+        public void run()
+        {
+            List<TraversalBranch> nextBranches = new ArrayList<TraversalBranch>();
+            Throwable failure = null;
+            try
+            {
+                for ( TraversalBranch branch : branches )
+                {
+                    TraversalBranch next;
+                    while ( ( next = branch.next() ) != null )
+                    {
+                        nextBranches.add( next );
+                        results.add( next );
+                    }
+                }
+            }
+            catch ( Throwable t )
+            {
+                failure = t;
+            }
+            finally
+            {
+                depth.expanded( nextBranches, failure );
+            }
+        }
+    }
+}
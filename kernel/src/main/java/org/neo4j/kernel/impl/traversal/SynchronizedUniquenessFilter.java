@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.traversal;
+
+import org.neo4j.graphdb.traversal.MemoryFootprint;
+import org.neo4j.graphdb.traversal.TraversalBranch;
+import org.neo4j.graphdb.traversal.UniquenessFilter;
+
+/**
+ * Makes a {@link UniquenessFilter} safe to use for a traversal which expands
+ * branches from several threads.
+ */
+class SynchronizedUniquenessFilter implements UniquenessFilter, MemoryFootprint
+{
+    private final UniquenessFilter filter;
+
+    SynchronizedUniquenessFilter( UniquenessFilter filter )
+    {
+        this.filter = filter;
+    }
+
+    public synchronized boolean checkFirst( TraversalBranch branch )
+    {
+        return filter.checkFirst( branch );
+    }
+
+    public synchronized boolean check( TraversalBranch branch )
+    {
+        return filter.check( branch );
+    }
+
+    public synchronized long getMemoryFootprint()
+    {
+        return filter instanceof MemoryFootprint ?
+                ((MemoryFootprint) filter).getMemoryFootprint() : 0;
+    }
+}
@@ -110,6 +110,11 @@ class TraversalBranchImpl implements TraversalBranch//, Path
     protected void expandRelationshipsWithoutChecks()
     {
         relationships = traverser.description.expander.expand( source ).iterator();
+        if ( traverser.prefetcher != null )
+        {
+            relationships = new LookaheadRelationshipIterator( relationships, source,
+                    traverser.prefetcher );
+        }
     }
 
     protected boolean hasExpandedRelationships()
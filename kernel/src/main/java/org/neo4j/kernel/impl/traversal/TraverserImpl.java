@@ -25,17 +25,21 @@ import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.traversal.BranchSelector;
+import org.neo4j.graphdb.traversal.MemoryFootprint;
 import org.neo4j.graphdb.traversal.TraversalBranch;
 import org.neo4j.graphdb.traversal.Traverser;
 import org.neo4j.graphdb.traversal.UniquenessFilter;
 import org.neo4j.helpers.collection.CombiningIterator;
 import org.neo4j.helpers.collection.IterableWrapper;
 import org.neo4j.helpers.collection.PrefetchingIterator;
+import org.neo4j.kernel.AbstractGraphDatabase;
+import org.neo4j.kernel.impl.core.NodeManager;
 
-class TraverserImpl implements Traverser
+class TraverserImpl implements Traverser, MemoryFootprint
 {
     private final TraversalDescriptionImpl description;
     private final Node startNode;
+    private volatile TraverserIterator lastIterator;
 
     TraverserImpl( TraversalDescriptionImpl description, Node startNode )
     {
@@ -45,7 +49,28 @@ class TraverserImpl implements Traverser
 
     public Iterator<Path> iterator()
     {
-        return new TraverserIterator();
+        TraverserIterator iterator = new TraverserIterator();
+        lastIterator = iterator;
+        return iterator;
+    }
+
+    /**
+     * Returns an estimate of the number of bytes the most recently started
+     * iteration over this traverser uses to keep track of what it has
+     * visited, as required by its uniqueness. That is what grows with the
+     * size of the traversal.
+     *
+     * @return the approximate memory footprint in bytes of the latest
+     *         iteration, or <code>0</code> if it hasn't been iterated over.
+     */
+    public long getMemoryFootprint()
+    {
+        TraverserIterator iterator = lastIterator;
+        if ( iterator == null || !( iterator.uniquness instanceof MemoryFootprint ) )
+        {
+            return 0;
+        }
+        return ((MemoryFootprint) iterator.uniquness).getMemoryFootprint();
     }
 
     public Iterable<Node> nodes()
@@ -97,17 +122,34 @@ class TraverserImpl implements Traverser
         private final BranchSelector sourceSelector;
         final TraversalDescriptionImpl description;
         final Node startNode;
+        // null if relationship prefetching isn't configured
+        final NodeManager prefetcher;
 
         TraverserIterator()
         {
             this.description = TraverserImpl.this.description;
-            this.uniquness = description.uniqueness.create( description.uniquenessParameter );
+            this.prefetcher = prefetcherFor( TraverserImpl.this.startNode );
+            UniquenessFilter filter = description.uniqueness.create(
+                    description.uniquenessParameter );
+            this.uniquness = description.branchSelector instanceof ParallelBreadthFirstOrdering ?
+                    new SynchronizedUniquenessFilter( filter ) : filter;
             this.startNode = TraverserImpl.this.startNode;
             this.sourceSelector = description.branchSelector.create(
                     new StartNodeTraversalBranch( this, startNode,
                             description.expander ) );
         }
 
+        private NodeManager prefetcherFor( Node node )
+        {
+            if ( !( node.getGraphDatabase() instanceof AbstractGraphDatabase ) )
+            {
+                return null;
+            }
+            NodeManager nodeManager = ((AbstractGraphDatabase) node.getGraphDatabase())
+                    .getConfig().getGraphDbModule().getNodeManager();
+            return nodeManager.isPrefetchingRelationships() ? nodeManager : null;
+        }
+
         boolean okToProceedFirst( TraversalBranch source )
         {
             return this.uniquness.checkFirst( source );
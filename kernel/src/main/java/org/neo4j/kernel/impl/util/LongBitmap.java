@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.util;
+
+/**
+ * A {@link PrimitiveLongSet} of non-negative values, such as ids, which keeps
+ * one bit per possible value. The bits are split up in pages of 65536 values
+ * which are only allocated when a value in their range is added and dropped
+ * again when their last value is removed, so a bitmap only takes up memory
+ * for the id ranges actually in use. For dense ranges that is about 1 bit per
+ * value.
+ */
+public class LongBitmap implements PrimitiveLongSet
+{
+    private static final int PAGE_BITS = 16;
+    private static final int WORDS_PER_PAGE = 1 << ( PAGE_BITS - 6 );
+    private static final long PAGE_FOOTPRINT = 16 + WORDS_PER_PAGE * 8L;
+    // reference to a page and the count of values in it
+    private static final long DIRECTORY_ENTRY_FOOTPRINT = 8 + 4;
+
+    private long[][] pages = new long[0][];
+    private int[] pageSizes = new int[0];
+    private int allocatedPages;
+    private int size;
+
+    /**
+     * Returns the number of bytes a bitmap holding values in the range
+     * <CODE>lowest</CODE> to <CODE>highest</CODE> at most would occupy.
+     */
+    public static long estimateFootprint( long lowest, long highest )
+    {
+        long firstPage = lowest >>> PAGE_BITS;
+        long lastPage = highest >>> PAGE_BITS;
+        // the directory grows by doubling
+        return 32 + ( lastPage + 1 ) * 2 * DIRECTORY_ENTRY_FOOTPRINT +
+            ( lastPage - firstPage + 1 ) * PAGE_FOOTPRINT;
+    }
+
+    private static int pageIndex( long value )
+    {
+        if ( value < 0 )
+        {
+            throw new IllegalArgumentException( "Negative value " + value );
+        }
+        long page = value >>> PAGE_BITS;
+        if ( page >= Integer.MAX_VALUE )
+        {
+            throw new IllegalArgumentException( "Value " + value + " too big" );
+        }
+        return (int) page;
+    }
+
+    public boolean add( long value )
+    {
+        int pageIndex = pageIndex( value );
+        if ( pageIndex >= pages.length )
+        {
+            int newLength = Math.max( pageIndex + 1, pages.length * 2 );
+            long[][] newPages = new long[newLength][];
+            System.arraycopy( pages, 0, newPages, 0, pages.length );
+            pages = newPages;
+            int[] newPageSizes = new int[newLength];
+            System.arraycopy( pageSizes, 0, newPageSizes, 0, pageSizes.length );
+            pageSizes = newPageSizes;
+        }
+        long[] page = pages[pageIndex];
+        if ( page == null )
+        {
+            page = pages[pageIndex] = new long[WORDS_PER_PAGE];
+            allocatedPages++;
+        }
+        int word = (int) ( value >>> 6 ) & ( WORDS_PER_PAGE - 1 );
+        long bit = 1L << value;
+        if ( ( page[word] & bit ) != 0 )
+        {
+            return false;
+        }
+        page[word] |= bit;
+        pageSizes[pageIndex]++;
+        size++;
+        return true;
+    }
+
+    public boolean contains( long value )
+    {
+        if ( value < 0 )
+        {
+            return false;
+        }
+        long pageIndex = value >>> PAGE_BITS;
+        if ( pageIndex >= pages.length || pages[(int) pageIndex] == null )
+        {
+            return false;
+        }
+        int word = (int) ( value >>> 6 ) & ( WORDS_PER_PAGE - 1 );
+        return ( pages[(int) pageIndex][word] & ( 1L << value ) ) != 0;
+    }
+
+    public boolean remove( long value )
+    {
+        if ( !contains( value ) )
+        {
+            return false;
+        }
+        int pageIndex = (int) ( value >>> PAGE_BITS );
+        int word = (int) ( value >>> 6 ) & ( WORDS_PER_PAGE - 1 );
+        pages[pageIndex][word] &= ~( 1L << value );
+        size--;
+        if ( --pageSizes[pageIndex] == 0 )
+        {
+            pages[pageIndex] = null;
+            allocatedPages--;
+        }
+        return true;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public long getMemoryFootprint()
+    {
+        return 32 + pages.length * DIRECTORY_ENTRY_FOOTPRINT +
+            allocatedPages * PAGE_FOOTPRINT;
+    }
+}
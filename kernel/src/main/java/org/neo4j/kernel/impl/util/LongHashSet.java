@@ -0,0 +1,202 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.util;
+
+import java.util.Arrays;
+
+/**
+ * A {@link PrimitiveLongSet} which keeps its values in an open addressing hash
+ * table with linear probing. It needs between 11 and 22 bytes per value,
+ * depending on how full the table is, compared to roughly 60 for a
+ * <CODE>HashSet&lt;Long&gt;</CODE>.
+ */
+public class LongHashSet implements PrimitiveLongSet
+{
+    // marks a free slot, a set containing it keeps track of that separately
+    private static final long FREE = -1;
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] table;
+    private int mask;
+    private int shift;
+    private int resizeAt;
+    private int used;
+    private boolean containsFree;
+
+    public LongHashSet()
+    {
+        this( MIN_CAPACITY );
+    }
+
+    public LongHashSet( int expectedSize )
+    {
+        int capacity = MIN_CAPACITY;
+        while ( capacity * 3 / 4 <= expectedSize )
+        {
+            capacity <<= 1;
+        }
+        allocate( capacity );
+    }
+
+    private void allocate( int capacity )
+    {
+        table = new long[capacity];
+        Arrays.fill( table, FREE );
+        mask = capacity - 1;
+        shift = 64 - Integer.numberOfTrailingZeros( capacity );
+        resizeAt = capacity * 3 / 4;
+    }
+
+    private int slot( long value )
+    {
+        return (int) ( ( value * 0x9E3779B97F4A7C15L ) >>> shift );
+    }
+
+    private int find( long value )
+    {
+        int i = slot( value );
+        while ( table[i] != FREE )
+        {
+            if ( table[i] == value )
+            {
+                return i;
+            }
+            i = ( i + 1 ) & mask;
+        }
+        return -1;
+    }
+
+    public boolean add( long value )
+    {
+        if ( value == FREE )
+        {
+            if ( containsFree )
+            {
+                return false;
+            }
+            return containsFree = true;
+        }
+        int i = slot( value );
+        while ( table[i] != FREE )
+        {
+            if ( table[i] == value )
+            {
+                return false;
+            }
+            i = ( i + 1 ) & mask;
+        }
+        table[i] = value;
+        if ( ++used >= resizeAt )
+        {
+            grow();
+        }
+        return true;
+    }
+
+    private void grow()
+    {
+        long[] old = table;
+        allocate( old.length * 2 );
+        for ( long value : old )
+        {
+            if ( value != FREE )
+            {
+                int i = slot( value );
+                while ( table[i] != FREE )
+                {
+                    i = ( i + 1 ) & mask;
+                }
+                table[i] = value;
+            }
+        }
+    }
+
+    public boolean contains( long value )
+    {
+        return value == FREE ? containsFree : find( value ) != -1;
+    }
+
+    public boolean remove( long value )
+    {
+        if ( value == FREE )
+        {
+            boolean result = containsFree;
+            containsFree = false;
+            return result;
+        }
+        int gap = find( value );
+        if ( gap == -1 )
+        {
+            return false;
+        }
+        // shift following values of the same probe sequence back into the
+        // gap so that lookups never stop at it too early
+        int i = gap;
+        while ( true )
+        {
+            i = ( i + 1 ) & mask;
+            long current = table[i];
+            if ( current == FREE )
+            {
+                break;
+            }
+            int home = slot( current );
+            if ( ( ( i - home ) & mask ) >= ( ( i - gap ) & mask ) )
+            {
+                table[gap] = current;
+                gap = i;
+            }
+        }
+        table[gap] = FREE;
+        used--;
+        return true;
+    }
+
+    public int size()
+    {
+        return containsFree ? used + 1 : used;
+    }
+
+    /**
+     * @return the values of this set, in no particular order.
+     */
+    public long[] toArray()
+    {
+        long[] result = new long[size()];
+        int index = 0;
+        for ( long value : table )
+        {
+            if ( value != FREE )
+            {
+                result[index++] = value;
+            }
+        }
+        if ( containsFree )
+        {
+            result[index] = FREE;
+        }
+        return result;
+    }
+
+    public long getMemoryFootprint()
+    {
+        return 16 + table.length * 8L;
+    }
+}
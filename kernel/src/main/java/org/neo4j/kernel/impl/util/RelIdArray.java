@@ -113,29 +113,12 @@ public class RelIdArray
     public void add( long id, DirectionWrapper direction )
     {
         IdBlock lastBlock = direction.getLastBlock( this );
-        long highBits = id&0xFFFFFFFF00000000L;
-        if ( lastBlock == null || lastBlock.getHighBits() != highBits )
+        if ( lastBlock == null )
         {
-            IdBlock newLastBlock = null;
-            if ( highBits == 0 && lastBlock == null )
-            {
-                newLastBlock = new LowIdBlock();
-            }
-            else
-            {
-                // TODO: instead of always creating a new id block when high bits change
-                // traverse back and try find a fit
-                newLastBlock = new HighIdBlock( highBits );
-                if ( lastBlock != null )
-                {
-                    lastBlock = lastBlock.upgradeIfNeeded();
-                    newLastBlock.setPrev( lastBlock );
-                }
-            }
-            direction.setLastBlock( this, newLastBlock );
-            lastBlock = newLastBlock;
+            lastBlock = new IdBlock();
+            direction.setLastBlock( this, lastBlock );
         }
-        lastBlock.add( (int) id );
+        lastBlock.add( id );
     }
     
     public RelIdArray addAll( RelIdArray source )
@@ -184,6 +167,10 @@ public class RelIdArray
         return this;
     }
     
+    /*
+     * The block of source isn't copied if there's no block to append to,
+     * instead the two arrays share the encoded ids, see IdBlock.
+     */
     protected void append( RelIdArray source, DirectionWrapper direction )
     {
         IdBlock toBlock = direction.getLastBlock( this );
@@ -192,55 +179,12 @@ public class RelIdArray
         {
             if ( toBlock == null )
             {
-                direction.setLastBlock( this, fromBlock.copy() );
-            }
-            else if ( toBlock.getHighBits() == fromBlock.getHighBits() )
-            {
-                toBlock.addAll( fromBlock );
-                if ( fromBlock.getPrev() != null )
-                {
-                    boolean isTheOnlyOne = toBlock.getPrev() == null;
-                    IdBlock last = last( toBlock );
-                    last.setPrev( fromBlock.getPrev().copy() );
-                    if ( isTheOnlyOne )
-                    {
-                        direction.setLastBlock( this, last );
-                    }
-                }
+                direction.setLastBlock( this, fromBlock.share() );
             }
             else
             {
-                boolean isTheOnlyOne = toBlock.getPrev() == null;
-                IdBlock last = last( toBlock );
-                last.setPrev( fromBlock.copy() );
-                if ( isTheOnlyOne )
-                {
-                    direction.setLastBlock( this, last );
-                }
-            }
-        }
-    }
-    
-    /**
-     * Also upgrade along the way if necessary
-     */
-    private static IdBlock last( IdBlock block )
-    {
-        IdBlock previousInLoop = null;
-        while ( true )
-        {
-            block = block.upgradeIfNeeded();
-            if ( previousInLoop != null )
-            {
-                previousInLoop.setPrev( block );
-            }
-            IdBlock prev = block.getPrev();
-            if ( prev == null )
-            {
-                return block;
+                toBlock.addAll( fromBlock );
             }
-            previousInLoop = block;
-            block = prev;
         }
     }
     
@@ -254,12 +198,22 @@ public class RelIdArray
         return direction.iterator( this );
     }
     
+    /**
+     * Returns an iterator over the ids added with exactly the given
+     * direction, unlike {@link #iterator(DirectionWrapper)} loops are only
+     * returned for {@link DirectionWrapper#BOTH}.
+     */
+    public RelIdIterator exactIterator( DirectionWrapper direction )
+    {
+        return new RelIdIteratorImpl( this, new DirectionWrapper[] { direction } );
+    }
+    
     public RelIdArray newSimilarInstance()
     {
         return new RelIdArray( type );
     }
     
-    public static final IdBlock EMPTY_BLOCK = new LowIdBlock();
+    public static final IdBlock EMPTY_BLOCK = new IdBlock();
     
     public static enum DirectionWrapper
     {
@@ -360,224 +314,199 @@ public class RelIdArray
         }
     }
     
-    public static abstract class IdBlock
+    
+    /**
+     * The ids of one direction, in the order they were added. Each id is
+     * stored as the difference to the id before it, zig-zag encoded so that
+     * small negative differences are small too, in a variable number of
+     * bytes with seven bits per byte. Relationships are loaded in chain order,
+     * where neighbouring ids are close, so most ids take one or two bytes
+     * instead of the four or eight needed for int or long ids.
+     * <p>
+     * Ids are only ever appended. A block can share its bytes with the block
+     * it was created from, see {@link #share()}, so that a new version of a
+     * {@link RelIdArray} doesn't copy the ids of the previous one. The first
+     * four bytes of the byte array hold how much of it has been written to
+     * by any of the blocks sharing it. Only a block which has written the
+     * last of those bytes appends in place, any other block copies its own
+     * bytes into a new array first. Readers only read up to the size of the
+     * block they got, so bytes appended by someone else are never seen.
+     * Appending is expected to be done by one thread at a time, as by the
+     * node holding the ids, while reading can be done concurrently.
+     */
+    public static class IdBlock
     {
-        // First element is the actual length w/o the slack
-        private int[] ids = new int[3];
+        static final int HEADER_SIZE = 4;
         
-        /**
-         * @return a copy of itself. The copy is also shrunk so that there's no
-         * slack in the id array.
-         */
-        IdBlock copy()
+        private byte[] data;
+        // written last when appending so that the bytes are there for anyone
+        // reading this size first
+        private volatile int size;
+        private long last;
+        
+        IdBlock()
         {
-            IdBlock copy = copyInstance();
-            int length = length();
-            copy.ids = new int[length+1];
-            System.arraycopy( ids, 0, copy.ids, 0, length+1 );
-            return copy;
+            this( new byte[HEADER_SIZE+8], HEADER_SIZE, 0 );
+            setWritten( data, HEADER_SIZE );
         }
         
-        /**
-         * @return a shrunk version of itself. It returns itself if there is
-         * no need to shrink it or a {@link #copy()} if there is slack in the array.
-         */
-        IdBlock shrink()
+        private IdBlock( byte[] data, int size, long last )
         {
-            return length() == ids.length-1 ? this : copy();
+            this.data = data;
+            this.size = size;
+            this.last = last;
         }
         
         /**
-         * Upgrades to a {@link HighIdBlock} if this is a {@link LowIdBlock}.
+         * @return a block with the same ids which shares the encoded ids with
+         * this block instead of copying them.
          */
-        abstract IdBlock upgradeIfNeeded();
-        
-        int length()
+        IdBlock share()
         {
-            return ids[0];
+            return new IdBlock( data, size, last );
         }
-
-        IdBlock getPrev()
-        {
-            return null;
-        }
-        
-        abstract void setPrev( IdBlock prev );
         
-        protected abstract IdBlock copyInstance();
-
-        // Assume id has same high bits
-        void add( int id )
+        /**
+         * @return a shrunk version of itself. It returns itself if there is
+         * no slack in the byte array or a copy without the slack if there is.
+         */
+        IdBlock shrink()
         {
-            int length = ensureSpace( 1 );
-            ids[length+1] = id;
-            ids[0] = length+1;
+            int size = this.size;
+            if ( size == data.length )
+            {
+                return this;
+            }
+            byte[] shrunk = new byte[size];
+            System.arraycopy( data, HEADER_SIZE, shrunk, HEADER_SIZE, size-HEADER_SIZE );
+            setWritten( shrunk, size );
+            return new IdBlock( shrunk, size, last );
         }
         
-        int ensureSpace( int delta )
+        /**
+         * @return a block with the ids of this block not in {@code excluded},
+         * itself shared if none of them are or {@code null} if all of them are.
+         */
+        IdBlock without( Collection<Long> excluded )
         {
-            int length = length();
-            int newLength = length+delta;
-            if ( newLength >= ids.length-1 )
+            IteratorState state = new IteratorState( this );
+            while ( state.hasNext() )
             {
-                int calculatedLength = ids.length*3;
-                if ( newLength > calculatedLength )
+                if ( excluded.contains( state.next() ) )
                 {
-                    calculatedLength = newLength*2;
+                    IdBlock result = new IdBlock();
+                    for ( state = new IteratorState( this ); state.hasNext(); )
+                    {
+                        long id = state.next();
+                        if ( !excluded.contains( id ) )
+                        {
+                            result.add( id );
+                        }
+                    }
+                    return result.isEmpty() ? null : result.shrink();
                 }
-                int[] newIds = new int[calculatedLength];
-                System.arraycopy( ids, 0, newIds, 0, length+1 );
-                ids = newIds;
             }
-            return length;
-        }
-        
-        void addAll( IdBlock block )
-        {
-            int otherBlockLength = block.length();
-            int length = ensureSpace( otherBlockLength+1 );
-            System.arraycopy( block.ids, 1, ids, length+1, otherBlockLength );
-            ids[0] = otherBlockLength+length;
-        }
-        
-        long get( int index )
-        {
-            assert index >= 0 && index < length();
-            return transform( ids[index+1] );
-        }
-        
-        abstract long transform( int id );
-        
-        void set( long id, int index )
-        {
-            // Assume same high bits
-            ids[index+1] = (int) id;
-        }
-        
-        abstract long getHighBits();
-    }
-    
-    private static class LowIdBlock extends IdBlock
-    {
-        @Override
-        void setPrev( IdBlock prev )
-        {
-            throw new UnsupportedOperationException();
+            return share();
         }
         
-        @Override
-        IdBlock upgradeIfNeeded()
-        {
-            IdBlock highBlock = new HighIdBlock( 0 );
-            highBlock.ids = ((IdBlock)this).ids;
-            return highBlock;
-        }
-
-        @Override
-        long transform( int id )
+        boolean isEmpty()
         {
-            return (long)(id&0xFFFFFFFFL);
+            return size == HEADER_SIZE;
         }
         
-        @Override
-        protected IdBlock copyInstance()
-        {
-            return new LowIdBlock();
-        }
-        
-        @Override
-        long getHighBits()
-        {
-            return 0;
-        }
-    }
-    
-    private static class HighIdBlock extends IdBlock
-    {
-        private final long highBits;
-        private IdBlock prev;
-
-        HighIdBlock( long highBits )
+        void add( long id )
         {
-            this.highBits = highBits;
+            long delta = id - last;
+            long value = (delta << 1) ^ (delta >> 63);
+            int size = ensureSpace( 10 );
+            int end = size;
+            while ( (value & ~0x7FL) != 0 )
+            {
+                data[end++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[end++] = (byte) value;
+            appended( end, id );
         }
         
-        @Override
-        IdBlock upgradeIfNeeded()
+        void addAll( IdBlock block )
         {
-            return this;
+            int otherSize = block.size;
+            if ( otherSize == HEADER_SIZE )
+            {
+                return;
+            }
+            // Only the first id needs to be encoded again, the differences
+            // between the following ones are the same in this block
+            IteratorState state = new IteratorState( block );
+            add( state.next() );
+            int length = otherSize-state.offset;
+            if ( length > 0 )
+            {
+                int size = ensureSpace( length );
+                System.arraycopy( block.data, state.offset, data, size, length );
+                appended( size+length, block.last );
+            }
         }
         
-        @Override
-        IdBlock copy()
+        /*
+         * Returns the size to append at, after making sure there's room for
+         * delta more bytes in an array which this block may write to.
+         */
+        private int ensureSpace( int delta )
         {
-            IdBlock copy = super.copy();
-            if ( prev != null )
+            int size = this.size;
+            if ( written( data ) != size || size+delta > data.length )
             {
-                copy.setPrev( prev.copy() );
+                int newLength = Math.max( size+delta, data.length+data.length/2 );
+                byte[] newData = new byte[newLength];
+                System.arraycopy( data, HEADER_SIZE, newData, HEADER_SIZE, size-HEADER_SIZE );
+                data = newData;
             }
-            return copy;
+            return size;
         }
-
-        @Override
-        IdBlock getPrev()
-        {
-            return prev;
-        }
-
-        @Override
-        void setPrev( IdBlock prev )
+        
+        private void appended( int newSize, long last )
         {
-            this.prev = prev;
+            setWritten( data, newSize );
+            this.last = last;
+            this.size = newSize;
         }
-
-        @Override
-        long transform( int id )
+        
+        int getSizeInBytes()
         {
-            return (((long)(id&0xFFFFFFFFL))|(highBits));
+            return data.length;
         }
         
-        @Override
-        protected IdBlock copyInstance()
+        private static int written( byte[] data )
         {
-            return new HighIdBlock( highBits );
+            return ((data[0]&0xFF)<<24) | ((data[1]&0xFF)<<16) | ((data[2]&0xFF)<<8) | (data[3]&0xFF);
         }
         
-        @Override
-        long getHighBits()
+        private static void setWritten( byte[] data, int written )
         {
-            return highBits;
+            data[0] = (byte) (written>>>24);
+            data[1] = (byte) (written>>>16);
+            data[2] = (byte) (written>>>8);
+            data[3] = (byte) written;
         }
     }
     
     private static class IteratorState
     {
-        private int blockIndex;
         private IdBlock block;
-        private int relativePosition;
-        private int absolutePosition;
+        private int offset = IdBlock.HEADER_SIZE;
+        private long previous;
+        private int position;
         
-        public IteratorState( IdBlock block, int relativePosition )
+        public IteratorState( IdBlock block )
         {
             this.block = block;
-            this.relativePosition = relativePosition;
-        }
-        
-        boolean nextBlock()
-        {
-            if ( block.getPrev() != null )
-            {
-                block = block.getPrev();
-                relativePosition = 0;
-                blockIndex++;
-                return true;
-            }
-            return false;
         }
         
         boolean hasNext()
         {
-            return relativePosition < block.length();
+            return offset < block.size;
         }
         
         /*
@@ -585,17 +514,39 @@ public class RelIdArray
          */
         long next()
         {
-            absolutePosition++;
-            return block.get( relativePosition++ );
+            byte[] data = block.data;
+            long value = 0;
+            int shift = 0;
+            byte current;
+            do
+            {
+                current = data[offset++];
+                value |= (long) (current&0x7F) << shift;
+                shift += 7;
+            }
+            while ( current < 0 );
+            previous += (value >>> 1) ^ -(value & 1);
+            position++;
+            return previous;
         }
 
         public void update( IdBlock lastBlock )
         {
-            for ( int i = 0; i < blockIndex; i++ )
+            if ( lastBlock == block )
             {
-                lastBlock = lastBlock.getPrev();
+                return;
             }
+            // A different block with the same ids first, skip the ones
+            // already returned
+            int count = position;
             this.block = lastBlock;
+            offset = IdBlock.HEADER_SIZE;
+            previous = 0;
+            position = 0;
+            while ( position < count && hasNext() )
+            {
+                next();
+            }
         }
     }
     
@@ -629,7 +580,7 @@ public class RelIdArray
             
             if ( block != null )
             {
-                currentState = new IteratorState( block, 0 );
+                currentState = new IteratorState( block );
                 states[directionPosition] = currentState;
             }
         }
@@ -669,13 +620,17 @@ public class RelIdArray
         {
             this.ids = newSource;
             
-            // Blocks may have gotten upgraded to support a linked list
-            // of blocks, so reestablish those references.
+            // Blocks may have been replaced, f.ex. by shrunk ones, so
+            // reestablish those references.
             for ( int i = 0; i < states.length; i++ )
             {
                 if ( states[i] != null )
                 {
-                    states[i].update( directions[i].getLastBlock( ids ) );
+                    IdBlock block = directions[i].getLastBlock( ids );
+                    if ( block != null )
+                    {
+                        states[i].update( block );
+                    }
                 }
             }
         }
@@ -717,12 +672,6 @@ public class RelIdArray
 
         protected boolean nextBlock()
         {
-            // Try next block in the chain
-            if ( currentState != null && currentState.nextBlock() )
-            {
-                return true;
-            }
-            
             // It's ok to return null here... which will result in hasNext
             // returning false. IntArrayIterator will try to get more relationships
             // and call hasNext again.
@@ -753,7 +702,7 @@ public class RelIdArray
                 IdBlock block = currentDirection.getLastBlock( ids );
                 if ( block != null )
                 {
-                    currentState = new IteratorState( block, 0 );
+                    currentState = new IteratorState( block );
                     states[directionPosition] = currentState;
                     return true;
                 }
@@ -776,6 +725,10 @@ public class RelIdArray
         }
     }
     
+    /*
+     * The blocks of src are shared with the returned array, not copied.
+     * Only blocks with ids in remove are rewritten.
+     */
     public static RelIdArray from( RelIdArray src, RelIdArray add, Collection<Long> remove )
     {
         if ( remove == null )
@@ -803,8 +756,18 @@ public class RelIdArray
             if ( src != null )
             {
                 newArray = src.newSimilarInstance();
-                newArray.addAll( src );
-                evictExcluded( newArray, remove );
+                for ( DirectionWrapper direction : DirectionWrapper.values() )
+                {
+                    IdBlock block = direction.getLastBlock( src );
+                    if ( block != null )
+                    {
+                        IdBlock remaining = block.without( remove );
+                        if ( remaining != null )
+                        {
+                            direction.setLastBlock( newArray, remaining );
+                        }
+                    }
+                }
             }
             else
             {
@@ -822,49 +785,35 @@ public class RelIdArray
                     }
                 }
             }
-            return newArray.shrink();
+            return newArray;
         }
     }
 
-    private static void evictExcluded( RelIdArray ids, Collection<Long> excluded )
+    /**
+     * The number of bytes used by the blocks of this array, including slack
+     * and bytes shared with other arrays.
+     */
+    public int getSizeInBytes()
     {
-        for ( RelIdIteratorImpl iterator = (RelIdIteratorImpl) DirectionWrapper.BOTH.iterator( ids ); iterator.hasNext(); )
+        int size = 0;
+        for ( DirectionWrapper direction : DirectionWrapper.values() )
         {
-            long value = iterator.next();
-            if ( excluded.contains( value ) )
-            {
-                boolean swapSuccessful = false;
-                IteratorState state = iterator.currentState;
-                IdBlock block = state.block;
-                for ( int j = block.length() - 1; j >= state.relativePosition; j--)
-                {
-                    long backValue = block.get( j );
-                    block.ids[0] = block.ids[0]-1;
-                    if ( !excluded.contains( backValue) )
-                    {
-                        block.set( backValue, state.relativePosition-1 );
-                        swapSuccessful = true;
-                        break;
-                    }
-                }
-                if ( !swapSuccessful ) // all elements from pos in remove
-                {
-                    block.ids[0] = block.ids[0]-1;
-                }
-            }
+            IdBlock block = direction.getLastBlock( this );
+            size += block != null ? block.getSizeInBytes() : 0;
         }
+        return size;
     }
 
     /**
      * Optimization in the lazy loading of relationships for a node.
      * {@link RelIdIterator#updateSource(RelIdArray)} is only called if
-     * this returns true, i.e if a {@link RelIdArray} or {@link IdBlock} might have
-     * gotten upgraded to handle f.ex loops or high id ranges so that the
-     * {@link RelIdIterator} gets updated accordingly.
+     * this returns true, i.e if the {@link IdBlock}s of a {@link RelIdArray}
+     * might have been replaced so that the {@link RelIdIterator} needs to be
+     * updated accordingly. Ids are appended to the same blocks so that isn't
+     * the case for a plain {@link RelIdArray}.
      */
     public boolean couldBeNeedingUpdate()
     {
-        return (lastOutBlock != null && lastOutBlock.getPrev() != null) ||
-                (lastInBlock != null && lastInBlock.getPrev() != null);
+        return false;
     }
 }
@@ -24,11 +24,14 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 import org.junit.Test;
@@ -284,4 +287,105 @@ public class TestBatchInsert
         tx.finish();
         db.shutdown();
     }
+
+    @Test
+    public void importedNodesAndRelationshipsAreLinkedLikeCreatedOnes()
+    {
+        BatchInserter inserter = newBatchInserter();
+        String storeDir = ( (BatchInserterImpl) inserter ).getStore();
+        long existing = inserter.createNode( null );
+        List<Map<String,Object>> nodes = new ArrayList<Map<String,Object>>();
+        for ( int i = 0; i < 1000; i++ )
+        {
+            nodes.add( i % 3 == 0 ? properties : null );
+        }
+        long firstNode = inserter.importNodes( nodes );
+        Map<Long,Set<Long>> expected = new HashMap<Long,Set<Long>>();
+        Map<Long,long[]> endPoints = new HashMap<Long,long[]>();
+        long created = inserter.createRelationship( existing, firstNode,
+            RelTypes.BATCH_TEST, null );
+        addExpected( expected, endPoints, created, existing, firstNode );
+
+        Random random = new Random( 1 );
+        long firstRel = -1;
+        for ( int round = 0; round < 2; round++ )
+        {
+            List<BatchRelationship> rels = new ArrayList<BatchRelationship>();
+            for ( int i = 0; i < 5000; i++ )
+            {
+                long start = firstNode + random.nextInt( 50 );
+                long end = i % 100 == 0 ? start :
+                    firstNode + random.nextInt( nodes.size() );
+                rels.add( new BatchRelationship( start, end,
+                    relTypeArray[i % 5], i % 7 == 0 ? properties : null ) );
+            }
+            rels.add( new BatchRelationship( firstNode, existing,
+                RelTypes.BATCH_TEST, null ) );
+            firstRel = inserter.importRelationships( rels );
+            for ( int i = 0; i < rels.size(); i++ )
+            {
+                BatchRelationship rel = rels.get( i );
+                addExpected( expected, endPoints, firstRel + i,
+                    rel.getStartNode(), rel.getEndNode() );
+            }
+        }
+        for ( Map.Entry<Long,Set<Long>> entry : expected.entrySet() )
+        {
+            assertEquals( entry.getValue(), new HashSet<Long>(
+                IteratorUtil.asCollection( inserter.getRelationshipIds(
+                    entry.getKey() ) ) ) );
+        }
+        assertEquals( properties.keySet(), inserter.getNodeProperties(
+            firstNode ).keySet() );
+        assertTrue( inserter.getNodeProperties( firstNode + 1 ).isEmpty() );
+        inserter.shutdown();
+
+        GraphDatabaseService db = new EmbeddedGraphDatabase( storeDir );
+        for ( Map.Entry<Long,Set<Long>> entry : expected.entrySet() )
+        {
+            Set<Long> ids = new HashSet<Long>();
+            for ( Relationship rel : db.getNodeById( entry.getKey() ).getRelationships() )
+            {
+                ids.add( rel.getId() );
+                long[] nodeIds = endPoints.get( rel.getId() );
+                assertEquals( nodeIds[0], rel.getStartNode().getId() );
+                assertEquals( nodeIds[1], rel.getEndNode().getId() );
+            }
+            assertEquals( entry.getValue(), ids );
+        }
+        // the first relationship of each round has properties
+        assertEquals( properties.keySet(), asSet(
+            db.getRelationshipById( firstRel ).getPropertyKeys() ) );
+
+        // deleting needs the prev pointers of the chains to be right
+        Transaction tx = db.beginTx();
+        for ( long nodeId : expected.keySet() )
+        {
+            Node node = db.getNodeById( nodeId );
+            for ( Relationship relationship : node.getRelationships() )
+            {
+                relationship.delete();
+            }
+            node.delete();
+        }
+        tx.success();
+        tx.finish();
+        db.shutdown();
+    }
+
+    private void addExpected( Map<Long,Set<Long>> expected,
+        Map<Long,long[]> endPoints, long rel, long start, long end )
+    {
+        endPoints.put( rel, new long[] { start, end } );
+        for ( long node : new long[] { start, end } )
+        {
+            Set<Long> rels = expected.get( node );
+            if ( rels == null )
+            {
+                rels = new HashSet<Long>();
+                expected.put( node, rels );
+            }
+            rels.add( rel );
+        }
+    }
 }
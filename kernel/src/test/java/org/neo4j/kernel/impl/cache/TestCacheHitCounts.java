@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class TestCacheHitCounts
+{
+    @Test
+    public void everyCacheCountsHitsAndMisses()
+    {
+        assertCounts( new LruCache<Integer,String>( "lru", 10, null ) );
+        assertCounts( new ClockCache<Integer,String>( "clock", 10, null ) );
+        assertCounts( new SoftLruCache<Integer,String>( "soft" ) );
+        assertCounts( new WeakLruCache<Integer,String>( "weak" ) );
+        assertCounts( new StrongReferenceCache<Integer,String>( "strong" ) );
+    }
+
+    @Test
+    public void noCacheOnlyMisses()
+    {
+        Cache<Integer,String> cache = new NoCache<Integer,String>( "none" );
+        cache.put( 1, "1" );
+        cache.get( 1 );
+        assertEquals( 0, cache.getHitCount() );
+        assertEquals( 1, cache.getMissCount() );
+    }
+
+    private void assertCounts( Cache<Integer,String> cache )
+    {
+        // kept strongly reachable so the reference caches keep it
+        String element = "1";
+        cache.put( 1, element );
+        cache.get( 1 );
+        cache.get( 1 );
+        cache.get( 2 );
+        assertEquals( cache.getName(), 2, cache.getHitCount() );
+        assertEquals( cache.getName(), 1, cache.getMissCount() );
+    }
+}
@@ -0,0 +1,244 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TestClockCache
+{
+    private static class ClockCacheTest<K,E> extends ClockCache<K,E>
+    {
+        private Object cleanedElement = null;
+        private final AtomicInteger cleanedCount = new AtomicInteger();
+
+        ClockCacheTest( String name, int maxSize )
+        {
+            super( name, maxSize, null );
+        }
+
+        @Override
+        public void elementCleaned( E element )
+        {
+            cleanedElement = element;
+            cleanedCount.incrementAndGet();
+        }
+
+        Object getLastCleanedElement()
+        {
+            return cleanedElement;
+        }
+    }
+
+    @Test
+    public void testCreate()
+    {
+        try
+        {
+            new ClockCache<Object,Object>( "TestCache", 0, null );
+            fail( "Illegal maxSize should throw exception" );
+        }
+        catch ( IllegalArgumentException e )
+        { // good
+        }
+        ClockCache<Object,Object> cache = new ClockCache<Object,Object>(
+            "TestCache", 70, null );
+        try
+        {
+            cache.put( null, new Object() );
+            fail( "Null key should throw exception" );
+        }
+        catch ( IllegalArgumentException e )
+        { // good
+        }
+        try
+        {
+            cache.put( new Object(), null );
+            fail( "Null element should throw exception" );
+        }
+        catch ( IllegalArgumentException e )
+        { // good
+        }
+        try
+        {
+            cache.get( null );
+            fail( "Null key should throw exception" );
+        }
+        catch ( IllegalArgumentException e )
+        { // good
+        }
+        try
+        {
+            cache.remove( null );
+            fail( "Null key should throw exception" );
+        }
+        catch ( IllegalArgumentException e )
+        { // good
+        }
+        cache.put( new Object(), new Object() );
+        cache.clear();
+        assertEquals( 0, cache.size() );
+    }
+
+    @Test
+    public void testSecondChance()
+    {
+        ClockCacheTest<Object,Object> cache = new ClockCacheTest<Object,Object>(
+            "TestCache", 3 );
+        cache.put( 1, "1" );
+        cache.put( 2, "2" );
+        cache.put( 3, "3" );
+        cache.get( 2 );
+        assertEquals( null, cache.getLastCleanedElement() );
+        cache.put( 4, "4" );
+        assertEquals( "1", cache.getLastCleanedElement() );
+        cache.put( 5, "5" );
+        assertEquals( "3", cache.getLastCleanedElement() );
+        assertEquals( 3, cache.size() );
+        assertEquals( null, cache.get( 1 ) );
+        assertEquals( "2", cache.get( 2 ) );
+        assertEquals( null, cache.get( 3 ) );
+        assertEquals( "4", cache.get( 4 ) );
+        assertEquals( "5", cache.get( 5 ) );
+        assertEquals( "5", cache.remove( 5 ) );
+        assertEquals( 2, cache.size() );
+        cache.clear();
+        assertEquals( 0, cache.size() );
+    }
+
+    @Test
+    public void testReplaceDoesNotGrow()
+    {
+        ClockCacheTest<Object,Object> cache = new ClockCacheTest<Object,Object>(
+            "TestCache", 3 );
+        for ( int i = 0; i < 5000; i++ )
+        {
+            cache.put( i % 2, "" + i );
+        }
+        assertEquals( 2, cache.size() );
+        assertEquals( "4998", cache.get( 0 ) );
+        assertEquals( "4999", cache.get( 1 ) );
+        assertEquals( null, cache.getLastCleanedElement() );
+    }
+
+    @Test
+    public void testResize()
+    {
+        ClockCacheTest<Object,Object> cache = new ClockCacheTest<Object,Object>(
+            "TestCache", 3 );
+        cache.put( 1, "1" );
+        cache.put( 2, "2" );
+        cache.put( 3, "3" );
+        cache.resize( 5 );
+        assertEquals( 5, cache.maxSize() );
+        assertEquals( 3, cache.size() );
+        cache.put( 4, "4" );
+        cache.put( 5, "5" );
+        assertEquals( null, cache.getLastCleanedElement() );
+        assertEquals( 5, cache.size() );
+        cache.resize( 4 );
+        assertEquals( "1", cache.getLastCleanedElement() );
+        assertEquals( 4, cache.size() );
+        cache.get( 2 );
+        cache.resize( 3 );
+        assertEquals( "3", cache.getLastCleanedElement() );
+        assertEquals( 3, cache.maxSize() );
+        assertEquals( 3, cache.size() );
+        assertEquals( "2", cache.get( 2 ) );
+    }
+
+    @Test
+    public void testHitAndMissCounts()
+    {
+        ClockCache<Object,Object> cache = new ClockCache<Object,Object>(
+            "TestCache", 10, null );
+        cache.put( 1, "1" );
+        cache.get( 1 );
+        cache.get( 1 );
+        cache.get( 2 );
+        assertEquals( 2, cache.getHitCount() );
+        assertEquals( 1, cache.getMissCount() );
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception
+    {
+        final int maxSize = 100;
+        final ClockCacheTest<Integer,Integer> cache =
+            new ClockCacheTest<Integer,Integer>( "TestCache", maxSize );
+        final int threadCount = 8;
+        final int operations = 20000;
+        final CountDownLatch start = new CountDownLatch( 1 );
+        final AtomicInteger puts = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        Thread[] threads = new Thread[threadCount];
+        for ( int t = 0; t < threadCount; t++ )
+        {
+            final int seed = t;
+            threads[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                        for ( int i = 0; i < operations; i++ )
+                        {
+                            Integer key = ( i * 31 + seed * 7 ) % 1000;
+                            Integer value = cache.get( key );
+                            if ( value == null )
+                            {
+                                cache.put( key, key );
+                                puts.incrementAndGet();
+                            }
+                            else if ( !value.equals( key ) )
+                            {
+                                errors.incrementAndGet();
+                            }
+                        }
+                    }
+                    catch ( InterruptedException e )
+                    {
+                        Thread.interrupted();
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        start.countDown();
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+        assertEquals( 0, errors.get() );
+        assertEquals( (long) threadCount * operations,
+            cache.getHitCount() + cache.getMissCount() );
+        cache.resize( maxSize );
+        assertTrue( cache.size() <= maxSize );
+        assertTrue( cache.cleanedCount.get() <= puts.get() );
+    }
+}
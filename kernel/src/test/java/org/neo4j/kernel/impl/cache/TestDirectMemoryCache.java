@@ -0,0 +1,199 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class TestDirectMemoryCache
+{
+    private static class StringCodec implements DirectMemoryCache.Codec<String>
+    {
+        public byte[] encode( String element )
+        {
+            if ( element.startsWith( "transient" ) )
+            {
+                return null;
+            }
+            ByteBuffer target = ByteBuffer.allocate( element.length() * 2 );
+            for ( int i = 0; i < element.length(); i++ )
+            {
+                target.putChar( element.charAt( i ) );
+            }
+            return target.array();
+        }
+
+        public String decode( long id, ByteBuffer source )
+        {
+            StringBuilder result = new StringBuilder();
+            while ( source.hasRemaining() )
+            {
+                result.append( source.getChar() );
+            }
+            return result.toString();
+        }
+    }
+
+    private DirectMemoryCache<String> newCache( int maxSize, long memoryBudget )
+    {
+        return new DirectMemoryCache<String>( "TestCache", maxSize,
+            memoryBudget, new StringCodec(), null );
+    }
+
+    @Test
+    public void evictedElementsAreKeptInDirectMemory()
+    {
+        DirectMemoryCache<String> cache = newCache( 2, 1024 * 1024 );
+        String one = "one";
+        cache.put( 1L, one );
+        cache.put( 2L, "two" );
+        assertSame( one, cache.get( 1L ) );
+        cache.put( 3L, "three" );
+        assertEquals( 2, cache.size() );
+        assertEquals( 1, cache.directMemorySize() );
+        assertEquals( "two", cache.get( 2L ) );
+        assertEquals( 1, cache.getDirectMemoryHitCount() );
+        // moved back to the heap, and something else moved out
+        assertEquals( 2, cache.size() );
+        assertEquals( 1, cache.directMemorySize() );
+        assertEquals( "one", cache.get( 1L ) );
+        assertEquals( "three", cache.get( 3L ) );
+        assertNull( cache.get( 4L ) );
+        assertTrue( cache.getMissCount() > 0 );
+    }
+
+    @Test
+    public void promotedElementKeepsItsIdentity()
+    {
+        DirectMemoryCache<String> cache = newCache( 1, 1024 * 1024 );
+        cache.put( 1L, "one" );
+        cache.put( 2L, "two" );
+        String promoted = cache.get( 1L );
+        assertEquals( "one", promoted );
+        assertSame( promoted, cache.get( 1L ) );
+    }
+
+    @Test
+    public void invalidatedCopyIsNotUsed()
+    {
+        DirectMemoryCache<String> cache = newCache( 1, 1024 * 1024 );
+        cache.put( 1L, "one" );
+        cache.put( 2L, "two" );
+        assertEquals( 1, cache.directMemorySize() );
+        cache.invalidate( 1L );
+        assertNull( cache.get( 1L ) );
+        assertEquals( 0, cache.directMemorySize() );
+    }
+
+    @Test
+    public void removeRemovesFromBothLevels()
+    {
+        DirectMemoryCache<String> cache = newCache( 1, 1024 * 1024 );
+        cache.put( 1L, "one" );
+        cache.put( 2L, "two" );
+        // only kept in direct memory, nothing to return
+        assertNull( cache.remove( 1L ) );
+        assertEquals( "two", cache.remove( 2L ) );
+        assertNull( cache.get( 1L ) );
+        assertNull( cache.get( 2L ) );
+        assertEquals( 0, cache.size() );
+        assertEquals( 0, cache.directMemorySize() );
+    }
+
+    @Test
+    public void elementsNotSerializedAreDropped()
+    {
+        DirectMemoryCache<String> cache = newCache( 1, 1024 * 1024 );
+        cache.put( 1L, "transient one" );
+        cache.put( 2L, "two" );
+        assertEquals( 0, cache.directMemorySize() );
+        assertNull( cache.get( 1L ) );
+    }
+
+    @Test
+    public void oldestEntriesAreOverwrittenWhenFull()
+    {
+        // 16 segments of 256 bytes, each entry takes 20 + 2 * 10 bytes
+        DirectMemoryCache<String> cache = newCache( 1, 16 * 256 );
+        int count = 10000;
+        for ( long i = 0; i < count; i++ )
+        {
+            cache.put( i, value( i ) );
+        }
+        int kept = cache.directMemorySize();
+        assertTrue( "" + kept, kept > 0 && kept <= 16 * ( 256 / 40 ) );
+        assertEquals( 16 * 256, cache.directMemoryAllocated() );
+        int found = 0;
+        for ( long i = 0; i < count; i++ )
+        {
+            String element = cache.get( i );
+            if ( element != null )
+            {
+                assertEquals( value( i ), element );
+                found++;
+            }
+        }
+        assertTrue( found >= kept );
+        // the most recently evicted ones should still be there
+        assertEquals( value( count - 2 ), cache.get( count - 2L ) );
+    }
+
+    @Test
+    public void clearAndChangeOfBudgetDiscardsEverything()
+    {
+        DirectMemoryCache<String> cache = newCache( 1, 1024 * 1024 );
+        for ( long i = 0; i < 100; i++ )
+        {
+            cache.put( i, value( i ) );
+        }
+        assertEquals( 99, cache.directMemorySize() );
+        cache.setMemoryBudget( 2 * 1024 * 1024 );
+        assertEquals( 0, cache.directMemorySize() );
+        assertEquals( 0, cache.directMemoryAllocated() );
+        for ( long i = 0; i < 100; i++ )
+        {
+            cache.put( i, value( i ) );
+        }
+        cache.clear();
+        assertEquals( 0, cache.size() );
+        assertEquals( 0, cache.directMemorySize() );
+        assertNull( cache.get( 5L ) );
+        String fresh = "fresh";
+        cache.put( 5L, fresh );
+        assertNotSame( value( 5 ), cache.get( 5L ) );
+    }
+
+    private static String value( long i )
+    {
+        String value = "value" + i;
+        while ( value.length() < 10 )
+        {
+            value += "_";
+        }
+        return value;
+    }
+}
@@ -85,7 +85,12 @@ public class JumpingIdGeneratorFactory implements IdGeneratorFactory
         @Override
         public IdRange nextIdBatch( int size )
         {
-            throw new UnsupportedOperationException();
+            long[] ids = new long[size];
+            for ( int i = 0; i < size; i++ )
+            {
+                ids[i] = nextId();
+            }
+            return new IdRange( ids, 0, 0 );
         }
 
         @Override
@@ -121,6 +126,16 @@ public class JumpingIdGeneratorFactory implements IdGeneratorFactory
         {
             return 0;
         }
+
+        public long getIdRequestCount()
+        {
+            return 0;
+        }
+
+        public long getContendedIdRequestCount()
+        {
+            return 0;
+        }
     }
     
     private class JumpingIdGenerator implements IdGenerator
@@ -155,7 +170,12 @@ public class JumpingIdGeneratorFactory implements IdGeneratorFactory
         @Override
         public IdRange nextIdBatch( int size )
         {
-            throw new UnsupportedOperationException();
+            long[] ids = new long[size];
+            for ( int i = 0; i < size; i++ )
+            {
+                ids[i] = nextId();
+            }
+            return new IdRange( ids, 0, 0 );
         }
 
         @Override
@@ -191,5 +211,15 @@ public class JumpingIdGeneratorFactory implements IdGeneratorFactory
         {
             return 0;
         }
+
+        public long getIdRequestCount()
+        {
+            return 0;
+        }
+
+        public long getContendedIdRequestCount()
+        {
+            return 0;
+        }
     }
 }
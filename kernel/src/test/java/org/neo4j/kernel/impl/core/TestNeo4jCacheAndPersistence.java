@@ -42,7 +42,9 @@ import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.helpers.collection.IteratorUtil;
+import org.neo4j.kernel.Config;
 import org.neo4j.kernel.EmbeddedGraphDatabase;
+import org.neo4j.kernel.Traversal;
 import org.neo4j.kernel.impl.AbstractNeo4jTestCase;
 import org.neo4j.kernel.impl.MyRelTypes;
 
@@ -528,6 +530,159 @@ public class TestNeo4jCacheAndPersistence extends AbstractNeo4jTestCase
         graphDb.shutdown();
     }
 
+    @Test
+    public void typedRelationshipsAreReadWithoutLoadingAllRelationships()
+    {
+        Map<String,String> config = new HashMap<String,String>();
+        config.put( "relationship_grab_size", "10" );
+        config.put( Config.FILTERED_RELATIONSHIP_LOADS, "2" );
+        String storePath = getStorePath( "neo2" );
+        deleteFileOrDirectory( storePath );
+        EmbeddedGraphDatabase graphDb = new EmbeddedGraphDatabase( storePath, config );
+        NodeManager nodeManager = graphDb.getConfig().getGraphDbModule().getNodeManager();
+        Transaction tx = graphDb.beginTx();
+        Node superNode = graphDb.createNode();
+        Set<Relationship> wanted = new HashSet<Relationship>();
+        for ( int i = 0; i < 500; i++ )
+        {
+            Node other = graphDb.createNode();
+            superNode.createRelationshipTo( other, MyRelTypes.TEST );
+            if ( i % 100 == 0 )
+            {
+                wanted.add( superNode.createRelationshipTo( other, MyRelTypes.TEST2 ) );
+                other.createRelationshipTo( superNode, MyRelTypes.TEST2 );
+            }
+        }
+        tx.success();
+        tx.finish();
+
+        nodeManager.clearCache();
+        tx = graphDb.beginTx();
+        for ( int i = 0; i < 2; i++ )
+        {
+            assertEquals( wanted, IteratorUtil.addToCollection( superNode.getRelationships(
+                MyRelTypes.TEST2, Direction.OUTGOING ), new HashSet<Relationship>() ) );
+            assertTrue( nodeManager.getRelationshipCacheSize() < 50 );
+        }
+        // changes in the transaction are seen
+        Relationship removed = wanted.iterator().next();
+        removed.delete();
+        wanted.remove( removed );
+        wanted.add( superNode.createRelationshipTo( graphDb.createNode(), MyRelTypes.TEST2 ) );
+        // the last filtered read, then all relationships get loaded
+        for ( int i = 0; i < 2; i++ )
+        {
+            assertEquals( wanted, IteratorUtil.addToCollection( superNode.getRelationships(
+                MyRelTypes.TEST2, Direction.OUTGOING ), new HashSet<Relationship>() ) );
+        }
+        assertTrue( nodeManager.getRelationshipCacheSize() > 500 );
+        tx.success();
+        tx.finish();
+        graphDb.shutdown();
+    }
+
+    @Test
+    public void prefetchedNodesAreReadIntoTheCache() throws Exception
+    {
+        Map<String,String> config = new HashMap<String,String>();
+        config.put( Config.RELATIONSHIP_PREFETCH_THREADS, "2" );
+        String storePath = getStorePath( "neo2" );
+        deleteFileOrDirectory( storePath );
+        EmbeddedGraphDatabase graphDb = new EmbeddedGraphDatabase( storePath, config );
+        NodeManager nodeManager = graphDb.getConfig().getGraphDbModule().getNodeManager();
+        assertTrue( nodeManager.isPrefetchingRelationships() );
+        Transaction tx = graphDb.beginTx();
+        Node root = graphDb.createNode();
+        Node child = null;
+        for ( int i = 0; i < 50; i++ )
+        {
+            child = graphDb.createNode();
+            root.createRelationshipTo( child, MyRelTypes.TEST );
+            for ( int j = 0; j < 5; j++ )
+            {
+                child.createRelationshipTo( graphDb.createNode(), MyRelTypes.TEST );
+            }
+        }
+        tx.success();
+        tx.finish();
+
+        nodeManager.clearCache();
+        nodeManager.prefetchRelationships( child.getId() );
+        long end = System.currentTimeMillis() + 10000;
+        while ( nodeManager.getRelationshipCacheSize() < 6 && System.currentTimeMillis() < end )
+        {
+            Thread.sleep( 10 );
+        }
+        assertEquals( 1, nodeManager.getNodeCacheSize() );
+        assertEquals( 6, nodeManager.getRelationshipCacheSize() );
+
+        // the traversal asks for the nodes ahead of it to be prefetched
+        nodeManager.clearCache();
+        long prefetched = nodeManager.getRelationshipPrefetchCount();
+        assertEquals( 1 + 50 + 250, IteratorUtil.count( Traversal.description().breadthFirst()
+                .traverse( root ).nodes() ) );
+        end = System.currentTimeMillis() + 10000;
+        while ( nodeManager.getRelationshipPrefetchCount() == prefetched
+                && System.currentTimeMillis() < end )
+        {
+            Thread.sleep( 10 );
+        }
+        assertTrue( nodeManager.getRelationshipPrefetchCount() > prefetched );
+        graphDb.shutdown();
+    }
+
+    @Test
+    public void shutdownWhilePrefetchingLeavesTheStoreIntact() throws Exception
+    {
+        Map<String,String> config = new HashMap<String,String>();
+        config.put( Config.RELATIONSHIP_PREFETCH_THREADS, "4" );
+        // plain file channel reads are the ones an interrupt would break
+        config.put( Config.USE_MEMORY_MAPPED_BUFFERS, "false" );
+        String storePath = getStorePath( "neo2" );
+        deleteFileOrDirectory( storePath );
+        EmbeddedGraphDatabase graphDb = new EmbeddedGraphDatabase( storePath, config );
+        Transaction tx = graphDb.beginTx();
+        Node root = graphDb.createNode();
+        for ( int i = 0; i < 200; i++ )
+        {
+            Node child = graphDb.createNode();
+            root.createRelationshipTo( child, MyRelTypes.TEST );
+            for ( int j = 0; j < 5; j++ )
+            {
+                child.createRelationshipTo( graphDb.createNode(), MyRelTypes.TEST );
+            }
+        }
+        tx.success();
+        tx.finish();
+        long rootId = root.getId();
+
+        NodeManager nodeManager = graphDb.getConfig().getGraphDbModule().getNodeManager();
+        nodeManager.clearCache();
+        Iterator<Node> nodes = Traversal.description().breadthFirst().traverse( root )
+                .nodes().iterator();
+        for ( int i = 0; i < 100; i++ )
+        {
+            nodes.next();
+        }
+        for ( long id = rootId; id < rootId + 1 + 200 + 1000; id++ )
+        {
+            nodeManager.prefetchRelationships( id );
+        }
+        // prefetches are still queued or running
+        graphDb.shutdown();
+
+        graphDb = new EmbeddedGraphDatabase( storePath, config );
+        try
+        {
+            assertEquals( 1 + 200 + 1000, IteratorUtil.count( Traversal.description()
+                    .breadthFirst().traverse( graphDb.getNodeById( rootId ) ).nodes() ) );
+        }
+        finally
+        {
+            graphDb.shutdown();
+        }
+    }
+
     @Test
     public void testAnotherLowGrabSize()
     {
@@ -0,0 +1,221 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.helpers.collection.MapUtil;
+import org.neo4j.kernel.Config;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+import org.neo4j.kernel.impl.AbstractNeo4jTestCase;
+
+public class TestOffHeapCache
+{
+    private static final RelationshipType KNOWS = DynamicRelationshipType.withName( "KNOWS" );
+    private static final RelationshipType LIKES = DynamicRelationshipType.withName( "LIKES" );
+
+    private EmbeddedGraphDatabase db;
+
+    @Before
+    public void startDb()
+    {
+        String path = AbstractNeo4jTestCase.getStorePath( "offheap-cache-db" );
+        AbstractNeo4jTestCase.deleteFileOrDirectory( new File( path ) );
+        db = new EmbeddedGraphDatabase( path, MapUtil.stringMap(
+                Config.CACHE_TYPE, "offheap", Config.OFF_HEAP_CACHE_SIZE, "1M",
+                "max_node_cache_size", "10", "max_relationship_cache_size", "10" ) );
+    }
+
+    @After
+    public void stopDb()
+    {
+        db.shutdown();
+    }
+
+    private NodeManager nodeManager()
+    {
+        return db.getConfig().getGraphDbModule().getNodeManager();
+    }
+
+    private List<Node> createStar( int size )
+    {
+        List<Node> nodes = new ArrayList<Node>();
+        Transaction tx = db.beginTx();
+        try
+        {
+            Node center = db.createNode();
+            nodes.add( center );
+            for ( int i = 0; i < size; i++ )
+            {
+                Node other = db.createNode();
+                other.setProperty( "name", "node" + i );
+                center.createRelationshipTo( other, i % 2 == 0 ? KNOWS : LIKES );
+                nodes.add( other );
+            }
+            center.createRelationshipTo( center, KNOWS );
+            tx.success();
+        }
+        finally
+        {
+            tx.finish();
+        }
+        return nodes;
+    }
+
+    private void touchAll( List<Node> nodes )
+    {
+        for ( Node node : nodes )
+        {
+            for ( Relationship rel : node.getRelationships() )
+            {
+                rel.getOtherNode( node );
+            }
+        }
+    }
+
+    private Set<Long> relationshipIds( Node node, Direction direction, RelationshipType... types )
+    {
+        Set<Long> ids = new HashSet<Long>();
+        Iterable<Relationship> rels = types.length == 0 ? node.getRelationships( direction )
+                : node.getRelationships( direction, types );
+        for ( Relationship rel : rels )
+        {
+            ids.add( rel.getId() );
+        }
+        return ids;
+    }
+
+    @Test
+    public void relationshipsSurviveTripToDirectMemory()
+    {
+        List<Node> nodes = createStar( 100 );
+        Node center = nodes.get( 0 );
+        touchAll( nodes );
+        Set<Long> outgoing = relationshipIds( center, Direction.OUTGOING );
+        Set<Long> incoming = relationshipIds( center, Direction.INCOMING );
+        Set<Long> knows = relationshipIds( center, Direction.BOTH, KNOWS );
+        assertEquals( 101, outgoing.size() );
+        assertEquals( 1, incoming.size() );
+        assertEquals( 51, knows.size() );
+
+        // push everything through the heap level a couple of times
+        touchAll( nodes );
+        touchAll( nodes );
+        assertTrue( nodeManager().getNodeCacheSize() <= 10 );
+        assertEquals( outgoing, relationshipIds( center, Direction.OUTGOING ) );
+        assertEquals( incoming, relationshipIds( center, Direction.INCOMING ) );
+        assertEquals( knows, relationshipIds( center, Direction.BOTH, KNOWS ) );
+        for ( int i = 1; i < nodes.size(); i++ )
+        {
+            Node node = db.getNodeById( nodes.get( i ).getId() );
+            assertEquals( "node" + ( i - 1 ), node.getProperty( "name" ) );
+            assertEquals( center, node.getSingleRelationship(
+                    i % 2 == 1 ? KNOWS : LIKES, Direction.INCOMING ).getStartNode() );
+        }
+    }
+
+    @Test
+    public void committedChangesAreNotHiddenByOldCopies()
+    {
+        List<Node> nodes = createStar( 50 );
+        Node center = nodes.get( 0 );
+        touchAll( nodes );
+        Set<Long> before = relationshipIds( center, Direction.BOTH );
+        Relationship added;
+        Transaction tx = db.beginTx();
+        try
+        {
+            added = center.createRelationshipTo( nodes.get( 1 ), LIKES );
+            tx.success();
+        }
+        finally
+        {
+            tx.finish();
+        }
+        touchAll( nodes );
+        touchAll( nodes );
+        Set<Long> after = relationshipIds( center, Direction.BOTH );
+        assertEquals( before.size() + 1, after.size() );
+        assertTrue( after.contains( added.getId() ) );
+
+        tx = db.beginTx();
+        try
+        {
+            nodes.get( 1 ).getSingleRelationship( KNOWS, Direction.INCOMING ).delete();
+            tx.success();
+        }
+        finally
+        {
+            tx.finish();
+        }
+        touchAll( nodes );
+        touchAll( nodes );
+        assertEquals( before.size(), relationshipIds( center, Direction.BOTH ).size() );
+    }
+
+    @Test
+    public void deletedNodesAreNotResurrected()
+    {
+        List<Node> nodes = createStar( 20 );
+        touchAll( nodes );
+        Node victim = nodes.get( 5 );
+        Transaction tx = db.beginTx();
+        try
+        {
+            for ( Relationship rel : victim.getRelationships() )
+            {
+                rel.delete();
+            }
+            victim.delete();
+            tx.success();
+        }
+        finally
+        {
+            tx.finish();
+        }
+        touchAll( nodes.subList( 6, nodes.size() ) );
+        try
+        {
+            db.getNodeById( victim.getId() );
+            fail( "Deleted node should not be found" );
+        }
+        catch ( NotFoundException e )
+        { // good
+        }
+    }
+}
@@ -143,6 +143,85 @@ public class TestRelIdArray
                 0L, 1L, justOverIntMax, justOverIntMax+1 ) ), new HashSet<Long>( asList( all ) ) );
     }
     
+    @Test
+    public void idsAreReturnedInTheOrderTheyWereAdded() throws Exception
+    {
+        RelIdArray array = new RelIdArray( null );
+        List<Long> expected = new ArrayList<Long>();
+        long[] ids = { 1000, 999, 998, 5, Long.MAX_VALUE, 0, (long) Math.pow( 2, 35 ), 7 };
+        for ( long id : ids )
+        {
+            array.add( id, OUTGOING );
+            expected.add( id );
+        }
+        assertEquals( expected, asList( array ) );
+    }
+    
+    @Test
+    public void closeIdsTakeLessSpaceThanInts() throws Exception
+    {
+        RelIdArray array = new RelIdArray( null );
+        for ( long id = 100000; id > 90000; id -= 3 )
+        {
+            array.add( id, OUTGOING );
+        }
+        assertTrue( array.shrink().getSizeInBytes() < 4000 );
+    }
+    
+    @Test
+    public void mergingWithAddedIdsDoesntChangeTheSource() throws Exception
+    {
+        RelIdArray source = new RelIdArray( null );
+        source.add( 10, OUTGOING );
+        source.add( 9, OUTGOING );
+        RelIdArray add = new RelIdArray( null );
+        add.add( 11, OUTGOING );
+        add.add( 12, INCOMING );
+        
+        RelIdArray merged = RelIdArray.from( source, add, null );
+        RelIdArray otherMerged = RelIdArray.from( source, add, null );
+        source.add( 8, OUTGOING );
+        merged.add( 13, OUTGOING );
+        
+        assertEquals( Arrays.asList( 10L, 9L, 8L ), asList( source ) );
+        assertEquals( Arrays.asList( 10L, 9L, 11L, 13L, 12L ), asList( merged ) );
+        assertEquals( Arrays.asList( 10L, 9L, 11L, 12L ), asList( otherMerged ) );
+    }
+    
+    @Test
+    public void iteratorSeesIdsAddedWhileIterating() throws Exception
+    {
+        RelIdArray array = new RelIdArray( null );
+        array.add( 1, OUTGOING );
+        RelIdIterator itr = array.iterator( BOTH );
+        assertEquals( 1L, itr.next() );
+        assertFalse( itr.hasNext() );
+        
+        RelIdArray more = new RelIdArray( null );
+        more.add( 2, OUTGOING );
+        more.add( 3, INCOMING );
+        array.addAll( more );
+        itr.doAnotherRound();
+        assertEquals( 2L, itr.next() );
+        assertEquals( 3L, itr.next() );
+        assertFalse( itr.hasNext() );
+    }
+    
+    @Test
+    public void removingOnlyRewritesTheDirectionsWithRemovedIds() throws Exception
+    {
+        RelIdArray source = new RelIdArray( null );
+        source.add( 1, OUTGOING );
+        source.add( 2, OUTGOING );
+        source.add( 3, INCOMING );
+        Collection<Long> remove = new HashSet<Long>( Arrays.asList( 1L, 2L ) );
+        
+        RelIdArray result = RelIdArray.from( source, null, remove );
+        assertEquals( Arrays.asList( 3L ), asList( result ) );
+        assertFalse( result.iterator( OUTGOING ).hasNext() );
+        assertEquals( Arrays.asList( 1L, 2L, 3L ), asList( source ) );
+    }
+    
     private List<Long> asList( RelIdArray ids )
     {
         List<Long> result = new ArrayList<Long>();
@@ -49,6 +49,7 @@ import org.neo4j.kernel.AbstractGraphDatabase;
 import org.neo4j.kernel.EmbeddedGraphDatabase;
 import org.neo4j.kernel.IdType;
 import org.neo4j.kernel.impl.AbstractNeo4jTestCase;
+import org.neo4j.kernel.impl.core.NodeManager;
 
 public class TestIdGenerator
 {
@@ -571,6 +572,91 @@ public class TestIdGenerator
         idGenerator.close();
     }
     
+    @Test
+    public void makeSureMagicMinusOneIsSkippedInBatches() throws Exception
+    {
+        IdGeneratorImpl.createGenerator( idGeneratorFile() );
+        IdGenerator idGenerator = new IdGeneratorImpl( idGeneratorFile(), 1, IdType.NODE.getMaxValue() );
+        long id = (long) Math.pow( 2, 32 )-3;
+        idGenerator.setHighId( id );
+        IdRange range = idGenerator.nextIdBatch( 5 );
+        assertEquals( id, range.getRangeStart() );
+        assertEquals( 2, range.getRangeLength() );
+        range = idGenerator.nextIdBatch( 2 );
+        assertEquals( id+3, range.getRangeStart() );
+        assertEquals( 2, range.getRangeLength() );
+        assertEquals( id+5, idGenerator.nextId() );
+        idGenerator.close();
+    }
+
+    @Test
+    public void idRequestsAndContentionAreCounted() throws Exception
+    {
+        IdGeneratorImpl.createGenerator( idGeneratorFile() );
+        final IdGeneratorImpl idGenerator = new IdGeneratorImpl( idGeneratorFile(), 10, IdType.NODE.getMaxValue() );
+        idGenerator.freeId( idGenerator.nextId() );
+        idGenerator.nextIdBatch( 10 );
+        assertEquals( 3, idGenerator.getIdRequestCount() );
+        assertEquals( 0, idGenerator.getContendedIdRequestCount() );
+
+        Thread[] threads = new Thread[4];
+        for ( int i = 0; i < threads.length; i++ )
+        {
+            threads[i] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for ( int i = 0; i < 10000; i++ )
+                    {
+                        idGenerator.nextId();
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+        assertEquals( 3 + threads.length*10000, idGenerator.getIdRequestCount() );
+        assertTrue( idGenerator.getContendedIdRequestCount() <= threads.length*10000 );
+        assertEquals( 11 + threads.length*10000, idGenerator.getHighId() );
+        idGenerator.close();
+    }
+
+    @Test
+    public void unusedLeasedIdsAreFreedWhenTransactionCompletes() throws Exception
+    {
+        String storeDir = path() + File.separator + "leases";
+        deleteRecursively( new File( storeDir ) );
+        GraphDatabaseService db = new EmbeddedGraphDatabase( storeDir );
+        NodeManager nodeManager = ((AbstractGraphDatabase)db).getConfig().getGraphDbModule().getNodeManager();
+        long nodeCount = nodeManager.getNumberOfIdsInUse( Node.class );
+        long propertyCount = nodeManager.getNumberOfIdsInUse( PropertyStore.class );
+
+        Transaction tx = db.beginTx();
+        for ( int i = 0; i < 10; i++ )
+        {
+            db.createNode().setProperty( "key", i );
+        }
+        tx.success();
+        tx.finish();
+        assertEquals( nodeCount + 10, nodeManager.getNumberOfIdsInUse( Node.class ) );
+        assertEquals( propertyCount + 10, nodeManager.getNumberOfIdsInUse( PropertyStore.class ) );
+
+        tx = db.beginTx();
+        for ( int i = 0; i < 10; i++ )
+        {
+            db.createNode().setProperty( "key", i );
+        }
+        tx.failure();
+        tx.finish();
+        assertEquals( nodeCount + 10, nodeManager.getNumberOfIdsInUse( Node.class ) );
+        assertEquals( propertyCount + 10, nodeManager.getNumberOfIdsInUse( PropertyStore.class ) );
+        db.shutdown();
+    }
+
     @Test
     public void makeSureMagicMinusOneCannotBeReturnedEvenIfFreed() throws Exception
     {
@@ -0,0 +1,242 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.kernel.impl.AbstractNeo4jTestCase;
+
+public class TestPersistenceWindowPool
+{
+    private static final int RECORD_SIZE = 16;
+    private static final int RECORD_COUNT = 20000;
+
+    private File file;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+
+    @Before
+    public void createFile() throws Exception
+    {
+        String path = AbstractNeo4jTestCase.getStorePath( "windowpool" );
+        new File( path ).mkdirs();
+        file = new File( path, "records.db" );
+        file.delete();
+        raf = new RandomAccessFile( file, "rw" );
+        channel = raf.getChannel();
+        ByteBuffer zeros = ByteBuffer.allocate( RECORD_SIZE * RECORD_COUNT );
+        channel.write( zeros, 0 );
+    }
+
+    @After
+    public void closeFile() throws Exception
+    {
+        raf.close();
+        file.delete();
+    }
+
+    private void write( PersistenceWindowPool pool, long id, long value )
+    {
+        PersistenceWindow window = pool.acquire( id, OperationType.WRITE );
+        try
+        {
+            Buffer buffer = window.getOffsettedBuffer( id );
+            buffer.putLong( id );
+            buffer.putLong( value );
+        }
+        finally
+        {
+            pool.release( window );
+        }
+    }
+
+    private long read( PersistenceWindowPool pool, long id )
+    {
+        LockableWindow unlocked = pool.getUnlockedWindow( id );
+        if ( unlocked != null )
+        {
+            int stamp = unlocked.startUnlockedRead();
+            try
+            {
+                ByteBuffer buffer = unlocked.getBuffer().getBuffer();
+                int offset = (int) ( id - unlocked.position() ) * RECORD_SIZE;
+                long storedId = buffer.getLong( offset );
+                long value = buffer.getLong( offset + 8 );
+                if ( unlocked.validateUnlockedRead( stamp ) )
+                {
+                    assertTrue( "Record " + id + " has id " + storedId,
+                        storedId == id || storedId == 0 );
+                    return value;
+                }
+            }
+            catch ( IndexOutOfBoundsException e )
+            {
+                // unmapped while reading
+            }
+        }
+        PersistenceWindow window = pool.acquire( id, OperationType.READ );
+        try
+        {
+            Buffer buffer = window.getOffsettedBuffer( id );
+            long storedId = buffer.getLong();
+            long value = buffer.getLong();
+            assertTrue( "Record " + id + " has id " + storedId,
+                storedId == id || storedId == 0 );
+            return value;
+        }
+        finally
+        {
+            pool.release( window );
+        }
+    }
+
+    @Test
+    public void concurrentReadersAndWritersSeeTheirOwnWrites() throws Exception
+    {
+        readAndWriteConcurrently( true );
+    }
+
+    @Test
+    public void concurrentReadersAndWritersSeeTheirOwnWritesWithPlainWindows()
+        throws Exception
+    {
+        readAndWriteConcurrently( false );
+    }
+
+    private void readAndWriteConcurrently( boolean useMemoryMapped )
+        throws Exception
+    {
+        // mapped memory for a tenth of the file, lots of misses and remaps
+        final PersistenceWindowPool pool = new PersistenceWindowPool( "test",
+            RECORD_SIZE, channel, RECORD_SIZE * RECORD_COUNT / 10,
+            useMemoryMapped, false );
+        final int threadCount = 8;
+        final int rounds = 30000;
+        final long[][] expected = new long[threadCount][];
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[threadCount];
+        for ( int t = 0; t < threadCount; t++ )
+        {
+            final int thread = t;
+            expected[t] = new long[RECORD_COUNT / threadCount];
+            threads[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        Random random = new Random( thread );
+                        for ( int i = 0; i < rounds; i++ )
+                        {
+                            // skewed towards the start of the file so that
+                            // some bricks get hot enough to be mapped
+                            int slot = random.nextInt( 4 ) == 0 ?
+                                random.nextInt( expected[thread].length ) :
+                                random.nextInt( expected[thread].length / 20 );
+                            long id = (long) slot * threadCount + thread;
+                            assertEquals( expected[thread][slot], read( pool, id ) );
+                            long value = ( (long) thread << 32 ) | i;
+                            write( pool, id, value );
+                            expected[thread][slot] = value;
+                        }
+                    }
+                    catch ( Throwable e )
+                    {
+                        failure.compareAndSet( null, e );
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+        if ( failure.get() != null )
+        {
+            throw new AssertionError( failure.get() );
+        }
+        WindowPoolStats stats = pool.getStats();
+        assertTrue( stats.getMemUsed() <= stats.getMemAvail() );
+        assertTrue( stats.getHitCount() > 0 );
+        pool.close();
+
+        PersistenceWindowPool reopened = new PersistenceWindowPool( "test",
+            RECORD_SIZE, channel, 0, true, false );
+        for ( int t = 0; t < threadCount; t++ )
+        {
+            for ( int slot = 0; slot < expected[t].length; slot++ )
+            {
+                assertEquals( expected[t][slot],
+                    read( reopened, (long) slot * threadCount + t ) );
+            }
+        }
+        reopened.close();
+    }
+
+    @Test
+    public void unlockedReadsAreInvalidatedByWrites() throws Exception
+    {
+        // bricks are mapped as the empty file grows
+        channel.truncate( 0 );
+        PersistenceWindowPool pool = new PersistenceWindowPool( "test",
+            RECORD_SIZE, channel, RECORD_SIZE * RECORD_COUNT, true, false );
+        write( pool, 10, 42 );
+        LockableWindow window = pool.getUnlockedWindow( 10 );
+        assertNotNull( window );
+        int stamp = window.startUnlockedRead();
+        int offset = (int) ( 10 - window.position() ) * RECORD_SIZE;
+        assertEquals( 42, window.getBuffer().getBuffer().getLong( offset + 8 ) );
+        assertTrue( window.validateUnlockedRead( stamp ) );
+        // validating leaves the stamp as it is
+        assertEquals( stamp, window.startUnlockedRead() );
+        assertTrue( window.validateUnlockedRead( stamp ) );
+
+        PersistenceWindow writeWindow = pool.acquire( 10, OperationType.WRITE );
+        assertEquals( -1, window.startUnlockedRead() );
+        assertFalse( window.validateUnlockedRead( stamp ) );
+        writeWindow.getOffsettedBuffer( 10 ).putLong( 10 ).putLong( 43 );
+        pool.release( writeWindow );
+
+        assertFalse( window.validateUnlockedRead( stamp ) );
+        stamp = window.startUnlockedRead();
+        assertEquals( 43, window.getBuffer().getBuffer().getLong( offset + 8 ) );
+        assertTrue( window.validateUnlockedRead( stamp ) );
+
+        // reading doesn't invalidate unlocked reads
+        assertEquals( 43, read( pool, 10 ) );
+        assertTrue( window.validateUnlockedRead( stamp ) );
+        pool.close();
+    }
+}
@@ -19,9 +19,14 @@
  */
 package org.neo4j.kernel.impl.transaction;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.junit.Test;
 import org.neo4j.kernel.DeadlockDetectedException;
 
@@ -553,4 +558,99 @@ public class TestRWLock
         }
         go = true;
     }
-}
\ No newline at end of file
+
+    @Test
+    public void deadlockIsDetectedAcrossStripes() throws Exception
+    {
+        final LockManager striped = new LockManager( new PlaceboTm(), 8 );
+        final Object r1 = "R1";
+        final Object r2 = "R2";
+        final CountDownLatch r2Locked = new CountDownLatch( 1 );
+        final AtomicReference<Exception> otherFailure =
+            new AtomicReference<Exception>();
+        striped.getWriteLock( r1 );
+        Thread other = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    striped.getWriteLock( r2 );
+                    r2Locked.countDown();
+                    // waits until the main thread gives up r1
+                    striped.getWriteLock( r1 );
+                    striped.releaseWriteLock( r1, null );
+                    striped.releaseWriteLock( r2, null );
+                }
+                catch ( Exception e )
+                {
+                    otherFailure.set( e );
+                }
+            }
+        };
+        other.start();
+        r2Locked.await();
+        while ( other.getState() != Thread.State.WAITING )
+        {
+            Thread.sleep( 1 );
+        }
+        try
+        {
+            striped.getWriteLock( r2 );
+            fail( "Should have detected deadlock" );
+        }
+        catch ( DeadlockDetectedException e )
+        {
+            // good
+        }
+        assertEquals( 1, striped.getDetectedDeadlockCount() );
+        striped.releaseWriteLock( r1, null );
+        other.join();
+        assertNull( otherFailure.get() );
+    }
+
+    @Test
+    public void concurrentLockingWithStripes() throws Exception
+    {
+        final LockManager striped = new LockManager( new PlaceboTm(), 16 );
+        final AtomicReference<Exception> failure =
+            new AtomicReference<Exception>();
+        Thread[] threads = new Thread[8];
+        for ( int i = 0; i < threads.length; i++ )
+        {
+            final int offset = i;
+            threads[i] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        for ( int j = 0; j < 10000; j++ )
+                        {
+                            // always in the same order so no deadlocks
+                            Integer first = j % 100;
+                            Integer second = 100 + (j + offset) % 100;
+                            striped.getReadLock( first );
+                            striped.getWriteLock( second );
+                            striped.releaseWriteLock( second, null );
+                            striped.releaseReadLock( first, null );
+                        }
+                    }
+                    catch ( Exception e )
+                    {
+                        failure.set( e );
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+        assertNull( failure.get() );
+        assertEquals( 0, striped.getDetectedDeadlockCount() );
+    }
+}
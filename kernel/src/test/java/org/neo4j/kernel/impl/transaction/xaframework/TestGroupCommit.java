@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.xaframework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.helpers.collection.MapUtil.stringMap;
+import static org.neo4j.kernel.impl.util.FileUtils.deleteRecursively;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.AbstractGraphDatabase;
+import org.neo4j.kernel.Config;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+import org.neo4j.kernel.impl.AbstractNeo4jTestCase;
+
+public class TestGroupCommit
+{
+    private final String path = AbstractNeo4jTestCase.getStorePath( "groupcommit" );
+    private AbstractGraphDatabase db;
+
+    @Before
+    public void startDb() throws Exception
+    {
+        deleteRecursively( new File( path ) );
+        // a lone committer waits long for a second one to share its force
+        db = new EmbeddedGraphDatabase( path, stringMap( Config.GROUP_COMMIT, "true",
+                Config.GROUP_COMMIT_MAX_WAIT, "60000", Config.GROUP_COMMIT_MAX_BATCH_SIZE, "2" ) );
+    }
+
+    @After
+    public void stopDb()
+    {
+        db.shutdown();
+    }
+
+    @Test
+    public void changesAreNotAppliedBeforeTheCommitRecordIsForced() throws Exception
+    {
+        XaDataSource dataSource = getDataSource();
+        long lastTxId = dataSource.getLastCommittedTxId();
+        CreateNode first = new CreateNode();
+        first.start();
+        long nodeId = first.awaitNodeId();
+
+        // the first committer now waits for a second one to share the force
+        Thread.sleep( 500 );
+        assertTrue( first.isAlive() );
+        // applying it would have set the last committed tx id in the store
+        assertEquals( lastTxId, dataSource.getLastCommittedTxId() );
+
+        // the second committer can write its commit record meanwhile, which
+        // fills the batch and forces both
+        CreateNode second = new CreateNode();
+        second.start();
+        first.join( 10000 );
+        second.join( 10000 );
+        assertEquals( lastTxId + 2, dataSource.getLastCommittedTxId() );
+        db.getNodeById( nodeId );
+        db.getNodeById( second.awaitNodeId() );
+        GroupCommitter groupCommitter = dataSource.getXaContainer().getLogicalLog().getGroupCommitter();
+        assertEquals( 2, groupCommitter.getLargestBatchSize() );
+    }
+
+    private XaDataSource getDataSource()
+    {
+        return db.getConfig().getTxModule().getXaDataSourceManager().getXaDataSource(
+            Config.DEFAULT_DATA_SOURCE_NAME );
+    }
+
+    private class CreateNode extends Thread
+    {
+        private volatile long nodeId = -1;
+
+        @Override
+        public void run()
+        {
+            Transaction tx = db.beginTx();
+            try
+            {
+                Node node = db.createNode();
+                nodeId = node.getId();
+                tx.success();
+            }
+            finally
+            {
+                tx.finish();
+            }
+        }
+
+        long awaitNodeId() throws InterruptedException
+        {
+            while ( nodeId == -1 )
+            {
+                Thread.sleep( 10 );
+            }
+            return nodeId;
+        }
+    }
+}
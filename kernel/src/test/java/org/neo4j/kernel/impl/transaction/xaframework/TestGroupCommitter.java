@@ -0,0 +1,189 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.xaframework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TestGroupCommitter
+{
+    @Test
+    public void testIllegalArguments()
+    {
+        try
+        {
+            new GroupCommitter( "test", -1, 10 );
+            fail( "Negative max wait should throw exception" );
+        }
+        catch ( IllegalArgumentException e )
+        { // good
+        }
+        try
+        {
+            new GroupCommitter( "test", 0, 0 );
+            fail( "Zero max batch size should throw exception" );
+        }
+        catch ( IllegalArgumentException e )
+        { // good
+        }
+    }
+
+    @Test
+    public void testSingleCommitterForcesOnce() throws Exception
+    {
+        GroupCommitter committer = new GroupCommitter( "test", 0, 10 );
+        CountingForcer forcer = new CountingForcer( 0 );
+        long ticket = committer.register();
+        committer.awaitForced( ticket, forcer );
+        assertEquals( 1, forcer.count.get() );
+        // already forced, shouldn't force again
+        committer.awaitForced( ticket, forcer );
+        assertEquals( 1, forcer.count.get() );
+        assertEquals( 1, committer.getForceCount() );
+        assertEquals( 1, committer.getForcedCommitCount() );
+    }
+
+    @Test
+    public void testConcurrentCommittersShareForces() throws Exception
+    {
+        final GroupCommitter committer = new GroupCommitter( "test", 10, 8 );
+        final CountingForcer forcer = new CountingForcer( 5 );
+        final int threadCount = 8;
+        final int commitsPerThread = 20;
+        final CountDownLatch start = new CountDownLatch( 1 );
+        final List<Throwable> failures = new ArrayList<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for ( int i = 0; i < threadCount; i++ )
+        {
+            Thread thread = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                        for ( int j = 0; j < commitsPerThread; j++ )
+                        {
+                            committer.awaitForced( committer.register(), forcer );
+                        }
+                    }
+                    catch ( Throwable t )
+                    {
+                        synchronized ( failures )
+                        {
+                            failures.add( t );
+                        }
+                    }
+                }
+            };
+            thread.start();
+            threads.add( thread );
+        }
+        start.countDown();
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+        assertTrue( failures.toString(), failures.isEmpty() );
+        assertEquals( threadCount * commitsPerThread, committer.getForcedCommitCount() );
+        assertEquals( forcer.count.get(), committer.getForceCount() );
+        assertTrue( "Expected fewer forces than commits, but got " + forcer.count.get(),
+                forcer.count.get() < threadCount * commitsPerThread );
+        assertTrue( committer.getLargestBatchSize() > 1 );
+    }
+
+    @Test
+    public void testFailedForceIsRetriedByNextCommitter() throws Exception
+    {
+        GroupCommitter committer = new GroupCommitter( "test", 0, 10 );
+        long ticket = committer.register();
+        try
+        {
+            committer.awaitForced( ticket, new GroupCommitter.Forcer()
+            {
+                public void force() throws IOException
+                {
+                    throw new IOException( "Simulated failure" );
+                }
+            } );
+            fail( "Should have thrown the force failure" );
+        }
+        catch ( IOException e )
+        { // good
+        }
+        assertEquals( 0, committer.getForcedCommitCount() );
+        CountingForcer forcer = new CountingForcer( 0 );
+        committer.awaitForced( ticket, forcer );
+        assertEquals( 1, forcer.count.get() );
+        assertEquals( 1, committer.getForcedCommitCount() );
+    }
+
+    @Test
+    public void testForcesPerSecondIsNotResetByReading() throws Exception
+    {
+        GroupCommitter committer = new GroupCommitter( "test", 0, 10 );
+        CountingForcer forcer = new CountingForcer( 0 );
+        for ( int i = 0; i < 5; i++ )
+        {
+            committer.awaitForced( committer.register(), forcer );
+        }
+        Thread.sleep( 1100 );
+        // completes the first interval
+        committer.awaitForced( committer.register(), forcer );
+        double rate = committer.getForcesPerSecond();
+        assertTrue( "Unexpected rate " + rate, rate > 0 && rate <= 6 );
+        assertEquals( rate, committer.getForcesPerSecond(), 0 );
+        assertEquals( rate, committer.getForcesPerSecond(), 0 );
+    }
+
+    private static class CountingForcer implements GroupCommitter.Forcer
+    {
+        private final AtomicInteger count = new AtomicInteger();
+        private final long forceTime;
+
+        CountingForcer( long forceTime )
+        {
+            this.forceTime = forceTime;
+        }
+
+        public void force() throws IOException
+        {
+            count.incrementAndGet();
+            try
+            {
+                Thread.sleep( forceTime );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.interrupted();
+            }
+        }
+    }
+}
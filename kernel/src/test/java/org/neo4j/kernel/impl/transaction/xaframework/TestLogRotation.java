@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.xaframework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.helpers.collection.MapUtil.stringMap;
+import static org.neo4j.kernel.impl.util.FileUtils.deleteRecursively;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.AbstractGraphDatabase;
+import org.neo4j.kernel.Config;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+import org.neo4j.kernel.impl.AbstractNeo4jTestCase;
+
+public class TestLogRotation
+{
+    private final String path = AbstractNeo4jTestCase.getStorePath( "logrotation" );
+
+    @Before
+    public void cleanUp() throws Exception
+    {
+        deleteRecursively( new File( path ) );
+    }
+
+    @Test
+    public void fullLogIsRotatedInTheBackground() throws Exception
+    {
+        String storeDir = path + File.separator + "background";
+        AbstractGraphDatabase db = new EmbeddedGraphDatabase( storeDir,
+            stringMap( Config.KEEP_LOGICAL_LOGS, "true",
+                Config.BACKGROUND_LOG_ROTATION, "true" ) );
+        XaDataSource dataSource = getDataSource( db );
+        dataSource.setLogicalLogTargetSize( 1024 );
+        List<Long> nodes = new ArrayList<Long>();
+        List<Long> txIds = new ArrayList<Long>();
+        long deadline = System.currentTimeMillis() + 10000;
+        while ( dataSource.getCurrentLogVersion() < 3 )
+        {
+            assertTrue( "Log not rotated", System.currentTimeMillis() < deadline );
+            nodes.add( createNode( db ) );
+            txIds.add( dataSource.getLastCommittedTxId() );
+        }
+        assertTrue( rotatorThreadExists( storeDir ) );
+        for ( long txId : txIds )
+        {
+            assertCommittedTransactionExists( dataSource, txId );
+        }
+        db.shutdown();
+
+        db = new EmbeddedGraphDatabase( storeDir );
+        for ( long id : nodes )
+        {
+            assertEquals( "node" + id, db.getNodeById( id ).getProperty( "name" ) );
+        }
+        db.shutdown();
+    }
+
+    @Test
+    public void fullLogIsRotatedByCommitterByDefault() throws Exception
+    {
+        String storeDir = path + File.separator + "committer";
+        AbstractGraphDatabase db = new EmbeddedGraphDatabase( storeDir );
+        XaDataSource dataSource = getDataSource( db );
+        dataSource.setLogicalLogTargetSize( 1024 );
+        for ( int i = 0; i < 100; i++ )
+        {
+            createNode( db );
+        }
+        assertTrue( dataSource.getCurrentLogVersion() > 0 );
+        assertFalse( rotatorThreadExists( storeDir ) );
+        db.shutdown();
+    }
+
+    private boolean rotatorThreadExists( String storeDir )
+    {
+        for ( Thread thread : Thread.getAllStackTraces().keySet() )
+        {
+            if ( thread.getName().startsWith( "Logical log rotator" ) &&
+                thread.getName().contains( storeDir ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long createNode( AbstractGraphDatabase db )
+    {
+        Transaction tx = db.beginTx();
+        try
+        {
+            Node node = db.createNode();
+            node.setProperty( "name", "node" + node.getId() );
+            tx.success();
+            return node.getId();
+        }
+        finally
+        {
+            tx.finish();
+        }
+    }
+
+    private void assertCommittedTransactionExists( XaDataSource dataSource, long txId )
+        throws Exception
+    {
+        ReadableByteChannel transaction = dataSource.getCommittedTransaction( txId );
+        assertTrue( transaction.read( ByteBuffer.allocate( 1024 ) ) > 0 );
+        transaction.close();
+    }
+
+    private XaDataSource getDataSource( AbstractGraphDatabase db )
+    {
+        return db.getConfig().getTxModule().getXaDataSourceManager().getXaDataSource(
+            Config.DEFAULT_DATA_SOURCE_NAME );
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.xaframework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.helpers.collection.MapUtil.stringMap;
+import static org.neo4j.kernel.impl.util.FileUtils.deleteRecursively;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.AbstractGraphDatabase;
+import org.neo4j.kernel.Config;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+import org.neo4j.kernel.impl.AbstractNeo4jTestCase;
+import org.neo4j.kernel.impl.transaction.xaframework.XaLogicalLog.TxPosition;
+
+public class TestLogTxIndex
+{
+    private final String path = AbstractNeo4jTestCase.getStorePath( "txindex" );
+
+    @Before
+    public void cleanUp() throws Exception
+    {
+        deleteRecursively( new File( path ) );
+        new File( path ).mkdirs();
+    }
+
+    @Test
+    public void findsTransactionsInCurrentAndRotatedVersions() throws Exception
+    {
+        String logFileName = path + File.separator + "log";
+        LogTxIndex index = new LogTxIndex( logFileName );
+        for ( long txId = 2; txId <= 10; txId++ )
+        {
+            index.add( txId, -1, (int) txId, txId * 100 );
+        }
+        TxPosition position = index.find( 5, 0 );
+        assertEquals( 0, position.version );
+        assertEquals( 500, position.position );
+
+        index.rotated( 0 );
+        // tx 11 is carried over to the new version before tx 12 commits
+        index.add( 12, 3, 12, 1200 );
+        index.add( 11, 3, 11, 1100 );
+        position = index.find( 11, 1 );
+        assertEquals( 1, position.version );
+        assertEquals( 1100, position.position );
+        assertEquals( 3, position.masterId );
+        position = index.find( 7, 1 );
+        assertEquals( 0, position.version );
+        assertEquals( 7, position.identifier );
+        assertEquals( 700, position.position );
+        assertNull( index.find( 13, 1 ) );
+
+        // a new index only knows about the rotated version after loading it
+        index = new LogTxIndex( logFileName );
+        assertNull( index.find( 7, 1 ) );
+        assertFalse( index.load( 0, 5 ) );
+        assertTrue( index.load( 0, 1 ) );
+        for ( long txId = 2; txId <= 10; txId++ )
+        {
+            assertEquals( txId * 100, index.find( txId, 1 ).position );
+        }
+        assertNull( index.find( 1, 1 ) );
+    }
+
+    @Test
+    public void findsTransactionsWithGapsInTxIds() throws Exception
+    {
+        LogTxIndex index = new LogTxIndex( path + File.separator + "log" );
+        for ( long txId = 2; txId <= 200; txId += 3 )
+        {
+            index.add( txId, -1, (int) txId, txId );
+        }
+        index.rotated( 0 );
+        for ( long txId = 2; txId <= 200; txId++ )
+        {
+            TxPosition position = index.find( txId, 1 );
+            if ( (txId - 2) % 3 == 0 )
+            {
+                assertEquals( txId, position.position );
+            }
+            else
+            {
+                assertNull( position );
+            }
+        }
+    }
+
+    @Test
+    public void committedTransactionsInKeptLogsAreFoundAfterRestart() throws Exception
+    {
+        String storeDir = path + File.separator + "db";
+        AbstractGraphDatabase db = new EmbeddedGraphDatabase( storeDir,
+            stringMap( Config.KEEP_LOGICAL_LOGS, "true" ) );
+        XaDataSource dataSource = getDataSource( db );
+        List<Long> txIds = new ArrayList<Long>();
+        for ( int i = 0; i < 3; i++ )
+        {
+            for ( int j = 0; j < 5; j++ )
+            {
+                Transaction tx = db.beginTx();
+                db.createNode().setProperty( "name", "node" + i + "-" + j );
+                tx.success();
+                tx.finish();
+                txIds.add( dataSource.getLastCommittedTxId() );
+            }
+            dataSource.rotateLogicalLog();
+        }
+        db.shutdown();
+        assertTrue( new File( storeDir, "nioneo_logical.log.txindex.v0" ).exists() );
+
+        db = new EmbeddedGraphDatabase( storeDir, stringMap(
+            Config.KEEP_LOGICAL_LOGS, "true" ) );
+        dataSource = getDataSource( db );
+        for ( long txId : txIds )
+        {
+            ReadableByteChannel transaction = dataSource.getCommittedTransaction( txId );
+            assertTrue( transaction.read( ByteBuffer.allocate( 1024 ) ) > 0 );
+            transaction.close();
+        }
+        db.shutdown();
+    }
+
+    private XaDataSource getDataSource( AbstractGraphDatabase db )
+    {
+        return db.getConfig().getTxModule().getXaDataSourceManager().getXaDataSource(
+            Config.DEFAULT_DATA_SOURCE_NAME );
+    }
+}
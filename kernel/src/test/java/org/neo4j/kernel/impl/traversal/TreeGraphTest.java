@@ -29,14 +29,19 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
 import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.traversal.Evaluators;
+import org.neo4j.graphdb.traversal.MemoryFootprint;
 import org.neo4j.graphdb.traversal.Traverser;
 import org.neo4j.kernel.Traversal;
+import org.neo4j.kernel.Uniqueness;
 
 public class TreeGraphTest extends AbstractTestBase
 {
@@ -101,6 +106,26 @@ public class TreeGraphTest extends AbstractTestBase
         assertEquals( 13, count );
     }
 
+    @Test
+    public void memoryFootprintIsThatOfLatestIteration() throws Exception
+    {
+        Traverser traverser = Traversal.description().traverse( node( "1" ) );
+        assertEquals( 0, ((MemoryFootprint) traverser).getMemoryFootprint() );
+        for ( Path path : traverser )
+        {
+            assertNotNull( path );
+        }
+        assertTrue( ((MemoryFootprint) traverser).getMemoryFootprint() > 0 );
+
+        traverser = Traversal.description().uniqueness( Uniqueness.NONE ).traverse(
+                node( "1" ) );
+        for ( Path path : traverser )
+        {
+            assertNotNull( path );
+        }
+        assertEquals( 0, ((MemoryFootprint) traverser).getMemoryFootprint() );
+    }
+
     @Test
     public void testBreadthFirst() throws Exception
     {
@@ -114,6 +139,44 @@ public class TreeGraphTest extends AbstractTestBase
         assertLevels( traverser, levels );
     }
 
+    @Test
+    public void testParallelBreadthFirst() throws Exception
+    {
+        Traverser traverser = Traversal.description().order(
+                Traversal.parallelBreadthFirst() ).traverse( node( "1" ) );
+        Stack<Set<String>> levels = new Stack<Set<String>>();
+        levels.push( new HashSet<String>( Arrays.asList( "5", "6", "7", "8",
+                "9", "A", "B", "C", "D" ) ) );
+        levels.push( new HashSet<String>( Arrays.asList( "2", "3", "4" ) ) );
+        levels.push( new HashSet<String>( Arrays.asList( "1" ) ) );
+        assertLevels( traverser, levels );
+    }
+
+    @Test
+    public void parallelBreadthFirstEvaluatesPathsLikeSequential() throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+        try
+        {
+            Traverser traverser = Traversal.description().order(
+                    Traversal.parallelBreadthFirst( executor, 4 ) ).evaluator(
+                    Evaluators.atDepth( 2 ) ).traverse( node( "1" ) );
+            Set<String> expected = new HashSet<String>( Arrays.asList( "5", "6",
+                    "7", "8", "9", "A", "B", "C", "D" ) );
+            for ( Path path : traverser )
+            {
+                assertEquals( 2, path.length() );
+                assertEquals( node( "1" ), path.startNode() );
+                assertTrue( expected.remove( path.endNode().getProperty( "name" ) ) );
+            }
+            assertTrue( expected.isEmpty() );
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
     @Test
     public void testDepthFirstTraversalReturnsNodesOnCorrectDepths()
             throws Exception
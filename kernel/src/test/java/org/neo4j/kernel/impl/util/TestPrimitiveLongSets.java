@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class TestPrimitiveLongSets
+{
+    @Test
+    public void hashSetBehavesLikeSet()
+    {
+        assertBehavesLikeSet( new LongHashSet(), true );
+    }
+
+    @Test
+    public void bitmapBehavesLikeSet()
+    {
+        assertBehavesLikeSet( new LongBitmap(), false );
+    }
+
+    @Test
+    public void hashSetKeepsMinusOne()
+    {
+        LongHashSet set = new LongHashSet();
+        assertFalse( set.contains( -1 ) );
+        assertTrue( set.add( -1 ) );
+        assertFalse( set.add( -1 ) );
+        assertTrue( set.add( 5 ) );
+        assertEquals( 2, set.size() );
+        long[] values = set.toArray();
+        Arrays.sort( values );
+        assertTrue( Arrays.equals( new long[] { -1, 5 }, values ) );
+        assertTrue( set.remove( -1 ) );
+        assertFalse( set.contains( -1 ) );
+        assertEquals( 1, set.size() );
+    }
+
+    @Test
+    public void bitmapOnlyAllocatesPagesInUse()
+    {
+        LongBitmap bitmap = new LongBitmap();
+        long empty = bitmap.getMemoryFootprint();
+        bitmap.add( 10 );
+        long onePage = bitmap.getMemoryFootprint();
+        assertTrue( onePage > empty );
+        for ( long value = 0; value < 65536; value++ )
+        {
+            bitmap.add( value );
+        }
+        assertEquals( onePage, bitmap.getMemoryFootprint() );
+        bitmap.add( 65536 );
+        assertTrue( bitmap.getMemoryFootprint() > onePage );
+        bitmap.remove( 65536 );
+        assertTrue( bitmap.getMemoryFootprint() <= onePage + 16 );
+        assertEquals( 65536, bitmap.size() );
+    }
+
+    @Test
+    public void bitmapIsSmallerForDenseValues()
+    {
+        PrimitiveLongSet hashSet = new LongHashSet();
+        PrimitiveLongSet bitmap = new LongBitmap();
+        for ( long value = 1000000; value < 1100000; value++ )
+        {
+            hashSet.add( value );
+            bitmap.add( value );
+        }
+        assertTrue( bitmap.getMemoryFootprint() * 10 < hashSet.getMemoryFootprint() );
+        assertTrue( LongBitmap.estimateFootprint( 1000000, 1099999 ) >=
+                bitmap.getMemoryFootprint() );
+    }
+
+    private void assertBehavesLikeSet( PrimitiveLongSet set, boolean negatives )
+    {
+        Set<Long> expected = new HashSet<Long>();
+        Random random = new Random( 1234 );
+        for ( int i = 0; i < 100000; i++ )
+        {
+            long value = random.nextInt( 20000 );
+            if ( negatives && random.nextBoolean() )
+            {
+                value = -value;
+            }
+            switch ( random.nextInt( 3 ) )
+            {
+            case 0:
+                assertEquals( expected.remove( value ), set.remove( value ) );
+                break;
+            case 1:
+                assertEquals( expected.contains( value ), set.contains( value ) );
+                break;
+            default:
+                assertEquals( expected.add( value ), set.add( value ) );
+            }
+            assertEquals( expected.size(), set.size() );
+        }
+        for ( long value : expected )
+        {
+            assertTrue( set.contains( value ) );
+        }
+    }
+}
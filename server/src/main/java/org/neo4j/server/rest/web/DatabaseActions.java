@@ -1193,6 +1193,10 @@ public class DatabaseActions
             {
                 return GraphAlgoFactory.shortestPath( expander, maxDepth );
             }
+            else if ( algorithm.equals( "parallelShortestPath" ) )
+            {
+                return GraphAlgoFactory.parallelShortestPath( expander, maxDepth );
+            }
             else if ( algorithm.equals( "allSimplePaths" ) )
             {
                 return GraphAlgoFactory.allSimplePaths( expander, maxDepth );